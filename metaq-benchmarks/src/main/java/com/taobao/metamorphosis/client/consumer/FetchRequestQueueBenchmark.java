@@ -0,0 +1,103 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * FetchRequestQueueFetchRequestTimingWheelĶԱȲԣģfetch̲߳ȡӳӡ
+ * гפpartitionsÿӵӳ[0, maxDelayMs)֮䡣
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar FetchRequestQueueBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class FetchRequestQueueBenchmark {
+
+    @Param({ "queue", "wheel" })
+    public String impl;
+
+    @Param({ "10000" })
+    public int partitions;
+
+    @Param({ "20" })
+    public int maxDelayMs;
+
+    private FetchRequestQueue queue;
+    private FetchRequestTimingWheel wheel;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("queue".equals(this.impl)) {
+            this.queue = new FetchRequestQueue();
+        }
+        else {
+            this.wheel = new FetchRequestTimingWheel("benchmark", 1, FetchRequestTimingWheel.DEFAULT_WHEEL_SIZE);
+        }
+        for (int i = 0; i < this.partitions; i++) {
+            this.offer(new FetchRequest(i % this.maxDelayMs));
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.queue != null) {
+            this.queue.shutdown();
+        }
+        if (this.wheel != null) {
+            this.wheel.shutdown();
+        }
+    }
+
+
+    @Benchmark
+    public FetchRequest takeAndReoffer() throws InterruptedException {
+        final FetchRequest request = this.queue != null ? this.queue.take() : this.wheel.take();
+        if (request != null) {
+            request.setDelay(System.nanoTime() % this.maxDelayMs);
+            this.offer(request);
+        }
+        return request;
+    }
+
+
+    private void offer(final FetchRequest request) {
+        if (this.queue != null) {
+            this.queue.offer(request);
+        }
+        else {
+            this.wheel.offer(request);
+        }
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FetchRequestQueueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,175 @@
+package com.taobao.metamorphosis.gregor.slave;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.gecko.service.Connection;
+import com.taobao.metamorphosis.utils.NamedThreadFactory;
+
+
+/**
+ * 8߳ԸƵύsyncʱԭеOrderedThreadPoolExecutor(mina)ShardedOrderedExecutor(sharded)¶Աȡ
+ * ÿ̶߳Ӧһӣڸӵpartitionsύÿεύһȴȫִ꣬
+ * ִĵȿϢд롣
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar OrderedExecutorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@SuppressWarnings("deprecation")
+public class OrderedExecutorBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({ "mina", "sharded" })
+    public String executorType;
+
+    @Param({ "1", "16" })
+    public int partitions;
+
+    @Param({ "16" })
+    public int nThreads;
+
+    private OrderedThreadPoolExecutor minaExecutor;
+    private ShardedOrderedExecutor shardedExecutor;
+
+    @State(Scope.Thread)
+    public static class Producer {
+        final AtomicLong completed = new AtomicLong();
+        long submitted;
+        IoEvent[] events;
+        int[] keys;
+
+
+        @Setup(Level.Trial)
+        public void setUp(final OrderedExecutorBenchmark benchmark) {
+            final Connection conn = newConnection();
+            final int n = benchmark.partitions;
+            this.events = new IoEvent[n];
+            this.keys = new int[n];
+            for (int i = 0; i < n; i++) {
+                final IoCatalog catalog = new IoCatalog(conn, "topic-" + i);
+                this.events[i] = new IoEvent() {
+                    @Override
+                    public void run() {
+                        Producer.this.completed.incrementAndGet();
+                    }
+
+
+                    @Override
+                    public IoCatalog getIoCatalog() {
+                        return catalog;
+                    }
+                };
+                this.keys[i] = ShardedOrderedExecutor.shardKey(conn, "topic", i);
+            }
+        }
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("mina".equals(this.executorType)) {
+            this.minaExecutor =
+                    new OrderedThreadPoolExecutor(this.nThreads, this.nThreads, 60, TimeUnit.SECONDS,
+                        new NamedThreadFactory("mina"));
+        }
+        else {
+            this.shardedExecutor = new ShardedOrderedExecutor(this.nThreads, new NamedThreadFactory("sharded"));
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (this.minaExecutor != null) {
+            this.minaExecutor.shutdown();
+        }
+        if (this.shardedExecutor != null) {
+            this.shardedExecutor.shutdown();
+        }
+    }
+
+
+    /**
+     * ֻ֧getAttribute/setAttributeIfAbsentӣOrderedThreadPoolExecutorϱ
+     */
+    static Connection newConnection() {
+        final ConcurrentHashMap<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+        return (Connection) Proxy.newProxyInstance(OrderedExecutorBenchmark.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    final String name = method.getName();
+                    if ("getAttribute".equals(name)) {
+                        return attributes.get(args[0]);
+                    }
+                    else if ("setAttributeIfAbsent".equals(name)) {
+                        return attributes.putIfAbsent((String) args[0], args[1]);
+                    }
+                    else if ("hashCode".equals(name)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    else if ("equals".equals(name)) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                }
+            });
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long execute(final Producer producer) {
+        final int n = this.partitions;
+        for (int i = 0; i < BATCH; i++) {
+            final int index = i % n;
+            if (this.minaExecutor != null) {
+                this.minaExecutor.execute(producer.events[index]);
+            }
+            else {
+                this.shardedExecutor.execute(producer.keys[index], producer.events[index]);
+            }
+        }
+        producer.submitted += BATCH;
+        while (producer.completed.get() < producer.submitted) {
+            Thread.yield();
+        }
+        return producer.submitted;
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(OrderedExecutorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
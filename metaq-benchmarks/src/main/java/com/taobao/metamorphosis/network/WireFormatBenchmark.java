@@ -0,0 +1,99 @@
+package com.taobao.metamorphosis.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+import com.taobao.gecko.core.core.CodecFactory;
+import com.taobao.metaq.store.BenchmarkStores;
+
+
+/**
+ * MetamorphosisWireFormatType£putӦ߷ϢdataӦ߽brokerصݡ
+ * brokerdataʱtransferToֱд"value len opaque\r\n"ļݣDataCommandûб룬encodeֻput
+ * <ul>
+ * <li>command: decodeputdata</li>
+ * <li>bodySize: Ϣ(dataʱΪӦ)С</li>
+ * </ul>
+ * ֻڴнУҪʱĿ¼
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar WireFormatBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class WireFormatBenchmark {
+
+    @Param({ "put", "data" })
+    public String command;
+
+    @Param({ "128", "1024", "65536" })
+    public int bodySize;
+
+    private CodecFactory.Encoder encoder;
+    private CodecFactory.Decoder decoder;
+    private PutCommand putCommand;
+    private byte[] encoded;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final CodecFactory codecFactory = new MetamorphosisWireFormatType().newCodecFactory();
+        this.encoder = codecFactory.getEncoder();
+        this.decoder = codecFactory.getDecoder();
+        final byte[] body = BenchmarkStores.newBody(this.bodySize, 0);
+        this.putCommand = new PutCommand(BenchmarkStores.TOPIC, 0, body, null, 0, Integer.MAX_VALUE);
+        final IoBuffer buffer;
+        if ("put".equals(this.command)) {
+            buffer = this.putCommand.encode();
+        }
+        else {
+            final byte[] head = ("value " + body.length + " " + Integer.MAX_VALUE + "\r\n").getBytes();
+            buffer = IoBuffer.allocate(head.length + body.length);
+            buffer.put(head);
+            buffer.put(body);
+            buffer.flip();
+        }
+        this.encoded = new byte[buffer.remaining()];
+        buffer.get(this.encoded);
+    }
+
+
+    @Benchmark
+    public IoBuffer encodePut() {
+        return this.encoder.encode(this.putCommand, null);
+    }
+
+
+    @Benchmark
+    public Object decode() {
+        return this.decoder.decode(IoBuffer.wrap(this.encoded), null);
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.taobao.metamorphosis.server.assembly;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.service.Connection;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.server.network.PutCallback;
+import com.taobao.metamorphosis.server.network.SessionContext;
+import com.taobao.metamorphosis.server.network.SessionContextImpl;
+
+
+/**
+ * 64£첽(async)ͬ(semisync)putӦºӳٶԱȡ
+ * ģslaveÿackIntervalMicrosԵǰoffsetһȷϣ൱һθϢд紫䡣
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar SlaveAckBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class SlaveAckBenchmark {
+    private static final int MESSAGE_SIZE = 1024;
+    private static final long TIMEOUT_IN_MILLS = 3000;
+
+    @Param({ "async", "semisync" })
+    public String mode;
+
+    @Param({ "100", "1000" })
+    public long ackIntervalMicros;
+
+    private boolean semisync;
+    private SlaveReplicationManager manager;
+    private final AtomicLong maxOffset = new AtomicLong();
+    private volatile boolean running;
+    private Thread slave;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.semisync = "semisync".equals(this.mode);
+        this.manager = new SlaveReplicationManager(null, 0);
+        final SessionContext ctx = new SessionContextImpl(null, newConnection());
+        // ȷһΣǼǻԾslave
+        this.manager.processGetCommand(new GetCommand("slave", "meta-slave-group", 0, 0, 0, 0), ctx);
+        this.running = true;
+        this.slave = new Thread("simulated-slave") {
+            @Override
+            public void run() {
+                while (SlaveAckBenchmark.this.running) {
+                    LockSupport.parkNanos(SlaveAckBenchmark.this.ackIntervalMicros * 1000);
+                    SlaveAckBenchmark.this.manager.processGetCommand(new GetCommand("slave", "meta-slave-group", 0,
+                        SlaveAckBenchmark.this.maxOffset.get(), 0, 0), ctx);
+                }
+            }
+        };
+        this.slave.start();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.running = false;
+        this.slave.join();
+        this.manager.expireAckWaiters(Long.MAX_VALUE);
+    }
+
+
+    private static Connection newConnection() {
+        final InetSocketAddress address = new InetSocketAddress("localhost", 8123);
+        return (Connection) Proxy.newProxyInstance(SlaveAckBenchmark.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    return "getRemoteSocketAddress".equals(method.getName()) ? address : null;
+                }
+            });
+    }
+
+
+    @Benchmark
+    public ResponseCommand put() throws InterruptedException {
+        final long offset = this.maxOffset.addAndGet(MESSAGE_SIZE);
+        final BooleanCommand response = new BooleanCommand(0, HttpStatus.Success, String.valueOf(offset));
+        if (!this.semisync) {
+            return response;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.manager.waitForSlaveAck(offset, TIMEOUT_IN_MILLS, new PutCallback() {
+            @Override
+            public void putComplete(final ResponseCommand resp) {
+                latch.countDown();
+            }
+        }, response);
+        latch.await();
+        return response;
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SlaveAckBenchmark.class.getSimpleName()).build()).run();
+    }
+}
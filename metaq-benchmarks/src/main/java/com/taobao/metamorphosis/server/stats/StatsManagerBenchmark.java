@@ -0,0 +1,125 @@
+package com.taobao.metamorphosis.server.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.utils.MetaStatLog;
+import com.taobao.metamorphosis.utils.StatConstants;
+import com.taobao.metamorphosis.utils.StripedCounter;
+
+
+/**
+ * 64߳ͬʱͳputʱԭͳƷʽ(legacy)뻺(cached)¶Աȡ
+ * <ul>
+ * <li>legacyȫAtomicLongÿƥtopicƴӷַMetaStatLog</li>
+ * <li>cachedStatsManager.statsPut(topic, int, int)ֶμtopicƥͼ</li>
+ * </ul>
+ * counterԱȼۼӿlegacyΪȫAtomicLongcachedΪStripedCounter
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar StatsManagerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class StatsManagerBenchmark {
+    private static final int TOPICS = 8;
+    private static final int PARTITIONS = 16;
+
+    @Param({ "legacy", "cached" })
+    public String stats;
+
+    private StatsManager statsManager;
+    private final String[] topics = new String[TOPICS];
+    private final AtomicLong legacyCmdPut = new AtomicLong();
+    private final Pattern legacyPattern = Pattern.compile("topic.*");
+    private final AtomicLong atomicCounter = new AtomicLong();
+    private final StripedCounter stripedCounter = new StripedCounter();
+
+    @State(Scope.Thread)
+    public static class Request {
+        int seq;
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final MetaConfig metaConfig = new MetaConfig();
+        metaConfig.getStatTopicSet().add("topic*");
+        this.statsManager = new StatsManager(metaConfig, null, null, null);
+        this.statsManager.init();
+        for (int i = 0; i < TOPICS; i++) {
+            this.topics[i] = "topic" + i;
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.statsManager.dispose();
+    }
+
+
+    @Benchmark
+    public void statsPut(final Request request) {
+        final int seq = request.seq++;
+        final String topic = this.topics[seq % TOPICS];
+        final int partition = seq % PARTITIONS;
+        if ("legacy".equals(this.stats)) {
+            final String partitionString = 0 + "-" + partition;
+            this.legacyCmdPut.addAndGet(1);
+            if (this.legacyPattern.matcher(topic).matches()) {
+                MetaStatLog.addStatValue2(null, StatConstants.CMD_PUT, topic, partitionString, 1);
+            }
+            if (this.legacyPattern.matcher(topic).matches()) {
+                MetaStatLog.addStatValue2(null, StatConstants.MESSAGE_SIZE, topic, 1024);
+            }
+        }
+        else {
+            this.statsManager.statsPut(topic, partition, 1);
+            this.statsManager.statsMessageSize(topic, 1024);
+        }
+    }
+
+
+    @Benchmark
+    public long counter() {
+        if ("legacy".equals(this.stats)) {
+            return this.atomicCounter.incrementAndGet();
+        }
+        else {
+            this.stripedCounter.increment();
+            return 0;
+        }
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StatsManagerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
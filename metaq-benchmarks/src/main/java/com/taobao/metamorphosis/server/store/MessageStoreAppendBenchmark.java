@@ -0,0 +1,122 @@
+package com.taobao.metamorphosis.server.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metamorphosis.network.PutCommand;
+import com.taobao.metamorphosis.server.utils.MetaConfig;
+
+
+/**
+ * ͬˢʱÿһ߳(thread)빲append̳߳(pool)ĶԱȲԡ
+ * ߳ѡд1KϢȴˢ̻ص󷵻أfsyncϲ
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar MessageStoreAppendBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(64)
+public class MessageStoreAppendBenchmark {
+
+    @Param({ "thread", "pool" })
+    public String impl;
+
+    @Param({ "10", "100", "1000" })
+    public int partitions;
+
+    @Param({ "4" })
+    public int workers;
+
+    private final String topic = "benchmark";
+    private File dataDir;
+    private AppendWorkerPool appendWorkerPool;
+    private MessageStore[] stores;
+    private final PutCommand putCommand = new PutCommand(this.topic, 0, new byte[1024], null, 0, 0);
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+        long msgId;
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.dataDir = new File(System.getProperty("java.io.tmpdir"), "meta-append-benchmark");
+        FileUtils.deleteDirectory(this.dataDir);
+        final MetaConfig metaConfig = new MetaConfig();
+        metaConfig.setDataPath(this.dataDir.getAbsolutePath());
+        metaConfig.setUnflushThreshold(0);
+        if ("pool".equals(this.impl)) {
+            this.appendWorkerPool = new AppendWorkerPool(this.workers);
+        }
+        this.stores = new MessageStore[this.partitions];
+        for (int i = 0; i < this.partitions; i++) {
+            this.stores[i] = new MessageStore(this.topic, i, metaConfig, null, 0, this.appendWorkerPool);
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (this.appendWorkerPool != null) {
+            this.appendWorkerPool.close();
+            System.out.println("\nappends=" + this.appendWorkerPool.getAppendCount() + ",batches="
+                    + this.appendWorkerPool.getBatchCount() + ",flushes=" + this.appendWorkerPool.getFlushCount());
+        }
+        for (final MessageStore store : this.stores) {
+            store.close();
+        }
+        FileUtils.deleteDirectory(this.dataDir);
+    }
+
+
+    @Benchmark
+    public Location append(final ThreadState state) throws InterruptedException {
+        final MessageStore store = this.stores[state.random.nextInt(this.partitions)];
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Location[] result = new Location[1];
+        store.append(state.msgId++, this.putCommand, new AppendCallback() {
+            @Override
+            public void appendComplete(final Location location) {
+                result[0] = location;
+                latch.countDown();
+            }
+        });
+        latch.await();
+        return result[0];
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MessageStoreAppendBenchmark.class.getSimpleName()).build()).run();
+    }
+}
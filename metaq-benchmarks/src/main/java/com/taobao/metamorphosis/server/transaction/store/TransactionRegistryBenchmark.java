@@ -0,0 +1,171 @@
+package com.taobao.metamorphosis.server.transaction.store;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metamorphosis.server.transaction.store.JournalTransactionStore.Tx;
+import com.taobao.metamorphosis.transaction.LocalTransactionId;
+import com.taobao.metamorphosis.transaction.TransactionId;
+import com.taobao.metamorphosis.transaction.XATransactionId;
+
+
+/**
+ * 64£עԭsynchronized LinkedHashMap(locked)ֶConcurrentHashMap(striped)¶Աȡ
+ * ÿεһעϵڣbeginadd(xa)preparecommit־Ϣд롣
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar TransactionRegistryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class TransactionRegistryBenchmark {
+
+    @Param({ "locked", "striped" })
+    public String registry;
+
+    @Param({ "local", "xa" })
+    public String txType;
+
+    private Map<Object, Tx> inflightTransactions;
+    private Map<Object, Tx> preparedTransactions;
+    private boolean locked;
+    private boolean xa;
+    private final JournalLocation location = new JournalLocation(1, 0);
+    private final AtomicLong idGen = new AtomicLong();
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.locked = "locked".equals(this.registry);
+        this.xa = "xa".equals(this.txType);
+        if (this.locked) {
+            this.inflightTransactions = new LinkedHashMap<Object, Tx>();
+            this.preparedTransactions = new LinkedHashMap<Object, Tx>();
+        }
+        else {
+            this.inflightTransactions =
+                    new ConcurrentHashMap<Object, Tx>(1024, 0.75f,
+                        JournalTransactionStore.TX_REGISTRY_CONCURRENCY_LEVEL);
+            this.preparedTransactions =
+                    new ConcurrentHashMap<Object, Tx>(1024, 0.75f,
+                        JournalTransactionStore.TX_REGISTRY_CONCURRENCY_LEVEL);
+        }
+    }
+
+
+    private Tx get(final Map<Object, Tx> map, final Object txid) {
+        if (this.locked) {
+            synchronized (map) {
+                return map.get(txid);
+            }
+        }
+        return map.get(txid);
+    }
+
+
+    private Tx remove(final Map<Object, Tx> map, final Object txid) {
+        if (this.locked) {
+            synchronized (map) {
+                return map.remove(txid);
+            }
+        }
+        return map.remove(txid);
+    }
+
+
+    private void put(final Map<Object, Tx> map, final Object txid, final Tx tx) {
+        if (this.locked) {
+            synchronized (map) {
+                map.put(txid, tx);
+            }
+        }
+        else {
+            map.put(txid, tx);
+        }
+    }
+
+
+    private Tx getTx(final Object txid) {
+        if (this.locked) {
+            synchronized (this.inflightTransactions) {
+                Tx tx = this.inflightTransactions.get(txid);
+                if (tx == null) {
+                    tx = new Tx(this.location);
+                    this.inflightTransactions.put(txid, tx);
+                }
+                return tx;
+            }
+        }
+        Tx tx = this.inflightTransactions.get(txid);
+        if (tx == null) {
+            tx = new Tx(this.location);
+            final Tx old = ((ConcurrentHashMap<Object, Tx>) this.inflightTransactions).putIfAbsent(txid, tx);
+            if (old != null) {
+                tx = old;
+            }
+        }
+        return tx;
+    }
+
+
+    @Benchmark
+    public Tx transaction() {
+        final long id = this.idGen.incrementAndGet();
+        final TransactionId txid =
+                this.xa ? createXID((int) id) : new LocalTransactionId("session", id);
+        // begin + add
+        this.getTx(txid);
+        this.get(this.inflightTransactions, txid);
+        this.getTx(txid);
+        if (this.xa) {
+            // prepare
+            this.put(this.preparedTransactions, txid, this.remove(this.inflightTransactions, txid));
+            // commit
+            return this.remove(this.preparedTransactions, txid);
+        }
+        return this.remove(this.inflightTransactions, txid);
+    }
+
+
+    // еXIDGeneratorһ£ȵbranchQualifierglobalTransactionId
+    private static XATransactionId createXID(final int formatId) {
+        final Random rand = new Random();
+        final byte[] branchQualifier = new byte[rand.nextInt(100)];
+        rand.nextBytes(branchQualifier);
+        final byte[] globalTransactionId = new byte[rand.nextInt(100)];
+        rand.nextBytes(globalTransactionId);
+        return new XATransactionId(formatId, branchQualifier, globalTransactionId);
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TransactionRegistryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.taobao.metaq.commons;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metaq.store.BenchmarkStores;
+
+
+/**
+ * MetaMessageDecoder.decodesһϢ£ӦߴһfetchӦ
+ * <ul>
+ * <li>batch: һϢ</li>
+ * <li>bodySize: ϢС</li>
+ * <li>readBody: ǷϢ壬falseӦֻϢͷĳ</li>
+ * </ul>
+ * ʱjava.io.tmpdir/meta-benchmark/decodeµʱ洢ݣɺɾֻڴнС
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar MetaMessageDecoderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class MetaMessageDecoderBenchmark {
+
+    @Param({ "32" })
+    public int batch;
+
+    @Param({ "128", "1024" })
+    public int bodySize;
+
+    @Param({ "true", "false" })
+    public boolean readBody;
+
+    private byte[] data;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.data = BenchmarkStores.encodeMessages("decode", this.batch, this.bodySize);
+    }
+
+
+    @Benchmark
+    public List<MetaMessageWrapper> decodes() {
+        return MetaMessageDecoder.decodes(ByteBuffer.wrap(this.data), this.readBody);
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MetaMessageDecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.taobao.metaq.commons;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metaq.store.BenchmarkStores;
+
+
+/**
+ * MetaUtil.compress/uncompress£Ϊ̶ɵıݣÿһ¡
+ * <ul>
+ * <li>size: ԭʼݴС</li>
+ * <li>level: Deflaterѹ</li>
+ * </ul>
+ * ʱӡѹʣںʵϢա
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar MetaUtilCompressBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class MetaUtilCompressBenchmark {
+
+    @Param({ "1024", "16384", "131072" })
+    public int size;
+
+    @Param({ "1", "5", "9" })
+    public int level;
+
+    private byte[] data;
+    private byte[] compressed;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.data = BenchmarkStores.newBody(this.size, 0);
+        this.compressed = MetaUtil.compress(this.data, this.level);
+        System.out.println("\ncompressed " + this.data.length + " -> " + this.compressed.length);
+    }
+
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        return MetaUtil.compress(this.data, this.level);
+    }
+
+
+    @Benchmark
+    public byte[] uncompress() throws IOException {
+        return MetaUtil.uncompress(this.compressed);
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MetaUtilCompressBenchmark.class.getSimpleName()).build()).run();
+    }
+}
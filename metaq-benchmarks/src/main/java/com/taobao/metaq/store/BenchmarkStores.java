@@ -0,0 +1,156 @@
+package com.taobao.metaq.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.taobao.metaq.commons.MetaMessage;
+import com.taobao.metaq.commons.MetaMessageAnnotation;
+
+
+/**
+ * ׼ԹõĴ洢췽ݷjava.io.tmpdir/meta-benchmark/ԲֵĿ¼У
+ * ǰգرպɾ${user.home}/metastoreµ
+ *
+ */
+public class BenchmarkStores {
+    public static final String TOPIC = "benchmark";
+    public static final String TYPE = "benchmark";
+    /** ļСĬϵ1GСԱtmpҲܣ㹻ʹڼٻļ */
+    public static final int MAPED_FILE_SIZE_PHYSIC = 1024 * 1024 * 256;
+
+    private static final byte[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 ,.:{}\"".getBytes();
+
+
+    private BenchmarkStores() {
+    }
+
+
+    public static File getDataDir(final String name) {
+        return new File(new File(System.getProperty("java.io.tmpdir"), "meta-benchmark"), name);
+    }
+
+
+    /**
+     * ʱĿ¼´洢ãոĿ¼е
+     */
+    public static MetaStoreConfig newConfig(final String name, final boolean groupCommit) throws IOException {
+        final File dataDir = getDataDir(name);
+        FileUtils.deleteDirectory(dataDir);
+        final MetaStoreConfig metaStoreConfig = new MetaStoreConfig();
+        metaStoreConfig.setStorePathPhysic(new File(dataDir, "physic").getAbsolutePath());
+        metaStoreConfig.setStorePathLogics(new File(dataDir, "logics").getAbsolutePath());
+        metaStoreConfig.setStoreCheckpoint(new File(dataDir, "metaStoreCheckpoint").getAbsolutePath());
+        metaStoreConfig.setAbortFile(new File(dataDir, "metaStoreAbort").getAbsolutePath());
+        metaStoreConfig.setMapedFileSizePhysic(MAPED_FILE_SIZE_PHYSIC);
+        metaStoreConfig.setGroupCommitEnable(groupCommit);
+        return metaStoreConfig;
+    }
+
+
+    public static DefaultMetaStore start(final MetaStoreConfig metaStoreConfig) throws Exception {
+        final DefaultMetaStore metaStore = new DefaultMetaStore(metaStoreConfig);
+        if (!metaStore.load()) {
+            throw new IllegalStateException("Load meta store failed");
+        }
+        metaStore.start();
+        return metaStore;
+    }
+
+
+    /**
+     * رմ洢ɾʱĿ¼
+     */
+    public static void close(final DefaultMetaStore metaStore, final String name) throws IOException {
+        if (metaStore != null) {
+            metaStore.shutdown();
+            metaStore.destroy();
+        }
+        FileUtils.deleteDirectory(getDataDir(name));
+    }
+
+
+    /**
+     * һϢputMessageֻдmsgantϵĴ洢ʱCRCͬһ߳̿ԷдͬһϢ
+     */
+    public static MetaMessage newMessage(final int bodySize, final long seed) {
+        final MetaMessage msg = new MetaMessage(TOPIC, TYPE, newBody(bodySize, seed));
+        msg.setAttribute("");
+        return msg;
+    }
+
+
+    public static MetaMessageAnnotation newAnnotation(final int queueId) throws IOException {
+        final MetaMessageAnnotation msgant = new MetaMessageAnnotation();
+        msgant.setQueueId(queueId);
+        msgant.setSysFlag(4);
+        msgant.setBornTimestamp(System.currentTimeMillis());
+        msgant.setStoreHost(new InetSocketAddress(InetAddress.getLocalHost(), 8123));
+        msgant.setBornHost(new InetSocketAddress(InetAddress.getLocalHost(), 0));
+        return msgant;
+    }
+
+
+    /**
+     * ̶ɵϢ壬ַСѹʺͨıϢӽ֤ÿеһ
+     */
+    public static byte[] newBody(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return body;
+    }
+
+
+    /**
+     * commonsûϢʱ洢countϢеĸʽյ
+     */
+    public static byte[] encodeMessages(final String name, final int count, final int bodySize) throws Exception {
+        final DefaultMetaStore metaStore = start(newConfig(name, false));
+        try {
+            final MetaMessageAnnotation msgant = newAnnotation(0);
+            int totalBytes = 0;
+            for (int i = 0; i < count; i++) {
+                final PutMessageResult result = metaStore.putMessage(newMessage(bodySize, i), msgant);
+                if (!result.isOk()) {
+                    throw new IllegalStateException("Put message failed");
+                }
+                totalBytes += result.getAppendMessageResult().getWroteBytes();
+            }
+            final SelectMapedBufferResult selected = metaStore.getMetaQueuePhysical().getMessage(0, totalBytes);
+            try {
+                final byte[] data = new byte[totalBytes];
+                selected.getByteBuffer().get(data);
+                return data;
+            }
+            finally {
+                selected.release();
+            }
+        }
+        finally {
+            close(metaStore, name);
+        }
+    }
+
+
+    /**
+     * ȴַ̰߳Ϣд߼УԤдݵĲڶ֮ǰ
+     */
+    public static void awaitDispatch(final DefaultMetaStore metaStore, final int queueId, final long count)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 60 * 1000;
+        while (metaStore.getMaxOffsetInQuque(TOPIC, queueId) < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Dispatch timeout, expect " + count + " but "
+                        + metaStore.getMaxOffsetInQuque(TOPIC, queueId));
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.taobao.metaq.store;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metaq.commons.MetaMessage;
+import com.taobao.metaq.commons.MetaMessageAnnotation;
+
+
+/**
+ * DefaultMetaStore.getMessageĶȡ£ʱԤдmessagesϢʱoffsetʼȡ
+ * <ul>
+ * <li>bodySize: ϢС</li>
+ * <li>messages: ԤдϢĬpage cache</li>
+ * <li>maxSize: ÿζȡֽߵfetchСӦ</li>
+ * </ul>
+ * дjava.io.tmpdir/meta-benchmark/get£ÿֲԽɾ
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar DefaultMetaStoreGetBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class DefaultMetaStoreGetBenchmark {
+    private static final String NAME = "get";
+    private static final int QUEUE_ID = 0;
+
+    @Param({ "128", "1024" })
+    public int bodySize;
+
+    @Param({ "100000" })
+    public int messages;
+
+    @Param({ "65536", "262144" })
+    public int maxSize;
+
+    private DefaultMetaStore metaStore;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random(Thread.currentThread().getId());
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.metaStore = BenchmarkStores.start(BenchmarkStores.newConfig(NAME, false));
+        final MetaMessage msg = BenchmarkStores.newMessage(this.bodySize, 0);
+        final MetaMessageAnnotation msgant = BenchmarkStores.newAnnotation(QUEUE_ID);
+        for (int i = 0; i < this.messages; i++) {
+            if (!this.metaStore.putMessage(msg, msgant).isOk()) {
+                throw new IllegalStateException("Put message failed");
+            }
+        }
+        BenchmarkStores.awaitDispatch(this.metaStore, QUEUE_ID, this.messages);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkStores.close(this.metaStore, NAME);
+    }
+
+
+    @Benchmark
+    public int getMessage(final ThreadState state) {
+        final GetMessageResult result =
+                this.metaStore.getMessage(BenchmarkStores.TOPIC, QUEUE_ID, state.random.nextInt(this.messages),
+                    this.maxSize, null);
+        if (result == null) {
+            return 0;
+        }
+        try {
+            return result.getBufferTotalSize();
+        }
+        finally {
+            result.release();
+        }
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DefaultMetaStoreGetBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.taobao.metaq.store;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.taobao.metaq.commons.MetaMessage;
+import com.taobao.metaq.commons.MetaMessageAnnotation;
+
+
+/**
+ * MetaQueuePhysical.putMessageд£߳̾ед
+ * <ul>
+ * <li>bodySize: ϢС</li>
+ * <li>queues: д߼и̰߳</li>
+ * <li>groupCommit: Ƿͬˢ(GroupCommit)ÿдҪȴˢ</li>
+ * </ul>
+ * дjava.io.tmpdir/meta-benchmark/put£ÿֲԽɾGroupCommitʱһֿдGݡ
+ *
+ * <pre>
+ * mvn -pl metaq-benchmarks -am package -DskipTests
+ * java -jar metaq-benchmarks/target/benchmarks.jar MetaQueuePhysicalPutBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MetaQueuePhysicalPutBenchmark {
+    private static final String NAME = "put";
+
+    @Param({ "128", "1024", "4096" })
+    public int bodySize;
+
+    @Param({ "1", "16" })
+    public int queues;
+
+    @Param({ "false", "true" })
+    public boolean groupCommit;
+
+    private DefaultMetaStore metaStore;
+    private MetaQueuePhysical metaQueuePhysical;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        MetaMessage msg;
+        MetaMessageAnnotation msgant;
+
+
+        @Setup(Level.Trial)
+        public void setUp(final MetaQueuePhysicalPutBenchmark benchmark) throws Exception {
+            final int index = benchmark.threadIndex.getAndIncrement();
+            this.msg = BenchmarkStores.newMessage(benchmark.bodySize, index);
+            this.msgant = BenchmarkStores.newAnnotation(index % benchmark.queues);
+        }
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.metaStore = BenchmarkStores.start(BenchmarkStores.newConfig(NAME, this.groupCommit));
+        this.metaQueuePhysical = this.metaStore.getMetaQueuePhysical();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkStores.close(this.metaStore, NAME);
+    }
+
+
+    @Benchmark
+    public AppendMessageResult putMessage(final ThreadState state) {
+        return this.metaQueuePhysical.putMessage(state.msg, state.msgant);
+    }
+
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MetaQueuePhysicalPutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -28,8 +28,10 @@ import com.taobao.metamorphosis.client.consumer.MessageConsumer;
 import com.taobao.metamorphosis.client.consumer.RecoverManager;
 import com.taobao.metamorphosis.client.consumer.RecoverStorageManager;
 import com.taobao.metamorphosis.client.consumer.SimpleMessageConsumer;
+import com.taobao.metamorphosis.client.consumer.StickyLoadBalanceStrategy;
 import com.taobao.metamorphosis.client.consumer.SubscribeInfoManager;
 import com.taobao.metamorphosis.client.consumer.storage.OffsetStorage;
+import com.taobao.metamorphosis.client.consumer.storage.WriteBehindOffsetStorage;
 import com.taobao.metamorphosis.client.consumer.storage.ZkOffsetStorage;
 import com.taobao.metamorphosis.client.producer.MessageProducer;
 import com.taobao.metamorphosis.client.producer.PartitionSelector;
@@ -96,6 +98,16 @@ public class MetaMessageSessionFactory implements MessageSessionFactory {
     }
 
 
+    /**
+     * zkmeta·ϢڴBrokerOffsetStorage
+     * 
+     * @return
+     */
+    public MetaZookeeper getMetaZookeeper() {
+        return this.metaZookeeper;
+    }
+
+
     /**
      * ضĹϵ
      * 
@@ -455,6 +467,13 @@ public class MetaMessageSessionFactory implements MessageSessionFactory {
         if (offsetStorage == null) {
             throw new InvalidOffsetStorageException("Null offset storage");
         }
+        // ϲoffsetύд洢
+        OffsetStorage offsetStorageCopy = offsetStorage;
+        if (consumerConfig.getOffsetFlushIntervalInMills() > 0
+                && !(offsetStorageCopy instanceof WriteBehindOffsetStorage)) {
+            offsetStorageCopy =
+                    new WriteBehindOffsetStorage(offsetStorage, consumerConfig.getOffsetFlushIntervalInMills());
+        }
         // Ҫʱrecover
         if (!recoverManager0.isStarted()) {
             recoverManager0.start(this.metaClientConfig);
@@ -462,7 +481,7 @@ public class MetaMessageSessionFactory implements MessageSessionFactory {
         this.checkConsumerConfig(consumerConfig);
         return this.addChild(new SimpleMessageConsumer(this, this.remotingClient, consumerConfig,
             this.consumerZooKeeper, this.producerZooKeeper, this.subscribeInfoManager, recoverManager0,
-            offsetStorage, this.createLoadBalanceStrategy(consumerConfig)));
+            offsetStorageCopy, this.createLoadBalanceStrategy(consumerConfig)));
     }
 
 
@@ -472,6 +491,8 @@ public class MetaMessageSessionFactory implements MessageSessionFactory {
             return new DefaultLoadBalanceStrategy();
         case CONSIST:
             return new ConsisHashStrategy();
+        case STICKY:
+            return new StickyLoadBalanceStrategy();
         default:
             throw new IllegalArgumentException("Unknow load balance strategy type:"
                     + consumerConfig.getLoadBalanceStrategyType());
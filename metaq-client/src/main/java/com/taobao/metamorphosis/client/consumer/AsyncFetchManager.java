@@ -0,0 +1,138 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.taobao.metamorphosis.utils.NamedThreadFactory;
+
+
+/**
+ * 첽صϢץȡ
+ * <p>
+ * SimpleFetchManagerÿfetch߳ͬʱҪô̺߳ܶ࣬Ҫô
+ * ֻһ̴ַ߳ȡڵ첽ͣӦڹ̶СĻص̳߳дÿͬʱֻһ;
+ * ̼߳ǧϢĴSimpleFetchManagerȫһ¡
+ * </p>
+ * ص߳fetchRunnerCountͨConsumerConfig.setAsyncFetch(true)á
+ *
+ */
+public class AsyncFetchManager extends SimpleFetchManager {
+
+    private final ConsumerConfig consumerConfig;
+
+    private final InnerConsumer consumer;
+
+    private volatile ThreadPoolExecutor callbackExecutor;
+
+
+    public AsyncFetchManager(final ConsumerConfig consumerConfig, final InnerConsumer consumer) {
+        super(consumerConfig, consumer);
+        this.consumerConfig = consumerConfig;
+        this.consumer = consumer;
+    }
+
+
+    @Override
+    public void startFetchRunner() {
+        final int threads = Math.max(1, this.consumerConfig.getFetchRunnerCount());
+        this.callbackExecutor =
+                new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory(this.consumerConfig.getGroup() + "-Fetch-Callback"));
+        super.startFetchRunner();
+    }
+
+
+    @Override
+    public void stopFetchRunner() throws InterruptedException {
+        try {
+            // ȴ;ȫض
+            super.stopFetchRunner();
+        }
+        finally {
+            final ThreadPoolExecutor executor = this.callbackExecutor;
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(5000, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+
+    @Override
+    int getFetchRunnerCount() {
+        // ַֻ߳󣬲
+        return 1;
+    }
+
+
+    @Override
+    Runnable newFetchRunner() {
+        return new AsyncFetchDispatcher();
+    }
+
+
+    ThreadPoolExecutor getCallbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    /**
+     * Ӷȡڵ첽
+     *
+     */
+    class AsyncFetchDispatcher implements Runnable {
+        private final FetchRequestRunner processor = new FetchRequestRunner();
+
+
+        @Override
+        public void run() {
+            while (!AsyncFetchManager.this.isShutdown()) {
+                try {
+                    final FetchRequest request = AsyncFetchManager.this.takeFetchRequest();
+                    if (request != null) {
+                        this.dispatch(request);
+                    }
+                }
+                catch (final InterruptedException e) {
+                    // takeӦжϣ
+                }
+            }
+        }
+
+
+        void dispatch(final FetchRequest request) {
+            if (!AsyncFetchManager.this.beginFetch(request)) {
+                return;
+            }
+            AsyncFetchManager.this.consumer.fetchAllAsync(request, -1, null, new FetchCallback() {
+                @Override
+                public void onFetchResult(final FetchResult result) {
+                    if (AsyncFetchManager.this.isShutdown()) {
+                        // Ѿֹ֪ͣͨlistenerֱӷŻض
+                        AsyncFetchManager.this.addFetchRequest(request);
+                        return;
+                    }
+                    try {
+                        AsyncFetchDispatcher.this.processor.processFetchResult(request, result);
+                    }
+                    catch (final Throwable e) {
+                        AsyncFetchDispatcher.this.processor.processFetchException(request, e);
+                    }
+                }
+
+
+                @Override
+                public void onException(final Throwable e) {
+                    AsyncFetchDispatcher.this.processor.processFetchException(request, e);
+                }
+
+
+                @Override
+                public ThreadPoolExecutor getExecutor() {
+                    return AsyncFetchManager.this.callbackExecutor;
+                }
+            });
+        }
+    }
+
+}
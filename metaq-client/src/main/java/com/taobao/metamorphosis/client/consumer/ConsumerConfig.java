@@ -18,6 +18,10 @@ import com.taobao.metamorphosis.client.MetaClientConfig;
  * <li>maxFetchRetries:ͬһϢڴʧԴĬ5ΣϢ¼</li>
  * <li>maxIncreaseFetchDataRetries:ȡԴֵ,ÿȡ</li>
  * <li>loadBalanceStrategyType: ߸ؾ</li>
+ * <li>asyncFetch: Ƿʹ첽صʽץȡϢĬfalsefetchRunnerCountΪӦ߳ʺϵ߶Ĵĳ</li>
+ * <li>incrementalRebalance: Ƿؾ⣬ĬfalseֻͣҪǨƵķڸؾڼѣSTICKYʹ</li>
+ * <li>offsetFlushIntervalInMills: 0ʱoffsetڴкϲÿʱд洢Ĭ0ʾÿύֱд룬λ</li>
+ * <li>maxFetchBufferSize: ;fetchӦδϢռڴޣʱfetch̵߳ȴĬ0ʾƣλֽ</li>
  * </ul>
  * 
  * @author boyan
@@ -49,6 +53,14 @@ public class ConsumerConfig extends MetaClientConfig {
     public static int PullFromMaster = -1;
     private int pullFromWhichServer = PullFromMaster;
 
+    private boolean asyncFetch = false;
+
+    private long offsetFlushIntervalInMills = 0;
+
+    private boolean incrementalRebalance = false;
+
+    private long maxFetchBufferSize = 0;
+
 
     public int getMaxFetchRetries() {
         return this.maxFetchRetries;
@@ -327,6 +339,92 @@ public class ConsumerConfig extends MetaClientConfig {
     }
 
 
+    /**
+     * Ƿʹ첽صʽץȡϢ
+     * 
+     * @return
+     */
+    public boolean isAsyncFetch() {
+        return this.asyncFetch;
+    }
+
+
+    /**
+     * Ƿʹ첽صʽץȡϢһ̷ַ߳fetchRunnerCount̴߳ӦĬfalse
+     * 
+     * @param asyncFetch
+     */
+    public void setAsyncFetch(final boolean asyncFetch) {
+        this.asyncFetch = asyncFetch;
+    }
+
+
+    /**
+     * дoffsetļʱ䣬λ룬Ĭ0ʾ
+     * 
+     * @return
+     */
+    public long getOffsetFlushIntervalInMills() {
+        return this.offsetFlushIntervalInMills;
+    }
+
+
+    /**
+     * дoffsetļʱ䣬0ʱʹWriteBehindOffsetStorageװoffset洢
+     * commitOffsetPeriodInMillsڼύֻڴкϲӦСcommitOffsetPeriodInMills
+     * 
+     * @param offsetFlushIntervalInMills
+     *            
+     */
+    public void setOffsetFlushIntervalInMills(final long offsetFlushIntervalInMills) {
+        this.offsetFlushIntervalInMills = offsetFlushIntervalInMills;
+    }
+
+
+    /**
+     * Ƿؾ⣬Ĭfalse
+     * 
+     * @return
+     */
+    public boolean isIncrementalRebalance() {
+        return this.incrementalRebalance;
+    }
+
+
+    /**
+     * Ƿؾ⡣ؾʱֻͷҪǨƵķֹͣfetcḥ߳
+     * Ⱥ仯߸ؾʧʱȻȫ·䡣LoadBalanceStrategy.Type.STICKYǨƵķ
+     * 
+     * @param incrementalRebalance
+     */
+    public void setIncrementalRebalance(final boolean incrementalRebalance) {
+        this.incrementalRebalance = incrementalRebalance;
+    }
+
+
+    /**
+     * fetchڴԤ㣬λֽڣĬ0ʾ
+     * 
+     * @return
+     */
+    public long getMaxFetchBufferSize() {
+        return this.maxFetchBufferSize;
+    }
+
+
+    /**
+     * fetchڴԤ㡣ÿfetch󷢳ǰmaxSizeԤԤϢŻضʱ黹
+     * Ԥþʱfetch̵߳ȴӶ;Ӧlistener̳߳лѹϢռõڴ档
+     * ԤΪԤ㣬鲻СfetchRunnerCountmaxSizeĳ˻
+     * 
+     * @param maxFetchBufferSize
+     *            ֽ
+     */
+    public void setMaxFetchBufferSize(final long maxFetchBufferSize) {
+        this.maxFetchBufferSize = maxFetchBufferSize;
+    }
+
+
     public int getPullFromWhichServer() {
         return pullFromWhichServer;
     }
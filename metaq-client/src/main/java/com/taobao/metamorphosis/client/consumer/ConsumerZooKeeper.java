@@ -30,6 +30,7 @@ import com.taobao.gecko.service.exception.NotifyRemotingException;
 import com.taobao.metamorphosis.client.RemotingClientWrapper;
 import com.taobao.metamorphosis.client.ZkClientChangedListener;
 import com.taobao.metamorphosis.client.consumer.storage.OffsetStorage;
+import com.taobao.metamorphosis.client.consumer.storage.WriteBehindOffsetStorage;
 import com.taobao.metamorphosis.cluster.Broker;
 import com.taobao.metamorphosis.cluster.Cluster;
 import com.taobao.metamorphosis.cluster.Partition;
@@ -107,7 +108,7 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
                 final ZKLoadRebalanceListener listener = futureTask.get();
                 if (listener != null) {
                     // ύoffsets
-                    listener.commitOffsets();
+                    listener.commitAndFlushOffsets();
                     this.zkClient.unsubscribeStateChanges(new ZKSessionExpireListenner(listener));
                     final ZKGroupDirs dirs =
                             this.metaZookeeper.new ZKGroupDirs(listener.consumerConfig.getGroup());
@@ -409,6 +410,14 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
         Set<Broker> oldBrokerSet = new HashSet<Broker>();
         private Cluster oldCluster = new Cluster();
 
+        /**
+         * ǰfetchtopic/partition -> requestؾʱڳֻrebalanceLockڷ
+         */
+        private final Map<String, FetchRequest> fetchRequests = new HashMap<String, FetchRequest>();
+
+        // ؾʱռԼȴԭownerͷ
+        static final long CLAIM_RETRY_INTERVAL_MS = 100;
+
 
         public ZKLoadRebalanceListener(final FetchManager fetchManager, final ZKGroupDirs dirs,
                 final String consumerIdString, final ConsumerConfig consumerConfig,
@@ -435,6 +444,17 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
         }
 
 
+        /**
+         * offsetȴд洢ͷŷ֮ǰã֤µownerµoffset
+         */
+        private void commitAndFlushOffsets() {
+            this.commitOffsets();
+            if (this.offsetStorage instanceof WriteBehindOffsetStorage) {
+                ((WriteBehindOffsetStorage) this.offsetStorage).flush();
+            }
+        }
+
+
         private TopicPartitionRegInfo initTopicPartitionRegInfo(final String topic, final String group,
                 final Partition partition, final long offset) {
             this.offsetStorage.initOffset(topic, group, partition, offset);
@@ -531,6 +551,7 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
 
         private void resetState() {
             this.topicRegistry.clear();
+            this.fetchRequests.clear();
             this.oldConsumersPerTopicMap.clear();
             this.oldPartitionsPerTopicMap.clear();
         }
@@ -555,6 +576,7 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
          */
         protected void updateFetchRunner(final Cluster cluster) throws Exception {
             this.fetchManager.resetFetchState();
+            this.fetchRequests.clear();
             final Set<Broker> changedBrokers = new HashSet<Broker>();
             for (final Map.Entry<String/* topic */, ConcurrentHashMap<Partition, TopicPartitionRegInfo>> entry : this.topicRegistry
                 .entrySet()) {
@@ -568,12 +590,25 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
                         changedBrokers.add(broker);
                         final SubscriberInfo subscriberInfo = this.topicSubcriberRegistry.get(topic);
                         // fetch
-                        this.fetchManager.addFetchRequest(new FetchRequest(broker, 0L, info, subscriberInfo
-                            .getMaxSize()));
+                        final FetchRequest request = new FetchRequest(broker, 0L, info, subscriberInfo.getMaxSize());
+                        this.fetchRequests.put(this.getFetchRequestKey(topic, partition), request);
+                        this.fetchManager.addFetchRequest(request);
                     }
                 }
             }
+            this.updateBrokerConnections(changedBrokers);
+            // fetch߳
+            log.info("Starting fetch runners");
+            this.fetchManager.startFetchRunner();
+        }
 
+
+        /**
+         * brokerرղʹõbroker
+         * 
+         * @param changedBrokers
+         */
+        private void updateBrokerConnections(final Set<Broker> changedBrokers) {
             final int serverConnectionCount = this.consumerConfig.getConsumerServerConnectionCount();
 
             // 
@@ -604,10 +639,12 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
                     }
                 }
             }
-            // fetch߳
-            log.info("Starting fetch runners");
             this.oldBrokerSet = changedBrokers;
-            this.fetchManager.startFetchRunner();
+        }
+
+
+        private String getFetchRequestKey(final String topic, final Partition partition) {
+            return topic + "/" + partition;
         }
 
 
@@ -649,10 +686,22 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
                 }
                 return true;
             }
+            if (this.canRebalanceIncrementally(cluster)) {
+                if (!this.incrementalRebalance(relevantTopicConsumerIdMap, consumersPerTopicMap,
+                    partitionsPerTopicMap, cluster)) {
+                    // ֹͣȫfetchʱ·з
+                    log.info("Incremental rebalance failed,stopping fetch runners");
+                    this.fetchManager.stopFetchRunner();
+                    return false;
+                }
+                this.oldPartitionsPerTopicMap = partitionsPerTopicMap;
+                this.oldConsumersPerTopicMap = consumersPerTopicMap;
+                return true;
+            }
             log.info("Stopping fetch runners");
             this.fetchManager.stopFetchRunner();
             log.info("Comitting all offsets");
-            this.commitOffsets();
+            this.commitAndFlushOffsets();
 
             for (final Map.Entry<String, String> entry : relevantTopicConsumerIdMap.entrySet()) {
                 final String topic = entry.getKey();
@@ -722,6 +771,154 @@ public class ConsumerZooKeeper implements ZkClientChangedListener {
         }
 
 
+        /**
+         * ѾѲҼȺûб仯ʱؾ⣬Ȼȫ·
+         * 
+         * @param cluster
+         * @return
+         */
+        private boolean canRebalanceIncrementally(final Cluster cluster) {
+            return this.consumerConfig.isIncrementalRebalance() && !this.topicRegistry.isEmpty()
+                    && !this.fetchManager.isShutdown() && !this.checkClusterChange(cluster);
+        }
+
+
+        /**
+         * ؾ⣬ֻͷߵķ·ķfetchӰ
+         * 
+         * @return ǷɹʧʱҪֹͣfetch
+         */
+        private boolean incrementalRebalance(final Map<String, String> relevantTopicConsumerIdMap,
+                final Map<String, List<String>> consumersPerTopicMap,
+                final Map<String, List<String>> partitionsPerTopicMap, final Cluster cluster) throws Exception {
+            final long start = System.currentTimeMillis();
+            final Map<String/* topic */, List<Partition>> revokedPartsMap = new HashMap<String, List<Partition>>();
+            final Map<String/* topic */, List<String>> addedPartsMap = new HashMap<String, List<String>>();
+            for (final Map.Entry<String, String> entry : relevantTopicConsumerIdMap.entrySet()) {
+                final String topic = entry.getKey();
+                final String consumerId = entry.getValue();
+                final List<String> curConsumers = consumersPerTopicMap.get(topic);
+                final List<String> curPartitions = partitionsPerTopicMap.get(topic);
+                final List<String> newParts =
+                        curConsumers == null || curPartitions == null ? Collections.<String> emptyList()
+                                : this.loadBalanceStrategy.getPartitions(topic, consumerId, curConsumers,
+                                    curPartitions);
+                final ConcurrentHashMap<Partition, TopicPartitionRegInfo> partRegInfos = this.topicRegistry.get(topic);
+                final Set<Partition> currentParts =
+                        partRegInfos == null ? Collections.<Partition> emptySet() : partRegInfos.keySet();
+
+                final List<Partition> revokedParts = new ArrayList<Partition>();
+                for (final Partition partition : currentParts) {
+                    if (!newParts.contains(partition.toString())) {
+                        revokedParts.add(partition);
+                    }
+                }
+                final List<String> addedParts = new ArrayList<String>();
+                for (final String partition : newParts) {
+                    if (!currentParts.contains(new Partition(partition))) {
+                        addedParts.add(partition);
+                    }
+                }
+                if (!revokedParts.isEmpty()) {
+                    revokedPartsMap.put(topic, revokedParts);
+                }
+                if (!addedParts.isEmpty()) {
+                    addedPartsMap.put(topic, addedParts);
+                }
+            }
+
+            // ߷fetch󣬵ȴڴϢ
+            final List<FetchRequest> revokedRequests = new ArrayList<FetchRequest>();
+            final List<TopicPartitionRegInfo> revokedInfos = new ArrayList<TopicPartitionRegInfo>();
+            for (final Map.Entry<String, List<Partition>> entry : revokedPartsMap.entrySet()) {
+                final String topic = entry.getKey();
+                for (final Partition partition : entry.getValue()) {
+                    final FetchRequest request = this.fetchRequests.remove(this.getFetchRequestKey(topic, partition));
+                    if (request != null) {
+                        revokedRequests.add(request);
+                    }
+                    revokedInfos.add(this.topicRegistry.get(topic).get(partition));
+                }
+            }
+            if (!this.fetchManager.revokeFetchRequests(revokedRequests, this.consumerConfig.getFetchTimeoutInMills())) {
+                log.warn("Revoking fetch requests timeout:" + revokedPartsMap);
+                return false;
+            }
+            // ύoffsetͷţ֤µownerµoffset
+            log.info("Comitting offsets of revoked partitions");
+            this.offsetStorage.commitOffset(this.group, revokedInfos);
+            if (this.offsetStorage instanceof WriteBehindOffsetStorage) {
+                ((WriteBehindOffsetStorage) this.offsetStorage).flush();
+            }
+            for (final Map.Entry<String, List<Partition>> entry : revokedPartsMap.entrySet()) {
+                final String topic = entry.getKey();
+                final ConcurrentHashMap<Partition, TopicPartitionRegInfo> partRegInfos = this.topicRegistry.get(topic);
+                for (final Partition partition : entry.getValue()) {
+                    log.info("Releasing partition ownerships for partition:" + partition);
+                    partRegInfos.remove(partition);
+                    this.releasePartitionOwnership(topic, partition);
+                }
+                if (partRegInfos.isEmpty()) {
+                    this.topicRegistry.remove(topic);
+                }
+            }
+            final long revokedTime = System.currentTimeMillis() - start;
+
+            // ·ķ
+            final List<FetchRequest> addedRequests = new ArrayList<FetchRequest>();
+            for (final Map.Entry<String, List<String>> entry : addedPartsMap.entrySet()) {
+                final String topic = entry.getKey();
+                final String consumerId = relevantTopicConsumerIdMap.get(topic);
+                final ZKGroupTopicDirs topicDirs =
+                        ConsumerZooKeeper.this.metaZookeeper.new ZKGroupTopicDirs(topic, this.group);
+                if (this.topicRegistry.get(topic) == null) {
+                    this.topicRegistry.put(topic, new ConcurrentHashMap<Partition, TopicPartitionRegInfo>());
+                }
+                for (final String partitionString : entry.getValue()) {
+                    log.info(consumerId + " attempting to claim partition " + partitionString);
+                    if (!this.claimPartition(topicDirs, partitionString, topic, consumerId)) {
+                        return false;
+                    }
+                    final Partition partition = new Partition(partitionString);
+                    final Broker broker = this.getBroker(cluster, partition);
+                    if (broker != null) {
+                        final TopicPartitionRegInfo info = this.topicRegistry.get(topic).get(partition);
+                        final SubscriberInfo subscriberInfo = this.topicSubcriberRegistry.get(topic);
+                        final FetchRequest request = new FetchRequest(broker, 0L, info, subscriberInfo.getMaxSize());
+                        this.fetchRequests.put(this.getFetchRequestKey(topic, partition), request);
+                        addedRequests.add(request);
+                    }
+                }
+            }
+            final Set<Broker> brokers = new HashSet<Broker>();
+            for (final FetchRequest request : this.fetchRequests.values()) {
+                brokers.add(request.getBroker());
+            }
+            this.updateBrokerConnections(brokers);
+            this.fetchManager.assignFetchRequests(addedRequests);
+            log.info("Consumer " + this.consumerIdString + " rebalanced incrementally,revoked " + revokedInfos.size()
+                    + " partitions in " + revokedTime + " ms,assigned " + addedRequests.size() + " partitions in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        }
+
+
+        /**
+         * ؾʱռԭownerܻڳУfetchʱʱ
+         */
+        private boolean claimPartition(final ZKGroupTopicDirs topicDirs, final String partition, final String topic,
+                final String consumerId) throws Exception {
+            final long deadline = System.currentTimeMillis() + this.consumerConfig.getFetchTimeoutInMills();
+            while (!this.processPartition(topicDirs, partition, topic, consumerId)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(CLAIM_RETRY_INTERVAL_MS);
+            }
+            return true;
+        }
+
+
         protected boolean checkClusterChange(final Cluster cluster) {
             return !this.oldCluster.equals(cluster);
         }
@@ -0,0 +1,283 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * fetchڴԤ㣬ͬһߵfetch
+ * <ul>
+ * <li>fetch󷢳ǰmaxSizeԤԤ㲻ʱȴ黹</li>
+ * <li>ϷŻضʱ黹listener̳߳лѹϢҲԤ</li>
+ * <li>ԤΪԤ㣬maxSizeԤȻԶռԤȡϢ</li>
+ * </ul>
+ * ӦĽջͨѶ䣬Ϣ彻listenerڲɿأֻ˶û
+ *
+ */
+public class FetchBufferPool {
+
+    private final long capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    private long used;
+
+    private long peakUsed;
+
+    private final AtomicLong acquireCount = new AtomicLong(0);
+
+    private final AtomicLong waitCount = new AtomicLong(0);
+
+    private final AtomicLong waitTimeInMills = new AtomicLong(0);
+
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+
+    private final AtomicLong cancelCount = new AtomicLong(0);
+
+
+    public FetchBufferPool(final long capacity) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * ȴԤڼжǷȴ״̬ıҪ{@link FetchBufferPool#signalWaiters()}ѵȴ
+     */
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+
+    /**
+     * ԤsizeֽڣԤ㲻ʱȴtimeout
+     *
+     * @param size
+     * @param timeout
+     * @param unit
+     * @return ʵԤֽʱ-1
+     * @throws InterruptedException
+     */
+    public int acquire(final int size, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.doAcquire(size, unit.toNanos(timeout), null);
+    }
+
+
+    /**
+     * ԤsizeֽڣԤ㲻ʱһֱȴֱԤ㹻cancellationȡ
+     *
+     * @param size
+     * @param cancellation
+     * @return ʵԤֽȡ-1
+     * @throws InterruptedException
+     */
+    public int acquire(final int size, final Cancellation cancellation) throws InterruptedException {
+        return this.doAcquire(size, -1, cancellation);
+    }
+
+
+    /**
+     * һacquire۱ѶٴΣȴʱȡֻһ
+     *
+     * @param nanos
+     *            С0ʾʱ
+     */
+    private int doAcquire(final int size, long nanos, final Cancellation cancellation) throws InterruptedException {
+        if (size <= 0) {
+            return 0;
+        }
+        final boolean timed = nanos >= 0;
+        final int bytes = (int) Math.min(size, this.capacity);
+        this.lock.lockInterruptibly();
+        try {
+            if (this.used + bytes > this.capacity) {
+                this.waitCount.incrementAndGet();
+                final long start = System.currentTimeMillis();
+                try {
+                    while (this.used + bytes > this.capacity) {
+                        if (cancellation != null && cancellation.isCancelled()) {
+                            this.cancelCount.incrementAndGet();
+                            return -1;
+                        }
+                        if (!timed) {
+                            this.notFull.await();
+                            continue;
+                        }
+                        if (nanos <= 0) {
+                            this.timeoutCount.incrementAndGet();
+                            return -1;
+                        }
+                        nanos = this.notFull.awaitNanos(nanos);
+                    }
+                }
+                finally {
+                    this.waitTimeInMills.addAndGet(System.currentTimeMillis() - start);
+                }
+            }
+            this.used += bytes;
+            if (this.used > this.peakUsed) {
+                this.peakUsed = this.used;
+            }
+            this.acquireCount.incrementAndGet();
+            return bytes;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * еȴԤ̣߳¼Cancellation
+     */
+    public void signalWaiters() {
+        this.lock.lock();
+        try {
+            this.notFull.signalAll();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * 黹acquireԤֽ
+     *
+     * @param bytes
+     */
+    public void release(final int bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.used -= bytes;
+            if (this.used < 0) {
+                throw new IllegalStateException("Released more bytes than acquired,used=" + this.used);
+            }
+            this.notFull.signalAll();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Ԥֽ
+     *
+     * @return
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+
+    /**
+     * ǰԤֽ
+     *
+     * @return
+     */
+    public long getUsed() {
+        this.lock.lock();
+        try {
+            return this.used;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * ǰʹʣ01֮
+     *
+     * @return
+     */
+    public double getUtilization() {
+        return (double) this.getUsed() / this.capacity;
+    }
+
+
+    /**
+     * Ԥֽʷֵ
+     *
+     * @return
+     */
+    public long getPeakUsed() {
+        this.lock.lock();
+        try {
+            return this.peakUsed;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+
+    /**
+     * ԤɹĴ
+     *
+     * @return
+     */
+    public long getAcquireCount() {
+        return this.acquireCount.get();
+    }
+
+
+    /**
+     * Ԥ㲻ȴĴ
+     *
+     * @return
+     */
+    public long getWaitCount() {
+        return this.waitCount.get();
+    }
+
+
+    /**
+     * ȴԤۼʱ䣬λ
+     *
+     * @return
+     */
+    public long getWaitTimeInMills() {
+        return this.waitTimeInMills.get();
+    }
+
+
+    /**
+     * ȴԤ㳬ʱĴ
+     *
+     * @return
+     */
+    public long getTimeoutCount() {
+        return this.timeoutCount.get();
+    }
+
+
+    /**
+     * ȴԤڼ䱻ȡĴ
+     *
+     * @return
+     */
+    public long getCancelCount() {
+        return this.cancelCount.get();
+    }
+
+
+    @Override
+    public String toString() {
+        return "FetchBufferPool [capacity=" + this.capacity + ", used=" + this.getUsed() + ", peakUsed="
+                + this.getPeakUsed() + ", waitCount=" + this.getWaitCount() + ", waitTimeInMills="
+                + this.getWaitTimeInMills() + "]";
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+
+/**
+ * 첽fetchĻصӿ
+ * 
+ */
+public interface FetchCallback {
+
+    /**
+     * յӦresultΪnullʾûпѵϢ
+     * 
+     * @param result
+     */
+    public void onFetchResult(FetchResult result);
+
+
+    /**
+     * ʧܣʱ޿Լ˷صĴ
+     * 
+     * @param e
+     */
+    public void onException(Throwable e);
+
+
+    /**
+     * ִлص̳߳أnullͨѶִ߳
+     * 
+     * @return
+     */
+    public ThreadPoolExecutor getExecutor();
+}
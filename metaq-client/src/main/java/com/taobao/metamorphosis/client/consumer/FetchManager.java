@@ -1,5 +1,7 @@
 package com.taobao.metamorphosis.client.consumer;
 
+import java.util.Collection;
+
 /**
  * Fetchӿ
  * 
@@ -42,4 +44,26 @@ public interface FetchManager {
      * @return
      */
     public boolean isShutdown();
+
+
+    /**
+     * fetchؾʱ·ķ
+     * 
+     * @param requests
+     */
+    public void assignFetchRequests(Collection<FetchRequest> requests);
+
+
+    /**
+     * гfetchؾʱߵķٷŻضУ
+     * ʱЩϢͶݸlisteneroffsetٱ仯Ӱ졣
+     * 
+     * @param requests
+     * @param timeoutInMills
+     *            ȴڴʱ
+     * @return Ƿڳʱǰȫ
+     * @throws InterruptedException
+     */
+    public boolean revokeFetchRequests(Collection<FetchRequest> requests, long timeoutInMills)
+            throws InterruptedException;
 }
@@ -28,6 +28,12 @@ public class FetchRequest implements Delayed {
     private Broker broker;
     private int retries = 0;
     private long tmpOffset;
+    // ؾʱٷŻض
+    private volatile boolean revoked = false;
+    // ѱfetch߳ȡδŻض
+    private volatile boolean fetching = false;
+    // fetchԤԤֽŻضʱ黹
+    private int reservedBytes;
 
 
     /**
@@ -153,6 +159,58 @@ public class FetchRequest implements Delayed {
     }
 
 
+    /**
+     * fetch߳ȡʱãѱ򷵻falseӦ
+     * 
+     * @return
+     */
+    boolean beginFetch() {
+        // fetchingټrevokedrevoke˳෴֤һԷ޸
+        this.fetching = true;
+        if (this.revoked) {
+            this.fetching = false;
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * ϷŻضл߱ʱ
+     */
+    void endFetch() {
+        this.fetching = false;
+    }
+
+
+    /**
+     * ڴϺٷŻض
+     */
+    void revoke() {
+        this.revoked = true;
+    }
+
+
+    boolean isRevoked() {
+        return this.revoked;
+    }
+
+
+    boolean isFetching() {
+        return this.fetching;
+    }
+
+
+    int getReservedBytes() {
+        return this.reservedBytes;
+    }
+
+
+    void setReservedBytes(final int reservedBytes) {
+        this.reservedBytes = reservedBytes;
+    }
+
+
     public Broker getBroker() {
         return this.broker;
     }
@@ -211,12 +269,16 @@ public class FetchRequest implements Delayed {
         if (ack) {
             // topicPartitionRegInfoֹύzkһ
             synchronized (this.topicPartitionRegInfo) {
-                this.topicPartitionRegInfo.getOffset().set(offset);
+                final boolean changed =
+                        this.topicPartitionRegInfo.getOffset().getAndSet(offset) != offset || msgId > 0
+                                && this.topicPartitionRegInfo.getMessageId() != msgId;
                 if (msgId > 0) {
                     this.topicPartitionRegInfo.setMessageId(msgId);
                 }
-                // бҪµstorage
-                this.topicPartitionRegInfo.setModified(true);
+                // бҪµstorageûƶoffsetظύ
+                if (changed) {
+                    this.topicPartitionRegInfo.setModified(true);
+                }
             }
             this.rollbackOffset();
         }
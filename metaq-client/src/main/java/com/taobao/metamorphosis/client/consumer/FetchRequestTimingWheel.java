@@ -0,0 +1,234 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * ڹϣʱֵfetchӳٶУ̰߳ȫFetchRequestQueue
+ * <ul>
+ * <li>offerһӣٶ</li>
+ * <li>ӳɵtimer̰߳tickɢеλλֻtimer̷߳ʣ</li>
+ * <li>תƵУfetchֻ߳ھϾsignalAll߳</li>
+ * </ul>
+ * ͬһtickڵڵ˳ȡΪһtick
+ */
+class FetchRequestTimingWheel {
+    static final Log log = LogFactory.getLog(FetchRequestTimingWheel.class);
+
+    static final long DEFAULT_TICK_MS = 10;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+    // ʱtakeȴʱ䣬FetchRequestQueueһ
+    private static final long IDLE_WAIT_MS = 3000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Entry>[] wheel;
+    // ¼ӳtimer߳λ
+    private final ConcurrentLinkedQueue<FetchRequest> pending = new ConcurrentLinkedQueue<FetchRequest>();
+    private final LinkedBlockingQueue<FetchRequest> readyQueue = new LinkedBlockingQueue<FetchRequest>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final String name;
+    private volatile Thread timer;
+    private volatile boolean idle = false;
+    private volatile boolean shutdown = false;
+
+    // ֶνtimer̷߳
+    private long tick;
+    private long tickDeadline;
+    private int scheduled;
+
+    static final class Entry {
+        final FetchRequest request;
+        long rounds;
+
+
+        Entry(final FetchRequest request, final long rounds) {
+            super();
+            this.request = request;
+            this.rounds = rounds;
+        }
+    }
+
+
+    FetchRequestTimingWheel() {
+        this("FetchRequest", DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+    }
+
+
+    FetchRequestTimingWheel(final String name) {
+        this(name, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+    }
+
+
+    /**
+     *
+     * @param name
+     *            timer߳ǰ׺
+     * @param tickMs
+     *            ÿtickʱ䣬λ
+     * @param wheelSize
+     *            λȡΪ2
+     */
+    @SuppressWarnings("unchecked")
+    FetchRequestTimingWheel(final String name, final long tickMs, final int wheelSize) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs <= 0");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("wheelSize <= 0");
+        }
+        int n = 1;
+        while (n < wheelSize) {
+            n <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.mask = n - 1;
+        this.wheel = new ArrayDeque[n];
+        for (int i = 0; i < n; i++) {
+            this.wheel[i] = new ArrayDeque<Entry>();
+        }
+    }
+
+
+    public void shutdown() {
+        this.shutdown = true;
+        final Thread t = this.timer;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+
+    public FetchRequest take() throws InterruptedException {
+        while (!this.shutdown) {
+            final FetchRequest request = this.readyQueue.poll(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+            if (request != null) {
+                this.size.decrementAndGet();
+                return request;
+            }
+        }
+        return null;
+    }
+
+
+    public void offer(final FetchRequest request) {
+        this.size.incrementAndGet();
+        if (request.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+            this.readyQueue.offer(request);
+            return;
+        }
+        this.pending.offer(request);
+        this.ensureTimerStarted();
+        if (this.idle) {
+            LockSupport.unpark(this.timer);
+        }
+    }
+
+
+    public int size() {
+        return this.size.get();
+    }
+
+
+    private void ensureTimerStarted() {
+        if (this.started.compareAndSet(false, true)) {
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    FetchRequestTimingWheel.this.runTimer();
+                }
+            });
+            t.setName(this.name + "-Fetch-Timer");
+            t.setDaemon(true);
+            this.timer = t;
+            t.start();
+        }
+    }
+
+
+    private void runTimer() {
+        this.tickDeadline = System.nanoTime() + this.tickNanos;
+        try {
+            while (!this.shutdown) {
+                this.transferPending();
+                final long now = System.nanoTime();
+                if (this.scheduled == 0) {
+                    // ʱΪգ¶tickȴµӳ
+                    this.tickDeadline = now + this.tickNanos;
+                    this.idle = true;
+                    if (this.pending.isEmpty() && !this.shutdown) {
+                        LockSupport.park(this);
+                    }
+                    this.idle = false;
+                    continue;
+                }
+                if (now < this.tickDeadline) {
+                    LockSupport.parkNanos(this, this.tickDeadline - now);
+                    continue;
+                }
+                this.expire(this.wheel[(int) (this.tick & this.mask)]);
+                this.tick++;
+                this.tickDeadline += this.tickNanos;
+            }
+        }
+        catch (final Throwable e) {
+            log.error("FetchRequest timer߳쳣˳", e);
+        }
+        finally {
+            // ֹͣδڣֱӷУ֤sizeͳƲʧ
+            this.transferPending();
+            for (final ArrayDeque<Entry> bucket : this.wheel) {
+                Entry entry;
+                while ((entry = bucket.poll()) != null) {
+                    this.readyQueue.offer(entry.request);
+                }
+            }
+            this.scheduled = 0;
+        }
+    }
+
+
+    private void transferPending() {
+        FetchRequest request;
+        while ((request = this.pending.poll()) != null) {
+            final long remain = request.getDelay(TimeUnit.NANOSECONDS);
+            if (remain <= 0) {
+                this.readyQueue.offer(request);
+                continue;
+            }
+            // ǰλtickDeadlineʱȡ֤ǰ
+            final long afterCurrent = remain - (this.tickDeadline - System.nanoTime());
+            final long ticks = afterCurrent <= 0 ? 0 : (afterCurrent + this.tickNanos - 1) / this.tickNanos;
+            final long deadlineTick = this.tick + ticks;
+            this.wheel[(int) (deadlineTick & this.mask)].offer(new Entry(request, ticks / this.wheel.length));
+            this.scheduled++;
+        }
+    }
+
+
+    private void expire(final ArrayDeque<Entry> bucket) {
+        for (int i = bucket.size(); i > 0; i--) {
+            final Entry entry = bucket.poll();
+            if (entry.rounds <= 0) {
+                this.readyQueue.offer(entry.request);
+                this.scheduled--;
+            }
+            else {
+                entry.rounds--;
+                bucket.offer(entry);
+            }
+        }
+    }
+
+}
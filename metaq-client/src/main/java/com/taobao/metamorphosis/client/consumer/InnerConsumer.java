@@ -37,6 +37,18 @@ public interface InnerConsumer {
     FetchResult fetchAll(final FetchRequest fetchRequest, long timeout, TimeUnit timeUnit)
             throws MetaClientException, InterruptedException;
     
+
+    /**
+     * 첽ץȡϢ̣߳ͨcallbackأ1.X2.X汾
+     * 
+     * @param fetchRequest
+     * @param timeout
+     * @param timeUnit
+     * @param callback
+     */
+    void fetchAllAsync(final FetchRequest fetchRequest, long timeout, TimeUnit timeUnit, FetchCallback callback);
+
+
     /**
      * ͬϢ
      */
@@ -14,7 +14,8 @@ public interface LoadBalanceStrategy {
 
     enum Type {
         DEFAULT,
-        CONSIST
+        CONSIST,
+        STICKY
     }
 
 
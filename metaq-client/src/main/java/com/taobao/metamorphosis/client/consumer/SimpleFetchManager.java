@@ -1,9 +1,11 @@
 package com.taobao.metamorphosis.client.consumer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -14,6 +16,8 @@ import com.taobao.metamorphosis.MessageAccessor;
 import com.taobao.metamorphosis.cluster.Partition;
 import com.taobao.metamorphosis.exception.InvalidMessageException;
 import com.taobao.metamorphosis.exception.MetaClientException;
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metamorphosis.utils.MetaStatLog;
 import com.taobao.metamorphosis.utils.StatConstants;
 
@@ -31,19 +35,25 @@ public class SimpleFetchManager implements FetchManager {
 
     private Thread[] fetchRunners;
 
-    private int fetchRequestCount;
+    private final AtomicInteger fetchRequestCount = new AtomicInteger(0);
 
-    private FetchRequestQueue requestQueue;
+    private FetchRequestTimingWheel requestQueue;
 
     private final ConsumerConfig consumerConfig;
 
     private final InnerConsumer consumer;
 
+    // fetchԤ㣬Ϊnullʾ
+    private final FetchBufferPool fetchBufferPool;
+
 
     public SimpleFetchManager(final ConsumerConfig consumerConfig, final InnerConsumer consumer) {
         super();
         this.consumerConfig = consumerConfig;
         this.consumer = consumer;
+        this.fetchBufferPool =
+                consumerConfig.getMaxFetchBufferSize() > 0 ? new FetchBufferPool(consumerConfig.getMaxFetchBufferSize())
+                        : null;
     }
 
 
@@ -56,6 +66,9 @@ public class SimpleFetchManager implements FetchManager {
     @Override
     public void stopFetchRunner() throws InterruptedException {
         this.shutdown = true;
+        if (this.fetchBufferPool != null) {
+            this.fetchBufferPool.signalWaiters();
+        }
         // ж
         if (this.fetchRunners != null) {
             for (final Thread thread : this.fetchRunners) {
@@ -75,7 +88,7 @@ public class SimpleFetchManager implements FetchManager {
         if (this.requestQueue != null) {
             this.requestQueue.shutdown();
 
-            while (this.requestQueue.size() != this.fetchRequestCount) {
+            while (this.requestQueue.size() != this.fetchRequestCount.get()) {
                 Thread.sleep(50);
             }
         }
@@ -85,10 +98,10 @@ public class SimpleFetchManager implements FetchManager {
 
     @Override
     public void resetFetchState() {
-        this.requestQueue = new FetchRequestQueue();
-        this.fetchRunners = new Thread[this.consumerConfig.getFetchRunnerCount()];
+        this.requestQueue = new FetchRequestTimingWheel(this.consumerConfig.getGroup());
+        this.fetchRunners = new Thread[this.getFetchRunnerCount()];
         for (int i = 0; i < this.fetchRunners.length; i++) {
-            this.fetchRunners[i] = new Thread(new FetchRequestRunner());
+            this.fetchRunners[i] = new Thread(this.newFetchRunner());
             this.fetchRunners[i].setName(this.consumerConfig.getGroup() + "Fetch-Runner-" + i);
         }
 
@@ -98,7 +111,7 @@ public class SimpleFetchManager implements FetchManager {
     @Override
     public void startFetchRunner() {
         // ĿֹͣʱҪ
-        this.fetchRequestCount = this.requestQueue.size();
+        this.fetchRequestCount.set(this.requestQueue.size());
         this.shutdown = false;
         for (final Thread thread : this.fetchRunners) {
             thread.start();
@@ -109,15 +122,149 @@ public class SimpleFetchManager implements FetchManager {
 
     @Override
     public void addFetchRequest(final FetchRequest request) {
+        this.releaseFetchBuffer(request);
+        if (request.isRevoked()) {
+            // ѳķٷŻض
+            this.fetchRequestCount.decrementAndGet();
+            request.endFetch();
+            return;
+        }
+        request.endFetch();
         this.requestQueue.offer(request);
 
     }
 
 
+    @Override
+    public void assignFetchRequests(final Collection<FetchRequest> requests) {
+        for (final FetchRequest request : requests) {
+            this.fetchRequestCount.incrementAndGet();
+            this.requestQueue.offer(request);
+        }
+    }
+
+
+    @Override
+    public boolean revokeFetchRequests(final Collection<FetchRequest> requests, final long timeoutInMills)
+            throws InterruptedException {
+        for (final FetchRequest request : requests) {
+            request.revoke();
+        }
+        // ѵȴfetchԤ̣߳ñȴ
+        if (this.fetchBufferPool != null) {
+            this.fetchBufferPool.signalWaiters();
+        }
+        // еȡʱֻȴڴŻ
+        final long deadline = System.currentTimeMillis() + timeoutInMills;
+        for (final FetchRequest request : requests) {
+            while (request.isFetching()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * fetch߳ȡãѱfalse
+     * 
+     * @param request
+     * @return
+     */
+    boolean beginFetch(final FetchRequest request) {
+        if (!request.beginFetch()) {
+            this.fetchRequestCount.decrementAndGet();
+            return false;
+        }
+        if (this.fetchBufferPool != null) {
+            return this.reserveFetchBuffer(request);
+        }
+        return true;
+    }
+
+
+    /**
+     * maxSizefetchԤԤԤ㲻ʱfetch̡߳ȴڼֹͣ󱻳ʱsignalWaitersѣŻضвfalse
+     * 
+     * @param request
+     * @return
+     */
+    private boolean reserveFetchBuffer(final FetchRequest request) {
+        final long start = System.currentTimeMillis();
+        try {
+            final int reserved = this.fetchBufferPool.acquire(request.getMaxSize(), new FetchBufferPool.Cancellation() {
+                @Override
+                public boolean isCancelled() {
+                    return SimpleFetchManager.this.shutdown || request.isRevoked();
+                }
+            });
+            if (reserved < 0) {
+                this.addFetchRequest(request);
+                return false;
+            }
+            request.setReservedBytes(reserved);
+            return true;
+        }
+        catch (final InterruptedException e) {
+            this.addFetchRequest(request);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        finally {
+            final long duration = System.currentTimeMillis() - start;
+            if (duration > 0) {
+                MetaStatLog.addStatValue2(null, StatConstants.FETCH_BUFFER_WAIT_STAT, this.consumerConfig.getGroup(),
+                    duration);
+            }
+        }
+    }
+
+
+    private void releaseFetchBuffer(final FetchRequest request) {
+        if (this.fetchBufferPool != null && request.getReservedBytes() > 0) {
+            this.fetchBufferPool.release(request.getReservedBytes());
+            request.setReservedBytes(0);
+        }
+    }
+
+
+    /**
+     * fetchԤ㣬δConsumerConfig.maxFetchBufferSizeʱnull
+     * 
+     * @return
+     */
+    public FetchBufferPool getFetchBufferPool() {
+        return this.fetchBufferPool;
+    }
+
+
     FetchRequest takeFetchRequest() throws InterruptedException {
         return this.requestQueue.take();
     }
 
+
+    /**
+     * fetch߳
+     * 
+     * @return
+     */
+    int getFetchRunnerCount() {
+        return this.consumerConfig.getFetchRunnerCount();
+    }
+
+
+    /**
+     * fetchִ߳е
+     * 
+     * @return
+     */
+    Runnable newFetchRunner() {
+        return new FetchRequestRunner();
+    }
+
     static final Log log = LogFactory.getLog(SimpleFetchManager.class);
 
     class FetchRequestRunner implements Runnable {
@@ -129,7 +276,7 @@ public class SimpleFetchManager implements FetchManager {
         public void run() {
             while (!SimpleFetchManager.this.shutdown) {
                 try {
-                    final FetchRequest request = SimpleFetchManager.this.requestQueue.take();
+                    final FetchRequest request = SimpleFetchManager.this.takeFetchRequest();
                     if (request != null) {
                         this.executeRequest(request);
                     }
@@ -143,44 +290,65 @@ public class SimpleFetchManager implements FetchManager {
 
 
         void executeRequest(final FetchRequest request) {
+            if (!SimpleFetchManager.this.beginFetch(request)) {
+                return;
+            }
             try {
                 final FetchResult fetchResult = SimpleFetchManager.this.consumer.fetchAll(request, -1, null);
-                if (fetchResult != null) {
-                    // 2.0
-                    if (fetchResult.isNewMetaServer()) {
-                        List<Message> msgList = fetchResult.getMessageList();
-                        final ListIterator<Message> iterator = msgList.listIterator();
-                        final MessageListener listener =
-                                SimpleFetchManager.this.consumer.getMessageListener(request.getTopic());
-                        this.notifyListener20(request, iterator, listener);
-                    }
-                    // 1.4
-                    else {
-                        final MessageIterator iterator = fetchResult.getMessageIterator();
-                        final MessageListener listener =
-                                SimpleFetchManager.this.consumer.getMessageListener(request.getTopic());
-                        this.notifyListener(request, iterator, listener);
-                    }
-                }
-                else {
-                    this.updateDelay(request);
-                    SimpleFetchManager.this.addFetchRequest(request);
-                }
-            }
-            catch (final MetaClientException e) {
-                this.updateDelay(request);
-                this.LogAddRequest(request, e);
+                this.processFetchResult(request, fetchResult);
             }
             catch (final InterruptedException e) {
                 // ȻҪУֹͣź
                 SimpleFetchManager.this.addFetchRequest(request);
             }
             catch (final Throwable e) {
+                this.processFetchException(request, e);
+            }
+        }
+
+
+        /**
+         * fetch֪ͨlistener¼
+         * 
+         * @param request
+         * @param fetchResult
+         */
+        void processFetchResult(final FetchRequest request, final FetchResult fetchResult) {
+            if (fetchResult != null) {
+                // 2.0
+                if (fetchResult.isNewMetaServer()) {
+                    List<Message> msgList = fetchResult.getMessageList();
+                    final ListIterator<Message> iterator = msgList.listIterator();
+                    final MessageListener listener =
+                            SimpleFetchManager.this.consumer.getMessageListener(request.getTopic());
+                    this.notifyListener20(request, iterator, listener);
+                }
+                // 1.4
+                else {
+                    final MessageIterator iterator = fetchResult.getMessageIterator();
+                    final MessageListener listener =
+                            SimpleFetchManager.this.consumer.getMessageListener(request.getTopic());
+                    this.notifyListener(request, iterator, listener);
+                }
+            }
+            else {
                 this.updateDelay(request);
-                this.LogAddRequest(request, e);
+                SimpleFetchManager.this.addFetchRequest(request);
             }
         }
 
+
+        /**
+         * fetchʧܣӳٺ¼
+         * 
+         * @param request
+         * @param e
+         */
+        void processFetchException(final FetchRequest request, final Throwable e) {
+            this.updateDelay(request);
+            this.LogAddRequest(request, e);
+        }
+
         private long lastLogNoConnectionTime;
 
 
@@ -365,7 +533,12 @@ public class SimpleFetchManager implements FetchManager {
                     final Message msg = it.next();
 
                     MessageAccessor.setPartition(msg, partition);
+                    final long traceNanos =
+                            MessageTracer.sample(Stage.CONSUMER_LISTENER) ? System.nanoTime() : 0L;
                     listener.recieveMessages(msg);
+                    if (traceNanos != 0L) {
+                        MessageTracer.recordSince(request.getTopic(), Stage.CONSUMER_LISTENER, traceNanos);
+                    }
 
                     long newOffset = request.getOffset() + it.getOffset() - prevOffset;
 
@@ -439,7 +612,12 @@ public class SimpleFetchManager implements FetchManager {
                     final Message msg = it.next();
 
                     MessageAccessor.setPartition(msg, partition);
+                    final long traceNanos =
+                            MessageTracer.sample(Stage.CONSUMER_LISTENER) ? System.nanoTime() : 0L;
                     listener.recieveMessages(msg);
+                    if (traceNanos != 0L) {
+                        MessageTracer.recordSince(request.getTopic(), Stage.CONSUMER_LISTENER, traceNanos);
+                    }
 
                     if (partition.isAutoAck()) {
                         request.setOffset(msg.getOffset() + 1, msg.getId(), true);
@@ -517,7 +695,12 @@ public class SimpleFetchManager implements FetchManager {
             if (!msgs.isEmpty()) {
                 Message lastMessage = msgs.get(msgs.size() - 1);
                 try {
+                    final long traceNanos =
+                            MessageTracer.sample(Stage.CONSUMER_LISTENER) ? System.nanoTime() : 0L;
                     listener.recieveMessageList(msgs);
+                    if (traceNanos != 0L) {
+                        MessageTracer.recordSince(request.getTopic(), Stage.CONSUMER_LISTENER, traceNanos);
+                    }
 
                     if (partition.isAutoAck()) {
                         request.setOffset(lastMessage.getOffset() + 1, lastMessage.getId(), true);
@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -17,6 +18,8 @@ import org.apache.commons.logging.LogFactory;
 
 import com.taobao.gecko.core.command.ResponseCommand;
 import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.gecko.service.Connection;
+import com.taobao.gecko.service.SingleRequestCallBackListener;
 import com.taobao.gecko.service.exception.NotifyRemotingException;
 import com.taobao.metamorphosis.Message;
 import com.taobao.metamorphosis.client.MetaMessageSessionFactory;
@@ -36,6 +39,8 @@ import com.taobao.metamorphosis.network.GetCommand;
 import com.taobao.metamorphosis.network.HttpStatus;
 import com.taobao.metamorphosis.network.MessageTypeCommand;
 import com.taobao.metamorphosis.network.OffsetCommand;
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metamorphosis.utils.MetaStatLog;
 import com.taobao.metamorphosis.utils.StatConstants;
 import com.taobao.metaq.commons.MetaMessageDecoder;
@@ -97,7 +102,9 @@ public class SimpleMessageConsumer implements MessageConsumer, InnerConsumer {
         this.offsetStorage = offsetStorage;
         this.subscribeInfoManager = subscribeInfoManager;
         this.recoverStorageManager = recoverManager;
-        this.fetchManager = new SimpleFetchManager(consumerConfig, this);
+        this.fetchManager =
+                consumerConfig.isAsyncFetch() ? new AsyncFetchManager(consumerConfig, this)
+                        : new SimpleFetchManager(consumerConfig, this);
         this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
         this.loadBalanceStrategy = loadBalanceStrategy;
         this.scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
@@ -407,117 +414,13 @@ public class SimpleMessageConsumer implements MessageConsumer, InnerConsumer {
         boolean success = false;
         final long currentOffset = fetchRequest.getOffset();
         try {
-        	GetCommand getCmd = null;
-        	SubscriberInfo subInfo = this.topicSubcriberRegistry.get(fetchRequest.getTopic());
-        	Set<String> messageTypeList = null;
-        	if(subInfo != null){
-        		messageTypeList = subInfo.getMessageTypes();
-        	}
-        	if(this.consumerConfig.isVersion2() && messageTypeList != null){//ûʹ°汾ĽӿڲʹµЭ
-        		getCmd =
-                        new FetchCommand(this.consumerConfig.getVersion(), fetchRequest.getTopic(), this.consumerConfig.getGroup(),
-                            fetchRequest.getPartition(), currentOffset, fetchRequest.getMaxSize(),
-                            OpaqueGenerator.getNextOpaque(), MetaMessageSessionFactory.startTime);
-        	} else {
-        		getCmd =
-                        new GetCommand(fetchRequest.getTopic(), this.consumerConfig.getGroup(),
-                            fetchRequest.getPartition(), currentOffset, fetchRequest.getMaxSize(),
-                            OpaqueGenerator.getNextOpaque());
-        	}
-        	
+            final GetCommand getCmd = this.createFetchCommand(fetchRequest, currentOffset);
             final String serverUrl = fetchRequest.getBroker().getZKString();
             final ResponseCommand response =
                     this.remotingClient.invokeToGroup(serverUrl, getCmd, timeout, timeUnit);
-            if (response instanceof DataCommand) {
-                final DataCommand dataCmd = (DataCommand) response;
-                final byte[] data = dataCmd.getData();
-                if (data.length < (MetaMessageDecoder.MessageFlagPostion + 4)) {
-                    log.fatal("fetch a invalid message " + data.length);
-                    return null;
-                }
-
-                // ʶ汾
-                java.nio.ByteBuffer byteBuffer = java.nio.ByteBuffer.wrap(data);
-                int messageFlag = byteBuffer.getInt(MetaMessageDecoder.MessageFlagPostion);
-                // 2.0汾
-                if ((messageFlag & MetaMessageDecoder.NewServerFlag) == MetaMessageDecoder.NewServerFlag) {
-                	server14 = false;
-                    success = true;
-                    List<Message> msgList = new ArrayList<Message>(100);
-                    List<MetaMessageWrapper> wrapperList = MetaMessageDecoder.decodes(byteBuffer);
-                    if (!wrapperList.isEmpty()) {
-                        for (MetaMessageWrapper wrapper : wrapperList) {
-                        	String type = wrapper.getMetaMessage().getType();
-                        	if(messageTypeList != null && !messageTypeList.contains("*") && !messageTypeList.contains(type)){
-                        		continue;
-                        	}
-                            Message msg =
-                                    new Message(fetchRequest.getTopic(), wrapper.getMetaMessage().getBody(),
-                                        wrapper.getMetaMessage().getAttribute());
-                            msg.setOffset(wrapper.getMetaMessageAnnotation().getQueueOffset());
-                            msg.setId(wrapper.getMetaMessageAnnotation().getPhysicOffset());
-                            msg.setMsgNewId(wrapper.getMetaMessageAnnotation().getMsgId());
-                            msgList.add(msg);
-                        }
-                    }
-
-                    if (msgList.isEmpty()){
-                    	if(wrapperList != null && !wrapperList.isEmpty()){
-                    		MetaMessageWrapper wrapper = wrapperList.get(wrapperList.size() - 1);
-                    		fetchRequest.setOffset(wrapper.getMetaMessageAnnotation().getQueueOffset() + 1, 
-                    				wrapper.getMetaMessageAnnotation().getPhysicOffset(), true);
-                    	}
-                    	return null;
-                    }
-                    return new FetchResult(true, msgList, null);
-                }
-                // 1.4汾
-                else {
-                	server14 = true;
-                    // ȡزʱmaxSize
-                    if (data.length < fetchRequest.getMaxSize() / 2) {
-                        fetchRequest.decreaseMaxSize();
-                    }
-                    success = true;
-                    return new FetchResult(false, null, new MessageIterator(fetchRequest.getTopic(), data));
-                }
-            }
-            else {
-                final BooleanCommand booleanCmd = (BooleanCommand) response;
-                switch (booleanCmd.getCode()) {
-                case HttpStatus.NotFound:
-                    success = true;
-                    if (log.isDebugEnabled()) {
-                        log.debug(booleanCmd.getErrorMsg());
-                    }
-                    return null;
-                case HttpStatus.Forbidden:
-                    success = true;
-                    return null;
-                case HttpStatus.Moved:
-                    success = true;
-                    fetchRequest.resetRetries();
-                    long serverPushedOffset = Long.parseLong(booleanCmd.getErrorMsg());
-                    fetchRequest.setOffset(serverPushedOffset, 100, true);
-                    if(!server14){
-                    	log.warn("consumer request offset: " + currentOffset
-                                + " invalid or not matched, server pushed new offset: " + serverPushedOffset);
-                    }
-                    return null;
-                case HttpStatus.Continue:
-                	success = true;
-                	SubscriberInfo info = registeMessageType(fetchRequest);
-                	if(info == null){
-                		log.error("consumer report message types failed.");
-                	} else {
-                		log.info("consumer report message types success : " + info.getMessageTypes().toString());
-                	}
-                	return null;
-                default:
-                    throw new MetaClientException(((BooleanCommand) response).getErrorMsg());
-                }
-            }
-
+            final FetchResult result = this.processFetchResponse(fetchRequest, currentOffset, response);
+            success = true;
+            return result;
         }
         catch (final TimeoutException e) {
             throw new MetaOpeartionTimeoutException("pull message timeout in "
@@ -534,13 +437,191 @@ public class SimpleMessageConsumer implements MessageConsumer, InnerConsumer {
                     + fetchRequest.getPartition() + ",offset=" + fetchRequest.getOffset(), e);
         }
         finally {
-            final long duration = System.currentTimeMillis() - start;
-            if (duration > 200) {
-                MetaStatLog.addStatValue2(null, StatConstants.GET_TIME_STAT, fetchRequest.getTopic(), duration);
-            }
-            if (!success) {
+            this.statsFetch(fetchRequest, start, success);
+        }
+    }
+
+
+    @Override
+    public void fetchAllAsync(final FetchRequest fetchRequest, long timeout, TimeUnit timeUnit,
+            final FetchCallback callback) {
+        if (timeout <= 0 || timeUnit == null) {
+            timeout = this.consumerConfig.getFetchTimeoutInMills();
+            timeUnit = TimeUnit.MILLISECONDS;
+        }
+        final long start = System.currentTimeMillis();
+        final long currentOffset = fetchRequest.getOffset();
+        try {
+            final GetCommand getCmd = this.createFetchCommand(fetchRequest, currentOffset);
+            final String serverUrl = fetchRequest.getBroker().getZKString();
+            this.remotingClient.sendToGroup(serverUrl, getCmd, new SingleRequestCallBackListener() {
+                @Override
+                public void onResponse(final ResponseCommand responseCommand, final Connection conn) {
+                    final FetchResult result;
+                    try {
+                        result =
+                                SimpleMessageConsumer.this.processFetchResponse(fetchRequest, currentOffset,
+                                    responseCommand);
+                    }
+                    catch (final Throwable e) {
+                        SimpleMessageConsumer.this.statsFetch(fetchRequest, start, false);
+                        callback.onException(e);
+                        return;
+                    }
+                    SimpleMessageConsumer.this.statsFetch(fetchRequest, start, true);
+                    callback.onFetchResult(result);
+                }
+
+
+                @Override
+                public void onException(final Exception e) {
+                    SimpleMessageConsumer.this.statsFetch(fetchRequest, start, false);
+                    callback.onException(new MetaClientException("get message failed,topic="
+                            + fetchRequest.getTopic() + ",partition=" + fetchRequest.getPartition() + ",offset="
+                            + currentOffset, e));
+                }
+
+
+                @Override
+                public ThreadPoolExecutor getExecutor() {
+                    return callback.getExecutor();
+                }
+            }, timeout, timeUnit);
+        }
+        catch (final Throwable e) {
+            this.statsFetch(fetchRequest, start, false);
+            callback.onException(new MetaClientException("get message failed,topic=" + fetchRequest.getTopic()
+                    + ",partition=" + fetchRequest.getPartition() + ",offset=" + currentOffset, e));
+        }
+    }
+
+
+    private GetCommand createFetchCommand(final FetchRequest fetchRequest, final long currentOffset) {
+        final SubscriberInfo subInfo = this.topicSubcriberRegistry.get(fetchRequest.getTopic());
+        Set<String> messageTypeList = null;
+        if (subInfo != null) {
+            messageTypeList = subInfo.getMessageTypes();
+        }
+        if (this.consumerConfig.isVersion2() && messageTypeList != null) {// ûʹ°汾ĽӿڲʹµЭ
+            return new FetchCommand(this.consumerConfig.getVersion(), fetchRequest.getTopic(),
+                this.consumerConfig.getGroup(), fetchRequest.getPartition(), currentOffset,
+                fetchRequest.getMaxSize(), OpaqueGenerator.getNextOpaque(), MetaMessageSessionFactory.startTime);
+        }
+        else {
+            return new GetCommand(fetchRequest.getTopic(), this.consumerConfig.getGroup(),
+                fetchRequest.getPartition(), currentOffset, fetchRequest.getMaxSize(),
+                OpaqueGenerator.getNextOpaque());
+        }
+    }
+
+
+    /**
+     * fetchӦͬ첽fetch
+     */
+    private FetchResult processFetchResponse(final FetchRequest fetchRequest, final long currentOffset,
+            final ResponseCommand response) throws MetaClientException {
+        if (response instanceof DataCommand) {
+            final DataCommand dataCmd = (DataCommand) response;
+            final byte[] data = dataCmd.getData();
+            if (data.length < (MetaMessageDecoder.MessageFlagPostion + 4)) {
+                log.fatal("fetch a invalid message " + data.length);
                 MetaStatLog.addStat(null, StatConstants.GET_FAILED_STAT, fetchRequest.getTopic());
+                return null;
+            }
+
+            // ʶ汾
+            java.nio.ByteBuffer byteBuffer = java.nio.ByteBuffer.wrap(data);
+            int messageFlag = byteBuffer.getInt(MetaMessageDecoder.MessageFlagPostion);
+            // 2.0汾
+            if ((messageFlag & MetaMessageDecoder.NewServerFlag) == MetaMessageDecoder.NewServerFlag) {
+                server14 = false;
+                final SubscriberInfo subInfo = this.topicSubcriberRegistry.get(fetchRequest.getTopic());
+                final Set<String> messageTypeList = subInfo != null ? subInfo.getMessageTypes() : null;
+                List<Message> msgList = new ArrayList<Message>(100);
+                List<MetaMessageWrapper> wrapperList = MetaMessageDecoder.decodes(byteBuffer);
+                if (!wrapperList.isEmpty()) {
+                    for (MetaMessageWrapper wrapper : wrapperList) {
+                        if (MessageTracer.sample(Stage.CONSUMER_FETCH)) {
+                            MessageTracer.recordSinceMills(fetchRequest.getTopic(), Stage.CONSUMER_FETCH, wrapper
+                                .getMetaMessageAnnotation().getStoreTimestamp());
+                        }
+                        String type = wrapper.getMetaMessage().getType();
+                        if (messageTypeList != null && !messageTypeList.contains("*")
+                                && !messageTypeList.contains(type)) {
+                            continue;
+                        }
+                        Message msg =
+                                new Message(fetchRequest.getTopic(), wrapper.getMetaMessage().getBody(), wrapper
+                                    .getMetaMessage().getAttribute());
+                        msg.setOffset(wrapper.getMetaMessageAnnotation().getQueueOffset());
+                        msg.setId(wrapper.getMetaMessageAnnotation().getPhysicOffset());
+                        msg.setMsgNewId(wrapper.getMetaMessageAnnotation().getMsgId());
+                        msgList.add(msg);
+                    }
+                }
+
+                if (msgList.isEmpty()) {
+                    if (wrapperList != null && !wrapperList.isEmpty()) {
+                        MetaMessageWrapper wrapper = wrapperList.get(wrapperList.size() - 1);
+                        fetchRequest.setOffset(wrapper.getMetaMessageAnnotation().getQueueOffset() + 1, wrapper
+                            .getMetaMessageAnnotation().getPhysicOffset(), true);
+                    }
+                    return null;
+                }
+                return new FetchResult(true, msgList, null);
             }
+            // 1.4汾
+            else {
+                server14 = true;
+                // ȡزʱmaxSize
+                if (data.length < fetchRequest.getMaxSize() / 2) {
+                    fetchRequest.decreaseMaxSize();
+                }
+                return new FetchResult(false, null, new MessageIterator(fetchRequest.getTopic(), data));
+            }
+        }
+        else {
+            final BooleanCommand booleanCmd = (BooleanCommand) response;
+            switch (booleanCmd.getCode()) {
+            case HttpStatus.NotFound:
+                if (log.isDebugEnabled()) {
+                    log.debug(booleanCmd.getErrorMsg());
+                }
+                return null;
+            case HttpStatus.Forbidden:
+                return null;
+            case HttpStatus.Moved:
+                fetchRequest.resetRetries();
+                long serverPushedOffset = Long.parseLong(booleanCmd.getErrorMsg());
+                fetchRequest.setOffset(serverPushedOffset, 100, true);
+                if (!server14) {
+                    log.warn("consumer request offset: " + currentOffset
+                            + " invalid or not matched, server pushed new offset: " + serverPushedOffset);
+                }
+                return null;
+            case HttpStatus.Continue:
+                SubscriberInfo info = registeMessageType(fetchRequest);
+                if (info == null) {
+                    log.error("consumer report message types failed.");
+                }
+                else {
+                    log.info("consumer report message types success : " + info.getMessageTypes().toString());
+                }
+                return null;
+            default:
+                throw new MetaClientException(booleanCmd.getErrorMsg());
+            }
+        }
+    }
+
+
+    private void statsFetch(final FetchRequest fetchRequest, final long start, final boolean success) {
+        final long duration = System.currentTimeMillis() - start;
+        if (duration > 200) {
+            MetaStatLog.addStatValue2(null, StatConstants.GET_TIME_STAT, fetchRequest.getTopic(), duration);
+        }
+        if (!success) {
+            MetaStatLog.addStat(null, StatConstants.GET_FAILED_STAT, fetchRequest.getTopic());
         }
     }
     
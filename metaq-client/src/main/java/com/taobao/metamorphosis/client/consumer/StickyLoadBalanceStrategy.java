@@ -0,0 +1,151 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * ճԸؾԣн縺صһԹϣ</br>
+ * <ul>
+ * <li>consumerڵ֯һ</li>
+ * <li>ϣֵ˳η˳ʱ뷽һδconsumer</li>
+ * <li>ÿconsumerceil(/consumer)ҷ಻1DefaultLoadBalanceStrategyһ</li>
+ * </ul>
+ * ֻȡconsumerбͷбconsumerԼĽһ£Э
+ * consumer뿪ʱĹ䣬ֻҪǨƣConsumerConfig.setIncrementalRebalance(true)
+ * ʹʱؾֻͣǨƵķ
+ *
+ */
+public class StickyLoadBalanceStrategy implements LoadBalanceStrategy {
+
+    static final Log log = LogFactory.getLog(StickyLoadBalanceStrategy.class);
+
+    // ڵĿ
+    static final int NUM_REPS = 160;
+    private final HashAlgorithm alg = HashAlgorithm.KETAMA_HASH;
+
+
+    @Override
+    public List<String> getPartitions(final String topic, final String consumerId, final List<String> curConsumers,
+            final List<String> curPartitions) {
+        if (!curConsumers.contains(consumerId)) {
+            log.warn("No broker partions consumed by consumer " + consumerId + " for topic " + topic);
+            return Collections.emptyList();
+        }
+        final Map<String, String> assignment = this.assign(topic, curConsumers, curPartitions);
+        final List<String> rt = new ArrayList<String>();
+        for (final String partition : curPartitions) {
+            if (consumerId.equals(assignment.get(partition))) {
+                rt.add(partition);
+            }
+        }
+        return rt;
+    }
+
+
+    /**
+     * зĹ
+     *
+     * @param topic
+     * @param curConsumers
+     * @param curPartitions
+     * @return partition -> consumerId
+     */
+    Map<String, String> assign(final String topic, final List<String> curConsumers, final List<String> curPartitions) {
+        final Map<String, String> rt = new HashMap<String, String>();
+        if (curConsumers.isEmpty() || curPartitions.isEmpty()) {
+            return rt;
+        }
+        final TreeMap<Long, String> consumerMap = this.buildConsumerMap(curConsumers);
+        final int nConsumers = new HashSet<String>(curConsumers).size();
+        // ÿconsumerٷķԼԶһconsumerĿ
+        final int nPartsPerConsumer = curPartitions.size() / nConsumers;
+        final int nConsumersWithExtraPart = curPartitions.size() % nConsumers;
+        final Map<String, Integer> loads = new HashMap<String, Integer>();
+        int nExtraUsed = 0;
+
+        for (final PartitionHash ph : this.sortPartitions(topic, curPartitions)) {
+            Map.Entry<Long, String> entry = consumerMap.ceilingEntry(ph.hash);
+            if (entry == null) {
+                entry = consumerMap.firstEntry();
+            }
+            // ˳ʱҵһδconsumerڷһҵ
+            while (true) {
+                final String consumer = entry.getValue();
+                final Integer load = loads.get(consumer);
+                final int n = load == null ? 0 : load;
+                if (n < nPartsPerConsumer || n == nPartsPerConsumer && nExtraUsed < nConsumersWithExtraPart) {
+                    if (n == nPartsPerConsumer) {
+                        nExtraUsed++;
+                    }
+                    loads.put(consumer, n + 1);
+                    rt.put(ph.partition, consumer);
+                    break;
+                }
+                entry = consumerMap.higherEntry(entry.getKey());
+                if (entry == null) {
+                    entry = consumerMap.firstEntry();
+                }
+            }
+        }
+        return rt;
+    }
+
+    static final class PartitionHash {
+        final String partition;
+        final long hash;
+
+
+        PartitionHash(final String partition, final long hash) {
+            super();
+            this.partition = partition;
+            this.hash = hash;
+        }
+    }
+
+
+    private List<PartitionHash> sortPartitions(final String topic, final List<String> curPartitions) {
+        final Set<String> partitions = new HashSet<String>(curPartitions);
+        final List<PartitionHash> rt = new ArrayList<PartitionHash>(partitions.size());
+        for (final String partition : partitions) {
+            rt.add(new PartitionHash(partition, this.alg.hash(topic + "-" + partition)));
+        }
+        // ˳б˳޹أ֤consumerһ
+        Collections.sort(rt, new Comparator<PartitionHash>() {
+            @Override
+            public int compare(final PartitionHash o1, final PartitionHash o2) {
+                if (o1.hash != o2.hash) {
+                    return o1.hash < o2.hash ? -1 : 1;
+                }
+                return o1.partition.compareTo(o2.partition);
+            }
+        });
+        return rt;
+    }
+
+
+    private TreeMap<Long, String> buildConsumerMap(final List<String> curConsumers) {
+        final TreeMap<Long/* hash */, String/* consumerId */> consumerMap = new TreeMap<Long, String>();
+        for (final String consumer : curConsumers) {
+            for (int i = 0; i < NUM_REPS; i++) {
+                final long key = this.alg.hash(consumer + "-" + i);
+                final String exists = consumerMap.get(key);
+                // ϣͻʱȡСconsumerIdб˳޹
+                if (exists == null || consumer.compareTo(exists) < 0) {
+                    consumerMap.put(key, consumer);
+                }
+            }
+        }
+        return consumerMap;
+    }
+}
@@ -0,0 +1,225 @@
+package com.taobao.metamorphosis.client.consumer.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.core.command.RequestCommand;
+import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.gecko.service.exception.NotifyRemotingException;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.client.consumer.TopicPartitionRegInfo;
+import com.taobao.metamorphosis.cluster.Broker;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
+import com.taobao.metamorphosis.utils.MetaZookeeper;
+
+
+/**
+ * brokerϵoffset洢ÿoffsetύڵmaster broker
+ * brokerд뱾صĽ־ύoffsetٷzkдbrokerչ
+ *
+ * brokerַzkѯ󻺴棬ʧʱ²ѯbroker֧commitloadЭ顣
+ *
+ */
+public class BrokerOffsetStorage implements OffsetStorage {
+    static final Log log = LogFactory.getLog(BrokerOffsetStorage.class);
+
+    private final RemotingClientWrapper remotingClient;
+    private final MetaZookeeper metaZookeeper;
+    private final long timeoutInMills;
+    private final ConcurrentHashMap<Integer/* brokerId */, String/* url */> brokerUrls =
+            new ConcurrentHashMap<Integer, String>();
+    private final Set<String> connectedUrls = new HashSet<String>();
+    private boolean closed;
+
+
+    public BrokerOffsetStorage(final RemotingClientWrapper remotingClient, final MetaZookeeper metaZookeeper) {
+        this(remotingClient, metaZookeeper, 10000);
+    }
+
+
+    public BrokerOffsetStorage(final RemotingClientWrapper remotingClient, final MetaZookeeper metaZookeeper,
+            final long timeoutInMills) {
+        super();
+        this.remotingClient = remotingClient;
+        this.metaZookeeper = metaZookeeper;
+        this.timeoutInMills = timeoutInMills;
+    }
+
+
+    @Override
+    public void commitOffset(final String group, final Collection<TopicPartitionRegInfo> infoList) {
+        if (infoList == null || infoList.isEmpty()) {
+            return;
+        }
+        // broker飬ֻύбķ
+        final Map<Integer/* brokerId */, List<TopicPartitionRegInfo>> infosByBroker =
+                new LinkedHashMap<Integer, List<TopicPartitionRegInfo>>();
+        final Map<Integer/* brokerId */, List<OffsetEntry>> entriesByBroker =
+                new LinkedHashMap<Integer, List<OffsetEntry>>();
+        for (final TopicPartitionRegInfo info : infoList) {
+            final Partition partition = info.getPartition();
+            OffsetEntry entry = null;
+            // ֤msgIdoffsetһ
+            synchronized (info) {
+                if (!info.isModified()) {
+                    continue;
+                }
+                entry =
+                        new OffsetEntry(info.getTopic(), partition.getPartition(), info.getMessageId(), info
+                            .getOffset().get());
+            }
+            List<TopicPartitionRegInfo> infos = infosByBroker.get(partition.getBrokerId());
+            if (infos == null) {
+                infos = new ArrayList<TopicPartitionRegInfo>();
+                infosByBroker.put(partition.getBrokerId(), infos);
+                entriesByBroker.put(partition.getBrokerId(), new ArrayList<OffsetEntry>());
+            }
+            infos.add(info);
+            entriesByBroker.get(partition.getBrokerId()).add(entry);
+        }
+        for (final Map.Entry<Integer, List<TopicPartitionRegInfo>> brokerInfos : infosByBroker.entrySet()) {
+            final int brokerId = brokerInfos.getKey();
+            final List<OffsetEntry> entries = entriesByBroker.get(brokerId);
+            try {
+                final BooleanCommand resp =
+                        this.invoke(brokerId,
+                            new CommitOffsetCommand(group, entries, OpaqueGenerator.getNextOpaque()));
+                if (resp.getCode() != HttpStatus.Success) {
+                    log.error("Commit offsets to broker " + brokerId + " failed:" + resp.getErrorMsg());
+                    continue;
+                }
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (final Exception e) {
+                log.error("exception during commitOffsets to broker " + brokerId, e);
+                continue;
+            }
+            // дɹǣύڼб´ύ
+            final List<TopicPartitionRegInfo> infos = brokerInfos.getValue();
+            for (int i = 0; i < infos.size(); i++) {
+                final TopicPartitionRegInfo info = infos.get(i);
+                final OffsetEntry entry = entries.get(i);
+                synchronized (info) {
+                    if (info.getOffset().get() == entry.getOffset() && info.getMessageId() == entry.getMsgId()) {
+                        info.setModified(false);
+                    }
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Committed " + entries.size() + " offsets to broker " + brokerId);
+            }
+        }
+    }
+
+
+    @Override
+    public TopicPartitionRegInfo load(final String topic, final String group, final Partition partition) {
+        BooleanCommand resp = null;
+        try {
+            resp =
+                    this.invoke(partition.getBrokerId(), new LoadOffsetCommand(topic, group, partition.getPartition(),
+                        OpaqueGenerator.getNextOpaque()));
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted when loading offset of " + topic + "/" + partition, e);
+        }
+        catch (final Exception e) {
+            throw new IllegalStateException("Load offset of " + topic + "/" + partition + " from broker failed", e);
+        }
+        switch (resp.getCode()) {
+        case HttpStatus.Success:
+            // ʽΪmsgId-offsetzkбһ
+            final String offsetString = resp.getErrorMsg();
+            final int index = offsetString.lastIndexOf("-");
+            final long msgId = Long.parseLong(offsetString.substring(0, index));
+            final long offset = Long.parseLong(offsetString.substring(index + 1));
+            return new TopicPartitionRegInfo(topic, partition, offset, msgId);
+        case HttpStatus.NotFound:
+            return null;
+        default:
+            throw new IllegalStateException("Load offset of " + topic + "/" + partition + " from broker failed:"
+                    + resp.getErrorMsg());
+        }
+    }
+
+
+    private BooleanCommand invoke(final int brokerId, final RequestCommand command) throws Exception {
+        final String url = this.getBrokerUrl(brokerId);
+        try {
+            return (BooleanCommand) this.remotingClient.invokeToGroup(url, command, this.timeoutInMills,
+                TimeUnit.MILLISECONDS);
+        }
+        catch (final Exception e) {
+            // brokerѾǨƣ´²ѯַ
+            this.brokerUrls.remove(brokerId, url);
+            throw e;
+        }
+    }
+
+
+    private String getBrokerUrl(final int brokerId) throws NotifyRemotingException, InterruptedException {
+        String url = this.brokerUrls.get(brokerId);
+        if (url == null) {
+            final Broker broker = this.metaZookeeper.getMasterBrokerById(brokerId);
+            if (broker == null) {
+                throw new IllegalStateException("Could not find master broker " + brokerId);
+            }
+            url = broker.getZKString();
+            this.brokerUrls.put(brokerId, url);
+        }
+        synchronized (this.connectedUrls) {
+            if (this.closed) {
+                throw new IllegalStateException("BrokerOffsetStorage has been closed");
+            }
+            if (!this.connectedUrls.contains(url)) {
+                this.remotingClient.connect(url);
+                this.connectedUrls.add(url);
+            }
+        }
+        this.remotingClient.awaitReadyInterrupt(url, this.timeoutInMills);
+        return url;
+    }
+
+
+    @Override
+    public void close() {
+        synchronized (this.connectedUrls) {
+            this.closed = true;
+            for (final String url : this.connectedUrls) {
+                try {
+                    this.remotingClient.close(url, false);
+                }
+                catch (final NotifyRemotingException e) {
+                    log.error("Close connection to " + url + " failed", e);
+                }
+            }
+            this.connectedUrls.clear();
+        }
+    }
+
+
+    @Override
+    public void initOffset(final String topic, final String group, final Partition partition, final long offset) {
+        // do nothing
+    }
+
+}
@@ -126,11 +126,25 @@ public class LocalOffsetStorage implements OffsetStorage {
 
 
     @Override
-    public void commitOffset(String group, Collection<TopicPartitionRegInfo> infoList) {
+    public synchronized void commitOffset(String group, Collection<TopicPartitionRegInfo> infoList) {
         if (infoList == null || infoList.isEmpty()) {
             return;
         }
-        this.groupInfoMap.put(group, (List<TopicPartitionRegInfo>) infoList);
+        // ϲֻύַʱܸѱoffset
+        List<TopicPartitionRegInfo> savedList = this.groupInfoMap.get(group);
+        if (savedList == null) {
+            savedList = new ArrayList<TopicPartitionRegInfo>();
+            this.groupInfoMap.put(group, savedList);
+        }
+        for (TopicPartitionRegInfo info : infoList) {
+            int index = this.indexOf(savedList, info.getTopic(), info.getPartition());
+            if (index >= 0) {
+                savedList.set(index, info);
+            }
+            else {
+                savedList.add(info);
+            }
+        }
         try {
             String json = JSONUtils.serializeObject(this.groupInfoMap);
             this.channel.position(0);
@@ -139,6 +153,10 @@ public class LocalOffsetStorage implements OffsetStorage {
                 this.channel.write(buf);
             }
             this.channel.truncate(this.channel.position());
+            // дɹmodifiedǣ洢һ
+            for (TopicPartitionRegInfo info : infoList) {
+                info.setModified(false);
+            }
         }
         catch (Exception e) {
             log.error("commitOffset failed ", e);
@@ -154,17 +172,24 @@ public class LocalOffsetStorage implements OffsetStorage {
 
 
     @Override
-    public TopicPartitionRegInfo load(String topic, String group, Partition partition) {
-        Collection<TopicPartitionRegInfo> topicPartitionRegInfos = this.groupInfoMap.get(group);
+    public synchronized TopicPartitionRegInfo load(String topic, String group, Partition partition) {
+        List<TopicPartitionRegInfo> topicPartitionRegInfos = this.groupInfoMap.get(group);
         if (topicPartitionRegInfos == null || topicPartitionRegInfos.isEmpty()) {
             return null;
         }
-        for (TopicPartitionRegInfo info : topicPartitionRegInfos) {
+        int index = this.indexOf(topicPartitionRegInfos, topic, partition);
+        return index >= 0 ? topicPartitionRegInfos.get(index) : null;
+    }
+
+
+    private int indexOf(List<TopicPartitionRegInfo> infoList, String topic, Partition partition) {
+        for (int i = 0; i < infoList.size(); i++) {
+            TopicPartitionRegInfo info = infoList.get(i);
             if (info.getTopic().equals(topic) && info.getPartition().equals(partition)) {
-                return info;
+                return i;
             }
         }
-        return null;
+        return -1;
     }
 
 }
@@ -4,7 +4,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import javax.sql.DataSource;
 
@@ -72,6 +74,8 @@ public class MysqlOffsetStorage implements OffsetStorage {
                 JDBCUtils.execute(preparedStatement, new JDBCUtils.PreparedStatementCallback() {
                     @Override
                     public Object doInPreparedStatement(final PreparedStatement pstmt) throws SQLException {
+                        final List<TopicPartitionRegInfo> committed = new ArrayList<TopicPartitionRegInfo>();
+                        final List<long[]> values = new ArrayList<long[]>();
                         for (final TopicPartitionRegInfo info : infoList) {
                             long newOffset = -1;
                             long msgId = -1;
@@ -83,8 +87,6 @@ public class MysqlOffsetStorage implements OffsetStorage {
                                 }
                                 newOffset = info.getOffset().get();
                                 msgId = info.getMessageId();
-                                // ϣΪfalse
-                                info.setModified(false);
                             }
                             pstmt.setLong(1, newOffset);
                             pstmt.setLong(2, msgId);
@@ -92,8 +94,24 @@ public class MysqlOffsetStorage implements OffsetStorage {
                             pstmt.setString(4, info.getPartition().toString());
                             pstmt.setString(5, group);
                             pstmt.addBatch();
+                            committed.add(info);
+                            values.add(new long[] { newOffset, msgId });
                         }
+                        if (committed.isEmpty()) {
+                            return null;
+                        }
+                        // ִгɹ֮ǣʧʱ쳣JDBCUtils¼Ǳ´ύʱ
                         pstmt.executeBatch();
+                        for (int i = 0; i < committed.size(); i++) {
+                            final TopicPartitionRegInfo info = committed.get(i);
+                            synchronized (info) {
+                                // ڼµı
+                                if (info.getOffset().get() == values.get(i)[0]
+                                        && info.getMessageId() == values.get(i)[1]) {
+                                    info.setModified(false);
+                                }
+                            }
+                        }
                         return null;
                     }
                 });
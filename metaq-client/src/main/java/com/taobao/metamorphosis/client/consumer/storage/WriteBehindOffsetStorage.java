@@ -0,0 +1,277 @@
+package com.taobao.metamorphosis.client.consumer.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.client.consumer.TopicPartitionRegInfo;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.utils.NamedThreadFactory;
+
+
+/**
+ * 첽дoffset洢װһʵʵOffsetStorage
+ * <ul>
+ * <li>commitOffsetֻбoffsetշڴ棬ͬһύֻµһ</li>
+ * <li>̨߳ÿflushIntervalInMills۵offsetдʵʴ洢ÿmaxBatchSize</li>
+ * <li>дʧܵoffset·Żأ´дḲڼĸֵ</li>
+ * <li>loadȷδдoffset</li>
+ * </ul>
+ * ؾͷŷ֮ǰflush֤µownerܶµoffset
+ * ʵʴ洢Ҫʵһдɹmodifiedǣʧʱñǡ
+ *
+ */
+public class WriteBehindOffsetStorage implements OffsetStorage {
+    static final Log log = LogFactory.getLog(WriteBehindOffsetStorage.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    private final OffsetStorage offsetStorage;
+    private final int maxBatchSize;
+    // group/topic/partition -> δдoffset
+    private final ConcurrentHashMap<String, PendingOffset> pendingOffsets =
+            new ConcurrentHashMap<String, PendingOffset>();
+    private final ScheduledExecutorService scheduledExecutorService;
+    // ֤ͬһʱֻһ߳д
+    private final Object flushLock = new Object();
+
+    private final AtomicLong flushedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    static final class PendingOffset {
+        final String group;
+        final TopicPartitionRegInfo info;
+
+
+        PendingOffset(final String group, final TopicPartitionRegInfo info) {
+            super();
+            this.group = group;
+            this.info = info;
+        }
+    }
+
+
+    public WriteBehindOffsetStorage(final OffsetStorage offsetStorage, final long flushIntervalInMills) {
+        this(offsetStorage, flushIntervalInMills, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+
+    /**
+     *
+     * @param offsetStorage
+     *            ʵʵoffset洢
+     * @param flushIntervalInMills
+     *            дļλ
+     * @param maxBatchSize
+     *            ÿεʵʴ洢commitOffset
+     */
+    public WriteBehindOffsetStorage(final OffsetStorage offsetStorage, final long flushIntervalInMills,
+            final int maxBatchSize) {
+        super();
+        if (offsetStorage == null) {
+            throw new IllegalArgumentException("Null offset storage");
+        }
+        if (flushIntervalInMills <= 0) {
+            throw new IllegalArgumentException("flushIntervalInMills <= 0");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize <= 0");
+        }
+        this.offsetStorage = offsetStorage;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduledExecutorService =
+                Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Offset-Flush"));
+        this.scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    WriteBehindOffsetStorage.this.flush();
+                }
+                catch (final Throwable e) {
+                    log.error("ʱдoffsetʧ", e);
+                }
+            }
+        }, flushIntervalInMills, flushIntervalInMills, TimeUnit.MILLISECONDS);
+    }
+
+
+    @Override
+    public void commitOffset(final String group, final Collection<TopicPartitionRegInfo> infoList) {
+        if (infoList == null || infoList.isEmpty()) {
+            return;
+        }
+        for (final TopicPartitionRegInfo info : infoList) {
+            final String key = this.getKey(group, info.getTopic(), info.getPartition());
+            // ֤msgIdoffsetһ£ҺύĿղᱻύĸ
+            synchronized (info) {
+                if (!info.isModified()) {
+                    continue;
+                }
+                final TopicPartitionRegInfo snapshot =
+                        new TopicPartitionRegInfo(info.getTopic(), info.getPartition(), info.getOffset().get(),
+                            info.getMessageId());
+                info.setModified(false);
+                if (this.pendingOffsets.put(key, new PendingOffset(group, snapshot)) != null) {
+                    this.coalescedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * δдoffsetͬдʵʴ洢
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            if (this.pendingOffsets.isEmpty()) {
+                return;
+            }
+            final Map<String, List<PendingOffset>> groupOffsets = new HashMap<String, List<PendingOffset>>();
+            for (final Map.Entry<String, PendingOffset> entry : this.pendingOffsets.entrySet()) {
+                final PendingOffset pending = entry.getValue();
+                // ֻȡδµֵڼֵһ
+                if (!this.pendingOffsets.remove(entry.getKey(), pending)) {
+                    continue;
+                }
+                List<PendingOffset> list = groupOffsets.get(pending.group);
+                if (list == null) {
+                    list = new ArrayList<PendingOffset>();
+                    groupOffsets.put(pending.group, list);
+                }
+                list.add(pending);
+            }
+            for (final Map.Entry<String, List<PendingOffset>> entry : groupOffsets.entrySet()) {
+                final List<PendingOffset> list = entry.getValue();
+                for (int from = 0; from < list.size(); from += this.maxBatchSize) {
+                    final int to = Math.min(list.size(), from + this.maxBatchSize);
+                    this.flushBatch(entry.getKey(), list.subList(from, to));
+                }
+            }
+        }
+    }
+
+
+    private void flushBatch(final String group, final List<PendingOffset> batch) {
+        final List<TopicPartitionRegInfo> infoList = new ArrayList<TopicPartitionRegInfo>(batch.size());
+        for (final PendingOffset pending : batch) {
+            final TopicPartitionRegInfo info =
+                    new TopicPartitionRegInfo(pending.info.getTopic(), pending.info.getPartition(), pending.info
+                        .getOffset().get(), pending.info.getMessageId());
+            info.setModified(true);
+            infoList.add(info);
+        }
+        try {
+            this.offsetStorage.commitOffset(group, infoList);
+        }
+        catch (final Throwable e) {
+            log.error("дoffsetʧ,group=" + group, e);
+            for (final TopicPartitionRegInfo info : infoList) {
+                info.setModified(true);
+            }
+        }
+        for (int i = 0; i < infoList.size(); i++) {
+            final PendingOffset pending = batch.get(i);
+            if (infoList.get(i).isModified()) {
+                // дʧܣڼûµύŻ
+                this.failedCount.incrementAndGet();
+                this.pendingOffsets.putIfAbsent(
+                    this.getKey(group, pending.info.getTopic(), pending.info.getPartition()), pending);
+            }
+            else {
+                this.flushedCount.incrementAndGet();
+            }
+        }
+    }
+
+
+    @Override
+    public TopicPartitionRegInfo load(final String topic, final String group, final Partition partition) {
+        final PendingOffset pending = this.pendingOffsets.get(this.getKey(group, topic, partition));
+        if (pending != null) {
+            return new TopicPartitionRegInfo(topic, partition, pending.info.getOffset().get(),
+                pending.info.getMessageId());
+        }
+        return this.offsetStorage.load(topic, group, partition);
+    }
+
+
+    @Override
+    public void close() {
+        this.scheduledExecutorService.shutdownNow();
+        try {
+            this.flush();
+        }
+        finally {
+            this.offsetStorage.close();
+        }
+    }
+
+
+    @Override
+    public void initOffset(final String topic, final String group, final Partition partition, final long offset) {
+        this.offsetStorage.initOffset(topic, group, partition, offset);
+    }
+
+
+    /**
+     * δдķ
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return this.pendingOffsets.size();
+    }
+
+
+    /**
+     * ɹдʵʴ洢Ĵ
+     *
+     * @return
+     */
+    public long getFlushedCount() {
+        return this.flushedCount.get();
+    }
+
+
+    /**
+     * дǰύϲĴ
+     *
+     * @return
+     */
+    public long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+
+    /**
+     * дʧܵĴ
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+
+    OffsetStorage getOffsetStorage() {
+        return this.offsetStorage;
+    }
+
+
+    private String getKey(final String group, final String topic, final Partition partition) {
+        return group + "/" + topic + "/" + partition;
+    }
+
+}
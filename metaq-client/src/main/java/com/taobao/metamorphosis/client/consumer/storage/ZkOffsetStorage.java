@@ -71,6 +71,9 @@ public class ZkOffsetStorage implements OffsetStorage, ZkClientChangedListener {
             }
             catch (final Throwable t) {
                 log.error("exception during commitOffsets", t);
+                // дʧܣָǣ´ύʱ
+                info.setModified(true);
+                continue;
             }
             if (log.isDebugEnabled()) {
                 log.debug("Committed offset " + newOffset + " for topic " + info.getTopic());
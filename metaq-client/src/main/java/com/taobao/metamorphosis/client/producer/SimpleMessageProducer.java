@@ -37,6 +37,8 @@ import com.taobao.metamorphosis.network.PutCommand;
 import com.taobao.metamorphosis.transaction.TransactionId;
 import com.taobao.metamorphosis.utils.LongSequenceGenerator;
 import com.taobao.metamorphosis.utils.MessageFlagUtils;
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metamorphosis.utils.MetaStatLog;
 import com.taobao.metamorphosis.utils.StatConstants;
 import com.taobao.metaq.commons.MetaUtil;
@@ -144,6 +146,7 @@ public class SimpleMessageProducer implements MessageProducer, TransactionSessio
         // this.checkMessage(message);
         SendResult result = null;
         final long start = System.currentTimeMillis();
+        final long traceNanos = MessageTracer.sample(Stage.PRODUCER_SEND) ? System.nanoTime() : 0L;
         int retry = 0;
         final long timeoutInMills = TimeUnit.MILLISECONDS.convert(timeout, unit);
         final boolean compressMessage = this.messageSessionFactory.getMetaClientConfig().isCompressMessage();
@@ -175,6 +178,9 @@ public class SimpleMessageProducer implements MessageProducer, TransactionSessio
             if (retry > 0) {
                 MetaStatLog.addStatValue2(null, StatConstants.PUT_RETRY_STAT, message.getTopic(), retry);
             }
+            if (traceNanos != 0L && result != null && result.isSuccess()) {
+                MessageTracer.recordSince(message.getTopic(), Stage.PRODUCER_SEND, traceNanos);
+            }
         }
         return result;
     }
@@ -561,12 +567,16 @@ public class SimpleMessageProducer implements MessageProducer, TransactionSessio
             final PutCommand putCommand =
                     new PutCommand(topic, partition.getPartition(), encodedData, this.getTransactionId(), flag,
                         OpaqueGenerator.getNextOpaque());
+            final long traceNanos = MessageTracer.sample(Stage.PRODUCER_SEND) ? System.nanoTime() : 0L;
             this.remotingClient.sendToGroup(serverUrl, putCommand, new SingleRequestCallBackListener() {
                 @Override
                 public void onResponse(final ResponseCommand responseCommand, final Connection conn) {
                     final SendResult rt =
                             SimpleMessageProducer.this.genSendResult(message, partition, serverUrl,
                                 (BooleanCommand) responseCommand);
+                    if (traceNanos != 0L && rt.isSuccess()) {
+                        MessageTracer.recordSince(topic, Stage.PRODUCER_SEND, traceNanos);
+                    }
                     cb.onMessageSent(rt);
                 }
 
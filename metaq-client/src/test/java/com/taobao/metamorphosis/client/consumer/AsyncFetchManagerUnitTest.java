@@ -0,0 +1,97 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.client.consumer.AsyncFetchManager.AsyncFetchDispatcher;
+import com.taobao.metamorphosis.cluster.Broker;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.exception.MetaClientException;
+
+
+public class AsyncFetchManagerUnitTest {
+    private AsyncFetchManager fetchManager;
+    private ConsumerConfig consumerConfig;
+    private InnerConsumer consumer;
+
+
+    @Before
+    public void setUp() {
+        this.consumerConfig = new ConsumerConfig();
+        this.consumer = EasyMock.createMock(InnerConsumer.class);
+        EasyMock.makeThreadSafe(this.consumer, true);
+        this.fetchManager = new AsyncFetchManager(this.consumerConfig, this.consumer);
+        this.fetchManager.resetFetchState();
+    }
+
+
+    @Test
+    public void testDispatchNoMessage() throws Exception {
+        final FetchRequest request = this.newRequest();
+        this.expectFetchAllAsync(request, new FetchCallbackAction() {
+            @Override
+            public void call(final FetchCallback callback) {
+                callback.onFetchResult(null);
+            }
+        });
+
+        EasyMock.replay(this.consumer);
+        final AsyncFetchDispatcher dispatcher = this.fetchManager.new AsyncFetchDispatcher();
+        dispatcher.dispatch(request);
+        EasyMock.verify(this.consumer);
+
+        assertSame(request, this.fetchManager.takeFetchRequest());
+        assertEquals(this.consumerConfig.getMaxDelayFetchTimeInMills() / 10, request.getDelay());
+    }
+
+
+    @Test
+    public void testDispatchException() throws Exception {
+        final FetchRequest request = this.newRequest();
+        this.expectFetchAllAsync(request, new FetchCallbackAction() {
+            @Override
+            public void call(final FetchCallback callback) {
+                callback.onException(new MetaClientException("test"));
+            }
+        });
+
+        EasyMock.replay(this.consumer);
+        final AsyncFetchDispatcher dispatcher = this.fetchManager.new AsyncFetchDispatcher();
+        dispatcher.dispatch(request);
+        EasyMock.verify(this.consumer);
+
+        assertSame(request, this.fetchManager.takeFetchRequest());
+        assertEquals(this.consumerConfig.getMaxDelayFetchTimeInMills() / 10, request.getDelay());
+    }
+
+    private static interface FetchCallbackAction {
+        void call(FetchCallback callback);
+    }
+
+
+    private void expectFetchAllAsync(final FetchRequest request, final FetchCallbackAction action) {
+        this.consumer.fetchAllAsync(EasyMock.same(request), EasyMock.eq(-1L), (TimeUnit) EasyMock.isNull(),
+            (FetchCallback) EasyMock.anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                action.call((FetchCallback) EasyMock.getCurrentArguments()[3]);
+                return null;
+            }
+        });
+    }
+
+
+    private FetchRequest newRequest() {
+        final Partition partition = new Partition("0-0");
+        final Broker broker = new Broker(0, "meta://localhost:0");
+        return new FetchRequest(broker, 0, new TopicPartitionRegInfo("topic1", partition, 12), 1024);
+    }
+}
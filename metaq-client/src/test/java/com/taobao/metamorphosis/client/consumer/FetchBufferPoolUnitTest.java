@@ -0,0 +1,142 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class FetchBufferPoolUnitTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new FetchBufferPool(0);
+    }
+
+
+    @Test
+    public void testAcquireRelease() throws Exception {
+        final FetchBufferPool pool = new FetchBufferPool(1024);
+        assertEquals(512, pool.acquire(512, 0, TimeUnit.MILLISECONDS));
+        assertEquals(512, pool.acquire(512, 0, TimeUnit.MILLISECONDS));
+        assertEquals(1024, pool.getUsed());
+        assertEquals(1.0, pool.getUtilization(), 0.0001);
+        // Ԥþʱ-1
+        assertEquals(-1, pool.acquire(1, 10, TimeUnit.MILLISECONDS));
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, pool.getTimeoutCount());
+
+        pool.release(512);
+        assertEquals(512, pool.getUsed());
+        assertEquals(0.5, pool.getUtilization(), 0.0001);
+        pool.release(512);
+        assertEquals(0, pool.getUsed());
+        assertEquals(1024, pool.getPeakUsed());
+        assertEquals(2, pool.getAcquireCount());
+    }
+
+
+    @Test
+    public void testAcquireMoreThanCapacity() throws Exception {
+        final FetchBufferPool pool = new FetchBufferPool(1024);
+        // ԤռԤ
+        assertEquals(1024, pool.acquire(4096, 0, TimeUnit.MILLISECONDS));
+        assertEquals(1024, pool.getUsed());
+        pool.release(1024);
+        assertEquals(0, pool.acquire(0, 0, TimeUnit.MILLISECONDS));
+        assertEquals(0, pool.getUsed());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseMoreThanAcquired() throws Exception {
+        final FetchBufferPool pool = new FetchBufferPool(1024);
+        pool.acquire(100, 0, TimeUnit.MILLISECONDS);
+        pool.release(200);
+    }
+
+
+    @Test
+    public void testCancelWhileWaiting() throws Exception {
+        final FetchBufferPool pool = new FetchBufferPool(1024);
+        assertEquals(1024, pool.acquire(1024, 0, TimeUnit.MILLISECONDS));
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicInteger result = new AtomicInteger();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(pool.acquire(512, new FetchBufferPool.Cancellation() {
+                        @Override
+                        public boolean isCancelled() {
+                            return cancelled.get();
+                        }
+                    }));
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        thread.start();
+        thread.join(300);
+        assertTrue(thread.isAlive());
+        // ûȡʱѲõȴ
+        pool.signalWaiters();
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        cancelled.set(true);
+        pool.signalWaiters();
+        thread.join();
+        assertFalse(thread.isAlive());
+        assertEquals(-1, result.get());
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, pool.getCancelCount());
+        assertEquals(0, pool.getTimeoutCount());
+        assertEquals(1024, pool.getUsed());
+    }
+
+
+    @Test
+    public void testBlockUntilReleased() throws Exception {
+        final FetchBufferPool pool = new FetchBufferPool(1000);
+        final int threadCount = 10;
+        final int loops = 1000;
+        final AtomicInteger maxUsed = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < loops; j++) {
+                            final int bytes = pool.acquire(300, 10, TimeUnit.SECONDS);
+                            maxUsed.set(Math.max(maxUsed.get(), (int) pool.getUsed()));
+                            pool.release(bytes);
+                        }
+                    }
+                    catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(0, pool.getUsed());
+        assertEquals(threadCount * loops, pool.getAcquireCount());
+        // ͬʱ3Ԥ
+        assertTrue(pool.getPeakUsed() <= 900);
+        assertTrue(maxUsed.get() <= 900);
+    }
+
+}
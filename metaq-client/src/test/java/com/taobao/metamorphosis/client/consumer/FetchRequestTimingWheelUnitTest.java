@@ -0,0 +1,149 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.utils.test.ConcurrentTestCase;
+import com.taobao.metamorphosis.utils.test.ConcurrentTestTask;
+
+
+public class FetchRequestTimingWheelUnitTest {
+    private FetchRequestTimingWheel fetchRequestQueue;
+
+
+    @Before
+    public void setUp() {
+        this.fetchRequestQueue = new FetchRequestTimingWheel("test", 5, 64);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.fetchRequestQueue.shutdown();
+    }
+
+
+    @Test
+    public void testOfferTakeSize() throws Exception {
+        this.fetchRequestQueue.offer(new FetchRequest(0));
+        final FetchRequest delayed = new FetchRequest(1000);
+        this.fetchRequestQueue.offer(delayed);
+        this.fetchRequestQueue.offer(new FetchRequest(0));
+
+        assertEquals(3, this.fetchRequestQueue.size());
+        assertNotSame(delayed, this.fetchRequestQueue.take());
+        assertNotSame(delayed, this.fetchRequestQueue.take());
+        assertSame(delayed, this.fetchRequestQueue.take());
+        assertEquals(0, this.fetchRequestQueue.size());
+    }
+
+
+    @Test
+    public void testSamePriority() throws Exception {
+        final FetchRequest first = new FetchRequest(1000);
+        final FetchRequest second = new FetchRequest(1000);
+        final FetchRequest third = new FetchRequest(1000);
+        this.fetchRequestQueue.offer(first);
+        this.fetchRequestQueue.offer(second);
+        this.fetchRequestQueue.offer(third);
+        assertSame(first, this.fetchRequestQueue.take());
+        assertSame(second, this.fetchRequestQueue.take());
+        assertSame(third, this.fetchRequestQueue.take());
+    }
+
+
+    @Test
+    public void testDifferentPriority() throws Exception {
+        final FetchRequest second = new FetchRequest(3000);
+        final FetchRequest first = new FetchRequest(1000);
+        this.fetchRequestQueue.offer(second);
+        this.fetchRequestQueue.offer(first);
+        long start = System.currentTimeMillis();
+        assertSame(first, this.fetchRequestQueue.take());
+        assertEquals(1000L, System.currentTimeMillis() - start, 50L);
+        start = System.currentTimeMillis();
+        assertSame(second, this.fetchRequestQueue.take());
+        assertEquals(2000L, System.currentTimeMillis() - start, 50L);
+    }
+
+
+    @Test
+    public void testMultiRounds() throws Exception {
+        // 64λ*5ms1000msӳҪתȦ
+        final long start = System.currentTimeMillis();
+        final FetchRequest request = new FetchRequest(1000);
+        this.fetchRequestQueue.offer(request);
+        assertSame(request, this.fetchRequestQueue.take());
+        assertTrue(System.currentTimeMillis() - start >= 995L);
+    }
+
+
+    @Test
+    public void testTakeWaitingOfferedDelayed() throws Exception {
+        final AtomicReference<FetchRequest> offered = new AtomicReference<FetchRequest>();
+        final AtomicBoolean done = new AtomicBoolean();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    offered.set(FetchRequestTimingWheelUnitTest.this.fetchRequestQueue.take());
+                    done.set(true);
+                }
+                catch (final InterruptedException e) {
+                }
+            }
+        }.start();
+        Thread.sleep(1000);
+
+        final FetchRequest request = new FetchRequest(1000);
+        this.fetchRequestQueue.offer(request);
+        while (!done.get()) {
+            Thread.sleep(500);
+        }
+        assertSame(offered.get(), request);
+    }
+
+
+    @Test
+    public void testShutdownKeepSize() throws Exception {
+        this.fetchRequestQueue.offer(new FetchRequest(0));
+        this.fetchRequestQueue.offer(new FetchRequest(10000));
+        this.fetchRequestQueue.shutdown();
+        assertEquals(2, this.fetchRequestQueue.size());
+        assertNull(this.fetchRequestQueue.take());
+    }
+
+
+    @Test
+    public void concurrentTest() {
+        final AtomicInteger counter = new AtomicInteger();
+        final ConcurrentTestCase testCase = new ConcurrentTestCase(100, 1000, new ConcurrentTestTask() {
+
+            public void run(final int index, final int times) throws Exception {
+                FetchRequestTimingWheelUnitTest.this.fetchRequestQueue.offer(new FetchRequest(times % 3));
+                try {
+                    FetchRequestTimingWheelUnitTest.this.fetchRequestQueue.take();
+                    counter.incrementAndGet();
+                }
+                catch (final InterruptedException e) {
+
+                }
+            }
+        });
+        testCase.start();
+        assertEquals(100000, counter.get());
+        assertEquals(0, this.fetchRequestQueue.size());
+        System.out.println(testCase.getDurationInMillis());
+    }
+}
@@ -0,0 +1,181 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * ؾԵģ⣬ͳconsumer롢뿪ԼʱǨƵķͣʱ䡣
+ * <ul>
+ * <li>ȫؾ⣺һ仯ֹͣconsumerfetchзͣ</li>
+ * <li>ؾ⣺ֻͣǨƵķ</li>
+ * </ul>
+ * ͣʱ䰴ÿθؾʱpauseMs㣬λΪ*롣
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.taobao.metamorphosis.client.consumer.LoadBalanceSimulation \
+ *     -Dexec.args="100 10 2000"
+ * </pre>
+ */
+public class LoadBalanceSimulation {
+
+    static final String TOPIC = "test";
+
+    private final LoadBalanceStrategy strategy;
+
+    private final List<String> partitions;
+
+    private List<String> consumers;
+
+    private final long pauseMs;
+
+    private Map<String, String> assignment;
+
+    // ͳ
+    int rebalances;
+    int movedPartitions;
+    int maxMovedPartitions;
+    long fullPausedPartitionMs;
+    long incrementalPausedPartitionMs;
+
+
+    public LoadBalanceSimulation(final LoadBalanceStrategy strategy, final int nPartitions,
+            final List<String> consumers, final long pauseMs) {
+        this.strategy = strategy;
+        this.partitions = new ArrayList<String>();
+        for (int i = 0; i < nPartitions; i++) {
+            this.partitions.add(i / 8 + "-" + i % 8);
+        }
+        this.consumers = new ArrayList<String>(consumers);
+        Collections.sort(this.consumers);
+        this.pauseMs = pauseMs;
+        this.assignment = assign(strategy, this.consumers, this.partitions);
+    }
+
+
+    /**
+     * зĹpartition -> consumerId
+     */
+    static Map<String, String> assign(final LoadBalanceStrategy strategy, final List<String> consumers,
+            final List<String> partitions) {
+        final Map<String, String> rt = new HashMap<String, String>();
+        for (final String consumer : consumers) {
+            for (final String partition : strategy.getPartitions(TOPIC, consumer, consumers, partitions)) {
+                final String exists = rt.put(partition, consumer);
+                if (exists != null) {
+                    throw new IllegalStateException("Partition " + partition + " assigned to both " + exists + " and "
+                            + consumer);
+                }
+            }
+        }
+        if (rt.size() != partitions.size()) {
+            throw new IllegalStateException("Only " + rt.size() + " of " + partitions.size() + " partitions assigned");
+        }
+        return rt;
+    }
+
+
+    /**
+     * consumerбΪnewConsumersǨƵķ
+     */
+    public int changeConsumers(final List<String> consumers) {
+        // ConsumerZooKeeperһconsumerб
+        final List<String> newConsumers = new ArrayList<String>(consumers);
+        Collections.sort(newConsumers);
+        final Map<String, String> newAssignment = assign(this.strategy, newConsumers, this.partitions);
+        int moved = 0;
+        for (final Map.Entry<String, String> entry : newAssignment.entrySet()) {
+            if (!entry.getValue().equals(this.assignment.get(entry.getKey()))) {
+                moved++;
+            }
+        }
+        this.rebalances++;
+        this.movedPartitions += moved;
+        this.maxMovedPartitions = Math.max(this.maxMovedPartitions, moved);
+        // ȫؾconsumerֹͣfetchֻͣǨƵķ
+        this.fullPausedPartitionMs += this.partitions.size() * this.pauseMs;
+        this.incrementalPausedPartitionMs += moved * this.pauseMs;
+        this.consumers = newConsumers;
+        this.assignment = newAssignment;
+        return moved;
+    }
+
+
+    /**
+     * ÿconsumerconsumerIdı
+     */
+    public void rollingRestart(final String newIdPrefix) {
+        final List<String> olds = new ArrayList<String>(this.consumers);
+        for (int i = 0; i < olds.size(); i++) {
+            final List<String> afterLeave = new ArrayList<String>(this.consumers);
+            afterLeave.remove(olds.get(i));
+            this.changeConsumers(afterLeave);
+            final List<String> afterJoin = new ArrayList<String>(afterLeave);
+            afterJoin.add(newIdPrefix + "-" + i);
+            this.changeConsumers(afterJoin);
+        }
+    }
+
+
+    /**
+     * ǰиconsumerֵ
+     */
+    public int getImbalance() {
+        final Map<String, Integer> loads = new HashMap<String, Integer>();
+        for (final String consumer : this.consumers) {
+            loads.put(consumer, 0);
+        }
+        for (final String consumer : this.assignment.values()) {
+            loads.put(consumer, loads.get(consumer) + 1);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (final int load : loads.values()) {
+            min = Math.min(min, load);
+            max = Math.max(max, load);
+        }
+        return max - min;
+    }
+
+
+    static List<String> createConsumers(final String prefix, final int num) {
+        final List<String> rt = new ArrayList<String>();
+        for (int i = 0; i < num; i++) {
+            rt.add(prefix + "-" + i);
+        }
+        return rt;
+    }
+
+
+    public static void main(final String[] args) {
+        final int nPartitions = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final int nConsumers = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final long pauseMs = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        final Object[][] strategies =
+                { { "DEFAULT", new DefaultLoadBalanceStrategy() }, { "CONSIST", new ConsisHashStrategy() },
+                 { "STICKY", new StickyLoadBalanceStrategy() } };
+        System.out.println("partitions=" + nPartitions + ",consumers=" + nConsumers + ",pauseMs=" + pauseMs);
+        System.out.println("strategy\trebalances\tmoved\tmaxMoved\timbalance\tfullPause(partition*s)\t"
+                + "incrementalPause(partition*s)");
+        for (final Object[] s : strategies) {
+            final LoadBalanceSimulation simulation =
+                    new LoadBalanceSimulation((LoadBalanceStrategy) s[1], nPartitions, createConsumers("consumer",
+                        nConsumers), pauseMs);
+            // һһٹһ
+            final List<String> scaleOut = new ArrayList<String>(simulation.consumers);
+            scaleOut.add("consumer-" + nConsumers);
+            simulation.changeConsumers(scaleOut);
+            final List<String> scaleIn = new ArrayList<String>(simulation.consumers);
+            scaleIn.remove(0);
+            simulation.changeConsumers(scaleIn);
+            simulation.rollingRestart("restarted");
+            System.out.println(s[0] + "\t" + simulation.rebalances + "\t" + simulation.movedPartitions + "\t"
+                    + simulation.maxMovedPartitions + "\t" + simulation.getImbalance() + "\t"
+                    + simulation.fullPausedPartitionMs / 1000 + "\t" + simulation.incrementalPausedPartitionMs / 1000);
+        }
+    }
+}
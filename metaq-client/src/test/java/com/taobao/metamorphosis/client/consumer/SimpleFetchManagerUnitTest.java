@@ -1,9 +1,13 @@
 package com.taobao.metamorphosis.client.consumer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -321,4 +325,121 @@ public class SimpleFetchManagerUnitTest {
         EasyMock.verify(this.consumer);
         assertEquals(newRequest, this.fetchManager.takeFetchRequest());
     }
+
+
+    @Test
+    public void testAssignFetchRequests() throws Exception {
+        final FetchRequest request =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-0"), 12), 1024);
+        this.fetchManager.assignFetchRequests(Arrays.asList(request));
+        assertSame(request, this.fetchManager.takeFetchRequest());
+    }
+
+
+    @Test
+    public void testRevokeQueuedRequest() throws Exception {
+        final FetchRequest request =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-0"), 12), 1024);
+        this.fetchManager.addFetchRequest(request);
+        // еȴ
+        assertTrue(this.fetchManager.revokeFetchRequests(Arrays.asList(request), 1000));
+
+        // ȡֱӶfetch
+        EasyMock.replay(this.consumer);
+        final FetchRequestRunner runner = this.fetchManager.new FetchRequestRunner();
+        runner.executeRequest(this.fetchManager.takeFetchRequest());
+        EasyMock.verify(this.consumer);
+        assertFalse(request.isFetching());
+    }
+
+
+    @Test
+    public void testRevokeFetchingRequest() throws Exception {
+        final FetchRequest request =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-0"), 12), 1024);
+        // ģfetch߳ڴ
+        assertTrue(this.fetchManager.beginFetch(request));
+        assertFalse(this.fetchManager.revokeFetchRequests(Arrays.asList(request), 100));
+
+        // ϷŻضʱ
+        this.fetchManager.addFetchRequest(request);
+        assertTrue(this.fetchManager.revokeFetchRequests(Arrays.asList(request), 100));
+        assertFalse(this.fetchManager.beginFetch(request));
+    }
+
+
+    @Test
+    public void testReserveFetchBuffer() throws Exception {
+        this.consumerConfig.setMaxFetchBufferSize(1536);
+        this.fetchManager = new SimpleFetchManager(this.consumerConfig, this.consumer);
+        this.fetchManager.resetFetchState();
+        final FetchBufferPool pool = this.fetchManager.getFetchBufferPool();
+        final FetchRequest request1 =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-0"), 12), 1024);
+        final FetchRequest request2 =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-1"), 12), 1024);
+        assertTrue(this.fetchManager.beginFetch(request1));
+        assertEquals(1024, pool.getUsed());
+
+        // Ԥ㲻㣬fetch̵߳ȴֱrequest1Żض
+        final AtomicReference<Boolean> result = new AtomicReference<Boolean>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result.set(SimpleFetchManagerUnitTest.this.fetchManager.beginFetch(request2));
+            }
+        };
+        thread.start();
+        thread.join(300);
+        assertTrue(thread.isAlive());
+        // ȴڼֻһ
+        assertEquals(1, pool.getWaitCount());
+
+        this.fetchManager.addFetchRequest(request1);
+        thread.join();
+        assertTrue(result.get());
+        assertEquals(1024, pool.getUsed());
+        assertEquals(1024, pool.getPeakUsed());
+        this.fetchManager.addFetchRequest(request2);
+        assertEquals(0, pool.getUsed());
+    }
+
+
+    @Test
+    public void testRevokeWhileReservingFetchBuffer() throws Exception {
+        this.consumerConfig.setMaxFetchBufferSize(1024);
+        this.fetchManager = new SimpleFetchManager(this.consumerConfig, this.consumer);
+        this.fetchManager.resetFetchState();
+        final FetchRequest request1 =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-0"), 12), 1024);
+        final FetchRequest request2 =
+                new FetchRequest(new Broker(0, "meta://localhost:0"), 0, new TopicPartitionRegInfo("topic1",
+                    new Partition("0-1"), 12), 1024);
+        assertTrue(this.fetchManager.beginFetch(request1));
+
+        final AtomicReference<Boolean> result = new AtomicReference<Boolean>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result.set(SimpleFetchManagerUnitTest.this.fetchManager.beginFetch(request2));
+            }
+        };
+        thread.start();
+        thread.join(200);
+        // ȴԤ󱻳ȴ
+        assertTrue(this.fetchManager.revokeFetchRequests(Arrays.asList(request2), 5000));
+        thread.join();
+        assertFalse(result.get());
+        assertFalse(request2.isFetching());
+        assertEquals(1024, this.fetchManager.getFetchBufferPool().getUsed());
+        assertEquals(1, this.fetchManager.getFetchBufferPool().getWaitCount());
+        assertEquals(1, this.fetchManager.getFetchBufferPool().getCancelCount());
+        assertEquals(0, this.fetchManager.getFetchBufferPool().getTimeoutCount());
+    }
 }
@@ -0,0 +1,99 @@
+package com.taobao.metamorphosis.client.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.taobao.metamorphosis.client.BaseStrategyUnitTest;
+
+
+public class StickyStrategyUnitTest extends BaseStrategyUnitTest {
+    private final LoadBalanceStrategy strategy = new StickyLoadBalanceStrategy();
+
+
+    @Test
+    public void testGetPartitions_4consumers_10partitions() throws Exception {
+        final String topic = "test";
+        final List<String> curConsumers = this.createConsumers(4);
+        final List<String> curPartitions = this.createPartitions(topic, 10);
+        final Set<String> all = new HashSet<String>();
+        for (final String consumer : curConsumers) {
+            final List<String> partitions = this.strategy.getPartitions(topic, consumer, curConsumers, curPartitions);
+            // Ĭϲһ
+            assertTrue(partitions.size() == 2 || partitions.size() == 3);
+            for (final String partition : partitions) {
+                assertTrue(all.add(partition));
+            }
+        }
+        assertEquals(10, all.size());
+
+        assertTrue(this.strategy.getPartitions(topic, "consumer-100", curConsumers, curPartitions).isEmpty());
+    }
+
+
+    @Test
+    public void testGetPartitions_moreConsumersThanPartitions() throws Exception {
+        final String topic = "test";
+        final List<String> curConsumers = this.createConsumers(5);
+        final List<String> curPartitions = this.createPartitions(topic, 3);
+        int total = 0;
+        for (final String consumer : curConsumers) {
+            final List<String> partitions = this.strategy.getPartitions(topic, consumer, curConsumers, curPartitions);
+            assertTrue(partitions.size() <= 1);
+            total += partitions.size();
+        }
+        assertEquals(3, total);
+    }
+
+
+    @Test
+    public void testSameResultWithDifferentOrder() throws Exception {
+        final String topic = "test";
+        final List<String> curConsumers = this.createConsumers(7);
+        final List<String> curPartitions = this.createPartitions(topic, 50);
+        final List<String> shuffledConsumers = new ArrayList<String>(curConsumers);
+        final List<String> shuffledPartitions = new ArrayList<String>(curPartitions);
+        Collections.shuffle(shuffledConsumers, new Random(1));
+        Collections.shuffle(shuffledPartitions, new Random(2));
+        for (final String consumer : curConsumers) {
+            assertEquals(new HashSet<String>(this.strategy.getPartitions(topic, consumer, curConsumers, curPartitions)),
+                new HashSet<String>(this.strategy.getPartitions(topic, consumer, shuffledConsumers,
+                    shuffledPartitions)));
+        }
+    }
+
+
+    @Test
+    public void testConsumerJoinAndLeaveMoveFewPartitions() throws Exception {
+        final List<String> consumers = LoadBalanceSimulation.createConsumers("consumer", 10);
+        final LoadBalanceSimulation sticky =
+                new LoadBalanceSimulation(this.strategy, 100, consumers, 1000);
+        final LoadBalanceSimulation range =
+                new LoadBalanceSimulation(new DefaultLoadBalanceStrategy(), 100, consumers, 1000);
+
+        final List<String> joined = new ArrayList<String>(consumers);
+        joined.add("consumer-new");
+        final int stickyMoved = sticky.changeConsumers(joined);
+        final int rangeMoved = range.changeConsumers(joined);
+        // consumerٷֵ9consumerֻ֮
+        assertTrue(stickyMoved >= 9);
+        assertTrue(stickyMoved <= 30);
+        assertTrue(stickyMoved < rangeMoved);
+        assertTrue(sticky.getImbalance() <= 1);
+
+        sticky.rollingRestart("restarted");
+        range.rollingRestart("restarted");
+        assertTrue(sticky.movedPartitions < range.movedPartitions);
+        assertTrue(sticky.incrementalPausedPartitionMs < sticky.fullPausedPartitionMs);
+        assertTrue(sticky.getImbalance() <= 1);
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.taobao.metamorphosis.client.consumer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.easymock.classextension.EasyMock;
+import org.easymock.classextension.IMocksControl;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.gecko.service.exception.NotifyRemotingException;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.client.consumer.TopicPartitionRegInfo;
+import com.taobao.metamorphosis.cluster.Broker;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
+import com.taobao.metamorphosis.utils.MetaZookeeper;
+
+
+public class BrokerOffsetStorageUnitTest {
+    private static final long TIMEOUT = 1000;
+    private final String url0 = "meta://localhost:8123";
+    private final String url1 = "meta://localhost:8124";
+    private final String group = "boyan-test";
+    private final String topic = "test";
+    private IMocksControl mocksControl;
+    private RemotingClientWrapper remotingClient;
+    private MetaZookeeper metaZookeeper;
+    private BrokerOffsetStorage offsetStorage;
+
+
+    @Before
+    public void setUp() {
+        this.mocksControl = EasyMock.createControl();
+        this.remotingClient = this.mocksControl.createMock(RemotingClientWrapper.class);
+        this.metaZookeeper = this.mocksControl.createMock(MetaZookeeper.class);
+        this.offsetStorage = new BrokerOffsetStorage(this.remotingClient, this.metaZookeeper, TIMEOUT);
+        OpaqueGenerator.resetOpaque();
+    }
+
+
+    private void expectConnect(final int brokerId, final String url) throws Exception {
+        EasyMock.expect(this.metaZookeeper.getMasterBrokerById(brokerId)).andReturn(new Broker(brokerId, url));
+        this.remotingClient.connect(url);
+        EasyMock.expectLastCall();
+    }
+
+
+    private void expectReady(final String url, final int times) throws Exception {
+        this.remotingClient.awaitReadyInterrupt(url, TIMEOUT);
+        EasyMock.expectLastCall().times(times);
+    }
+
+
+    @Test
+    public void testCommitOffsetGroupByBroker() throws Exception {
+        final TopicPartitionRegInfo info0 = new TopicPartitionRegInfo(this.topic, new Partition(0, 0), 100L, 9L);
+        final TopicPartitionRegInfo info1 = new TopicPartitionRegInfo(this.topic, new Partition(1, 0), 200L);
+        final TopicPartitionRegInfo info2 = new TopicPartitionRegInfo(this.topic, new Partition(0, 1), 300L);
+        final TopicPartitionRegInfo unmodified = new TopicPartitionRegInfo(this.topic, new Partition(0, 2), 400L);
+        info0.setModified(true);
+        info1.setModified(true);
+        info2.setModified(true);
+
+        this.expectConnect(0, this.url0);
+        this.expectConnect(1, this.url1);
+        this.expectReady(this.url0, 1);
+        this.expectReady(this.url1, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new CommitOffsetCommand(this.group, Arrays.asList(
+                new OffsetEntry(this.topic, 0, 9L, 100L), new OffsetEntry(this.topic, 1, -1L, 300L)),
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE, HttpStatus.Success, null));
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url1, new CommitOffsetCommand(this.group, Arrays
+                .asList(new OffsetEntry(this.topic, 0, -1L, 200L)), Integer.MIN_VALUE + 1), TIMEOUT,
+                TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE + 1, HttpStatus.InternalServerError, "disk error"));
+        this.mocksControl.replay();
+
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info0, info1, info2, unmodified));
+        this.mocksControl.verify();
+        assertFalse(info0.isModified());
+        assertFalse(info2.isModified());
+        // ύʧܣ´
+        assertTrue(info1.isModified());
+    }
+
+
+    @Test
+    public void testCommitOffsetFailedRetryBrokerUrl() throws Exception {
+        final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, new Partition(0, 0), 100L);
+        info.setModified(true);
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry(this.topic, 0, -1L, 100L));
+
+        this.expectConnect(0, this.url0);
+        this.expectReady(this.url0, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new CommitOffsetCommand(this.group, entries,
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andThrow(
+            new NotifyRemotingException("connection closed"));
+        // brokerǨƵµַ
+        this.expectConnect(0, this.url1);
+        this.expectReady(this.url1, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url1, new CommitOffsetCommand(this.group, entries,
+                Integer.MIN_VALUE + 1), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE + 1, HttpStatus.Success, null));
+        this.mocksControl.replay();
+
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        assertTrue(info.isModified());
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        assertFalse(info.isModified());
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testCommitKeepsModifiedIfChangedDuringCommit() throws Exception {
+        final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, new Partition(0, 0), 100L);
+        info.setModified(true);
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry(this.topic, 0, -1L, 100L));
+        this.expectConnect(0, this.url0);
+        this.expectReady(this.url0, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new CommitOffsetCommand(this.group, entries,
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andAnswer(
+            new IAnswer<BooleanCommand>() {
+                @Override
+                public BooleanCommand answer() throws Throwable {
+                    info.getOffset().set(200L);
+                    return new BooleanCommand(Integer.MIN_VALUE, HttpStatus.Success, null);
+                }
+            });
+        this.mocksControl.replay();
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        this.mocksControl.verify();
+        assertTrue(info.isModified());
+    }
+
+
+    @Test
+    public void testLoad() throws Exception {
+        final Partition partition = new Partition(0, 1);
+        this.expectConnect(0, this.url0);
+        this.expectReady(this.url0, 2);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new LoadOffsetCommand(this.topic, this.group, 1,
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE, HttpStatus.Success, "-1-1024"));
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new LoadOffsetCommand("other", this.group, 1,
+                Integer.MIN_VALUE + 1), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE + 1, HttpStatus.NotFound, null));
+        this.mocksControl.replay();
+
+        final TopicPartitionRegInfo info = this.offsetStorage.load(this.topic, this.group, partition);
+        assertEquals(this.topic, info.getTopic());
+        assertEquals(partition, info.getPartition());
+        assertEquals(1024L, info.getOffset().get());
+        assertEquals(-1L, info.getMessageId());
+        assertNull(this.offsetStorage.load("other", this.group, partition));
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testLoadFailed() throws Exception {
+        final Partition partition = new Partition(0, 1);
+        this.expectConnect(0, this.url0);
+        this.expectReady(this.url0, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new LoadOffsetCommand(this.topic, this.group, 1,
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE, HttpStatus.ServiceUnavilable, "not loaded"));
+        this.mocksControl.replay();
+        try {
+            this.offsetStorage.load(this.topic, this.group, partition);
+            fail();
+        }
+        catch (final IllegalStateException e) {
+            // ʧܲܵûoffsetͷߴβʼ
+        }
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testClose() throws Exception {
+        this.expectConnect(0, this.url0);
+        this.expectReady(this.url0, 1);
+        EasyMock.expect(
+            this.remotingClient.invokeToGroup(this.url0, new LoadOffsetCommand(this.topic, this.group, 1,
+                Integer.MIN_VALUE), TIMEOUT, TimeUnit.MILLISECONDS)).andReturn(
+            new BooleanCommand(Integer.MIN_VALUE, HttpStatus.NotFound, null));
+        this.remotingClient.close(this.url0, false);
+        EasyMock.expectLastCall();
+        this.mocksControl.replay();
+        assertNull(this.offsetStorage.load(this.topic, this.group, new Partition(0, 1)));
+        this.offsetStorage.close();
+        this.mocksControl.verify();
+    }
+
+}
@@ -154,6 +154,38 @@ public class LocalOffsetStorageUnitTest {
     }
 
 
+    @Test
+    public void testWriteBehindCommitPartitionsInSeparateFlushes() throws Exception {
+        final String group = "test-grp";
+        final Partition partition1 = new Partition("0-0");
+        final Partition partition2 = new Partition("0-1");
+        final WriteBehindOffsetStorage writeBehind = new WriteBehindOffsetStorage(this.offsetStorage, 60000);
+        try {
+            final TopicPartitionRegInfo info1 = new TopicPartitionRegInfo("test", partition1, 10);
+            info1.setModified(true);
+            writeBehind.commitOffset(group, Collections.singletonList(info1));
+            writeBehind.flush();
+
+            final TopicPartitionRegInfo info2 = new TopicPartitionRegInfo("test", partition2, 20);
+            info2.setModified(true);
+            writeBehind.commitOffset(group, Collections.singletonList(info2));
+            writeBehind.flush();
+
+            // дɹŻ
+            assertEquals(0, writeBehind.getPendingCount());
+            assertEquals(0, writeBehind.getFailedCount());
+            assertEquals(2, writeBehind.getFlushedCount());
+        }
+        finally {
+            writeBehind.close();
+        }
+
+        this.offsetStorage = new LocalOffsetStorage();
+        assertEquals(10, this.offsetStorage.load("test", group, partition1).getOffset().get());
+        assertEquals(20, this.offsetStorage.load("test", group, partition2).getOffset().get());
+    }
+
+
     @Test
     public void testBackwardCompatibility() throws IOException {
         OffsetStorage offsetStorage =
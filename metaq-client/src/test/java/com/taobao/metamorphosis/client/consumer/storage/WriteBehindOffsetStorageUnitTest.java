@@ -0,0 +1,249 @@
+package com.taobao.metamorphosis.client.consumer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.client.consumer.TopicPartitionRegInfo;
+import com.taobao.metamorphosis.cluster.Partition;
+
+
+public class WriteBehindOffsetStorageUnitTest {
+    private MockOffsetStorage mockStorage;
+    private WriteBehindOffsetStorage offsetStorage;
+    private final String group = "test-grp";
+    private final String topic = "test";
+
+
+    /**
+     * ZkOffsetStorageΪһ£дɹmodifiedǣʧʱ
+     */
+    static class MockOffsetStorage implements OffsetStorage {
+        final Map<String, Long> offsets = new HashMap<String, Long>();
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        volatile boolean fail;
+        volatile boolean closed;
+
+
+        @Override
+        public synchronized void commitOffset(final String group, final Collection<TopicPartitionRegInfo> infoList) {
+            this.batchSizes.add(infoList.size());
+            for (final TopicPartitionRegInfo info : infoList) {
+                synchronized (info) {
+                    if (!info.isModified() || this.fail) {
+                        continue;
+                    }
+                    this.offsets.put(group + info.getPartition(), info.getOffset().get());
+                    info.setModified(false);
+                }
+            }
+        }
+
+
+        @Override
+        public synchronized TopicPartitionRegInfo load(final String topic, final String group,
+                final Partition partition) {
+            final Long offset = this.offsets.get(group + partition);
+            return offset == null ? null : new TopicPartitionRegInfo(topic, partition, offset);
+        }
+
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+
+        @Override
+        public void initOffset(final String topic, final String group, final Partition partition, final long offset) {
+        }
+    }
+
+
+    @Before
+    public void setUp() {
+        this.mockStorage = new MockOffsetStorage();
+        this.offsetStorage = new WriteBehindOffsetStorage(this.mockStorage, 60 * 1000L, 2);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.offsetStorage.close();
+    }
+
+
+    @Test
+    public void testCommitOnlyModifiedAndCoalesce() {
+        final Partition partition = new Partition("0-0");
+        final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, partition, 100);
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        assertEquals(0, this.offsetStorage.getPendingCount());
+
+        this.modify(info, 200);
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        this.modify(info, 300);
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        assertFalse(info.isModified());
+        assertEquals(1, this.offsetStorage.getPendingCount());
+        assertEquals(1, this.offsetStorage.getCoalescedCount());
+        // δд
+        assertNull(this.mockStorage.load(this.topic, this.group, partition));
+        assertEquals(300, this.offsetStorage.load(this.topic, this.group, partition).getOffset().get());
+
+        this.offsetStorage.flush();
+        assertEquals(0, this.offsetStorage.getPendingCount());
+        assertEquals(1, this.offsetStorage.getFlushedCount());
+        assertEquals(300, this.mockStorage.load(this.topic, this.group, partition).getOffset().get());
+        assertEquals(300, this.offsetStorage.load(this.topic, this.group, partition).getOffset().get());
+    }
+
+
+    @Test
+    public void testFlushInBatches() {
+        final List<TopicPartitionRegInfo> infoList = new ArrayList<TopicPartitionRegInfo>();
+        for (int i = 0; i < 5; i++) {
+            final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, new Partition(0, i), 0);
+            this.modify(info, i + 1);
+            infoList.add(info);
+        }
+        this.offsetStorage.commitOffset(this.group, infoList);
+        assertEquals(5, this.offsetStorage.getPendingCount());
+        this.offsetStorage.flush();
+        assertEquals(Arrays.asList(2, 2, 1), this.mockStorage.batchSizes);
+        assertEquals(5, this.mockStorage.offsets.size());
+    }
+
+
+    @Test
+    public void testRetryAfterFailure() {
+        final Partition partition = new Partition("0-0");
+        final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, partition, 0);
+        this.modify(info, 100);
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+
+        this.mockStorage.fail = true;
+        this.offsetStorage.flush();
+        assertEquals(1, this.offsetStorage.getFailedCount());
+        assertEquals(1, this.offsetStorage.getPendingCount());
+        assertNull(this.mockStorage.load(this.topic, this.group, partition));
+
+        this.mockStorage.fail = false;
+        this.offsetStorage.flush();
+        assertEquals(0, this.offsetStorage.getPendingCount());
+        assertEquals(100, this.mockStorage.load(this.topic, this.group, partition).getOffset().get());
+    }
+
+
+    @Test
+    public void testMysqlBatchFailureKeepsPending() {
+        final int[] executed = new int[1];
+        final MysqlOffsetStorage mysqlStorage = new MysqlOffsetStorage(this.newFailingDataSource(executed));
+        final WriteBehindOffsetStorage writeBehind = new WriteBehindOffsetStorage(mysqlStorage, 60 * 1000L);
+        try {
+            final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, new Partition("0-0"), 0);
+            this.modify(info, 100);
+            writeBehind.commitOffset(this.group, Arrays.asList(info));
+            writeBehind.flush();
+            assertEquals(1, executed[0]);
+            // executeBatchʧܣдɹoffset´
+            assertEquals(0, writeBehind.getFlushedCount());
+            assertEquals(1, writeBehind.getFailedCount());
+            assertEquals(1, writeBehind.getPendingCount());
+            assertEquals(100, writeBehind.load(this.topic, this.group, new Partition("0-0")).getOffset().get());
+
+            // ֱʹʱʧҲ
+            final TopicPartitionRegInfo direct = new TopicPartitionRegInfo(this.topic, new Partition("0-1"), 0);
+            this.modify(direct, 200);
+            mysqlStorage.commitOffset(this.group, Arrays.asList(direct));
+            assertEquals(2, executed[0]);
+            assertTrue(direct.isModified());
+        }
+        finally {
+            writeBehind.close();
+        }
+    }
+
+
+    /**
+     * executeBatch׳SQLExceptionԴ
+     */
+    private DataSource newFailingDataSource(final int[] executed) {
+        final PreparedStatement pstmt =
+                (PreparedStatement) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                                throws Throwable {
+                            if (method.getName().equals("executeBatch")) {
+                                executed[0]++;
+                                throw new SQLException("mock batch failure");
+                            }
+                            return null;
+                        }
+                    });
+        final Connection conn =
+                (Connection) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                                throws Throwable {
+                            if (method.getName().equals("prepareStatement")) {
+                                return pstmt;
+                            }
+                            return null;
+                        }
+                    });
+        return (DataSource) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+            new Class<?>[] { DataSource.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                    if (method.getName().equals("getConnection")) {
+                        return conn;
+                    }
+                    return null;
+                }
+            });
+    }
+
+
+    @Test
+    public void testCloseFlush() {
+        final Partition partition = new Partition("0-0");
+        final TopicPartitionRegInfo info = new TopicPartitionRegInfo(this.topic, partition, 0);
+        this.modify(info, 100);
+        this.offsetStorage.commitOffset(this.group, Arrays.asList(info));
+        this.offsetStorage.close();
+        assertEquals(100, this.mockStorage.load(this.topic, this.group, partition).getOffset().get());
+        assertEquals(true, this.mockStorage.closed);
+    }
+
+
+    private void modify(final TopicPartitionRegInfo info, final long offset) {
+        synchronized (info) {
+            info.getOffset().set(offset);
+            info.setModified(true);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.taobao.metamorphosis.network;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+
+
+/**
+ * ύoffsetbroker棬ʽ</br> commit group value-length opaque\r\n data
+ * </br></br> dataɣÿΪtopic partition msgId offset\n
+ *
+ */
+public class CommitOffsetCommand extends AbstractRequestCommand {
+    static final long serialVersionUID = -1L;
+
+    /**
+     * һoffset
+     */
+    public static class OffsetEntry {
+        private final String topic;
+        private final int partition;
+        private final long msgId;
+        private final long offset;
+
+
+        public OffsetEntry(final String topic, final int partition, final long msgId, final long offset) {
+            super();
+            this.topic = topic;
+            this.partition = partition;
+            this.msgId = msgId;
+            this.offset = offset;
+        }
+
+
+        public String getTopic() {
+            return this.topic;
+        }
+
+
+        public int getPartition() {
+            return this.partition;
+        }
+
+
+        public long getMsgId() {
+            return this.msgId;
+        }
+
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (int) (this.msgId ^ this.msgId >>> 32);
+            result = prime * result + (int) (this.offset ^ this.offset >>> 32);
+            result = prime * result + this.partition;
+            result = prime * result + (this.topic == null ? 0 : this.topic.hashCode());
+            return result;
+        }
+
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            final OffsetEntry other = (OffsetEntry) obj;
+            if (this.msgId != other.msgId) {
+                return false;
+            }
+            if (this.offset != other.offset) {
+                return false;
+            }
+            if (this.partition != other.partition) {
+                return false;
+            }
+            if (this.topic == null) {
+                if (other.topic != null) {
+                    return false;
+                }
+            }
+            else if (!this.topic.equals(other.topic)) {
+                return false;
+            }
+            return true;
+        }
+
+
+        @Override
+        public String toString() {
+            return this.topic + " " + this.partition + " " + this.msgId + " " + this.offset;
+        }
+    }
+
+    private final String group;
+    private final List<OffsetEntry> entries;
+
+
+    public CommitOffsetCommand(final String group, final List<OffsetEntry> entries, final Integer opaque) {
+        super(null, opaque);
+        this.group = group;
+        this.entries = entries != null ? entries : Collections.<OffsetEntry> emptyList();
+    }
+
+
+    public String getGroup() {
+        return this.group;
+    }
+
+
+    public List<OffsetEntry> getEntries() {
+        return this.entries;
+    }
+
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + this.entries.hashCode();
+        result = prime * result + (this.group == null ? 0 : this.group.hashCode());
+        return result;
+    }
+
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        if (this.getClass() != obj.getClass()) {
+            return false;
+        }
+        final CommitOffsetCommand other = (CommitOffsetCommand) obj;
+        if (!this.entries.equals(other.entries)) {
+            return false;
+        }
+        if (this.group == null) {
+            if (other.group != null) {
+                return false;
+            }
+        }
+        else if (!this.group.equals(other.group)) {
+            return false;
+        }
+        return true;
+    }
+
+
+    @Override
+    public IoBuffer encode() {
+        final StringBuilder sb = new StringBuilder();
+        for (final OffsetEntry entry : this.entries) {
+            sb.append(entry.toString()).append('\n');
+        }
+        final byte[] data = sb.length() > 0 ? ByteUtils.getBytes(sb.toString()) : new byte[0];
+        final IoBuffer buf =
+                IoBuffer.allocate(11 + this.group.length() + ByteUtils.stringSize(data.length)
+                        + ByteUtils.stringSize(this.getOpaque()) + data.length);
+        ByteUtils.setArguments(buf, MetaEncodeCommand.COMMIT_CMD, this.group, data.length, this.getOpaque());
+        buf.put(data);
+        buf.flip();
+        return buf;
+    }
+
+}
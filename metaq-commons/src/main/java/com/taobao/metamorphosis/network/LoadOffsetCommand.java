@@ -0,0 +1,82 @@
+package com.taobao.metamorphosis.network;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+
+
+/**
+ * ѯbrokeroffsetʽ</br> load topic group partition opaque\r\n
+ * </br></br> 򷵻msgId-offsetڷ404
+ *
+ */
+public class LoadOffsetCommand extends AbstractRequestCommand {
+    static final long serialVersionUID = -1L;
+    private final String group;
+    private final int partition;
+
+
+    public LoadOffsetCommand(final String topic, final String group, final int partition, final Integer opaque) {
+        super(topic, opaque);
+        this.group = group;
+        this.partition = partition;
+    }
+
+
+    public String getGroup() {
+        return this.group;
+    }
+
+
+    public int getPartition() {
+        return this.partition;
+    }
+
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + (this.group == null ? 0 : this.group.hashCode());
+        result = prime * result + this.partition;
+        return result;
+    }
+
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        if (this.getClass() != obj.getClass()) {
+            return false;
+        }
+        final LoadOffsetCommand other = (LoadOffsetCommand) obj;
+        if (this.group == null) {
+            if (other.group != null) {
+                return false;
+            }
+        }
+        else if (!this.group.equals(other.group)) {
+            return false;
+        }
+        if (this.partition != other.partition) {
+            return false;
+        }
+        return true;
+    }
+
+
+    @Override
+    public IoBuffer encode() {
+        final IoBuffer buf =
+                IoBuffer.allocate(10 + this.getTopic().length() + this.group.length()
+                        + ByteUtils.stringSize(this.partition) + ByteUtils.stringSize(this.getOpaque()));
+        ByteUtils.setArguments(buf, MetaEncodeCommand.LOAD_CMD, this.getTopic(), this.group, this.partition,
+            this.getOpaque());
+        buf.flip();
+        return buf;
+    }
+
+}
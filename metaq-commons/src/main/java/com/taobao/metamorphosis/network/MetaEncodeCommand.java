@@ -32,5 +32,7 @@ public interface MetaEncodeCommand {
     public String ASK_CMD = "ask";
     public String FETCH_CMD = "fetch";
     public String MESSAGETYPE_CMD = "messageType";
+    public String COMMIT_CMD = "commit";
+    public String LOAD_CMD = "load";
     
 }
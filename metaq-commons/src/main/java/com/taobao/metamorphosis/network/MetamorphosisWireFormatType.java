@@ -1,6 +1,8 @@
 package com.taobao.metamorphosis.network;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -21,6 +23,7 @@ import com.taobao.gecko.core.util.OpaqueGenerator;
 import com.taobao.gecko.core.util.ShiftAndByteBufferMatcher;
 import com.taobao.gecko.service.config.WireFormatType;
 import com.taobao.metamorphosis.exception.MetaCodecException;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
 import com.taobao.metamorphosis.transaction.TransactionId;
 import com.taobao.metamorphosis.transaction.TransactionInfo;
 import com.taobao.metamorphosis.transaction.TransactionInfo.TransactionType;
@@ -158,6 +161,10 @@ public class MetamorphosisWireFormatType extends WireFormatType {
                         	return this.decodeFetch(tmps);
                         case 'm':
                         	return this.decodeMessageType(buff, tmps);
+                        case 'c':
+                            return this.decodeCommitOffset(buff, tmps);
+                        case 'l':
+                            return this.decodeLoadOffset(tmps);
                         default:
                             throw new MetaCodecException("Unknow command:" + line);
                         }
@@ -217,6 +224,38 @@ public class MetamorphosisWireFormatType extends WireFormatType {
                 }
 
 
+                // commit group value-length opaque\r\n data
+                // dataÿΪtopic partition msgId offset\n
+                private Object decodeCommitOffset(final IoBuffer buff, final String[] tmps) {
+                    this.assertCommand(tmps[0], "commit");
+                    final int valueLen = Integer.parseInt(tmps[2]);
+                    if (buff.remaining() < valueLen) {
+                        buff.reset();
+                        return null;
+                    }
+                    final byte[] data = new byte[valueLen];
+                    buff.get(data);
+                    final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+                    for (final String entryLine : StringUtils.split(ByteUtils.getString(data), '\n')) {
+                        final String[] fields = SPLITER.split(entryLine);
+                        if (fields.length != 4) {
+                            throw new MetaCodecException("Invalid commit entry:" + entryLine);
+                        }
+                        entries.add(new OffsetEntry(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3])));
+                    }
+                    return new CommitOffsetCommand(tmps[1], entries, Integer.parseInt(tmps[3]));
+                }
+
+
+                // load topic group partition opaque\r\n
+                private Object decodeLoadOffset(final String[] tmps) {
+                    this.assertCommand(tmps[0], "load");
+                    return new LoadOffsetCommand(tmps[1], tmps[2], Integer.parseInt(tmps[3]),
+                        Integer.parseInt(tmps[4]));
+                }
+
+
                 // stats item opaque\r\n
                 // opaqueΪ
                 private Object decodeStats(final String[] tmps) {
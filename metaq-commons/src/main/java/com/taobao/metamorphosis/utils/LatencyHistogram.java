@@ -0,0 +1,359 @@
+package com.taobao.metamorphosis.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * ӳֱͼλ΢
+ * <ul>
+ * <li>Ͱ-Ի֣С64ֵȷ¼ֵ1/32¼Լ2^38΢룬ļһͰ</li>
+ * <li>ÿ̶߳ռһrecorder¼ʱֻб߳дûCASҲû</li>
+ * <li>߳˳recorder´snapshot()ʱretiredۼбƳ̳߳ط߳Ҳ</li>
+ * <li>ģʽ̹߳һrecorderԭӲۼӣʺϼ¼ƵʵͶʵܶĳ簴topic</li>
+ * <li>snapshot()recorderõۼƿգrollInterval()ͳ̶߳ڵãõε֮</li>
+ * </ul>
+ *
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_SUB_COUNT = SUB_COUNT >> 1;
+    private static final int MAX_BITS = 38;
+    static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    static final int BUCKET_COUNT = (MAX_BITS - SUB_BITS + 1) * HALF_SUB_COUNT + HALF_SUB_COUNT;
+    // ɱ䣬ʵ
+    private static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new long[BUCKET_COUNT], 0, 0, 0);
+
+    private final String name;
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<Recorder>();
+    // ˳̵߳ļ¼ֻڳʱд
+    private final Recorder retired = new Recorder(null);
+    private final Recorder sharedRecorder;
+    private final ThreadLocal<Recorder> localRecorder = new ThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            final Recorder recorder = new Recorder(Thread.currentThread());
+            LatencyHistogram.this.recorders.add(recorder);
+            return recorder;
+        }
+    };
+    private Snapshot lastSnapshot = EMPTY_SNAPSHOT;
+    private volatile Snapshot intervalSnapshot = EMPTY_SNAPSHOT;
+
+
+    public LatencyHistogram(final String name) {
+        this(name, false);
+    }
+
+
+    /**
+     * @param name
+     * @param shared
+     *            Ϊtrueʱ̹߳һrecorder
+     */
+    public LatencyHistogram(final String name, final boolean shared) {
+        this.name = name;
+        if (shared) {
+            this.sharedRecorder = new SharedRecorder();
+            this.recorders.add(this.sharedRecorder);
+        }
+        else {
+            this.sharedRecorder = null;
+        }
+    }
+
+
+    public String getName() {
+        return this.name;
+    }
+
+
+    /**
+     * ¼һκʱ
+     *
+     * @param micros
+     *            ʱλ΢룬С00
+     */
+    public void record(final long micros) {
+        final long value = micros < 0 ? 0 : micros > MAX_VALUE ? MAX_VALUE : micros;
+        (this.sharedRecorder != null ? this.sharedRecorder : this.localRecorder.get()).record(value);
+    }
+
+
+    /**
+     * ¼startNanos(System.nanoTime())ڵĺʱ
+     *
+     * @param startNanos
+     */
+    public void recordSince(final long startNanos) {
+        this.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+
+    static int indexFor(final long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        // ߵSUB_BITSλ
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF_SUB_COUNT + (int) (value >>> shift);
+    }
+
+
+    /**
+     * Ͱܱʾֵ
+     */
+    static long highestValueFor(final int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int shift = index / HALF_SUB_COUNT - 1;
+        final long sub = index - shift * HALF_SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+
+    /**
+     * ̵߳ļ¼ۼƿ
+     *
+     * @return
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        long totalSum = 0;
+        long max = 0;
+        synchronized (this.retired) {
+            this.pruneDeadRecorders();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = this.retired.counts.get(i);
+            }
+            totalCount = this.retired.count.get();
+            totalSum = this.retired.sum.get();
+            max = this.retired.max.get();
+            for (final Recorder recorder : this.recorders) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts[i] += recorder.counts.get(i);
+                }
+                totalCount += recorder.count.get();
+                totalSum += recorder.sum.get();
+                max = Math.max(max, recorder.max.get());
+            }
+        }
+        return new Snapshot(counts, totalCount, totalSum, max);
+    }
+
+
+    /**
+     * ˳̵߳recorderretiredƳretired
+     */
+    private void pruneDeadRecorders() {
+        for (final Recorder recorder : this.recorders) {
+            if (recorder.isOwnerDead()) {
+                this.retired.merge(recorder);
+                this.recorders.remove(recorder);
+            }
+        }
+    }
+
+
+    /**
+     * ǰrecorderڲ
+     */
+    int getRecorderCount() {
+        return this.recorders.size();
+    }
+
+
+    /**
+     * 䣬ϴεõڵգֻӦһͳ̶߳ڵ
+     */
+    public synchronized void rollInterval() {
+        final Snapshot current = this.snapshot();
+        this.intervalSnapshot = current.minus(this.lastSnapshot);
+        this.lastSnapshot = current;
+    }
+
+
+    /**
+     * һͳĿ
+     *
+     * @return
+     */
+    public Snapshot getIntervalSnapshot() {
+        return this.intervalSnapshot;
+    }
+
+
+    @Override
+    public String toString() {
+        return this.name + " " + this.snapshot();
+    }
+
+    /**
+     * ̵߳ļ¼ֻ߳дlazySet̶߳ĿԾɵ
+     */
+    private static class Recorder {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+        // ̣߳ò̶ֹ߳գΪnullʾκ߳
+        private final WeakReference<Thread> owner;
+
+
+        Recorder(final Thread owner) {
+            this.owner = owner != null ? new WeakReference<Thread>(owner) : null;
+        }
+
+
+        /**
+         * ߳Ѿ˳isAlive()false̵֤ܿ߳ȫд
+         */
+        boolean isOwnerDead() {
+            if (this.owner == null) {
+                return false;
+            }
+            final Thread thread = this.owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+
+        void merge(final Recorder other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                this.counts.addAndGet(i, other.counts.get(i));
+            }
+            this.sum.addAndGet(other.sum.get());
+            if (other.max.get() > this.max.get()) {
+                this.max.set(other.max.get());
+            }
+            this.count.addAndGet(other.count.get());
+        }
+
+
+        void record(final long value) {
+            final int index = indexFor(value);
+            this.counts.lazySet(index, this.counts.get(index) + 1);
+            this.sum.lazySet(this.sum.get() + value);
+            if (value > this.max.get()) {
+                this.max.lazySet(value);
+            }
+            this.count.lazySet(this.count.get() + 1);
+        }
+    }
+
+    /**
+     * ̹߳õļ¼
+     */
+    private static class SharedRecorder extends Recorder {
+        SharedRecorder() {
+            super(null);
+        }
+
+
+        @Override
+        void record(final long value) {
+            this.counts.incrementAndGet(indexFor(value));
+            this.sum.addAndGet(value);
+            long max;
+            while (value > (max = this.max.get())) {
+                if (this.max.compareAndSet(max, value)) {
+                    break;
+                }
+            }
+            this.count.incrementAndGet();
+        }
+    }
+
+    /**
+     * ɱֱͼ
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+
+        Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+
+        public long getCount() {
+            return this.count;
+        }
+
+
+        public long getMax() {
+            return this.max;
+        }
+
+
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+
+        /**
+         * ذٷλϵֵgetValueAtPercentile(99.9)
+         *
+         * @param percentile
+         *            0~100
+         * @return
+         */
+        public long getValueAtPercentile(final double percentile) {
+            long total = 0;
+            for (final long c : this.counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final double p = Math.min(Math.max(percentile, 0), 100);
+            final long target = Math.max(1, (long) Math.ceil(p / 100 * total));
+            long accumulated = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                accumulated += this.counts[i];
+                if (accumulated >= target) {
+                    return Math.min(highestValueFor(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+
+        /**
+         * ۼƿõգֵȡ߷ǿͰϽ
+         *
+         * @param previous
+         * @return
+         */
+        public Snapshot minus(final Snapshot previous) {
+            final long[] diff = new long[this.counts.length];
+            long intervalMax = 0;
+            for (int i = 0; i < diff.length; i++) {
+                diff[i] = this.counts[i] - previous.counts[i];
+                if (diff[i] > 0) {
+                    intervalMax = Math.min(highestValueFor(i), this.max);
+                }
+            }
+            return new Snapshot(diff, this.count - previous.count, this.sum - previous.sum, intervalMax);
+        }
+
+
+        @Override
+        public String toString() {
+            return "count=" + this.count + " mean=" + (long) this.getMean() + " p50="
+                    + this.getValueAtPercentile(50) + " p99=" + this.getValueAtPercentile(99) + " p999="
+                    + this.getValueAtPercentile(99.9) + " max=" + this.max;
+        }
+    }
+}
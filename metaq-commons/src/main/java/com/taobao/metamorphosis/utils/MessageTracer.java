@@ -0,0 +1,190 @@
+package com.taobao.metamorphosis.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Ϣ·׷٣topicͳϢڸ׶εĺʱֲжϢߡbrokerдˢַ̡
+ * <ul>
+ * <li>ÿ߳ÿ׶ÿsampleIntervalεsample()һtrueֻвϢȡʱ䲢¼
+ * ׶ηֿͬһ߳̾׶ʱ(listener﷢Ϣ)׶εĲ</li>
+ * <li>̵Ľ׶ϢԴbornTimestamp/storeTimestampΪ㣬ʱͬ</li>
+ * <li>ÿtopicÿ׶һģʽLatencyHistogramһμ¼ʱ¼ƵʺܵͣҪ̷ֿ߳</li>
+ * </ul>
+ * ͨϵͳmeta.trace.sample.intervalãĬ10000ʾر
+ *
+ */
+public class MessageTracer implements MessageTracerMBean {
+    static final Log log = LogFactory.getLog(MessageTracer.class);
+
+    public static enum Stage {
+        /** ߴӷ͵յӦ */
+        PRODUCER_SEND,
+        /** brokerյputд뷵أ׷Ӻͬˢ */
+        BROKER_PUT,
+        /** brokerȴ洢д */
+        BROKER_LOCK_WAIT,
+        /** brokerͬˢ̵ȴ */
+        BROKER_FLUSH,
+        /** Ӵ洢ַ߼ */
+        BROKER_DISPATCH,
+        /** Ӵ洢ȡ */
+        CONSUMER_FETCH,
+        /** listener */
+        CONSUMER_LISTENER
+    }
+
+    private static final int sampleInterval = Integer.getInteger("meta.trace.sample.interval", 1000);
+    private static final MessageTracer instance = new MessageTracer();
+    private static final ThreadLocal<int[]> sampleCounters = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[Stage.values().length];
+        }
+    };
+    private static final Map<String/* topic */, AtomicReferenceArray<LatencyHistogram>> histograms =
+            new ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>>();
+    private static volatile boolean registered;
+
+
+    private MessageTracer() {
+    }
+
+
+    /**
+     * ǰϢ׶Ƿ
+     *
+     * @param stage
+     * @return
+     */
+    public static boolean sample(final Stage stage) {
+        if (sampleInterval <= 0) {
+            return false;
+        }
+        final int[] counters = sampleCounters.get();
+        final int index = stage.ordinal();
+        if (++counters[index] >= sampleInterval) {
+            counters[index] = 0;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * ¼Ϣĳ׶εĺʱ
+     *
+     * @param topic
+     * @param stage
+     * @param micros
+     *            ʱλ΢
+     */
+    public static void record(final String topic, final Stage stage, final long micros) {
+        LatencyHistogram histogram = getHistogram(topic, stage);
+        if (histogram == null) {
+            histogram = createHistogram(topic, stage);
+        }
+        histogram.record(micros);
+    }
+
+
+    /**
+     * ¼startNanos(System.nanoTime())ڵĺʱڽڵĽ׶
+     */
+    public static void recordSince(final String topic, final Stage stage, final long startNanos) {
+        record(topic, stage, (System.nanoTime() - startNanos) / 1000);
+    }
+
+
+    /**
+     * ¼startMills(Ϣϵʱ)ڵĺʱڿ̵Ľ׶ΣʱЧʱ
+     */
+    public static void recordSinceMills(final String topic, final Stage stage, final long startMills) {
+        if (startMills > 0) {
+            record(topic, stage, (System.currentTimeMillis() - startMills) * 1000);
+        }
+    }
+
+
+    private static synchronized LatencyHistogram createHistogram(final String topic, final Stage stage) {
+        AtomicReferenceArray<LatencyHistogram> topicHistograms = histograms.get(topic);
+        if (topicHistograms == null) {
+            topicHistograms = new AtomicReferenceArray<LatencyHistogram>(Stage.values().length);
+            histograms.put(topic, topicHistograms);
+        }
+        LatencyHistogram histogram = topicHistograms.get(stage.ordinal());
+        if (histogram == null) {
+            histogram = new LatencyHistogram(topic + "_" + stage, true);
+            topicHistograms.set(stage.ordinal(), histogram);
+        }
+        if (!registered) {
+            // Ϣʱעᣬ׷ٵĽ̲һMBean
+            registered = true;
+            try {
+                MetaMBeanServer.registMBean(instance, null);
+            }
+            catch (final Exception e) {
+                log.warn("Register MessageTracer mbean failed", e);
+            }
+        }
+        return histogram;
+    }
+
+
+    /**
+     * ȡtopicĳ׶εֱͼûм¼ʱnull
+     */
+    public static LatencyHistogram getHistogram(final String topic, final Stage stage) {
+        final AtomicReferenceArray<LatencyHistogram> topicHistograms = histograms.get(topic);
+        return topicHistograms != null ? topicHistograms.get(stage.ordinal()) : null;
+    }
+
+
+    /**
+     * topicм¼Ľ׶Σÿһtopic stage count= mean= p50= p99= p999= max=
+     *
+     * @return
+     */
+    public static String getTraceInfoString() {
+        final StringBuilder sb = new StringBuilder(1024);
+        final Stage[] stages = Stage.values();
+        final Map<String, AtomicReferenceArray<LatencyHistogram>> sorted =
+                new TreeMap<String, AtomicReferenceArray<LatencyHistogram>>(histograms);
+        for (final Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> entry : sorted.entrySet()) {
+            for (final Stage stage : stages) {
+                final LatencyHistogram histogram = entry.getValue().get(stage.ordinal());
+                if (histogram != null) {
+                    sb.append(entry.getKey()).append(' ').append(stage).append(' ')
+                        .append(histogram.snapshot()).append("\r\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * ͳ
+     */
+    public static synchronized void reset() {
+        histograms.clear();
+    }
+
+
+    @Override
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+
+    @Override
+    public String getTraceInfo() {
+        return getTraceInfoString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.taobao.metamorphosis.utils;
+
+/**
+ * Ϣ·ͳ
+ *
+ */
+public interface MessageTracerMBean {
+
+    /**
+     * ÿ߳ÿϢһ0ʾر
+     *
+     * @return
+     */
+    public int getSampleInterval();
+
+
+    /**
+     * topicͽ׶ʱֲλ΢
+     *
+     * @return
+     */
+    public String getTraceInfo();
+}
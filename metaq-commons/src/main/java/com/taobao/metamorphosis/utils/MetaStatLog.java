@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 import com.taobao.monitor.MonitorLog;
 
@@ -37,31 +36,69 @@ public final class MetaStatLog {
 
     public static volatile long lastResetTime = System.currentTimeMillis();
 
-    static class StatCounter {
-        private final AtomicLong count = new AtomicLong(0L);
-        private final AtomicLong value = new AtomicLong(0L);
+    // ÿclearRealTimeStat1StatCounterһݴжǷҪ»ȡ
+    private static volatile int generation = 0;
+
+    /**
+     * һͳļͨgetStatCounterԤȡò棬ȵ·addStatValueֱۼӣʡȥ
+     */
+    public static class StatCounter {
+        private final StripedCounter count = new StripedCounter();
+        private final StripedCounter value = new StripedCounter();
+        // ӦMonitorLogkey"*"תΪnull
+        private final String keyOne;
+        private final String keyTwo;
+        private final String keyThree;
+
+
+        StatCounter() {
+            this(null, "*", "*");
+        }
+
+
+        StatCounter(String keyOne, String keyTwo, String keyThree) {
+            this.keyOne = keyOne;
+            this.keyTwo = "*".equals(keyTwo) ? null : keyTwo;
+            this.keyThree = "*".equals(keyThree) ? null : keyThree;
+        }
 
 
         public void incrementCount() {
-            this.count.incrementAndGet();
+            this.count.increment();
         }
 
 
         public void addValue(long value) {
-            this.value.addAndGet(value);
+            this.value.add(value);
+        }
+
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+
+        public long getValue() {
+            return this.value.sum();
         }
 
 
         public synchronized void reset() {
-            this.count.set(0L);
-            this.value.set(0L);
+            this.count.reset();
+            this.value.reset();
         }
     }
 
 
+    public static int getGeneration() {
+        return generation;
+    }
+
+
     public static void clearRealTimeStat() {
         realTimeStatMap =
                 new ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, StatCounter>>>();
+        generation++;
     }
 
     public static class RealTimeStatRestTask implements Runnable {
@@ -131,8 +168,8 @@ public final class MetaStatLog {
 
 
     private static String formatOutput(StatCounter counter) {
-        double count = counter.count.get();
-        double values = counter.value.get();
+        double count = counter.getCount();
+        double values = counter.getValue();
         long duration = (System.currentTimeMillis() - lastResetTime) / 1000;
         String averageValueStr = "invalid";
         String averageCountStr = "invalid";
@@ -162,8 +199,8 @@ public final class MetaStatLog {
                 continue;
             }
             for (Map.Entry<String, StatCounter> entry2 : map2.entrySet()) {
-                statCounter.count.addAndGet(entry2.getValue().count.longValue());
-                statCounter.value.addAndGet(entry2.getValue().value.longValue());
+                statCounter.count.add(entry2.getValue().getCount());
+                statCounter.value.add(entry2.getValue().getValue());
             }
         }
 
@@ -183,8 +220,8 @@ public final class MetaStatLog {
 
         StatCounter statCounter = new StatCounter();
         for (Map.Entry<String, StatCounter> entry2 : map2.entrySet()) {
-            statCounter.count.addAndGet(entry2.getValue().count.longValue());
-            statCounter.value.addAndGet(entry2.getValue().value.longValue());
+            statCounter.count.add(entry2.getValue().getCount());
+            statCounter.value.add(entry2.getValue().getValue());
         }
 
         return formatOutput(statCounter);
@@ -258,6 +295,16 @@ public final class MetaStatLog {
 
 
     private static void processMap2(String key1, String key2, String key3, long value) {
+        StatCounter statCounter = getStatCounter(key1, key2, key3);
+        statCounter.incrementCount();
+        statCounter.addValue(value);
+    }
+
+
+    /**
+     * ȡͳӦļ򴴽صļԻaddStatValueʹ
+     */
+    public static StatCounter getStatCounter(String key1, String key2, String key3) {
         ConcurrentHashMap<String, ConcurrentHashMap<String, StatCounter>> statMap1 = realTimeStatMap.get(key1);
         if (statMap1 == null) {
             statMap1 = new ConcurrentHashMap<String, ConcurrentHashMap<String, StatCounter>>();
@@ -278,14 +325,31 @@ public final class MetaStatLog {
 
         StatCounter statCounter = statMap2.get(key3);
         if (statCounter == null) {
-            statCounter = new StatCounter();
+            statCounter = new StatCounter(key1, key2, key3);
             StatCounter oldCounter = statMap2.putIfAbsent(key3, statCounter);
             if (oldCounter != null) {
                 statCounter = oldCounter;
             }
         }
-        statCounter.incrementCount();
-        statCounter.addValue(value);
+        return statCounter;
+    }
+
+
+    /**
+     * ֱۼӵԤȡõļϣЧͬӦkeyaddStatValue2
+     */
+    public static final void addStatValue(StatCounter counter, long value) {
+        if (startRealTimeStat) {
+            counter.incrementCount();
+            counter.addValue(value);
+        }
+
+        if (counter.keyThree != null || counter.keyTwo == null) {
+            MonitorLog.addStat(counter.keyOne, counter.keyTwo, counter.keyThree, value, 1L);
+        }
+        else {
+            MonitorLog.addStatValue2(counter.keyOne, counter.keyTwo, null, value);
+        }
     }
 
 
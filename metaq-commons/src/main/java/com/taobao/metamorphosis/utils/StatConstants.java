@@ -121,4 +121,9 @@ public class StatConstants {
      */
     public static final String TX_TIME = "txExecTime";
 
+    /**
+     * ߵȴfetchԤʱͳ
+     */
+    public static final String FETCH_BUFFER_WAIT_STAT = "cli_fetch_buffer_wait";
+
 }
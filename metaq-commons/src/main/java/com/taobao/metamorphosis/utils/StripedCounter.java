@@ -0,0 +1,119 @@
+package com.taobao.metamorphosis.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * ֶμ÷ͬjdk8LongAdder
+ * <ul>
+ * <li>ûоʱֻۼbaseAtomicLongһ</li>
+ * <li>baseCASʧܺŷֶΣÿ̰߳Լprobe䵽ͬĲۣ֮һ</li>
+ * <li>sum()ۼֵĽƿգʺͳƶʺͬ</li>
+ * </ul>
+ *
+ */
+public class StripedCounter {
+    // һ64ֽڣ8long
+    private static final int PAD = 8;
+    private static final int STRIPES = stripes();
+    private static final AtomicInteger probeGenerator = new AtomicInteger();
+    private static final ThreadLocal<int[]> threadProbe = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            // ƽָɢУ֤Ϊ0Աxorshift
+            return new int[] { probeGenerator.addAndGet(0x9e3779b9) | 1 };
+        }
+    };
+
+    private final AtomicLong base = new AtomicLong();
+    private volatile AtomicLongArray cells;
+
+
+    private static int stripes() {
+        final int n = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < n) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+
+    public void add(final long x) {
+        AtomicLongArray cs = this.cells;
+        if (cs == null) {
+            final long b = this.base.get();
+            if (this.base.compareAndSet(b, b + x)) {
+                return;
+            }
+            cs = this.initCells();
+        }
+        final int[] probe = threadProbe.get();
+        final int index = ((probe[0] & STRIPES - 1) + 1) * PAD;
+        final long v = cs.get(index);
+        if (!cs.compareAndSet(index, v, v + x)) {
+            // ߳ײͬһۣһ۹´ʹ
+            int h = probe[0];
+            h ^= h << 13;
+            h ^= h >>> 17;
+            h ^= h << 5;
+            probe[0] = h;
+            cs.addAndGet(index, x);
+        }
+    }
+
+
+    public void increment() {
+        this.add(1L);
+    }
+
+
+    private synchronized AtomicLongArray initCells() {
+        AtomicLongArray cs = this.cells;
+        if (cs == null) {
+            // βһУα
+            cs = new AtomicLongArray((STRIPES + 2) * PAD);
+            this.cells = cs;
+        }
+        return cs;
+    }
+
+
+    public long sum() {
+        long sum = this.base.get();
+        final AtomicLongArray cs = this.cells;
+        if (cs != null) {
+            for (int i = 1; i <= STRIPES; i++) {
+                sum += cs.get(i * PAD);
+            }
+        }
+        return sum;
+    }
+
+
+    /**
+     * 㣬ۼʱ֤ԭ
+     */
+    public void reset() {
+        this.base.set(0L);
+        final AtomicLongArray cs = this.cells;
+        if (cs != null) {
+            for (int i = 1; i <= STRIPES; i++) {
+                cs.set(i * PAD, 0L);
+            }
+        }
+    }
+
+
+    public long longValue() {
+        return this.sum();
+    }
+
+
+    @Override
+    public String toString() {
+        return Long.toString(this.sum());
+    }
+}
@@ -0,0 +1,34 @@
+package com.taobao.metamorphosis.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+
+
+public class CommitOffsetCommandUnitTest {
+    @Test
+    public void testEncode() {
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry("test", 0, 99L, 1000L));
+        entries.add(new OffsetEntry("test2", 3, -1L, 0L));
+        final CommitOffsetCommand cmd = new CommitOffsetCommand("boyan-test", entries, -1);
+        final IoBuffer buf = cmd.encode();
+        assertEquals(0, buf.position());
+        assertEquals("commit boyan-test 28 -1\r\ntest 0 99 1000\ntest2 3 -1 0\n", new String(buf.array()));
+    }
+
+
+    @Test
+    public void testEncodeEmpty() {
+        final CommitOffsetCommand cmd = new CommitOffsetCommand("boyan-test", null, 1);
+        final IoBuffer buf = cmd.encode();
+        assertEquals("commit boyan-test 0 1\r\n", new String(buf.array()));
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.taobao.metamorphosis.network;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+
+
+public class LoadOffsetCommandUnitTest {
+    @Test
+    public void testEncode() {
+        final LoadOffsetCommand cmd = new LoadOffsetCommand("test", "boyan-test", 1, -1);
+        final IoBuffer buf = cmd.encode();
+        assertEquals(0, buf.position());
+        assertEquals("load test boyan-test 1 -1\r\n", new String(buf.array()));
+    }
+
+}
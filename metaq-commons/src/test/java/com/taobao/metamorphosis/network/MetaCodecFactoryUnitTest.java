@@ -6,11 +6,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import com.taobao.gecko.core.buffer.IoBuffer;
 import com.taobao.gecko.core.core.CodecFactory.Decoder;
 import com.taobao.metamorphosis.exception.MetaCodecException;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
 import com.taobao.metamorphosis.network.MetamorphosisWireFormatType.MetaCodecFactory;
 import com.taobao.metamorphosis.transaction.LocalTransactionId;
 import com.taobao.metamorphosis.transaction.TransactionId;
@@ -135,6 +139,42 @@ public class MetaCodecFactoryUnitTest {
     }
 
 
+    @Test
+    public void testDecodeCommitOffsetCommand() {
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry("test", 0, 99L, 1000L));
+        entries.add(new OffsetEntry("test2", 3, -1L, 0L));
+        final CommitOffsetCommand cmd = new CommitOffsetCommand("boyan", entries, 7);
+        final IoBuffer buf = cmd.encode();
+        final CommitOffsetCommand decodedCmd = (CommitOffsetCommand) this.decoder.decode(buf, null);
+        assertNotNull(decodedCmd);
+        assertEquals(cmd, decodedCmd);
+        assertFalse(buf.hasRemaining());
+    }
+
+
+    @Test
+    public void testDecodeCommitOffsetCommandNotComplete() {
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry("test", 0, 99L, 1000L));
+        final IoBuffer buf = new CommitOffsetCommand("boyan", entries, 7).encode();
+        buf.limit(buf.limit() - 3);
+        assertNull(this.decoder.decode(buf, null));
+        assertEquals(0, buf.position());
+    }
+
+
+    @Test
+    public void testDecodeLoadOffsetCommand() {
+        final LoadOffsetCommand cmd = new LoadOffsetCommand("test", "boyan", 1, -1);
+        final IoBuffer buf = cmd.encode();
+        final LoadOffsetCommand decodedCmd = (LoadOffsetCommand) this.decoder.decode(buf, null);
+        assertNotNull(decodedCmd);
+        assertEquals(cmd, decodedCmd);
+        assertFalse(buf.hasRemaining());
+    }
+
+
     @Test(expected = MetaCodecException.class)
     public void testDecodeUnknowCommand() {
         final IoBuffer buf = IoBuffer.wrap("just for test\r\n".getBytes());
@@ -0,0 +1,147 @@
+package com.taobao.metamorphosis.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+
+public class LatencyHistogramUnitTest {
+
+    @Test
+    public void testIndexFor() {
+        int last = -1;
+        for (long v = 0; v < 1000000; v++) {
+            final int index = LatencyHistogram.indexFor(v);
+            // Ͱŵ
+            assertTrue(index == last || index == last + 1);
+            assertTrue(LatencyHistogram.highestValueFor(index) >= v);
+            // 1/32
+            assertTrue(LatencyHistogram.highestValueFor(index) - v <= v / 32);
+            last = index;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexFor(LatencyHistogram.MAX_VALUE));
+        assertEquals(LatencyHistogram.MAX_VALUE,
+            LatencyHistogram.highestValueFor(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+
+    @Test
+    public void testPercentile() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10002, snapshot.getCount());
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+        this.assertAbout(5000, snapshot.getValueAtPercentile(50));
+        this.assertAbout(9900, snapshot.getValueAtPercentile(99));
+        this.assertAbout(9990, snapshot.getValueAtPercentile(99.9));
+        assertEquals(0, snapshot.getValueAtPercentile(0));
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getValueAtPercentile(100));
+    }
+
+
+    @Test
+    public void testRollInterval() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+        histogram.rollInterval();
+        assertEquals(100, histogram.getIntervalSnapshot().getCount());
+        this.assertAbout(1000, histogram.getIntervalSnapshot().getMax());
+
+        for (int i = 0; i < 10; i++) {
+            histogram.record(10);
+        }
+        histogram.rollInterval();
+        // ֻϴι֮ļ¼
+        final LatencyHistogram.Snapshot interval = histogram.getIntervalSnapshot();
+        assertEquals(10, interval.getCount());
+        assertEquals(10, interval.getMax());
+        assertEquals(10, interval.getValueAtPercentile(99));
+        assertEquals(10.0, interval.getMean(), 0.001);
+        assertEquals(110, histogram.snapshot().getCount());
+        this.assertAbout(1000, histogram.snapshot().getMax());
+
+        histogram.rollInterval();
+        assertEquals(0, histogram.getIntervalSnapshot().getCount());
+        assertEquals(0, histogram.getIntervalSnapshot().getValueAtPercentile(99));
+    }
+
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        this.testConcurrentRecord(new LatencyHistogram("test"));
+    }
+
+
+    @Test
+    public void testConcurrentRecordShared() throws Exception {
+        this.testConcurrentRecord(new LatencyHistogram("test", true));
+    }
+
+
+    @Test
+    public void testDeadThreadRecorderRetired() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(10);
+        for (int i = 0; i < 10; i++) {
+            final int value = 100 * (i + 1);
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    histogram.record(value);
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        // ˳̵߳ļ¼retiredֻʣǰ̵߳recorder
+        assertEquals(1, histogram.getRecorderCount());
+        assertEquals(11, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(5510 / 11.0, snapshot.getMean(), 0.001);
+        assertEquals(snapshot.getCount(), histogram.snapshot().getCount());
+
+        histogram.rollInterval();
+        histogram.record(20);
+        histogram.rollInterval();
+        assertEquals(1, histogram.getIntervalSnapshot().getCount());
+    }
+
+
+    private void testConcurrentRecord(final LatencyHistogram histogram) throws Exception {
+        final int threadCount = 8;
+        final int times = 100000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < times; j++) {
+                        histogram.record(j % 100);
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threadCount * times, snapshot.getCount());
+        assertEquals(99, snapshot.getMax());
+        assertEquals(49.5, snapshot.getMean(), 0.001);
+    }
+
+
+    private void assertAbout(final long expected, final long actual) {
+        assertTrue(actual + " is not about " + expected, Math.abs(actual - expected) <= expected / 32);
+    }
+}
@@ -0,0 +1,59 @@
+package com.taobao.metamorphosis.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
+
+
+public class MessageTracerUnitTest {
+
+    @After
+    public void tearDown() {
+        MessageTracer.reset();
+    }
+
+
+    @Test
+    public void testSample() {
+        final int interval = 1000;
+        int sampled = 0;
+        for (int i = 0; i < interval * 10; i++) {
+            if (MessageTracer.sample(Stage.PRODUCER_SEND)) {
+                sampled++;
+            }
+            // ׶εĵòӰ׶εĲ
+            MessageTracer.sample(Stage.CONSUMER_LISTENER);
+        }
+        assertEquals(10, sampled);
+    }
+
+
+    @Test
+    public void testRecord() {
+        assertNull(MessageTracer.getHistogram("test", Stage.BROKER_PUT));
+        MessageTracer.record("test", Stage.BROKER_PUT, 100);
+        MessageTracer.record("test", Stage.BROKER_PUT, 300);
+        MessageTracer.recordSinceMills("test", Stage.CONSUMER_FETCH, System.currentTimeMillis() - 10);
+        // Чʱ
+        MessageTracer.recordSinceMills("test", Stage.BROKER_DISPATCH, 0);
+
+        final LatencyHistogram histogram = MessageTracer.getHistogram("test", Stage.BROKER_PUT);
+        assertNotNull(histogram);
+        assertEquals(2, histogram.snapshot().getCount());
+        assertEquals(300, histogram.snapshot().getMax());
+        assertTrue(MessageTracer.getHistogram("test", Stage.CONSUMER_FETCH).snapshot().getMax() >= 10000);
+        assertNull(MessageTracer.getHistogram("test", Stage.BROKER_DISPATCH));
+        assertNull(MessageTracer.getHistogram("test", Stage.BROKER_FLUSH));
+
+        final String info = MessageTracer.getTraceInfoString();
+        assertTrue(info.startsWith("test BROKER_PUT count=2 mean=200 "));
+        assertTrue(info.contains("test CONSUMER_FETCH count=1 "));
+        assertEquals(2, info.split("\r\n").length);
+    }
+}
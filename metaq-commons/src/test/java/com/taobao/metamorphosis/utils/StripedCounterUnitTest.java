@@ -0,0 +1,58 @@
+package com.taobao.metamorphosis.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+
+public class StripedCounterUnitTest {
+
+    @Test
+    public void testAddAndReset() {
+        final StripedCounter counter = new StripedCounter();
+        assertEquals(0, counter.sum());
+        counter.increment();
+        counter.add(10);
+        counter.add(-3);
+        assertEquals(8, counter.sum());
+        assertEquals("8", counter.toString());
+        counter.reset();
+        assertEquals(0, counter.sum());
+    }
+
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        final int threadCount = 16;
+        final int times = 100000;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    }
+                    catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (int j = 0; j < times; j++) {
+                        counter.add(2);
+                    }
+                    endLatch.countDown();
+                }
+            }.start();
+        }
+        startLatch.countDown();
+        endLatch.await();
+        assertEquals(2L * threadCount * times, counter.sum());
+        counter.reset();
+        assertEquals(0, counter.sum());
+        counter.increment();
+        assertEquals(1, counter.sum());
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -11,6 +12,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.I0Itec.zkclient.ZkClient;
 
@@ -20,8 +23,6 @@ import com.taobao.gecko.service.RemotingFactory;
 import com.taobao.gecko.service.config.ClientConfig;
 import com.taobao.gecko.service.exception.NotifyRemotingException;
 import com.taobao.metamorphosis.AbstractBrokerPlugin;
-import com.taobao.metamorphosis.Message;
-import com.taobao.metamorphosis.client.consumer.MessageIterator;
 import com.taobao.metamorphosis.exception.InvalidMessageException;
 import com.taobao.metamorphosis.network.MetamorphosisWireFormatType;
 import com.taobao.metamorphosis.server.assembly.MetaMorphosisBroker;
@@ -30,6 +31,7 @@ import com.taobao.metamorphosis.server.store.FileMessageSet;
 import com.taobao.metamorphosis.server.store.MessageStore;
 import com.taobao.metamorphosis.server.store.MessageStoreManager;
 import com.taobao.metamorphosis.server.store.SegmentInfo;
+import com.taobao.metamorphosis.utils.MessageUtils;
 import com.taobao.metamorphosis.utils.MetaZookeeper;
 import com.taobao.metamorphosis.utils.ZkUtils;
 import com.taobao.metamorphosis.utils.test.ClockWatch;
@@ -44,13 +46,21 @@ import com.taobao.metamorphosis.utils.test.ClockWatch;
  */
 public class SamsaMasterBroker extends AbstractBrokerPlugin {
 
-    private static final int MAX_SIZE = 1024 * 1024 * 1024;
+    // recoverʱÿ˳ȡֽϢʱϢСȡ
+    private static final int DEFAULT_RECOVER_READ_SIZE = 4 * 1024 * 1024;
     private static final int DEFAULT_CB_THREADPOOL_SIZE = Runtime.getRuntime().availableProcessors() * 3;
     private MetaMorphosisBroker broker;
     private Properties props;
     private SamsaCommandProcessor masterProcessor;
     private RemotingClient remotingClient;
     boolean recoverOffset;
+    private int recoverReadSize = DEFAULT_RECOVER_READ_SIZE;
+
+    // recover
+    private int totalRecoverPartitions;
+    private long totalRecoverBytes;
+    private final AtomicInteger recoveredPartitions = new AtomicInteger(0);
+    private final AtomicLong scannedBytes = new AtomicLong(0);
 
     /**
      * ҪrecoveroffsetϢ
@@ -102,19 +112,6 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
 
     }
 
-    static class DecodeMessage {
-        public final long msgId; // Ϣid
-        public final long offset; // Ϣľƫ
-
-
-        public DecodeMessage(final long msgId, final long offset) {
-            super();
-            this.msgId = msgId;
-            this.offset = offset;
-        }
-
-    }
-
     /**
      * Ҫrecoverķ
      * 
@@ -125,12 +122,20 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
     static class RecoverPartition implements Comparable<RecoverPartition> {
         private final String topic;
         private final int partition;
+        // ݵֽ̼߳
+        final long size;
 
 
         public RecoverPartition(final String topic, final int partition) {
+            this(topic, partition, 0);
+        }
+
+
+        public RecoverPartition(final String topic, final int partition, final long size) {
             super();
             this.topic = topic;
             this.partition = partition;
+            this.size = size;
         }
 
 
@@ -155,25 +160,37 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
 
 
     /**
-     * ȵظfactorӻַ
-     * 
+     * շַֽУӴСηǰС̣߳ʹ߳ɨӽ
+     *
      * @param list
      * @param factor
      * @return
      */
-    static List<List<RecoverPartition>> fork(final List<RecoverPartition> list, final int factor) {
-        final int nPartsPerFork = list.size() / factor;
-        final int nForksWithExtraPart = list.size() % factor;
+    static List<List<RecoverPartition>> forkBySize(final List<RecoverPartition> list, final int factor) {
+        final List<RecoverPartition> sorted = new ArrayList<RecoverPartition>(list);
+        Collections.sort(sorted, new Comparator<RecoverPartition>() {
+            @Override
+            public int compare(final RecoverPartition o1, final RecoverPartition o2) {
+                if (o1.size == o2.size) {
+                    return o1.compareTo(o2);
+                }
+                return o1.size > o2.size ? -1 : 1;
+            }
+        });
         final List<List<RecoverPartition>> rt = new ArrayList<List<RecoverPartition>>();
-        for (int forkPos = 0; forkPos < factor; forkPos++) {
-            final int startPart = nPartsPerFork * forkPos + Math.min(forkPos, nForksWithExtraPart);
-            final int nParts = nPartsPerFork + (forkPos + 1 > nForksWithExtraPart ? 0 : 1);
-            final List<RecoverPartition> forkList = new ArrayList<RecoverPartition>();
-            for (int i = startPart; i < startPart + nParts; i++) {
-                final RecoverPartition partition = list.get(i);
-                forkList.add(partition);
+        final long[] loads = new long[factor];
+        for (int i = 0; i < factor; i++) {
+            rt.add(new ArrayList<RecoverPartition>());
+        }
+        for (final RecoverPartition partition : sorted) {
+            int min = 0;
+            for (int i = 1; i < factor; i++) {
+                if (loads[i] < loads[min]) {
+                    min = i;
+                }
             }
-            rt.add(forkList);
+            rt.get(min).add(partition);
+            loads[min] += partition.size;
         }
         return rt;
     }
@@ -205,9 +222,19 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
         for (final String topic : topics) {
             final int partitions = this.broker.getStoreManager().getNumPartitions(topic);
             for (int partition = 0; partition < partitions; partition++) {
-                allRecoverParts.add(new RecoverPartition(topic, partition));
+                final MessageStore store = storeManager.getMessageStore(topic, partition);
+                final long size = store != null ? store.getSizeInBytes() : 0;
+                allRecoverParts.add(new RecoverPartition(topic, partition, size));
+                this.totalRecoverBytes += size;
             }
         }
+        this.totalRecoverPartitions = allRecoverParts.size();
+        this.recoveredPartitions.set(0);
+        this.scannedBytes.set(0);
+        this.recoverReadSize =
+                Integer.parseInt(this.props.getProperty("recoverReadSize", String.valueOf(DEFAULT_RECOVER_READ_SIZE)));
+        log.info("Start to recover offset for " + this.totalRecoverPartitions + " partitions, total "
+                + this.totalRecoverBytes + " bytes");
         // Ƿrecover
         final boolean parallelRecover = Boolean.valueOf(this.props.getProperty("recoverParallel", "true"));
         // ߳
@@ -249,7 +276,7 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
             final String consumersPath, final int brokerId, final List<String> consumers,
             final List<RecoverPartition> allRecoverParts, final int parallelHint) {
         log.info("Start to recover offset with " + parallelHint + " threads in parallel");
-        final List<List<RecoverPartition>> forks = this.fork(allRecoverParts, parallelHint);
+        final List<List<RecoverPartition>> forks = forkBySize(allRecoverParts, parallelHint);
         assert forks.size() == parallelHint;
         final ClockWatch watch = new ClockWatch();
         final CyclicBarrier barrier =
@@ -309,6 +336,7 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
             final List<RecoverPartition> recoverParts) throws IOException {
         // topic,partition,consumer
         for (final RecoverPartition recoverPartition : recoverParts) {
+            final long start = System.currentTimeMillis();
             try {
                 final MessageStore store =
                         storeManager.getOrCreateMessageStore(recoverPartition.topic, recoverPartition.partition);
@@ -330,9 +358,11 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
                 Collections.reverse(segmentInfos);
                 // recoverɹoffsetб
                 final List<OffsetInfo> recoveredOffsetInfos = new ArrayList<SamsaMasterBroker.OffsetInfo>();
-                this.recoverSegments(recoverPartition, store, segmentInfos, offsetInfos, recoveredOffsetInfos);
+                final long scanned =
+                        this.recoverSegments(recoverPartition, store, segmentInfos, offsetInfos, recoveredOffsetInfos);
                 // µzookeeper
                 this.update2zk(zkClient, offsetInfos, recoveredOffsetInfos);
+                this.logProgress(recoverPartition, scanned, recoveredOffsetInfos.size(), start);
             }
             catch (final IOException e) {
                 log.error("Unexpected IOException occured when recovering partition=" + recoverPartition);
@@ -351,9 +381,9 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
             final String offsetPath =
                     consumersPath + "/" + consumer + "/offsets/" + recoverPartition.topic + "/" + brokerId + "-"
                             + recoverPartition.partition;
-            // offsetPath
-            if (ZkUtils.pathExists(zkClient, offsetPath)) {
-                final String value = ZkUtils.readData(zkClient, offsetPath);
+            // offsetPathʱnullһζȡzk
+            final String value = ZkUtils.readDataMaybeNull(zkClient, offsetPath);
+            if (value != null) {
                 if (StringUtils.isBlank(value)) {
                     continue;
                 }
@@ -373,16 +403,29 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
     }
 
 
-    private void recoverSegments(final RecoverPartition recoverPartition, final MessageStore store,
+    private long recoverSegments(final RecoverPartition recoverPartition, final MessageStore store,
             final List<SegmentInfo> segmentInfos, final TreeMap<Long, List<OffsetInfo>> offsetInfos,
             final List<OffsetInfo> recoveredOffsetInfos) throws IOException {
+        long scanned = 0;
         for (final SegmentInfo segInfo : segmentInfos) {
             // ûҪƫoffsetˣж
             if (offsetInfos.isEmpty()) {
                 break;
             }
-            this.recoverSegment(recoverPartition.topic, store, offsetInfos, recoveredOffsetInfos, segInfo);
+            scanned += this.recoverSegment(store, offsetInfos, recoveredOffsetInfos, segInfo);
         }
+        return scanned;
+    }
+
+
+    private void logProgress(final RecoverPartition recoverPartition, final long scanned, final int recovered,
+            final long start) {
+        final int partitions = this.recoveredPartitions.incrementAndGet();
+        final long bytes = this.scannedBytes.addAndGet(scanned);
+        log.info("Recovered partition " + recoverPartition + ": scanned " + scanned + "/" + recoverPartition.size
+                + " bytes, " + recovered + " offsets recovered in " + (System.currentTimeMillis() - start)
+                + " ms. Progress: " + partitions + "/" + this.totalRecoverPartitions + " partitions, " + bytes + "/"
+                + this.totalRecoverBytes + " bytes scanned");
     }
 
 
@@ -433,9 +476,13 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
     }
 
 
-    private void recoverSegment(final String topic, final MessageStore store,
-            final TreeMap<Long, List<OffsetInfo>> offsetInfos, final List<OffsetInfo> recoveredOffsetInfos,
-            final SegmentInfo segInfo) throws IOException {
+    /**
+     * recoverReadSize˳ȡsegmentֻϢͷĳȺidϢ
+     *
+     * @return ɨֽ
+     */
+    private long recoverSegment(final MessageStore store, final TreeMap<Long, List<OffsetInfo>> offsetInfos,
+            final List<OffsetInfo> recoveredOffsetInfos, final SegmentInfo segInfo) throws IOException {
         final long minOffset = segInfo.startOffset;
         final long size = segInfo.size;
         final long maxOffset = minOffset + size;
@@ -443,73 +490,92 @@ public class SamsaMasterBroker extends AbstractBrokerPlugin {
         FileMessageSet msgSet = null;
         // segmentƫoffset
         final Set<OffsetInfo> segRecoverOffsetInfos = new HashSet<SamsaMasterBroker.OffsetInfo>();
+        // segmentڸ
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(this.recoverReadSize, size));
         // ǰļ
-        while (startOffset < maxOffset && (msgSet = (FileMessageSet) store.slice(startOffset, MAX_SIZE)) != null) {
-            final int sizeInBytes = (int) msgSet.getSizeInBytes();
-            final ByteBuffer buffer = ByteBuffer.allocate(sizeInBytes);
+        while (startOffset < maxOffset
+                && (msgSet = (FileMessageSet) store.slice(startOffset, buffer.capacity())) != null) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), msgSet.getSizeInBytes()));
             msgSet.read(buffer);
-            final MessageIterator it = new MessageIterator(topic, buffer.array());
-            final List<DecodeMessage> msgList = new ArrayList<DecodeMessage>();
+            final byte[] data = buffer.array();
+            final int limit = buffer.position();
             // Ϣ
-            long msgOffset = 0;
-            while (it.hasNext()) {
+            int pos = 0;
+            boolean corrupted = false;
+            while (limit - pos >= MessageUtils.HEADER_LEN) {
+                final int msgLen = MessageUtils.getInt(pos, data);
+                if (msgLen < 0 || msgLen > size) {
+                    corrupted = true;
+                    break;
+                }
+                if (limit - pos - MessageUtils.HEADER_LEN < msgLen) {
+                    break;
+                }
+                final int checksum = MessageUtils.getInt(pos + 4, data);
+                final long msgId = ByteBuffer.wrap(data, pos + 8, 8).getLong();
+                final int next = pos + MessageUtils.HEADER_LEN + msgLen;
                 try {
-                    final Message msg = it.next();
-                    msgList.add(new DecodeMessage(msg.getId(), startOffset + it.getOffset()));
-                    msgOffset = it.getOffset();
+                    MessageUtils.vailidateMessage(pos + MessageUtils.HEADER_LEN, msgLen, checksum, data);
+                    // recoverϢoffsetΪϢĽλ
+                    this.recoverOffset(offsetInfos, segRecoverOffsetInfos, msgId, startOffset + next);
                 }
                 catch (final InvalidMessageException e) {
                     // ϲԤһǴӡ־
-                    log.error("Message was corrupted,partition=" + store.getDescription() + ",offset=" + msgOffset);
+                    log.error("Message was corrupted,partition=" + store.getDescription() + ",offset="
+                            + (startOffset + pos));
                 }
+                pos = next;
+            }
+            if (corrupted) {
+                log.error("Invalid message length,partition=" + store.getDescription() + ",offset="
+                        + (startOffset + pos));
+                startOffset += pos;
+                break;
+            }
+            if (pos == 0) {
+                if (limit < buffer.capacity()) {
+                    // ļĩβϢ
+                    break;
+                }
+                // ϢϢС¶ȡ
+                buffer =
+                        ByteBuffer.allocate(MessageUtils.HEADER_LEN
+                            + (limit < MessageUtils.HEADER_LEN ? 0 : MessageUtils.getInt(0, data)));
+                continue;
             }
-            // recoverһϢ
-            this.recoverOffset(offsetInfos, segRecoverOffsetInfos, msgList);
             // ǰƶstartOffset
-            startOffset = startOffset + it.getOffset();
+            startOffset += pos;
         }
 
         // Ƴsegmentܹƫoffset
         for (final OffsetInfo info : segRecoverOffsetInfos) {
             offsetInfos.remove(info.oldMsgId);
         }
-        // final Iterator<Entry<Long, List<OffsetInfo>>> it =
-        // offsetInfos.entrySet().iterator();
-        // while (it.hasNext()) {
-        // final Entry<Long, List<OffsetInfo>> entry = it.next();
-        // final Long msgId = entry.getKey();
-        // final List<OffsetInfo> value = entry.getValue();
-        // if (!segRecoverOffsetInfos.contains(value.get(0))) {
-        // it.remove();
-        // }
-        // }
         // ӵϣиµzk
         recoveredOffsetInfos.addAll(segRecoverOffsetInfos);
+        return startOffset - minOffset;
     }
 
 
     private void recoverOffset(final TreeMap<Long, List<OffsetInfo>> offsetInfos,
-            final Set<OffsetInfo> segRecoverOffsetInfos, final List<DecodeMessage> msgList) {
-
-        for (final DecodeMessage decodeMsg : msgList) {
-            // شڻߵڵǰmessageIdӼϣҪƫ,̻ڱsegment
-            final SortedMap<Long, List<OffsetInfo>> subMap = offsetInfos.tailMap(decodeMsg.msgId);
-            // Ӽϵoffset;ƫ
-            if (!subMap.isEmpty()) {
-                for (final List<OffsetInfo> offsetInfoList : subMap.values()) {
-                    for (final OffsetInfo offsetInfo : offsetInfoList) {
-                        if (offsetInfo.offset != decodeMsg.offset) {
-                            // ƫoffsetmsgId
-                            offsetInfo.offset = decodeMsg.offset;
-                            offsetInfo.msgId = decodeMsg.msgId;
-                            // ޸ļ
-                            segRecoverOffsetInfos.add(offsetInfo);
-                        }
+            final Set<OffsetInfo> segRecoverOffsetInfos, final long msgId, final long offset) {
+        // شڻߵڵǰmessageIdӼϣҪƫ,̻ڱsegment
+        final SortedMap<Long, List<OffsetInfo>> subMap = offsetInfos.tailMap(msgId);
+        // Ӽϵoffset;ƫ
+        if (!subMap.isEmpty()) {
+            for (final List<OffsetInfo> offsetInfoList : subMap.values()) {
+                for (final OffsetInfo offsetInfo : offsetInfoList) {
+                    if (offsetInfo.offset != offset) {
+                        // ƫoffsetmsgId
+                        offsetInfo.offset = offset;
+                        offsetInfo.msgId = msgId;
+                        // ޸ļ
+                        segRecoverOffsetInfos.add(offsetInfo);
                     }
                 }
             }
         }
-
     }
 
 
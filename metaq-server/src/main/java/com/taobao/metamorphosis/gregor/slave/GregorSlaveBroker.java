@@ -1,7 +1,6 @@
 package com.taobao.metamorphosis.gregor.slave;
 
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
 
 import com.taobao.metamorphosis.AbstractBrokerPlugin;
 import com.taobao.metamorphosis.network.SyncCommand;
@@ -18,7 +17,7 @@ import com.taobao.metamorphosis.utils.NamedThreadFactory;
  * 
  */
 public class GregorSlaveBroker extends AbstractBrokerPlugin {
-    OrderedThreadPoolExecutor orderedPutExecutor;
+    ShardedOrderedExecutor orderedPutExecutor;
 
 
     @Override
@@ -42,8 +41,8 @@ public class GregorSlaveBroker extends AbstractBrokerPlugin {
         // slaveעᵽzk,ǿ
         metaMorphosisBroker.getBrokerZooKeeper().getZkConfig().zkEnable = false;
         this.orderedPutExecutor =
-                new OrderedThreadPoolExecutor(metaConfig.getPutProcessThreadCount(),
-                    metaConfig.getPutProcessThreadCount(), 60, TimeUnit.SECONDS, new NamedThreadFactory("putProcessor"));
+                new ShardedOrderedExecutor(metaConfig.getPutProcessThreadCount(), new NamedThreadFactory(
+                    "putProcessor"));
         final GregorCommandProcessor processor =
                 new GregorCommandProcessor(metaMorphosisBroker.getStoreManager(),
                     metaMorphosisBroker.getExecutorsManager(), metaMorphosisBroker.getStatsManager(),
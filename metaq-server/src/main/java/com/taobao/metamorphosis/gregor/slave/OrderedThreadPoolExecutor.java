@@ -47,8 +47,9 @@ import com.taobao.gecko.service.Connection;
  * 
  * @author boyan
  * @Date 2011-4-27
- * 
+ * @deprecated slavesyncѾ{@link ShardedOrderedExecutor}
  */
+@Deprecated
 public class OrderedThreadPoolExecutor extends ThreadPoolExecutor {
     /** A logger for this class (commented as it breaks MDCFlter tests) */
     static Log LOGGER = LogFactory.getLog(OrderedThreadPoolExecutor.class);
@@ -0,0 +1,230 @@
+package com.taobao.metamorphosis.gregor.slave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.service.Connection;
+
+
+/**
+ * keyƬִOrderedThreadPoolExecutor
+ * <ul>
+ * <li>ÿ̶߳ռһĶߵ߶Уͬһkey䵽ͬһ̣߳˰ύ˳ִ</li>
+ * <li>ύֻҪһӣ߳̿ʱҪunparkûйӶкͬ</li>
+ * <li>ֱRunnableύҪװIoEventҲҪϲ</li>
+ * </ul>
+ * ͬkey֮䲻֤˳һͬһƬϵkey
+ *
+ */
+public class ShardedOrderedExecutor {
+    static final Log log = LogFactory.getLog(ShardedOrderedExecutor.class);
+
+    private final Worker[] workers;
+    private volatile boolean shutdown;
+
+
+    public ShardedOrderedExecutor(final int nThreads, final ThreadFactory threadFactory) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException("nThreads: " + nThreads);
+        }
+        this.workers = new Worker[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            this.workers[i] = new Worker();
+        }
+        for (final Worker worker : this.workers) {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+
+    /**
+     * ĳķƬkeyĳϵtopic-partition
+     *
+     * @param conn
+     * @param topic
+     * @param partition
+     * @return
+     */
+    public static int shardKey(final Connection conn, final String topic, final int partition) {
+        return (System.identityHashCode(conn) * 31 + topic.hashCode()) * 31 + partition;
+    }
+
+
+    /**
+     * ύͬkeyύ˳ִ
+     *
+     * @param key
+     * @param task
+     */
+    public void execute(final int key, final Runnable task) {
+        if (this.shutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
+        final Worker worker = this.workers[this.indexFor(key)];
+        worker.offer(task);
+        // shutdownʱ߳̿Ѿ˳ڶеܾѾȡߵĻִ
+        if (this.shutdown && worker.tasks.remove(task)) {
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
+    }
+
+
+    int indexFor(final int key) {
+        // ɢλkey
+        final int h = key ^ key >>> 16;
+        return (h & Integer.MAX_VALUE) % this.workers.length;
+    }
+
+
+    /**
+     * ٽѾύִɺ߳˳
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        for (final Worker worker : this.workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+
+    /**
+     * ٽ񣬷ػûִе
+     *
+     * @return
+     */
+    public List<Runnable> shutdownNow() {
+        this.shutdown();
+        final List<Runnable> rt = new ArrayList<Runnable>();
+        for (final Worker worker : this.workers) {
+            Runnable task;
+            while ((task = worker.tasks.poll()) != null) {
+                rt.add(task);
+            }
+        }
+        return rt;
+    }
+
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        for (final Worker worker : this.workers) {
+            final long waitTime = deadline - System.currentTimeMillis();
+            if (waitTime <= 0) {
+                break;
+            }
+            worker.thread.join(waitTime);
+        }
+        return this.isTerminated();
+    }
+
+
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+
+    public boolean isTerminated() {
+        if (!this.shutdown) {
+            return false;
+        }
+        for (final Worker worker : this.workers) {
+            if (worker.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public int getPoolSize() {
+        return this.workers.length;
+    }
+
+
+    public long getCompletedTaskCount() {
+        long rt = 0;
+        for (final Worker worker : this.workers) {
+            rt += worker.completedTaskCount;
+        }
+        return rt;
+    }
+
+
+    /**
+     * ȴִеҪУڼ
+     *
+     * @return
+     */
+    public int getPendingTaskCount() {
+        int rt = 0;
+        for (final Worker worker : this.workers) {
+            rt += worker.tasks.size();
+        }
+        return rt;
+    }
+
+    private class Worker implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private volatile boolean waiting;
+        private volatile long completedTaskCount;
+        private Thread thread;
+
+
+        void offer(final Runnable task) {
+            this.tasks.offer(task);
+            // ֮ټ飬빤߳waitingټϣᶪʧ
+            if (this.waiting) {
+                LockSupport.unpark(this.thread);
+            }
+        }
+
+
+        @Override
+        public void run() {
+            for (;;) {
+                final Runnable task = this.tasks.poll();
+                if (task != null) {
+                    this.runTask(task);
+                    continue;
+                }
+                if (ShardedOrderedExecutor.this.shutdown) {
+                    // shutdown֮ȡһУshutdown֮ǰӵ񶼻ִУ֮ӵexecuteܾ
+                    Runnable left;
+                    while ((left = this.tasks.poll()) != null) {
+                        this.runTask(left);
+                    }
+                    break;
+                }
+                this.waiting = true;
+                if (this.tasks.isEmpty() && !ShardedOrderedExecutor.this.shutdown) {
+                    LockSupport.park(this);
+                }
+                this.waiting = false;
+            }
+        }
+
+
+        private void runTask(final Runnable task) {
+            try {
+                task.run();
+            }
+            catch (final Throwable e) {
+                // ̺߳ͷƬ󶨣Ϊ쳣˳
+                log.error("Execute task failed", e);
+            }
+            finally {
+                this.completedTaskCount++;
+            }
+        }
+    }
+}
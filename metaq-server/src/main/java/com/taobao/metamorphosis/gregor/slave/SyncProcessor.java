@@ -30,10 +30,10 @@ public class SyncProcessor implements RequestProcessor<SyncCommand> {
     static final Log log = LogFactory.getLog(PutProcessor.class);
 
     private final SyncCommandProcessor processor;
-    private final OrderedThreadPoolExecutor executor;
+    private final ShardedOrderedExecutor executor;
 
 
-    public SyncProcessor(final SyncCommandProcessor processor, final OrderedThreadPoolExecutor executor) {
+    public SyncProcessor(final SyncCommandProcessor processor, final ShardedOrderedExecutor executor) {
         super();
         this.processor = processor;
         this.executor = executor;
@@ -48,7 +48,9 @@ public class SyncProcessor implements RequestProcessor<SyncCommand> {
 
     @Override
     public void handleRequest(final SyncCommand request, final Connection conn) {
-        this.executor.execute(new IoEvent() {
+        // ͬһͬһϢ˳д
+        final int key = ShardedOrderedExecutor.shardKey(conn, request.getTopic(), request.getPartition());
+        this.executor.execute(key, new Runnable() {
 
             @Override
             public void run() {
@@ -68,12 +70,6 @@ public class SyncProcessor implements RequestProcessor<SyncCommand> {
                 }
 
             }
-
-
-            @Override
-            public IoCatalog getIoCatalog() {
-                return new IoCatalog(conn, request.getTopic() + "-" + request.getPartition());
-            }
         });
 
     }
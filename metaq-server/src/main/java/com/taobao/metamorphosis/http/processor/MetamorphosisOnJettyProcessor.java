@@ -24,22 +24,25 @@ import com.taobao.metamorphosis.network.PutCommand;
 import com.taobao.metamorphosis.server.CommandProcessor;
 import com.taobao.metamorphosis.server.assembly.MetaMorphosisBroker;
 import com.taobao.metamorphosis.server.network.PutCallback;
+import com.taobao.metamorphosis.server.stats.BrokerMetrics;
 
 
 /**
  * 
  * Use Jetty as http server and handle request of get message/put message/get
- * offset
+ * offset/metrics
  * 
  */
 public class MetamorphosisOnJettyProcessor extends AbstractHandler {
     private static final Log logger = LogFactory.getLog(MetamorphosisOnJettyProcessor.class);
     private final CommandProcessor commandProcessor;
+    private final BrokerMetrics brokerMetrics;
 
 
     public MetamorphosisOnJettyProcessor(final MetaMorphosisBroker metaMorphosisBroker) {
         super();
         this.commandProcessor = metaMorphosisBroker.getBrokerProcessor();
+        this.brokerMetrics = metaMorphosisBroker.getStatsManager().getBrokerMetrics();
     }
 
 
@@ -62,6 +65,9 @@ public class MetamorphosisOnJettyProcessor extends AbstractHandler {
             case 'o':
                 this.getOffset(jettyRequest, response);
                 break;
+            case 'm':
+                this.getMetrics(response);
+                break;
             default:
                 response.setStatus(HttpStatus.BadRequest);
                 response.getWriter().write("Invalid request");
@@ -92,6 +98,23 @@ public class MetamorphosisOnJettyProcessor extends AbstractHandler {
     }
 
 
+    /**
+     * Export broker metrics in prometheus text format, e.g. GET /metrics
+     */
+    private void getMetrics(final HttpServletResponse response) throws IOException {
+        try {
+            this.doResponseHeaders(response, "text/plain; version=0.0.4; charset=utf-8");
+            response.setStatus(HttpStatus.Success);
+            this.brokerMetrics.write(response.getWriter());
+        }
+        catch (final Throwable e) {
+            logger.error("Export metrics failed", e);
+            response.setStatus(HttpStatus.InternalServerError);
+            response.getWriter().write(String.valueOf(e.getMessage()));
+        }
+    }
+
+
     private void putMessage(final Request jettyRequest, final HttpServletResponse response) throws IOException {
         final String topic = jettyRequest.getParameter("topic");
         try {
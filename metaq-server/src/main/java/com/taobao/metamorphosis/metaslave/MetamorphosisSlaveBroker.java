@@ -46,6 +46,10 @@ public class MetamorphosisSlaveBroker extends AbstractBrokerPlugin {
             broker.getMetaConfig().setSlaveMaxDelayInMills(
                 Integer.parseInt(props.getProperty("slaveMaxDelayInMills")));
         }
+        if (StringUtils.isNotBlank(props.getProperty("slaveReplicationWindow"))) {
+            broker.getMetaConfig().setSlaveReplicationWindow(
+                Integer.parseInt(props.getProperty("slaveReplicationWindow")));
+        }
 
         // BrokerIdPathԱעᵽslave·
         broker.getBrokerZooKeeper().resetBrokerIdPath();
@@ -3,14 +3,19 @@
  */
 package com.taobao.metamorphosis.metaslave;
 
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import com.taobao.gecko.core.command.ResponseCommand;
 import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.gecko.service.Connection;
 import com.taobao.gecko.service.RemotingFactory;
+import com.taobao.gecko.service.SingleRequestCallBackListener;
 import com.taobao.gecko.service.config.ClientConfig;
 import com.taobao.gecko.service.exception.NotifyRemotingException;
 import com.taobao.metamorphosis.client.RemotingClientWrapper;
@@ -19,13 +24,15 @@ import com.taobao.metamorphosis.network.DataCommand;
 import com.taobao.metamorphosis.network.GetCommand;
 import com.taobao.metamorphosis.network.MetamorphosisWireFormatType;
 import com.taobao.metamorphosis.server.assembly.MetaMorphosisBroker;
+import com.taobao.metamorphosis.server.assembly.SlaveReplicationManager;
 import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.server.utils.MetaMBeanServer;
 import com.taobao.metaq.commons.MetaMessageDecoder;
 import com.taobao.metaq.commons.ServiceThread;
 import com.taobao.metaq.store.MetaStore;
 
 
-public class PullMessageController {
+public class PullMessageController implements PullMessageControllerMBean {
     public final static String SlaveLogName = "MetaSlave";
     private final static Logger log = Logger.getLogger(SlaveLogName);
 
@@ -59,11 +66,36 @@ public class PullMessageController {
         this.pullService = new PullService();
     }
 
+    static class PullResponse {
+        final long offset;
+        final byte[] data;
+        final long sendTimestamp;
+
+
+        PullResponse(final long offset, final byte[] data, final long sendTimestamp) {
+            super();
+            this.offset = offset;
+            this.data = data;
+            this.sendTimestamp = sendTimestamp;
+        }
+    }
+
+    /**
+     * ̡߳masterлѹʱslaveReplicationWindowȡ󣬷صݰoffset˳׷ӵУ
+     * masterslaveReplicationHoldInMillsʱûݵmasterϢд
+     */
     class PullService extends ServiceThread {
         private final static int PullMaxSize = 1024 * 1024;
         private final static int PrintInterval = 1000 * 10;
+        private final static long RequestTimeoutInMills = 10 * 1000;
         private volatile long pullFromOffset = 0;
         private volatile long lastPrintTimestamp = System.currentTimeMillis();
+        private final LinkedBlockingQueue<PullResponse> responses = new LinkedBlockingQueue<PullResponse>();
+        private volatile int inflightRequestCount;
+        private final AtomicLong replicatedBytes = new AtomicLong(0);
+        private volatile long lastAppendTimestamp;
+        // Ѿ֪ͨmaster׷offset
+        private long ackedOffset = -1;
 
 
         private byte[] invokeToMaster() {
@@ -75,8 +107,8 @@ public class PullMessageController {
             final String serverUrl = PullMessageController.this.masterServerUrl;
             try {
                 ResponseCommand response =
-                        PullMessageController.this.remotingClient.invokeToGroup(serverUrl, getCmd, 10 * 1000,
-                            TimeUnit.MILLISECONDS);
+                        PullMessageController.this.remotingClient.invokeToGroup(serverUrl, getCmd,
+                            RequestTimeoutInMills, TimeUnit.MILLISECONDS);
 
                 if (response instanceof DataCommand) {
                     final DataCommand dataCmd = (DataCommand) response;
@@ -84,11 +116,7 @@ public class PullMessageController {
                     return data;
                 }
                 else {
-                    if ((System.currentTimeMillis() - this.lastPrintTimestamp) > PrintInterval) {
-                        this.lastPrintTimestamp = System.currentTimeMillis();
-                        PullMessageController.log.info("slave pull from master, but no data "
-                                + this.pullFromOffset);
-                    }
+                    this.printNoData(this.pullFromOffset);
                 }
             }
             catch (InterruptedException e) {
@@ -105,27 +133,161 @@ public class PullMessageController {
         }
 
 
-        private void doPull() {
-            for (byte[] data = this.invokeToMaster(); data != null && !this.isStoped(); data =
-                    this.invokeToMaster()) {
-                long startAppendOffset = this.pullFromOffset;
-                // һ
-                if (0 == this.pullFromOffset) {
-                    java.nio.ByteBuffer byteBuffer = java.nio.ByteBuffer.wrap(data);
-                    byteBuffer.flip();
-                    byteBuffer.limit(data.length);
-                    startAppendOffset = byteBuffer.getLong(MetaMessageDecoder.MessagePhysicOffsetPostion);
-                    PullMessageController.log.info("slave pull from offset fixed " + startAppendOffset);
-                }
+        private void printNoData(final long offset) {
+            if ((System.currentTimeMillis() - this.lastPrintTimestamp) > PrintInterval) {
+                this.lastPrintTimestamp = System.currentTimeMillis();
+                PullMessageController.log.info("slave pull from master, but no data " + offset);
+            }
+        }
+
+
+        /**
+         * һȡʱӷصȷʼoffset
+         */
+        private boolean fixStartOffset() {
+            final byte[] data = this.invokeToMaster();
+            if (data == null) {
+                return false;
+            }
+            java.nio.ByteBuffer byteBuffer = java.nio.ByteBuffer.wrap(data);
+            byteBuffer.flip();
+            byteBuffer.limit(data.length);
+            final long startAppendOffset = byteBuffer.getLong(MetaMessageDecoder.MessagePhysicOffsetPostion);
+            PullMessageController.log.info("slave pull from offset fixed " + startAppendOffset);
+            return this.append(startAppendOffset, data);
+        }
+
 
-                MetaStore metaStore = PullMessageController.this.broker.getMetaStoreMaster();
-                boolean appendResult = metaStore.appendToPhyQueue(startAppendOffset, data);
-                if (appendResult) {
-                    this.pullFromOffset = startAppendOffset + data.length;
+        private boolean append(final long startAppendOffset, final byte[] data) {
+            MetaStore metaStore = PullMessageController.this.broker.getMetaStoreMaster();
+            boolean appendResult = metaStore.appendToPhyQueue(startAppendOffset, data);
+            if (appendResult) {
+                this.pullFromOffset = startAppendOffset + data.length;
+                this.replicatedBytes.addAndGet(data.length);
+                this.lastAppendTimestamp = System.currentTimeMillis();
+            }
+            else {
+                PullMessageController.log.fatal("slave append data error");
+            }
+            return appendResult;
+        }
+
+
+        /**
+         * ȡoffset׷offsetʱͬʱΪmasterȷϣΪԤȡ
+         */
+        private void sendToMaster(final long offset, final boolean prefetch) {
+            MetaConfig metaConfig = PullMessageController.this.broker.getMetaConfig();
+            final GetCommand getCmd =
+                    new GetCommand(prefetch ? SlaveReplicationManager.PREFETCH_TOPIC : "slave",
+                        metaConfig.getSlaveGroup(), 0, offset, PullMaxSize, OpaqueGenerator.getNextOpaque());
+            final long sendTimestamp = System.currentTimeMillis();
+            try {
+                PullMessageController.this.remotingClient.sendToGroup(
+                    PullMessageController.this.masterServerUrl, getCmd, new SingleRequestCallBackListener() {
+
+                        @Override
+                        public void onResponse(final ResponseCommand response, final Connection conn) {
+                            final byte[] data =
+                                    response instanceof DataCommand ? ((DataCommand) response).getData() : null;
+                            PullService.this.responses.offer(new PullResponse(offset, data, sendTimestamp));
+                        }
+
+
+                        @Override
+                        public void onException(final Exception e) {
+                            PullMessageController.log.error("PullService.sendToMaster exception", e);
+                            PullService.this.responses.offer(new PullResponse(offset, null, sendTimestamp));
+                        }
+
+
+                        @Override
+                        public ThreadPoolExecutor getExecutor() {
+                            return null;
+                        }
+                    }, RequestTimeoutInMills, TimeUnit.MILLISECONDS);
+            }
+            catch (NotifyRemotingException e) {
+                PullMessageController.log.error("PullService.sendToMaster exception", e);
+                this.responses.offer(new PullResponse(offset, null, sendTimestamp));
+            }
+        }
+
+
+        /**
+         * ׷offsetѾ;Ԥȡʱһȡݵȷϣmasterͬʹ
+         */
+        private void sendAckToMaster(final long offset) {
+            MetaConfig metaConfig = PullMessageController.this.broker.getMetaConfig();
+            final GetCommand getCmd =
+                    new GetCommand("slave", metaConfig.getSlaveGroup(), 0, offset, 0,
+                        OpaqueGenerator.getNextOpaque());
+            try {
+                PullMessageController.this.remotingClient.sendToGroup(
+                    PullMessageController.this.masterServerUrl, getCmd, new SingleRequestCallBackListener() {
+
+                        @Override
+                        public void onResponse(final ResponseCommand response, final Connection conn) {
+                        }
+
+
+                        @Override
+                        public void onException(final Exception e) {
+                            PullMessageController.log.error("PullService.sendAckToMaster exception", e);
+                        }
+
+
+                        @Override
+                        public ThreadPoolExecutor getExecutor() {
+                            return null;
+                        }
+                    }, RequestTimeoutInMills, TimeUnit.MILLISECONDS);
+            }
+            catch (NotifyRemotingException e) {
+                PullMessageController.log.error("PullService.sendAckToMaster exception", e);
+            }
+        }
+
+
+        private void doPull(final ReplicationWindow window, final long maxPullInterval) throws InterruptedException {
+            final long appendOffset = window.getAppendOffset();
+            for (final Long offset : window.nextRequests()) {
+                final boolean prefetch = offset != appendOffset;
+                this.sendToMaster(offset, prefetch);
+                if (!prefetch) {
+                    this.ackedOffset = appendOffset;
+                }
+            }
+            if (this.ackedOffset < appendOffset) {
+                this.sendAckToMaster(appendOffset);
+                this.ackedOffset = appendOffset;
+            }
+            this.inflightRequestCount = window.getInflightCount();
+            final PullResponse response = this.responses.poll(maxPullInterval, TimeUnit.MILLISECONDS);
+            if (response == null) {
+                return;
+            }
+            window.onResponse(response.offset, response.data);
+            for (byte[] data = window.nextAppendable(); data != null && !this.isStoped(); data =
+                    window.nextAppendable()) {
+                if (this.append(window.getAppendOffset(), data)) {
+                    window.appended();
                 }
                 else {
-                    PullMessageController.log.fatal("slave append data error");
-                    break;
+                    window.discard();
+                    this.inflightRequestCount = window.getInflightCount();
+                    // ׷ʧ()ʱȴmaxPullIntervalȡⷴmasterȡˢ־
+                    this.waitForRunning(maxPullInterval);
+                    return;
+                }
+            }
+            this.inflightRequestCount = window.getInflightCount();
+            if (response.data == null) {
+                this.printNoData(response.offset);
+                // ûݣÿmaxPullIntervalȡһ
+                final long elapsed = System.currentTimeMillis() - response.sendTimestamp;
+                if (elapsed < maxPullInterval) {
+                    this.waitForRunning(maxPullInterval - elapsed);
                 }
             }
         }
@@ -148,12 +310,25 @@ public class PullMessageController {
                 PullMessageController.this.connectMaster();
             }
 
-            long maxPullInterval = PullMessageController.this.broker.getMetaConfig().getSlaveMaxDelayInMills();
+            final MetaConfig metaConfig = PullMessageController.this.broker.getMetaConfig();
+            long maxPullInterval = metaConfig.getSlaveMaxDelayInMills();
+
+            while (!this.isStoped() && 0 == this.pullFromOffset) {
+                try {
+                    if (!this.fixStartOffset()) {
+                        this.waitForRunning(maxPullInterval);
+                    }
+                }
+                catch (Exception e) {
+                    PullMessageController.log.warn(this.getServiceName() + " service has exception. ", e);
+                }
+            }
 
+            final ReplicationWindow window =
+                    new ReplicationWindow(metaConfig.getSlaveReplicationWindow(), PullMaxSize, this.pullFromOffset);
             while (!this.isStoped()) {
                 try {
-                    this.waitForRunning(maxPullInterval);
-                    this.doPull();
+                    this.doPull(window, maxPullInterval);
                 }
                 catch (Exception e) {
                     PullMessageController.log.warn(this.getServiceName() + " service has exception. ", e);
@@ -178,6 +353,21 @@ public class PullMessageController {
         public void setPullFromOffset(long pullFromOffset) {
             this.pullFromOffset = pullFromOffset;
         }
+
+
+        public int getInflightRequestCount() {
+            return this.inflightRequestCount;
+        }
+
+
+        public long getReplicatedBytes() {
+            return this.replicatedBytes.get();
+        }
+
+
+        public long getLastAppendTimestamp() {
+            return this.lastAppendTimestamp;
+        }
     }
 
 
@@ -196,6 +386,7 @@ public class PullMessageController {
 
             this.pullService.setPullFromOffset(this.broker.getMetaStoreMaster().getMaxPhyOffset());
             this.pullService.start();
+            MetaMBeanServer.registMBean(this, null);
             this.started = true;
         }
     }
@@ -237,6 +428,30 @@ public class PullMessageController {
     }
 
 
+    @Override
+    public long getReplicatedOffset() {
+        return this.pullService.getPullFromOffset();
+    }
+
+
+    @Override
+    public long getReplicatedBytes() {
+        return this.pullService.getReplicatedBytes();
+    }
+
+
+    @Override
+    public int getInflightRequestCount() {
+        return this.pullService.getInflightRequestCount();
+    }
+
+
+    @Override
+    public long getLastAppendTimestamp() {
+        return this.pullService.getLastAppendTimestamp();
+    }
+
+
     public boolean isMasterFixed() {
         return masterFixed;
     }
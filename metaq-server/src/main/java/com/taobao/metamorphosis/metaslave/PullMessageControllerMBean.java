@@ -0,0 +1,38 @@
+package com.taobao.metamorphosis.metaslave;
+
+/**
+ * slaveƽȵMBeanӿڣmaster˵ӳټSlaveReplicationManagerMBean
+ *
+ */
+public interface PullMessageControllerMBean {
+    /**
+     * Ѿ׷ӵеoffset
+     *
+     * @return
+     */
+    public long getReplicatedOffset();
+
+
+    /**
+     * Ƶֽ
+     *
+     * @return
+     */
+    public long getReplicatedBytes();
+
+
+    /**
+     * ;ȡ
+     *
+     * @return
+     */
+    public int getInflightRequestCount();
+
+
+    /**
+     * һ׷ݵʱ
+     *
+     * @return
+     */
+    public long getLastAppendTimestamp();
+}
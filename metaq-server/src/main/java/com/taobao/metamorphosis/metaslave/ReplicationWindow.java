@@ -0,0 +1,141 @@
+package com.taobao.metamorphosis.metaslave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * slaveƵȡڣЩoffsetҪ󣬲򷵻صݰoffset˳򽻸׷
+ * <ul>
+ * <li>׷offset(ȷoffset)</li>
+ * <li>һ׷ӵݴﵽchunkSizeʱΪmasterлѹ[׷offset, ׷offset+windowSize*chunkSize)
+ * ΧڰchunkSizeʱֻ׷offset</li>
+ * <li>صݰoffset棬ֻк׷offsetݲŻᱻ׷ӣмĿն</li>
+ * </ul>
+ * ̰߳ȫֻPullService߳ʹá
+ *
+ */
+class ReplicationWindow {
+    private final int windowSize;
+    private final int chunkSize;
+    // Ѿ׷ӵصoffset
+    private long appendOffset;
+    // ;offset
+    private final TreeSet<Long> inflight = new TreeSet<Long>();
+    // ѷصδ׷ӵ
+    private final TreeMap<Long, byte[]> received = new TreeMap<Long, byte[]>();
+    private boolean bursting;
+
+
+    ReplicationWindow(final int windowSize, final int chunkSize, final long appendOffset) {
+        super();
+        this.windowSize = Math.max(1, windowSize);
+        this.chunkSize = chunkSize;
+        this.appendOffset = appendOffset;
+    }
+
+
+    /**
+     * Ҫ·offsetΪ;
+     *
+     * @return
+     */
+    List<Long> nextRequests() {
+        final List<Long> rt = new ArrayList<Long>();
+        final long limit = this.appendOffset + (this.bursting ? (long) this.windowSize * this.chunkSize : 1);
+        long offset = this.appendOffset;
+        while (this.inflight.size() < this.windowSize && offset < limit) {
+            final byte[] data = this.received.get(offset);
+            if (data != null) {
+                offset += data.length;
+                continue;
+            }
+            if (!this.inflight.contains(offset)) {
+                this.inflight.add(offset);
+                rt.add(offset);
+            }
+            // ;ûз֮ǰٶһchunk
+            final Long next = this.received.higherKey(offset);
+            offset = next != null && next < offset + this.chunkSize ? next : offset + this.chunkSize;
+        }
+        return rt;
+    }
+
+
+    /**
+     * 󷵻
+     *
+     * @param offset
+     *            offset
+     * @param data
+     *            صݣûݻʧʱΪnull
+     */
+    void onResponse(final long offset, final byte[] data) {
+        this.inflight.remove(offset);
+        if (data == null || data.length == 0) {
+            // masterѾûиݣֹͣԤȡ
+            this.bursting = false;
+        }
+        else if (offset >= this.appendOffset) {
+            this.received.put(offset, data);
+        }
+    }
+
+
+    /**
+     * ؿ׷ӵһݣû򷵻null׷ӳɹҪappended
+     *
+     * @return
+     */
+    byte[] nextAppendable() {
+        return this.received.get(this.appendOffset);
+    }
+
+
+    /**
+     * nextAppendableصݣ׷ʧʱã֮
+     */
+    void discard() {
+        this.received.remove(this.appendOffset);
+        this.bursting = false;
+    }
+
+
+    /**
+     * nextAppendableصѾ׷ӵ
+     */
+    void appended() {
+        final byte[] data = this.received.remove(this.appendOffset);
+        if (data == null) {
+            return;
+        }
+        this.appendOffset += data.length;
+        this.bursting = data.length >= this.chunkSize;
+        // ׷ݸǵĲ
+        while (!this.received.isEmpty() && this.received.firstKey() < this.appendOffset) {
+            this.received.remove(this.received.firstKey());
+        }
+    }
+
+
+    long getAppendOffset() {
+        return this.appendOffset;
+    }
+
+
+    int getInflightCount() {
+        return this.inflight.size();
+    }
+
+
+    int getReceivedCount() {
+        return this.received.size();
+    }
+
+
+    boolean isBursting() {
+        return this.bursting;
+    }
+}
@@ -0,0 +1,388 @@
+package com.taobao.metamorphosis.monitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.server.assembly.ExecutorsManager;
+import com.taobao.metamorphosis.utils.LatencyHistogram;
+import com.taobao.metaq.store.DefaultMetaStore;
+import com.taobao.metaq.store.MapedFile;
+import com.taobao.metaq.store.MetaQueuePhysical;
+import com.taobao.metaq.store.MetaStore;
+
+
+/**
+ * brokerȵ·ĲprofilerĬϹرգͨJmxManipulationء
+ * <p>
+ * ̶̨̰߳get/put̳߳ص߳ջۺϳ"̳߳;߳״̬;ջ֡... "
+ * ۵ʽ(collapsed stacks)ÿдһstacks-ʱ.collapsedļֱӽflamegraph.plɻͼ
+ * д߳״̬һholding֡߳ջһblockedOn֡ڵ鿴дĳк;
+ * ÿͬʱsummary.log׷һУдʱֲMapedFileȱҳͽ̵ȱҳ(linux)
+ * </p>
+ * ҪJVM밲ȫ㣬С10롣
+ *
+ */
+public class BrokerProfiler implements Runnable {
+    static final Log log = LogFactory.getLog(BrokerProfiler.class);
+    static final String STACKS_FILE_PREFIX = "stacks-";
+    static final String STACKS_FILE_SUFFIX = ".collapsed";
+    static final String SUMMARY_FILE = "summary.log";
+    // ²̵̳߳߳ļ
+    private static final long REFRESH_THREADS_INTERVAL = 1000;
+    private static final String[] THREAD_NAMES =
+            new String[] { ExecutorsManager.GET_PROCESS_THREAD_NAME, ExecutorsManager.PUT_PROCESS_THREAD_NAME };
+    private static final String WRITE_LOCK_CLASS = MetaQueuePhysical.class.getName();
+
+    private final MetaStore metaStore;
+    private final File dir;
+    private final long sampleIntervalMillis;
+    private final long rollIntervalMillis;
+    private final int maxFiles;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    // ֻڲ߳з
+    private final Map<String, long[]> stacks = new HashMap<String, long[]>();
+    private long samples;
+    private LatencyHistogram.Snapshot lastLockSnapshot;
+    private long[] lastPageFaults;
+    private long[] lastProcessFaults;
+
+    private Thread thread;
+    private volatile boolean running;
+
+
+    public BrokerProfiler(final MetaStore metaStore, final File dir, final long sampleIntervalMillis,
+            final long rollIntervalMillis, final int maxFiles) {
+        if (sampleIntervalMillis <= 0 || rollIntervalMillis <= 0 || maxFiles <= 0) {
+            throw new IllegalArgumentException("sampleIntervalMillis,rollIntervalMillis,maxFiles must be positive");
+        }
+        this.metaStore = metaStore;
+        this.dir = dir;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        this.rollIntervalMillis = rollIntervalMillis;
+        this.maxFiles = maxFiles;
+    }
+
+
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        if (!this.dir.mkdirs() && !this.dir.isDirectory()) {
+            throw new IllegalStateException("Create profile dir failed: " + this.dir);
+        }
+        this.running = true;
+        MapedFile.setPageFaultProfiling(true);
+        this.thread = new Thread(this, "BrokerProfiler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        log.info("Broker profiler started, output dir: " + this.dir.getAbsolutePath());
+    }
+
+
+    public synchronized void stop() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        MapedFile.setPageFaultProfiling(false);
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+        log.info("Broker profiler stopped");
+    }
+
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+
+    public File getDir() {
+        return this.dir;
+    }
+
+
+    @Override
+    public void run() {
+        this.resetBaseline();
+        long nextRoll = System.currentTimeMillis() + this.rollIntervalMillis;
+        long nextRefresh = 0;
+        long[] threadIds = new long[0];
+        try {
+            while (this.running) {
+                final long now = System.currentTimeMillis();
+                try {
+                    if (now >= nextRefresh) {
+                        threadIds = this.findThreadIds();
+                        nextRefresh = now + REFRESH_THREADS_INTERVAL;
+                    }
+                    this.sample(threadIds);
+                    if (now >= nextRoll) {
+                        this.roll();
+                        nextRoll = now + this.rollIntervalMillis;
+                    }
+                }
+                catch (final Exception e) {
+                    log.error("Broker profiler sample failed", e);
+                }
+                Thread.sleep(this.sampleIntervalMillis);
+            }
+        }
+        catch (final InterruptedException e) {
+            // stop
+        }
+        try {
+            this.roll();
+        }
+        catch (final Exception e) {
+            log.error("Broker profiler roll failed", e);
+        }
+    }
+
+
+    private long[] findThreadIds() {
+        final long[] allIds = this.threadMXBean.getAllThreadIds();
+        final ThreadInfo[] infos = this.threadMXBean.getThreadInfo(allIds);
+        final long[] ids = new long[allIds.length];
+        int count = 0;
+        for (final ThreadInfo info : infos) {
+            if (info != null && getPoolName(info.getThreadName()) != null) {
+                ids[count++] = info.getThreadId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+
+    private void sample(final long[] threadIds) {
+        if (threadIds.length == 0) {
+            return;
+        }
+        final ThreadInfo[] infos = this.threadMXBean.getThreadInfo(threadIds, true, false);
+        for (final ThreadInfo info : infos) {
+            if (info == null) {
+                continue;
+            }
+            String holding = null;
+            for (final MonitorInfo monitor : info.getLockedMonitors()) {
+                if (WRITE_LOCK_CLASS.equals(monitor.getClassName())) {
+                    holding = MetaQueuePhysical.class.getSimpleName();
+                    break;
+                }
+            }
+            final LockInfo lockInfo = info.getLockInfo();
+            final String blockedOn =
+                    info.getThreadState() == Thread.State.BLOCKED && lockInfo != null ? lockInfo.getClassName()
+                            : null;
+            final String stack =
+                    collapse(getPoolName(info.getThreadName()), info.getThreadState(), info.getStackTrace(),
+                        holding, blockedOn);
+            final long[] count = this.stacks.get(stack);
+            if (count == null) {
+                this.stacks.put(stack, new long[] { 1 });
+            }
+            else {
+                count[0]++;
+            }
+        }
+        this.samples++;
+    }
+
+
+    /**
+     * ̳߳߳get/put̷߳null
+     */
+    static String getPoolName(final String threadName) {
+        if (threadName == null) {
+            return null;
+        }
+        for (final String name : THREAD_NAMES) {
+            if (threadName.startsWith(name + "-")) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * һ߳ջ۵һУջ׵ջԷֺŷָ
+     */
+    static String collapse(final String poolName, final Thread.State state, final StackTraceElement[] frames,
+            final String holding, final String blockedOn) {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append(poolName).append(';').append(state);
+        if (holding != null) {
+            sb.append(";holding=").append(holding);
+        }
+        for (int i = frames.length - 1; i >= 0; i--) {
+            sb.append(';').append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+        }
+        if (blockedOn != null) {
+            sb.append(";blockedOn=").append(blockedOn);
+        }
+        return sb.toString();
+    }
+
+
+    private void resetBaseline() {
+        this.stacks.clear();
+        this.samples = 0;
+        final LatencyHistogram lockHistogram = this.getLockHistogram();
+        this.lastLockSnapshot = lockHistogram != null ? lockHistogram.snapshot() : null;
+        this.lastPageFaults = getPageFaults();
+        this.lastProcessFaults = readProcessFaults();
+    }
+
+
+    private void roll() throws IOException {
+        final String time = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        if (!this.stacks.isEmpty()) {
+            final PrintWriter writer =
+                    new PrintWriter(new FileWriter(new File(this.dir, STACKS_FILE_PREFIX + time + STACKS_FILE_SUFFIX)));
+            try {
+                for (final Map.Entry<String, long[]> entry : this.stacks.entrySet()) {
+                    writer.print(entry.getKey());
+                    writer.print(' ');
+                    writer.println(entry.getValue()[0]);
+                }
+            }
+            finally {
+                writer.close();
+            }
+            this.deleteOldFiles();
+        }
+
+        final StringBuilder summary = new StringBuilder(256);
+        summary.append(time).append(" samples=").append(this.samples);
+        final LatencyHistogram lockHistogram = this.getLockHistogram();
+        if (lockHistogram != null) {
+            final LatencyHistogram.Snapshot snapshot = lockHistogram.snapshot();
+            summary.append(" writeLockHold[").append(snapshot.minus(this.lastLockSnapshot)).append(']');
+            this.lastLockSnapshot = snapshot;
+        }
+        final long[] pageFaults = getPageFaults();
+        summary.append(" appendTouchedPages=").append(pageFaults[0] - this.lastPageFaults[0]);
+        summary.append(" readProbedPages=").append(pageFaults[1] - this.lastPageFaults[1]);
+        summary.append(" readSlowPages=").append(pageFaults[2] - this.lastPageFaults[2]);
+        summary.append(" readSlowMillis=").append((pageFaults[3] - this.lastPageFaults[3]) / 1000000);
+        this.lastPageFaults = pageFaults;
+        final long[] processFaults = readProcessFaults();
+        if (processFaults != null && this.lastProcessFaults != null) {
+            summary.append(" minorFaults=").append(processFaults[0] - this.lastProcessFaults[0]);
+            summary.append(" majorFaults=").append(processFaults[1] - this.lastProcessFaults[1]);
+        }
+        this.lastProcessFaults = processFaults;
+
+        final PrintWriter writer = new PrintWriter(new FileWriter(new File(this.dir, SUMMARY_FILE), true));
+        try {
+            writer.println(summary);
+        }
+        finally {
+            writer.close();
+        }
+        this.stacks.clear();
+        this.samples = 0;
+    }
+
+
+    /**
+     * ֻmaxFilesջļ
+     */
+    private void deleteOldFiles() {
+        final File[] files = this.dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final List<String> names = new ArrayList<String>();
+        for (final File file : files) {
+            if (file.getName().startsWith(STACKS_FILE_PREFIX) && file.getName().endsWith(STACKS_FILE_SUFFIX)) {
+                names.add(file.getName());
+            }
+        }
+        // ļеʱ԰ֵ
+        Collections.sort(names);
+        for (int i = 0; i < names.size() - this.maxFiles; i++) {
+            if (!new File(this.dir, names.get(i)).delete()) {
+                log.warn("Delete profile file failed: " + names.get(i));
+            }
+        }
+    }
+
+
+    private LatencyHistogram getLockHistogram() {
+        if (this.metaStore instanceof DefaultMetaStore) {
+            return ((DefaultMetaStore) this.metaStore).getMetaStatsService().getPutMessageInLockHistogram();
+        }
+        return null;
+    }
+
+
+    private static long[] getPageFaults() {
+        return new long[] { MapedFile.getAppendTouchedPages(), MapedFile.getReadProbedPages(),
+                           MapedFile.getReadSlowPages(), MapedFile.getReadSlowNanos() };
+    }
+
+
+    /**
+     * /proc/self/statȡ̵minormajorȱҳlinuxnull
+     */
+    static long[] readProcessFaults() {
+        final File stat = new File("/proc/self/stat");
+        if (!stat.canRead()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(stat));
+            return parseProcessFaults(reader.readLine());
+        }
+        catch (final Exception e) {
+            return null;
+        }
+        finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                }
+                catch (final IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+
+    /**
+     * /proc/[pid]/stat10͵12ֶηֱminfltmajfltппո񣬴֮ʼ
+     */
+    static long[] parseProcessFaults(final String line) {
+        final String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+        return new long[] { Long.parseLong(fields[7]), Long.parseLong(fields[9]) };
+    }
+}
@@ -1,5 +1,7 @@
 package com.taobao.metamorphosis.monitor;
 
+import java.io.File;
+
 import com.taobao.metamorphosis.utils.MetaMBeanServer;
 import com.taobao.metaq.store.MetaStore;
 
@@ -8,11 +10,23 @@ import com.taobao.metaq.store.MetaStore;
  */
 public class JmxManipulation implements JmxManipulationMBean {
 	
+	// ౣջļ
+	private static final int PROFILE_MAX_FILES = 60;
+	
 	private final MetaStore metaStore;
 	
+	private final File profileDir;
+	
+	private volatile long profileSampleIntervalMillis = 20;
+	
+	private volatile long profileRollIntervalSeconds = 60;
+	
+	private BrokerProfiler profiler;
 	
-	public JmxManipulation(MetaStore metaStore) {
+	
+	public JmxManipulation(MetaStore metaStore, File profileDir) {
 		this.metaStore = metaStore;
+		this.profileDir = profileDir;
 		MetaMBeanServer.registMBean(this, null);
 	}
 	
@@ -21,4 +35,61 @@ public class JmxManipulation implements JmxManipulationMBean {
 	public void triggerDeleteFiles() {
 		this.metaStore.excuteDeleteFilesManualy();
 	}
+	
+	
+	@Override
+	public synchronized void startProfiling() {
+		if (this.profiler != null) {
+			return;
+		}
+		final BrokerProfiler profiler = new BrokerProfiler(this.metaStore, this.profileDir,
+				this.profileSampleIntervalMillis, this.profileRollIntervalSeconds * 1000, PROFILE_MAX_FILES);
+		profiler.start();
+		this.profiler = profiler;
+	}
+	
+	
+	@Override
+	public synchronized void stopProfiling() {
+		if (this.profiler != null) {
+			this.profiler.stop();
+			this.profiler = null;
+		}
+	}
+	
+	
+	@Override
+	public synchronized boolean isProfiling() {
+		return this.profiler != null;
+	}
+	
+	
+	@Override
+	public String getProfileDir() {
+		return this.profileDir.getAbsolutePath();
+	}
+	
+	
+	@Override
+	public long getProfileSampleIntervalMillis() {
+		return this.profileSampleIntervalMillis;
+	}
+	
+	
+	@Override
+	public void setProfileSampleIntervalMillis(long profileSampleIntervalMillis) {
+		this.profileSampleIntervalMillis = profileSampleIntervalMillis;
+	}
+	
+	
+	@Override
+	public long getProfileRollIntervalSeconds() {
+		return this.profileRollIntervalSeconds;
+	}
+	
+	
+	@Override
+	public void setProfileRollIntervalSeconds(long profileRollIntervalSeconds) {
+		this.profileRollIntervalSeconds = profileRollIntervalSeconds;
+	}
 }
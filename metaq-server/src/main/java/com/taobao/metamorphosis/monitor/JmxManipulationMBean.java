@@ -7,4 +7,40 @@ public interface JmxManipulationMBean {
 	 */
 	public void triggerDeleteFiles();
 	
+	
+	/**
+	 * profilingջͳдprofileĿ¼
+	 */
+	public void startProfiling();
+	
+	
+	/**
+	 * رղprofiling
+	 */
+	public void stopProfiling();
+	
+	
+	public boolean isProfiling();
+	
+	
+	public String getProfileDir();
+	
+	
+	/**
+	 * ջ룬´οʱЧ
+	 */
+	public long getProfileSampleIntervalMillis();
+	
+	
+	public void setProfileSampleIntervalMillis(long profileSampleIntervalMillis);
+	
+	
+	/**
+	 * ջļ룬´οʱЧ
+	 */
+	public long getProfileRollIntervalSeconds();
+	
+	
+	public void setProfileRollIntervalSeconds(long profileRollIntervalSeconds);
+	
 }
@@ -4,8 +4,10 @@ import javax.transaction.xa.XAException;
 
 import com.taobao.gecko.core.command.ResponseCommand;
 import com.taobao.metamorphosis.network.AskCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
 import com.taobao.metamorphosis.network.FetchCommand;
 import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
 import com.taobao.metamorphosis.network.MessageTypeCommand;
 import com.taobao.metamorphosis.network.OffsetCommand;
 import com.taobao.metamorphosis.network.PutCommand;
@@ -90,4 +92,10 @@ public interface CommandProcessor extends Service {
     
     public ResponseCommand processMessageTypeCommand(MessageTypeCommand request, final SessionContext ctx);
 
+
+    public ResponseCommand processCommitOffsetCommand(CommitOffsetCommand request, final SessionContext ctx);
+
+
+    public ResponseCommand processLoadOffsetCommand(LoadOffsetCommand request, final SessionContext ctx);
+
 }
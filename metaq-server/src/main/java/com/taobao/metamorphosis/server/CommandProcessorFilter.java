@@ -4,8 +4,10 @@ import javax.transaction.xa.XAException;
 
 import com.taobao.gecko.core.command.ResponseCommand;
 import com.taobao.metamorphosis.network.AskCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
 import com.taobao.metamorphosis.network.FetchCommand;
 import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
 import com.taobao.metamorphosis.network.MessageTypeCommand;
 import com.taobao.metamorphosis.network.OffsetCommand;
 import com.taobao.metamorphosis.network.PutCommand;
@@ -162,4 +164,16 @@ public class CommandProcessorFilter implements CommandProcessor {
     public ResponseCommand processMessageTypeCommand(MessageTypeCommand request, SessionContext ctx) {
     	return this.next.processMessageTypeCommand(request, ctx);
     }
+
+
+    @Override
+    public ResponseCommand processCommitOffsetCommand(final CommitOffsetCommand request, final SessionContext ctx) {
+        return this.next.processCommitOffsetCommand(request, ctx);
+    }
+
+
+    @Override
+    public ResponseCommand processLoadOffsetCommand(final LoadOffsetCommand request, final SessionContext ctx) {
+        return this.next.processLoadOffsetCommand(request, ctx);
+    }
 }
@@ -1,5 +1,7 @@
 package com.taobao.metamorphosis.server.assembly;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -25,9 +27,12 @@ import com.taobao.metamorphosis.cluster.Partition;
 import com.taobao.metamorphosis.network.AskCommand;
 import com.taobao.metamorphosis.network.BooleanCommand;
 import com.taobao.metamorphosis.network.ByteUtils;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
 import com.taobao.metamorphosis.network.FetchCommand;
 import com.taobao.metamorphosis.network.GetCommand;
 import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
 import com.taobao.metamorphosis.network.MessageTypeCommand;
 import com.taobao.metamorphosis.network.OffsetCommand;
 import com.taobao.metamorphosis.network.PutCommand;
@@ -37,28 +42,35 @@ import com.taobao.metamorphosis.network.VersionCommand;
 import com.taobao.metamorphosis.server.BrokerZooKeeper;
 import com.taobao.metamorphosis.server.CommandProcessor;
 import com.taobao.metamorphosis.server.exception.MetamorphosisException;
+import com.taobao.metamorphosis.server.exception.MetamorphosisServerStartupException;
 import com.taobao.metamorphosis.server.network.PutCallback;
 import com.taobao.metamorphosis.server.network.SessionContext;
+import com.taobao.metamorphosis.server.stats.BrokerMetrics;
 import com.taobao.metamorphosis.server.stats.StatsManager;
 import com.taobao.metamorphosis.server.store.AppendCallback;
+import com.taobao.metamorphosis.server.store.ConsumerOffsetStore;
 import com.taobao.metamorphosis.server.store.Location;
 import com.taobao.metamorphosis.server.store.MessageStoreManager;
 import com.taobao.metamorphosis.server.transaction.Transaction;
 import com.taobao.metamorphosis.server.utils.BuildProperties;
 import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.server.utils.TopicConfig;
 import com.taobao.metamorphosis.transaction.TransactionId;
 import com.taobao.metamorphosis.transaction.XATransactionId;
 import com.taobao.metamorphosis.utils.IdWorker;
+import com.taobao.metamorphosis.utils.LatencyHistogram;
 import com.taobao.metamorphosis.utils.MessageFlagUtils;
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metamorphosis.utils.MessageUtils;
 import com.taobao.metaq.commons.MetaMessage;
 import com.taobao.metaq.commons.MetaMessageAnnotation;
 import com.taobao.metaq.commons.MetaMessageDecoder;
 import com.taobao.metaq.commons.MetaUtil;
+import com.taobao.metaq.store.DefaultMetaStore;
 import com.taobao.metaq.store.GetMessageResult;
 import com.taobao.metaq.store.MetaStore;
 import com.taobao.metaq.store.PutMessageResult;
-import com.taobao.metaq.store.SelectMapedBufferResult;
 
 
 /**
@@ -195,6 +207,8 @@ public class BrokerCommandProcessor implements CommandProcessor {
     protected BrokerZooKeeper brokerZooKeeper;
     protected MetaStore metaStore;
     protected MessageTypeManager messageTypeManager;
+    protected SlaveReplicationManager slaveReplicationManager;
+    protected ConsumerOffsetStore consumerOffsetStore;
     protected final boolean tellMaxOffset = Boolean.parseBoolean(System.getProperty("meta.get.tellMaxOffset",
         "false"));
 
@@ -220,6 +234,33 @@ public class BrokerCommandProcessor implements CommandProcessor {
         this.brokerZooKeeper = brokerZooKeeper;
         this.metaStore = metaStore;
         this.messageTypeManager = messageTypeManager;
+        this.slaveReplicationManager =
+                new SlaveReplicationManager(metaStore, metaConfig.getSlaveReplicationHoldInMills());
+        this.consumerOffsetStore = new ConsumerOffsetStore(new File(metaConfig.getDataPath(), "consumer_offsets"));
+        if (statsManager != null) {
+            this.registerReplicationGauges(statsManager.getBrokerMetrics());
+        }
+    }
+
+
+    /**
+     * ӳȡslaveģslaveReplicationManagerܱ滻ÿεʱȡǰֵ
+     */
+    private void registerReplicationGauges(final BrokerMetrics brokerMetrics) {
+        brokerMetrics.registerGauge("metaq_slave_lag_bytes", new BrokerMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                final SlaveReplicationManager manager = BrokerCommandProcessor.this.slaveReplicationManager;
+                return manager != null ? manager.getMaxSlaveLagInBytes() : 0;
+            }
+        });
+        brokerMetrics.registerGauge("metaq_slave_lag_millis", new BrokerMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                final SlaveReplicationManager manager = BrokerCommandProcessor.this.slaveReplicationManager;
+                return manager != null ? manager.getMaxSlaveLagInMills() : 0;
+            }
+        });
     }
 
 
@@ -313,23 +354,58 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
+    public SlaveReplicationManager getSlaveReplicationManager() {
+        return this.slaveReplicationManager;
+    }
+
+
+    public void setSlaveReplicationManager(final SlaveReplicationManager slaveReplicationManager) {
+        this.slaveReplicationManager = slaveReplicationManager;
+    }
+
+
+    public ConsumerOffsetStore getConsumerOffsetStore() {
+        return this.consumerOffsetStore;
+    }
+
+
+    public void setConsumerOffsetStore(final ConsumerOffsetStore consumerOffsetStore) {
+        this.consumerOffsetStore = consumerOffsetStore;
+    }
+
+
     @Override
     public void init() {
-
+        if (this.consumerOffsetStore != null) {
+            try {
+                this.consumerOffsetStore.load();
+            }
+            catch (final IOException e) {
+                throw new MetamorphosisServerStartupException("Load consumer offset store failed", e);
+            }
+        }
+        if (this.slaveReplicationManager != null) {
+            this.slaveReplicationManager.start();
+        }
     }
 
 
     @Override
     public void dispose() {
-
+        if (this.slaveReplicationManager != null) {
+            this.slaveReplicationManager.shutdown();
+        }
+        if (this.consumerOffsetStore != null) {
+            this.consumerOffsetStore.close();
+        }
     }
 
 
     @Override
     public void processPutCommand(final PutCommand request, final SessionContext sessionContext,
             final PutCallback cb) {
-        final String partitionString = this.metaConfig.getBrokerId() + "-" + request.getPartition();
-        this.statsManager.statsPut(request.getTopic(), partitionString, 1);
+        final long traceNanos = MessageTracer.sample(Stage.BROKER_PUT) ? System.nanoTime() : 0L;
+        this.statsManager.statsPut(request.getTopic(), request.getPartition(), 1);
         this.statsManager.statsMessageSize(request.getTopic(), request.getData().length);
         try {
             if (this.metaConfig.isClosedPartition(request.getTopic(), request.getPartition())) {
@@ -337,7 +413,8 @@ public class BrokerCommandProcessor implements CommandProcessor {
                         + request.getTopic() + ",it was closed");
                 if (cb != null) {
                     cb.putComplete(new BooleanCommand(request.getOpaque(), HttpStatus.Forbidden, "Partition["
-                            + partitionString + "] has been closed"));
+                            + this.metaConfig.getBrokerId() + "-" + request.getPartition()
+                            + "] has been closed"));
                 }
                 return;
             }
@@ -392,6 +469,15 @@ public class BrokerCommandProcessor implements CommandProcessor {
 
             PutMessageResult result = metaStore.putMessage(message, msgant);
             if (result != null && result.isOk()) {
+                if (traceNanos != 0L) {
+                    MessageTracer.recordSince(request.getTopic(), Stage.BROKER_PUT, traceNanos);
+                }
+                this.statsManager.getBrokerMetrics().recordPut(request.getTopic(), partitionId,
+                    request.getData().length, result.getAppendMessageResult().getLogicsOffset() + 1);
+                // ѹslave
+                if (this.slaveReplicationManager != null) {
+                    this.slaveReplicationManager.notifyMessageArriving();
+                }
                 if (cb != null) {
 
                     // 1 1.4汾ϢID
@@ -406,7 +492,17 @@ public class BrokerCommandProcessor implements CommandProcessor {
                     // 4 2.0汾ϢID
                     resultStr += result.getAppendMessageResult().getMsgId();
 
-                    cb.putComplete(new BooleanCommand(request.getOpaque(), HttpStatus.Success, resultStr));
+                    final BooleanCommand response =
+                            new BooleanCommand(request.getOpaque(), HttpStatus.Success, resultStr);
+                    if (this.slaveReplicationManager != null && this.isSyncReplication(request.getTopic())) {
+                        // ͬƣslaveȷ֮Ӧ
+                        this.slaveReplicationManager.waitForSlaveAck(result.getAppendMessageResult()
+                            .getWroteOffset() + result.getAppendMessageResult().getWroteBytes(),
+                            this.metaConfig.getSyncReplicationTimeoutInMills(), cb, response);
+                    }
+                    else {
+                        cb.putComplete(response);
+                    }
                 }
             }
             else {
@@ -416,7 +512,8 @@ public class BrokerCommandProcessor implements CommandProcessor {
 
         }
         catch (final Exception e) {
-            this.statsManager.statsPutFailed(request.getTopic(), partitionString, 1);
+            this.statsManager.statsPutFailed(request.getTopic(),
+                this.metaConfig.getBrokerId() + "-" + request.getPartition(), 1);
             log.error("Put message failed", e);
             if (cb != null) {
                 cb.putComplete(new BooleanCommand(request.getOpaque(), HttpStatus.InternalServerError, e
@@ -426,6 +523,12 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
+    private boolean isSyncReplication(final String topic) {
+        final TopicConfig topicConfig = this.metaConfig.getTopicConfigMap().get(topic);
+        return topicConfig != null && topicConfig.isSyncReplication();
+    }
+
+
     protected int getPartition(final PutCommand request) {
         int partition = request.getPartition();
         if (partition == Partition.RandomPartiton.getPartition()) {
@@ -458,7 +561,7 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
-    private IoBuffer makeHead(final int opaque, final long size) {
+    static IoBuffer makeHead(final int opaque, final long size) {
         final IoBuffer buf = IoBuffer.allocate(9 + ByteUtils.stringSize(opaque) + ByteUtils.stringSize(size));
         ByteUtils.setArguments(buf, "value", size, opaque);
         buf.flip();
@@ -466,16 +569,32 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
+    /**
+     * 㿽ʱ¼ڴ洢ͳƷУstats storeJMXһ
+     */
+    private LatencyHistogram getTransferHistogram() {
+        final MetaStore store = this.getMetaStore();
+        if (store instanceof DefaultMetaStore) {
+            return ((DefaultMetaStore) store).getMetaStatsService().getTransferHistogram();
+        }
+        return null;
+    }
+
+
     private void writePageCache(final GetCommand request, final SessionContext ctx,
             final GetMessageResult getMessageResult) {
-        final IoBuffer head = this.makeHead(request.getOpaque(), getMessageResult.getBufferTotalSize());
+        final IoBuffer head = makeHead(request.getOpaque(), getMessageResult.getBufferTotalSize());
+        final LatencyHistogram transferHistogram = this.getTransferHistogram();
+        final long beginNanos = System.nanoTime();
 
         SingleRequestCallBackListener listener = new SingleRequestCallBackListener() {
 
             @Override
             public void onResponse(ResponseCommand responseCommand, Connection conn) {
                 getMessageResult.release();
-
+                if (transferHistogram != null) {
+                    transferHistogram.recordSince(beginNanos);
+                }
             }
 
 
@@ -502,45 +621,6 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
-    private void writePageCacheToSlave(final GetCommand request, final SessionContext ctx,
-            final SelectMapedBufferResult selectMapedBufferResult) {
-
-        int size = selectMapedBufferResult.getByteBuffer().limit();
-        final IoBuffer head = this.makeHead(request.getOpaque(), size);
-
-        SingleRequestCallBackListener listener = new SingleRequestCallBackListener() {
-
-            @Override
-            public void onResponse(ResponseCommand responseCommand, Connection conn) {
-                selectMapedBufferResult.release();
-
-            }
-
-
-            @Override
-            public void onException(Exception e) {
-                selectMapedBufferResult.release();
-            }
-
-
-            @Override
-            public ThreadPoolExecutor getExecutor() {
-                return null;
-            }
-        };
-
-        try {
-            final List<ByteBuffer> bufferList = new ArrayList<ByteBuffer>();
-            bufferList.add(selectMapedBufferResult.getByteBuffer());
-            ctx.getConnection().transferPageCache(head, null, bufferList, 0, size, request.getOpaque(), listener,
-                10000L, TimeUnit.MILLISECONDS);
-        }
-        catch (NotifyRemotingException e1) {
-            selectMapedBufferResult.release();
-        }
-    }
-
-
     /*
      * (non-Javadoc)
      * 
@@ -555,11 +635,11 @@ public class BrokerCommandProcessor implements CommandProcessor {
         final String group = request.getGroup();
         final String topic = request.getTopic();
         final long reqOffset = request.getOffset();
-        final int maxSize = request.getMaxSize();
 
-        // رղҲslave,ֹ --wuhua
+        // رղҲslaveǨƹ߷,ֹ --wuhua
         if (this.metaConfig.isClosedPartition(topic, request.getPartition())
-                && !request.getGroup().equals(this.metaConfig.getSlaveGroup())) {
+                && !request.getGroup().equals(this.metaConfig.getSlaveGroup())
+                && !MetaConfig.MIGRATION_GROUP.equals(request.getGroup())) {
             log.warn("can not get message for topic=" + topic + " from partition " + request.getPartition()
                     + ",it closed,");
             return new BooleanCommand(request.getOpaque(), HttpStatus.Forbidden, "Partition["
@@ -568,25 +648,19 @@ public class BrokerCommandProcessor implements CommandProcessor {
 
         final MetaStore metaStore = this.getMetaStore();
 
-        // slaveݣֱӷ
+        // slaveݣֱӷݣûʱֱܹϢд
         if (request.getGroup().equals(this.metaConfig.getSlaveGroup())) {
-            SelectMapedBufferResult selectMapedBufferResult = metaStore.getPhyQueueData(reqOffset);
-            if (selectMapedBufferResult != null && selectMapedBufferResult.getSize() > 0) {
-                if (selectMapedBufferResult.getByteBuffer().limit() > maxSize) {
-                    selectMapedBufferResult.getByteBuffer().limit(maxSize);
-                }
-
-                this.writePageCacheToSlave(request, ctx, selectMapedBufferResult);
-                return null;
-            }
-            else {
-                return new BooleanCommand(request.getOpaque(), HttpStatus.NotFound, "master no data");
+            if (this.slaveReplicationManager == null) {
+                this.slaveReplicationManager = new SlaveReplicationManager(metaStore, 0);
             }
+            return this.slaveReplicationManager.processGetCommand(request, ctx);
         }
         Set<Integer> messageTypeList = this.messageTypeManager.getMessageTypeHash(group, topic);
         GetMessageResult getMessageResult =
                 metaStore.getMessage(topic, request.getPartition(), reqOffset, request.getMaxSize(), messageTypeList);
         if (getMessageResult != null) {
+            this.statsManager.getBrokerMetrics().recordFetch(topic, request.getPartition(), group, reqOffset,
+                getMessageResult.getMaxOffset());
             switch (getMessageResult.getStatus()) {
             // ҵϢ
             case FOUND: {
@@ -655,6 +729,49 @@ public class BrokerCommandProcessor implements CommandProcessor {
     }
 
 
+    @Override
+    public ResponseCommand processCommitOffsetCommand(final CommitOffsetCommand request, final SessionContext ctx) {
+        if (this.consumerOffsetStore == null) {
+            return new BooleanCommand(request.getOpaque(), HttpStatus.ServiceUnavilable,
+                "Consumer offset store is not available");
+        }
+        try {
+            this.consumerOffsetStore.commit(request.getGroup(), request.getEntries());
+            return new BooleanCommand(request.getOpaque(), HttpStatus.Success, null);
+        }
+        catch (final IllegalStateException e) {
+            return new BooleanCommand(request.getOpaque(), HttpStatus.ServiceUnavilable, e.getMessage());
+        }
+        catch (final IOException e) {
+            log.error("Commit consumer offsets failed,group=" + request.getGroup(), e);
+            return new BooleanCommand(request.getOpaque(), HttpStatus.InternalServerError,
+                "Commit consumer offsets failed:" + e.getMessage());
+        }
+    }
+
+
+    @Override
+    public ResponseCommand processLoadOffsetCommand(final LoadOffsetCommand request, final SessionContext ctx) {
+        if (this.consumerOffsetStore == null) {
+            return new BooleanCommand(request.getOpaque(), HttpStatus.ServiceUnavilable,
+                "Consumer offset store is not available");
+        }
+        try {
+            final OffsetEntry entry =
+                    this.consumerOffsetStore.load(request.getGroup(), request.getTopic(), request.getPartition());
+            if (entry == null) {
+                return new BooleanCommand(request.getOpaque(), HttpStatus.NotFound, null);
+            }
+            // zkбĸʽһ£msgId-offset
+            return new BooleanCommand(request.getOpaque(), HttpStatus.Success, entry.getMsgId() + "-"
+                    + entry.getOffset());
+        }
+        catch (final IllegalStateException e) {
+            return new BooleanCommand(request.getOpaque(), HttpStatus.ServiceUnavilable, e.getMessage());
+        }
+    }
+
+
     @Override
     public void processQuitCommand(final QuitCommand request, final SessionContext ctx) {
         try {
@@ -9,6 +9,10 @@ import com.taobao.metamorphosis.utils.NamedThreadFactory;
 
 
 public class ExecutorsManager implements Service {
+    /** ߳ǰ׺profilerʶget/put߳ */
+    public static final String GET_PROCESS_THREAD_NAME = "GetProcess";
+    public static final String PUT_PROCESS_THREAD_NAME = "PutProcess";
+
     ThreadPoolExecutor getExecutor;
     ThreadPoolExecutor unOrderedPutExecutor;
 
@@ -17,10 +21,10 @@ public class ExecutorsManager implements Service {
         super();
         this.getExecutor =
                 (ThreadPoolExecutor) Executors.newFixedThreadPool(metaConfig.getGetProcessThreadCount(),
-                    new NamedThreadFactory("GetProcess"));
+                    new NamedThreadFactory(GET_PROCESS_THREAD_NAME));
         this.unOrderedPutExecutor =
                 (ThreadPoolExecutor) Executors.newFixedThreadPool(metaConfig.getPutProcessThreadCount(),
-                    new NamedThreadFactory("PutProcess"));
+                    new NamedThreadFactory(PUT_PROCESS_THREAD_NAME));
 
     }
 
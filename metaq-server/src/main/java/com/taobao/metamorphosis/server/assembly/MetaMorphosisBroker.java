@@ -2,6 +2,7 @@ package com.taobao.metamorphosis.server.assembly;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.File;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -13,8 +14,10 @@ import com.taobao.gecko.service.config.ServerConfig;
 import com.taobao.gecko.service.exception.NotifyRemotingException;
 import com.taobao.metamorphosis.monitor.JmxManipulation;
 import com.taobao.metamorphosis.network.AskCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
 import com.taobao.metamorphosis.network.FetchCommand;
 import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
 import com.taobao.metamorphosis.network.MessageTypeCommand;
 import com.taobao.metamorphosis.network.MetamorphosisWireFormatType;
 import com.taobao.metamorphosis.network.OffsetCommand;
@@ -26,8 +29,10 @@ import com.taobao.metamorphosis.server.BrokerZooKeeper;
 import com.taobao.metamorphosis.server.CommandProcessor;
 import com.taobao.metamorphosis.server.exception.MetamorphosisServerStartupException;
 import com.taobao.metamorphosis.server.network.AskProcessor;
+import com.taobao.metamorphosis.server.network.CommitOffsetProcessor;
 import com.taobao.metamorphosis.server.network.FetchProcessor;
 import com.taobao.metamorphosis.server.network.GetProcessor;
+import com.taobao.metamorphosis.server.network.LoadOffsetProcessor;
 import com.taobao.metamorphosis.server.network.MessageTypeProcessor;
 import com.taobao.metamorphosis.server.network.OffsetProcessor;
 import com.taobao.metamorphosis.server.network.PutProcessor;
@@ -149,6 +154,17 @@ public class MetaMorphosisBroker {
 
 
     public MetaMorphosisBroker(final MetaConfig metaConfig) {
+        this(metaConfig, createMetaStoreMaster());
+    }
+
+
+    /**
+     * ʹⲿĴ洢ѹǶָ洢Ŀ¼ȡ../conf/metaStoreConfig.xml
+     * 
+     * @param metaConfig
+     * @param metaStore
+     */
+    public MetaMorphosisBroker(final MetaConfig metaConfig, final MetaStore metaStore) {
         super();
         this.metaConfig = metaConfig;
         this.remotingServer = newRemotingServer(metaConfig);
@@ -157,8 +173,8 @@ public class MetaMorphosisBroker {
         this.storeManager = new MessageStoreManager(metaConfig, this.newDeletePolicy(metaConfig));
 
         this.brokerZooKeeper = new BrokerZooKeeper(metaConfig);
-        this.metaStore = createMetaStoreMaster();
-        this.jmxManipulation = new JmxManipulation(this.metaStore);
+        this.metaStore = metaStore;
+        this.jmxManipulation = new JmxManipulation(this.metaStore, new File(metaConfig.getDataPath(), "profile"));
         this.statsManager = new StatsManager(this.metaConfig, this.storeManager, this.remotingServer, metaStore);
         this.messageTypeManager = new MessageTypeManager();
         
@@ -262,6 +278,10 @@ public class MetaMorphosisBroker {
         	this.executorsManager.getGetExecutor()));
         this.remotingServer.registerProcessor(MessageTypeCommand.class, new MessageTypeProcessor(this.brokerProcessor, 
             	this.executorsManager.getGetExecutor()));
+        this.remotingServer.registerProcessor(CommitOffsetCommand.class, new CommitOffsetProcessor(
+            this.brokerProcessor, this.executorsManager.getUnOrderedPutExecutor()));
+        this.remotingServer.registerProcessor(LoadOffsetCommand.class, new LoadOffsetProcessor(this.brokerProcessor,
+            this.executorsManager.getGetExecutor()));
     }
 
 
@@ -308,6 +328,7 @@ public class MetaMorphosisBroker {
         catch (final NotifyRemotingException e) {
             throw new MetamorphosisServerStartupException("stop remoting server failed", e);
         }
+        this.jmxManipulation.stopProfiling();
         this.statsManager.dispose();
         this.executorsManager.dispose();
         // this.storeManager.dispose();
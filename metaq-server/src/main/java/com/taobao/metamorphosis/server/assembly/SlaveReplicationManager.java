@@ -0,0 +1,500 @@
+package com.taobao.metamorphosis.server.assembly;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.core.buffer.IoBuffer;
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.service.Connection;
+import com.taobao.gecko.service.SingleRequestCallBackListener;
+import com.taobao.gecko.service.exception.NotifyRemotingException;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.RemotingUtils;
+import com.taobao.metamorphosis.server.network.PutCallback;
+import com.taobao.metamorphosis.server.network.SessionContext;
+import com.taobao.metamorphosis.server.utils.MetaMBeanServer;
+import com.taobao.metaq.commons.ServiceThread;
+import com.taobao.metaq.store.MetaStore;
+import com.taobao.metaq.store.SelectMapedBufferResult;
+
+
+/**
+ * master˵slave
+ * <ul>
+ * <li>slaveoffsetʱֱpage cacheʽ</li>
+ * <li>ûʱ(holdInMills>0)Ϣдظslave൱masterдͣ
+ * ʱû򷵻NotFound</li>
+ * <li>slaveͳѴoffsetԼmasteroffsetӳֽͺ</li>
+ * <li>slaveoffsetslaveѾ׷ӵoffset(Ԥȡ)ΪslaveȷϡͬƵtopicput֮Ϣoffset
+ * ǼǵȴһslaveȷϳoffsetʱӦ𣻳ʱûslaveʱ˻Ϊ첽Ӧ</li>
+ * </ul>
+ *
+ */
+public class SlaveReplicationManager extends ServiceThread implements SlaveReplicationManagerMBean {
+    static final Log log = LogFactory.getLog(SlaveReplicationManager.class);
+
+    // ļϢдʱǰ
+    private static final long CHECK_INTERVAL_MILLS = 100;
+    // slaveʱûͳ
+    private static final long SLAVE_EXPIRE_MILLS = 10 * 60 * 1000L;
+    /**
+     * slaveԤȡtopicԤȡoffsetslaveѾ׷
+     */
+    public static final String PREFETCH_TOPIC = "slave-prefetch";
+
+    static class HeldRequest {
+        final GetCommand request;
+        final SessionContext ctx;
+        final long deadline;
+
+
+        HeldRequest(final GetCommand request, final SessionContext ctx, final long deadline) {
+            super();
+            this.request = request;
+            this.ctx = ctx;
+            this.deadline = deadline;
+        }
+    }
+
+    static class AckWaiter {
+        final PutCallback cb;
+        final ResponseCommand response;
+        final long createTime;
+        final long deadline;
+
+
+        AckWaiter(final PutCallback cb, final ResponseCommand response, final long createTime, final long deadline) {
+            super();
+            this.cb = cb;
+            this.response = response;
+            this.createTime = createTime;
+            this.deadline = deadline;
+        }
+    }
+
+    static class SlaveProgress {
+        // Ѿslaveoffset
+        volatile long transferredOffset;
+        // һʱ
+        volatile long lastRequestTime;
+        // ʼmasterʱ䣬0ʾѾ׷ƽ
+        volatile long behindSince;
+    }
+
+    private final MetaStore metaStore;
+    private final long holdInMills;
+    private final ConcurrentLinkedQueue<HeldRequest> heldRequests = new ConcurrentLinkedQueue<HeldRequest>();
+    private final AtomicInteger heldRequestCount = new AtomicInteger(0);
+    private final ConcurrentHashMap<String, SlaveProgress> slaves = new ConcurrentHashMap<String, SlaveProgress>();
+    private final AtomicLong transferredBytes = new AtomicLong(0);
+
+    // һslaveȷϵoffset
+    private final AtomicLong ackedOffset = new AtomicLong(0);
+    // һյһslaveʱ
+    private volatile long lastSlaveRequestTime;
+    // Ϣoffset -> ȴslaveȷϵputӦ
+    private final ConcurrentSkipListMap<Long, AckWaiter> ackWaiters = new ConcurrentSkipListMap<Long, AckWaiter>();
+    private final AtomicLong slaveAckCount = new AtomicLong(0);
+    private final AtomicLong slaveAckTimeInMills = new AtomicLong(0);
+    private final AtomicLong slaveAckTimeoutCount = new AtomicLong(0);
+    private final AtomicLong slaveAckDegradeCount = new AtomicLong(0);
+
+
+    public SlaveReplicationManager(final MetaStore metaStore, final long holdInMills) {
+        super();
+        this.metaStore = metaStore;
+        this.holdInMills = holdInMills;
+    }
+
+
+    /**
+     * ļ̲߳עMBean
+     */
+    @Override
+    public void start() {
+        super.start();
+        MetaMBeanServer.registMBean(this, null);
+    }
+
+
+    /**
+     * slaveȡѾ߹ʱnull
+     *
+     * @param request
+     * @param ctx
+     * @return
+     */
+    public ResponseCommand processGetCommand(final GetCommand request, final SessionContext ctx) {
+        final SlaveProgress progress = this.getProgress(ctx);
+        progress.lastRequestTime = System.currentTimeMillis();
+        this.lastSlaveRequestTime = progress.lastRequestTime;
+        if (!PREFETCH_TOPIC.equals(request.getTopic())) {
+            this.ack(request.getOffset());
+        }
+        // ֻȷϣҪ
+        if (request.getMaxSize() <= 0) {
+            return new BooleanCommand(request.getOpaque(), HttpStatus.Success, null);
+        }
+        if (this.transfer(request, ctx, progress)) {
+            return null;
+        }
+        if (this.holdInMills > 0 && !this.isStoped()) {
+            this.heldRequests.offer(new HeldRequest(request, ctx, System.currentTimeMillis() + this.holdInMills));
+            this.heldRequestCount.incrementAndGet();
+            return null;
+        }
+        return new BooleanCommand(request.getOpaque(), HttpStatus.NotFound, "master no data");
+    }
+
+
+    /**
+     * Ϣдкãѹslave
+     */
+    public void notifyMessageArriving() {
+        if (this.heldRequestCount.get() > 0) {
+            this.wakeup();
+        }
+    }
+
+
+    /**
+     * putɹ֮ãһslaveȷϳoffset֮Ӧ𣬲߳
+     *
+     * @param offset
+     *            ϢеĽoffset
+     * @param timeoutInMills
+     *            ȴȷϵĳʱʱ䣬ʱ˻Ϊ첽Ӧ
+     * @param cb
+     * @param response
+     */
+    public void waitForSlaveAck(final long offset, final long timeoutInMills, final PutCallback cb,
+            final ResponseCommand response) {
+        final long now = System.currentTimeMillis();
+        if (now - this.lastSlaveRequestTime > timeoutInMills) {
+            // ûлԾslave˻Ϊ첽
+            this.slaveAckDegradeCount.incrementAndGet();
+            cb.putComplete(response);
+            return;
+        }
+        this.ackWaiters.put(offset, new AckWaiter(cb, response, now, now + timeoutInMills));
+        // Ǽ֮ǰѾȷ
+        if (this.ackedOffset.get() >= offset) {
+            this.completeAckWaiters(this.ackedOffset.get());
+        }
+    }
+
+
+    /**
+     * slaveȷѾ׷ӵoffset
+     *
+     * @param offset
+     */
+    void ack(final long offset) {
+        for (;;) {
+            final long current = this.ackedOffset.get();
+            if (offset <= current) {
+                break;
+            }
+            if (this.ackedOffset.compareAndSet(current, offset)) {
+                break;
+            }
+        }
+        this.completeAckWaiters(offset);
+    }
+
+
+    private void completeAckWaiters(final long offset) {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<Long, AckWaiter> entry = this.ackWaiters.firstEntry(); entry != null
+                && entry.getKey() <= offset; entry = this.ackWaiters.firstEntry()) {
+            // ȷʱֻƳɹ߳Ӧ
+            if (this.ackWaiters.remove(entry.getKey(), entry.getValue())) {
+                final AckWaiter waiter = entry.getValue();
+                this.slaveAckCount.incrementAndGet();
+                this.slaveAckTimeInMills.addAndGet(now - waiter.createTime);
+                waiter.cb.putComplete(waiter.response);
+            }
+        }
+    }
+
+
+    /**
+     * ʱĵȴ˻Ϊ첽Ӧ
+     *
+     * @param now
+     */
+    void expireAckWaiters(final long now) {
+        for (final Iterator<Map.Entry<Long, AckWaiter>> it = this.ackWaiters.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Long, AckWaiter> entry = it.next();
+            final AckWaiter waiter = entry.getValue();
+            if (waiter.deadline <= now && this.ackWaiters.remove(entry.getKey(), waiter)) {
+                this.slaveAckTimeoutCount.incrementAndGet();
+                waiter.cb.putComplete(waiter.response);
+            }
+        }
+    }
+
+
+    private SlaveProgress getProgress(final SessionContext ctx) {
+        final String slave = String.valueOf(ctx.getConnection().getRemoteSocketAddress());
+        SlaveProgress progress = this.slaves.get(slave);
+        if (progress == null) {
+            progress = new SlaveProgress();
+            final SlaveProgress old = this.slaves.putIfAbsent(slave, progress);
+            if (old != null) {
+                progress = old;
+            }
+        }
+        return progress;
+    }
+
+
+    private boolean transfer(final GetCommand request, final SessionContext ctx, final SlaveProgress progress) {
+        final SelectMapedBufferResult result = this.metaStore.getPhyQueueData(request.getOffset());
+        if (result == null) {
+            return false;
+        }
+        if (result.getSize() <= 0) {
+            result.release();
+            return false;
+        }
+        if (result.getByteBuffer().limit() > request.getMaxSize()) {
+            result.getByteBuffer().limit(request.getMaxSize());
+        }
+        final int size = result.getByteBuffer().limit();
+        final long end = request.getOffset() + size;
+        if (end > progress.transferredOffset) {
+            progress.transferredOffset = end;
+        }
+        if (end >= this.metaStore.getMaxPhyOffset()) {
+            progress.behindSince = 0;
+        }
+        else if (progress.behindSince == 0) {
+            progress.behindSince = System.currentTimeMillis();
+        }
+        this.transferredBytes.addAndGet(size);
+        this.writePageCacheToSlave(request, ctx, result, size);
+        return true;
+    }
+
+
+    private void writePageCacheToSlave(final GetCommand request, final SessionContext ctx,
+            final SelectMapedBufferResult selectMapedBufferResult, final int size) {
+        final IoBuffer head = BrokerCommandProcessor.makeHead(request.getOpaque(), size);
+
+        final SingleRequestCallBackListener listener = new SingleRequestCallBackListener() {
+
+            @Override
+            public void onResponse(final ResponseCommand responseCommand, final Connection conn) {
+                selectMapedBufferResult.release();
+            }
+
+
+            @Override
+            public void onException(final Exception e) {
+                selectMapedBufferResult.release();
+            }
+
+
+            @Override
+            public ThreadPoolExecutor getExecutor() {
+                return null;
+            }
+        };
+
+        try {
+            final List<ByteBuffer> bufferList = new ArrayList<ByteBuffer>();
+            bufferList.add(selectMapedBufferResult.getByteBuffer());
+            ctx.getConnection().transferPageCache(head, null, bufferList, 0, size, request.getOpaque(), listener,
+                10000L, TimeUnit.MILLISECONDS);
+        }
+        catch (final NotifyRemotingException e) {
+            selectMapedBufferResult.release();
+        }
+    }
+
+
+    @Override
+    public void run() {
+        log.info(this.getServiceName() + " service started");
+        while (!this.isStoped()) {
+            try {
+                this.waitForRunning(CHECK_INTERVAL_MILLS);
+                this.checkHeldRequests(false);
+                this.expireAckWaiters(System.currentTimeMillis());
+                this.expireSlaves();
+            }
+            catch (final Throwable e) {
+                log.error("Check held slave requests failed", e);
+            }
+        }
+        // ֹͣʱй͵ȴȷϵput
+        this.checkHeldRequests(true);
+        this.expireAckWaiters(Long.MAX_VALUE);
+        log.info(this.getServiceName() + " service end");
+    }
+
+
+    private void checkHeldRequests(final boolean all) {
+        if (this.heldRequestCount.get() == 0) {
+            return;
+        }
+        final long maxOffset = this.metaStore.getMaxPhyOffset();
+        final long now = System.currentTimeMillis();
+        for (final Iterator<HeldRequest> it = this.heldRequests.iterator(); it.hasNext();) {
+            final HeldRequest held = it.next();
+            boolean done = false;
+            if (held.request.getOffset() < maxOffset) {
+                done = this.transfer(held.request, held.ctx, this.getProgress(held.ctx));
+            }
+            if (!done && (all || held.deadline <= now)) {
+                RemotingUtils.response(held.ctx.getConnection(), new BooleanCommand(held.request.getOpaque(),
+                    HttpStatus.NotFound, "master no data"));
+                done = true;
+            }
+            if (done) {
+                it.remove();
+                this.heldRequestCount.decrementAndGet();
+            }
+        }
+    }
+
+
+    private void expireSlaves() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<SlaveProgress> it = this.slaves.values().iterator(); it.hasNext();) {
+            if (now - it.next().lastRequestTime > SLAVE_EXPIRE_MILLS) {
+                it.remove();
+            }
+        }
+    }
+
+
+    private long getLagInBytes(final SlaveProgress progress, final long maxOffset) {
+        return Math.max(0, maxOffset - progress.transferredOffset);
+    }
+
+
+    private long getLagInMills(final SlaveProgress progress, final long maxOffset, final long now) {
+        if (this.getLagInBytes(progress, maxOffset) == 0) {
+            return 0;
+        }
+        // ûм¼ʼʱ䣬˵֮slaveһֱû
+        final long since = progress.behindSince > 0 ? progress.behindSince : progress.lastRequestTime;
+        return Math.max(0, now - since);
+    }
+
+
+    @Override
+    public String getServiceName() {
+        return SlaveReplicationManager.class.getSimpleName();
+    }
+
+
+    @Override
+    public long getHoldInMills() {
+        return this.holdInMills;
+    }
+
+
+    @Override
+    public int getHeldRequestCount() {
+        return this.heldRequestCount.get();
+    }
+
+
+    @Override
+    public long getTransferredBytes() {
+        return this.transferredBytes.get();
+    }
+
+
+    @Override
+    public String getSlaveReplicationInfo() {
+        final long maxOffset = this.metaStore.getMaxPhyOffset();
+        final long now = System.currentTimeMillis();
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, SlaveProgress> entry : this.slaves.entrySet()) {
+            final SlaveProgress progress = entry.getValue();
+            sb.append(entry.getKey()).append(" ").append(progress.transferredOffset).append(" ")
+                .append(this.getLagInBytes(progress, maxOffset)).append(" ")
+                .append(this.getLagInMills(progress, maxOffset, now)).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+
+    @Override
+    public long getAckedOffset() {
+        return this.ackedOffset.get();
+    }
+
+
+    @Override
+    public int getAckWaiterCount() {
+        return this.ackWaiters.size();
+    }
+
+
+    @Override
+    public long getSlaveAckCount() {
+        return this.slaveAckCount.get();
+    }
+
+
+    @Override
+    public long getSlaveAckAvgTimeInMills() {
+        final long count = this.slaveAckCount.get();
+        return count == 0 ? 0 : this.slaveAckTimeInMills.get() / count;
+    }
+
+
+    @Override
+    public long getSlaveAckTimeoutCount() {
+        return this.slaveAckTimeoutCount.get();
+    }
+
+
+    @Override
+    public long getSlaveAckDegradeCount() {
+        return this.slaveAckDegradeCount.get();
+    }
+
+
+    @Override
+    public long getMaxSlaveLagInBytes() {
+        final long maxOffset = this.metaStore.getMaxPhyOffset();
+        long rt = 0;
+        for (final SlaveProgress progress : this.slaves.values()) {
+            rt = Math.max(rt, this.getLagInBytes(progress, maxOffset));
+        }
+        return rt;
+    }
+
+
+    @Override
+    public long getMaxSlaveLagInMills() {
+        final long maxOffset = this.metaStore.getMaxPhyOffset();
+        final long now = System.currentTimeMillis();
+        long rt = 0;
+        for (final SlaveProgress progress : this.slaves.values()) {
+            rt = Math.max(rt, this.getLagInMills(progress, maxOffset, now));
+        }
+        return rt;
+    }
+}
@@ -0,0 +1,102 @@
+package com.taobao.metamorphosis.server.assembly;
+
+/**
+ * masterslaveƵMBeanӿ
+ *
+ */
+public interface SlaveReplicationManagerMBean {
+    /**
+     * ûʱslaveʱ䣬λ룬0ʾ
+     *
+     * @return
+     */
+    public long getHoldInMills();
+
+
+    /**
+     * ǰslave
+     *
+     * @return
+     */
+    public int getHeldRequestCount();
+
+
+    /**
+     * Ѿslaveֽ
+     *
+     * @return
+     */
+    public long getTransferredBytes();
+
+
+    /**
+     * ÿslaveĸƽȣʽΪ"slaveַ Ѵoffset ӳֽ ӳٺ"ÿһslave
+     *
+     * @return
+     */
+    public String getSlaveReplicationInfo();
+
+
+    /**
+     * һslaveȷϵoffset
+     *
+     * @return
+     */
+    public long getAckedOffset();
+
+
+    /**
+     * ȴslaveȷϵput
+     *
+     * @return
+     */
+    public int getAckWaiterCount();
+
+
+    /**
+     * slaveȷϺӦput
+     *
+     * @return
+     */
+    public long getSlaveAckCount();
+
+
+    /**
+     * putȴslaveȷϵƽʱ䣬λ
+     *
+     * @return
+     */
+    public long getSlaveAckAvgTimeInMills();
+
+
+    /**
+     * ȴslaveȷϳʱ˻Ϊ첽Ӧput
+     *
+     * @return
+     */
+    public long getSlaveAckTimeoutCount();
+
+
+    /**
+     * ûslaveֱ˻Ϊ첽Ӧput
+     *
+     * @return
+     */
+    public long getSlaveAckDegradeCount();
+
+
+    /**
+     * slaveӳֽ
+     *
+     * @return
+     */
+    public long getMaxSlaveLagInBytes();
+
+
+    /**
+     * slaveӳٺ
+     *
+     * @return
+     */
+    public long getMaxSlaveLagInMills();
+}
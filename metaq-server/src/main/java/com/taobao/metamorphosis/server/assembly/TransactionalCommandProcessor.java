@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -63,7 +64,9 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
     private final TransactionStore transactionStore;
     private final HeuristicTransactionJournal heuristicTransactionJournal;
     // The prepared XA transactions.
-    private final Map<TransactionId, XATransaction> xaTransactions = new LinkedHashMap<TransactionId, XATransaction>();
+    // ֶμͬxidbegin/prepare/commitrecoverʱصpreparedб
+    private final ConcurrentHashMap<TransactionId, XATransaction> xaTransactions =
+            new ConcurrentHashMap<TransactionId, XATransaction>(1024, 0.75f, 64);
 
     /**
      * ֹύ߻ع
@@ -132,15 +135,13 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
     @Override
     public TransactionId[] getPreparedTransactions(final SessionContext context) throws Exception {
         final List<TransactionId> txs = new ArrayList<TransactionId>();
-        synchronized (this.xaTransactions) {
-            for (final Iterator<XATransaction> iter = this.xaTransactions.values().iterator(); iter.hasNext();) {
-                final Transaction tx = iter.next();
-                if (tx.isPrepared()) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("prepared transaction: " + tx.getTransactionId());
-                    }
-                    txs.add(tx.getTransactionId());
+        for (final Iterator<XATransaction> iter = this.xaTransactions.values().iterator(); iter.hasNext();) {
+            final Transaction tx = iter.next();
+            if (tx.isPrepared()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("prepared transaction: " + tx.getTransactionId());
                 }
+                txs.add(tx.getTransactionId());
             }
         }
         synchronized (this.xaHeuristicTransactions) {
@@ -165,14 +166,13 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
         Transaction transaction = null;
         if (xid.isXATransaction()) {
             this.statsManager.statsTxBegin(true, 1);
-            transaction = null;
-            synchronized (this.xaTransactions) {
-                transaction = this.xaTransactions.get(xid);
-                if (transaction != null) {
-                    return;
-                }
-                transaction = new XATransaction(this, this.transactionStore, (XATransactionId) xid);
-                this.xaTransactions.put(xid, (XATransaction) transaction);
+            transaction = this.xaTransactions.get(xid);
+            if (transaction != null) {
+                return;
+            }
+            transaction = new XATransaction(this, this.transactionStore, (XATransactionId) xid);
+            if (this.xaTransactions.putIfAbsent(xid, (XATransaction) transaction) != null) {
+                return;
             }
         }
         else {
@@ -375,9 +375,7 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
             throws MetamorphosisException, XAException {
         Transaction transaction = null;
         if (xid.isXATransaction()) {
-            synchronized (this.xaTransactions) {
-                transaction = this.xaTransactions.get(xid);
-            }
+            transaction = this.xaTransactions.get(xid);
         }
         else {
             transaction = context.getTransactions().get(xid);
@@ -426,9 +424,7 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
 
     @Override
     public void removeTransaction(final XATransactionId xid) {
-        synchronized (this.xaTransactions) {
-            this.xaTransactions.remove(xid);
-        }
+        this.xaTransactions.remove(xid);
     }
 
     static final Log log = LogFactory.getLog(TransactionalCommandProcessor.class);
@@ -529,9 +525,7 @@ public class TransactionalCommandProcessor extends CommandProcessorFilter implem
         if (transaction == null || !transaction.isPrepared()) {
             return;
         }
-        synchronized (this.xaTransactions) {
-            this.xaTransactions.remove(xid);
-        }
+        this.xaTransactions.remove(xid);
         transaction.setState(Transaction.HEURISTIC_COMPLETE_STATE);
         synchronized (this.xaHeuristicTransactions) {
             this.xaHeuristicTransactions.put(xid, (XATransaction) transaction);
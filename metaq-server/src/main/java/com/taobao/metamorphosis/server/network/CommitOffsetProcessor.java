@@ -0,0 +1,46 @@
+package com.taobao.metamorphosis.server.network;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.service.Connection;
+import com.taobao.gecko.service.RequestProcessor;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
+import com.taobao.metamorphosis.network.RemotingUtils;
+import com.taobao.metamorphosis.server.CommandProcessor;
+
+
+/**
+ * offsetύoffsetbroker
+ *
+ */
+public class CommitOffsetProcessor implements RequestProcessor<CommitOffsetCommand> {
+
+    private final ThreadPoolExecutor executor;
+
+    private final CommandProcessor processor;
+
+
+    public CommitOffsetProcessor(final CommandProcessor processor, final ThreadPoolExecutor executor) {
+        super();
+        this.processor = processor;
+        this.executor = executor;
+    }
+
+
+    @Override
+    public ThreadPoolExecutor getExecutor() {
+        return this.executor;
+    }
+
+
+    @Override
+    public void handleRequest(final CommitOffsetCommand request, final Connection conn) {
+        final ResponseCommand response =
+                this.processor.processCommitOffsetCommand(request, SessionContextHolder.getOrCreateSessionContext(conn,
+                    null));
+        if (response != null) {
+            RemotingUtils.response(conn, response);
+        }
+    }
+}
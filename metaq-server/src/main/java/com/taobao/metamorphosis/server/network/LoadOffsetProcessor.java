@@ -0,0 +1,46 @@
+package com.taobao.metamorphosis.server.network;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.service.Connection;
+import com.taobao.gecko.service.RequestProcessor;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
+import com.taobao.metamorphosis.network.RemotingUtils;
+import com.taobao.metamorphosis.server.CommandProcessor;
+
+
+/**
+ * brokeroffsetѯ
+ *
+ */
+public class LoadOffsetProcessor implements RequestProcessor<LoadOffsetCommand> {
+
+    private final ThreadPoolExecutor executor;
+
+    private final CommandProcessor processor;
+
+
+    public LoadOffsetProcessor(final CommandProcessor processor, final ThreadPoolExecutor executor) {
+        super();
+        this.processor = processor;
+        this.executor = executor;
+    }
+
+
+    @Override
+    public ThreadPoolExecutor getExecutor() {
+        return this.executor;
+    }
+
+
+    @Override
+    public void handleRequest(final LoadOffsetCommand request, final Connection conn) {
+        final ResponseCommand response =
+                this.processor.processLoadOffsetCommand(request, SessionContextHolder.getOrCreateSessionContext(conn,
+                    null));
+        if (response != null) {
+            RemotingUtils.response(conn, response);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.taobao.metamorphosis.server.stats;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.taobao.metamorphosis.utils.StripedCounter;
+
+
+/**
+ * brokerָעtopic-partitionάдoffset͸λã
+ * ʱֻעҪʴ洢ʽΪprometheusıʽֱӱץȡ
+ * <ul>
+ * <li>дɹʱrecordPutۼϢֽƽoffset</li>
+ * <li>ȡʱrecordFetch¼÷ȡoffsetӳ=offset-ȡoffset</li>
+ * <li>groupExpireInMillsûȡķڵʱƳߵķ鲻һֱע</li>
+ * <li>ַӳ١ӳٵȫָͨregisterGaugeעᣬʱȡ</li>
+ * </ul>
+ *
+ */
+public class BrokerMetrics {
+    // дʵļ㴰ڣλ
+    static final long RATE_WINDOW_MILLS = 10 * 1000L;
+    // жúƳĬһ
+    static final long DEFAULT_GROUP_EXPIRE_MILLS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * ʱȡȫָ
+     */
+    public interface Gauge {
+        public long getValue();
+    }
+
+    /**
+     * һȡoffsetʱ
+     */
+    static class GroupOffset {
+        volatile long offset;
+        volatile long lastFetchTime;
+
+
+        GroupOffset(final long offset, final long lastFetchTime) {
+            this.offset = offset;
+            this.lastFetchTime = lastFetchTime;
+        }
+    }
+
+    static class PartitionMetrics {
+        final String topic;
+        final int partition;
+        final StripedCounter messages = new StripedCounter();
+        final StripedCounter bytes = new StripedCounter();
+        volatile long maxOffset;
+        final ConcurrentHashMap<String/* group */, GroupOffset> groupOffsets =
+                new ConcurrentHashMap<String, GroupOffset>();
+        // ʲ㣬ʱ
+        private long prevCount;
+        private long prevTime = System.currentTimeMillis();
+        private long lastCount;
+        private long lastTime = this.prevTime;
+
+
+        PartitionMetrics(final String topic, final int partition) {
+            this.topic = topic;
+            this.partition = partition;
+        }
+
+
+        void advanceMaxOffset(final long offset) {
+            // дʱ󣬲Ӱӳٵ
+            if (offset > this.maxOffset) {
+                this.maxOffset = offset;
+            }
+        }
+
+
+        /**
+         * һϵƽдʣÿϢ
+         */
+        synchronized double rate(final long now) {
+            final long count = this.messages.sum();
+            if (now - this.lastTime >= RATE_WINDOW_MILLS) {
+                this.prevCount = this.lastCount;
+                this.prevTime = this.lastTime;
+                this.lastCount = count;
+                this.lastTime = now;
+            }
+            final long duration = now - this.prevTime;
+            return duration <= 0 ? 0 : (count - this.prevCount) * 1000.0 / duration;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, PartitionMetrics>> partitions =
+            new ConcurrentHashMap<String, ConcurrentHashMap<Integer, PartitionMetrics>>();
+    private final Map<String/* name */, Gauge> gauges = new ConcurrentSkipListMap<String, Gauge>();
+    private final long groupExpireInMills;
+
+
+    public BrokerMetrics() {
+        this(DEFAULT_GROUP_EXPIRE_MILLS);
+    }
+
+
+    /**
+     * @param groupExpireInMills
+     *            鳬ʱûȡٵСڵ0ʾ
+     */
+    public BrokerMetrics(final long groupExpireInMills) {
+        this.groupExpireInMills = groupExpireInMills;
+    }
+
+
+    PartitionMetrics getPartitionMetrics(final String topic, final int partition) {
+        ConcurrentHashMap<Integer, PartitionMetrics> topicMap = this.partitions.get(topic);
+        if (topicMap == null) {
+            topicMap = new ConcurrentHashMap<Integer, PartitionMetrics>();
+            final ConcurrentHashMap<Integer, PartitionMetrics> old =
+                    this.partitions.putIfAbsent(topic, topicMap);
+            if (old != null) {
+                topicMap = old;
+            }
+        }
+        PartitionMetrics metrics = topicMap.get(partition);
+        if (metrics == null) {
+            metrics = new PartitionMetrics(topic, partition);
+            final PartitionMetrics old = topicMap.putIfAbsent(partition, metrics);
+            if (old != null) {
+                metrics = old;
+            }
+        }
+        return metrics;
+    }
+
+
+    /**
+     * ¼һγɹд
+     *
+     * @param topic
+     * @param partition
+     * @param bytes
+     *            Ϣֽ
+     * @param offset
+     *            дoffset
+     */
+    public void recordPut(final String topic, final int partition, final int bytes, final long offset) {
+        final PartitionMetrics metrics = this.getPartitionMetrics(topic, partition);
+        metrics.messages.increment();
+        metrics.bytes.add(bytes);
+        metrics.advanceMaxOffset(offset);
+    }
+
+
+    /**
+     * ¼һȡ
+     *
+     * @param topic
+     * @param partition
+     * @param group
+     * @param offset
+     *            ȡoffset
+     * @param maxOffset
+     *            ȡʱoffset
+     */
+    public void recordFetch(final String topic, final int partition, final String group, final long offset,
+            final long maxOffset) {
+        final PartitionMetrics metrics = this.getPartitionMetrics(topic, partition);
+        metrics.advanceMaxOffset(maxOffset);
+        final long now = System.currentTimeMillis();
+        final GroupOffset groupOffset = metrics.groupOffsets.get(group);
+        if (groupOffset == null) {
+            metrics.groupOffsets.put(group, new GroupOffset(offset, now));
+        }
+        else {
+            // 뵼ʱƳʱඪʧһθ£´ȡ¼
+            groupOffset.offset = offset;
+            groupOffset.lastFetchTime = now;
+        }
+    }
+
+
+    public void registerGauge(final String name, final Gauge gauge) {
+        this.gauges.put(name, gauge);
+    }
+
+
+    /**
+     * ֻеtopictopicñʱ
+     *
+     * @param topics
+     */
+    public void retainTopics(final Collection<String> topics) {
+        this.partitions.keySet().retainAll(topics);
+    }
+
+
+    public void clear() {
+        this.partitions.clear();
+    }
+
+
+    /**
+     * prometheusıʽָ
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void write(final Writer writer) throws IOException {
+        this.write(writer, System.currentTimeMillis());
+    }
+
+
+    void write(final Writer writer, final long now) throws IOException {
+        final StringBuilder messages = new StringBuilder(1024);
+        final StringBuilder bytes = new StringBuilder(1024);
+        final StringBuilder rates = new StringBuilder(1024);
+        final StringBuilder maxOffsets = new StringBuilder(1024);
+        final StringBuilder groupOffsets = new StringBuilder(1024);
+        final StringBuilder lags = new StringBuilder(1024);
+        for (final ConcurrentHashMap<Integer, PartitionMetrics> topicMap : this.partitions.values()) {
+            for (final PartitionMetrics metrics : topicMap.values()) {
+                final String labels =
+                        "topic=\"" + escape(metrics.topic) + "\",partition=\"" + metrics.partition + "\"";
+                final long maxOffset = metrics.maxOffset;
+                appendSample(messages, "metaq_put_messages_total", labels, metrics.messages.sum());
+                appendSample(bytes, "metaq_put_bytes_total", labels, metrics.bytes.sum());
+                appendSample(rates, "metaq_put_rate", labels, metrics.rate(now));
+                appendSample(maxOffsets, "metaq_max_offset", labels, maxOffset);
+                for (final Map.Entry<String, GroupOffset> entry : metrics.groupOffsets.entrySet()) {
+                    final GroupOffset groupOffset = entry.getValue();
+                    if (this.groupExpireInMills > 0 && now - groupOffset.lastFetchTime > this.groupExpireInMills) {
+                        metrics.groupOffsets.remove(entry.getKey(), groupOffset);
+                        continue;
+                    }
+                    final String groupLabels = labels + ",group=\"" + escape(entry.getKey()) + "\"";
+                    final long offset = groupOffset.offset;
+                    appendSample(groupOffsets, "metaq_consumer_offset", groupLabels, offset);
+                    appendSample(lags, "metaq_consumer_lag", groupLabels, Math.max(0, maxOffset - offset));
+                }
+            }
+        }
+        writeFamily(writer, "metaq_put_messages_total", "counter", "Messages put per partition", messages);
+        writeFamily(writer, "metaq_put_bytes_total", "counter", "Bytes put per partition", bytes);
+        writeFamily(writer, "metaq_put_rate", "gauge", "Messages put per second in the last window", rates);
+        writeFamily(writer, "metaq_max_offset", "gauge", "Max logical offset per partition", maxOffsets);
+        writeFamily(writer, "metaq_consumer_offset", "gauge", "Last fetch offset per consumer group",
+            groupOffsets);
+        writeFamily(writer, "metaq_consumer_lag", "gauge", "Max offset minus last fetch offset", lags);
+        for (final Map.Entry<String, Gauge> entry : this.gauges.entrySet()) {
+            final StringBuilder sb = new StringBuilder();
+            appendSample(sb, entry.getKey(), null, entry.getValue().getValue());
+            writeFamily(writer, entry.getKey(), "gauge", null, sb);
+        }
+    }
+
+
+    private static void writeFamily(final Writer writer, final String name, final String type,
+            final String help, final StringBuilder samples) throws IOException {
+        if (samples.length() == 0) {
+            return;
+        }
+        if (help != null) {
+            writer.write("# HELP " + name + " " + help + "\n");
+        }
+        writer.write("# TYPE " + name + " " + type + "\n");
+        writer.write(samples.toString());
+    }
+
+
+    private static void appendSample(final StringBuilder sb, final String name, final String labels,
+            final Object value) {
+        sb.append(name);
+        if (labels != null) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+
+    static String escape(final String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
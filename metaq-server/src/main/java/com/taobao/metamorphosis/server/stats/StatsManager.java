@@ -7,7 +7,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
@@ -21,10 +20,14 @@ import com.taobao.metamorphosis.server.store.MessageStore;
 import com.taobao.metamorphosis.server.store.MessageStoreManager;
 import com.taobao.metamorphosis.server.utils.BuildProperties;
 import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.utils.MessageTracer;
 import com.taobao.metamorphosis.utils.MetaStatLog;
+import com.taobao.metamorphosis.utils.MetaStatLog.StatCounter;
 import com.taobao.metamorphosis.utils.StatConstants;
+import com.taobao.metamorphosis.utils.StripedCounter;
 import com.taobao.metaq.store.DefaultMetaStore;
 import com.taobao.metaq.store.MetaQueueLogistic;
+import com.taobao.metaq.store.MetaStatsService;
 import com.taobao.metaq.store.MetaStore;
 
 
@@ -40,22 +43,26 @@ import com.taobao.metaq.store.MetaStore;
 public class StatsManager implements Service {
     private final static Log log = LogFactory.getLog(StatsManager.class);
     private long startupTimestamp;
-    private AtomicLong cmdPut;
-    private AtomicLong txBegin;
-    private AtomicLong txXABegin;
-    private AtomicLong txCommit;
-    private AtomicLong txRollback;
-    private AtomicLong cmdGet;
-    private AtomicLong cmdOffset;
-    private AtomicLong getMiss;
-    private AtomicLong getFailed;
-    private AtomicLong putFailed;
+    private StripedCounter cmdPut;
+    private StripedCounter txBegin;
+    private StripedCounter txXABegin;
+    private StripedCounter txCommit;
+    private StripedCounter txRollback;
+    private StripedCounter cmdGet;
+    private StripedCounter cmdOffset;
+    private StripedCounter getMiss;
+    private StripedCounter getFailed;
+    private StripedCounter putFailed;
     private final MessageStoreManager messageStoreManager;
     private final RemotingServer remotingServer;
     private RealTimeStat realTimeStat;
     private final MetaConfig metaConfig;
     private Set<Pattern> legalTopicPatSet = new HashSet<Pattern>();
     private final MetaStore metaStore;
+    // ÿtopicǷҪͳԼӦļÿƥ
+    private final ConcurrentHashMap<String/* topic */, TopicStats> topicStatsMap =
+            new ConcurrentHashMap<String, TopicStats>();
+    private final BrokerMetrics brokerMetrics;
 
     private final boolean startRealTimeStat = Boolean.valueOf(System.getProperty("meta.realtime.stat", "true"));
 
@@ -68,16 +75,17 @@ public class StatsManager implements Service {
         this.messageStoreManager = messageStoreManager;
         this.metaStore = metaStore;
         this.remotingServer = remotingServer;
-        this.cmdPut = new AtomicLong(0);
-        this.cmdGet = new AtomicLong(0);
-        this.cmdOffset = new AtomicLong(0);
-        this.getMiss = new AtomicLong(0);
-        this.getFailed = new AtomicLong(0);
-        this.putFailed = new AtomicLong(0);
-        this.txBegin = new AtomicLong(0);
-        this.txXABegin = new AtomicLong(0);
-        this.txRollback = new AtomicLong(0);
-        this.txCommit = new AtomicLong(0);
+        this.brokerMetrics = new BrokerMetrics(metaConfig.getMetricsGroupExpireInMills());
+        this.cmdPut = new StripedCounter();
+        this.cmdGet = new StripedCounter();
+        this.cmdOffset = new StripedCounter();
+        this.getMiss = new StripedCounter();
+        this.getFailed = new StripedCounter();
+        this.putFailed = new StripedCounter();
+        this.txBegin = new StripedCounter();
+        this.txXABegin = new StripedCounter();
+        this.txRollback = new StripedCounter();
+        this.txCommit = new StripedCounter();
         this.realTimeStat = new RealTimeStat();
         this.legalTopicPatSet = new HashSet<Pattern>();
         
@@ -86,6 +94,7 @@ public class StatsManager implements Service {
             @Override
             public void propertyChange(final PropertyChangeEvent evt) {
                 StatsManager.this.makeTopicsPatSet();
+                StatsManager.this.brokerMetrics.retainTopics(StatsManager.this.metaConfig.getTopics());
             }
         });
 
@@ -98,17 +107,46 @@ public class StatsManager implements Service {
             }
         });
 
-        
+        this.registerStoreGauges();
         this.makeTopicsPatSet();
     }
 
 
+    /**
+     * ַӳȡһͳ(1)Ϣд뵽ַɵĺʱ
+     */
+    private void registerStoreGauges() {
+        if (!(this.metaStore instanceof DefaultMetaStore)) {
+            return;
+        }
+        final MetaStatsService metaStatsService = ((DefaultMetaStore) this.metaStore).getMetaStatsService();
+        this.brokerMetrics.registerGauge("metaq_dispatch_lag_p99_micros", new BrokerMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return metaStatsService.getDispatchHistogram().getIntervalSnapshot().getValueAtPercentile(99);
+            }
+        });
+        this.brokerMetrics.registerGauge("metaq_dispatch_lag_max_micros", new BrokerMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return metaStatsService.getDispatchHistogram().getIntervalSnapshot().getMax();
+            }
+        });
+    }
+
+
+    public BrokerMetrics getBrokerMetrics() {
+        return this.brokerMetrics;
+    }
+
+
     private void makeTopicsPatSet() {
         final Set<Pattern> set = new HashSet<Pattern>();
         for (final String topic : this.metaConfig.getStatTopicSet()) {
             set.add(Pattern.compile(topic.replaceAll("\\*", ".*")));
         }
         this.legalTopicPatSet = set;
+        this.topicStatsMap.clear();
     }
 
 
@@ -140,6 +178,10 @@ public class StatsManager implements Service {
         else if ("store".equals(item)) {
             this.appendStore(sb);
         }
+        else if ("trace".equals(item)) {
+            // Ϣ׶εĺʱֲ
+            sb.append(MessageTracer.getTraceInfoString());
+        }
         else {
             // Ϊtopic
             this.appendTopic(item, sb);
@@ -295,15 +337,15 @@ public class StatsManager implements Service {
         this.append(sb, "version", this.getVersion());
         this.append(sb, "curr_connections", this.getCurrentConnectionCount());
         this.append(sb, "threads", this.getCurrentThreads());
-        this.append(sb, "cmd_put", this.cmdPut.get());
-        this.append(sb, "cmd_get", this.cmdGet.get());
-        this.append(sb, "cmd_offset", this.cmdOffset.get());
-        this.append(sb, "tx_begin", this.txBegin.get());
-        this.append(sb, "tx_xa_begin", this.txXABegin.get());
-        this.append(sb, "tx_commit", this.txCommit.get());
-        this.append(sb, "tx_rollback", this.txRollback.get());
-        this.append(sb, StatConstants.GET_MISS, this.getMiss.get());
-        this.append(sb, StatConstants.PUT_FAILED, this.putFailed.get());
+        this.append(sb, "cmd_put", this.cmdPut.sum());
+        this.append(sb, "cmd_get", this.cmdGet.sum());
+        this.append(sb, "cmd_offset", this.cmdOffset.sum());
+        this.append(sb, "tx_begin", this.txBegin.sum());
+        this.append(sb, "tx_xa_begin", this.txXABegin.sum());
+        this.append(sb, "tx_commit", this.txCommit.sum());
+        this.append(sb, "tx_rollback", this.txRollback.sum());
+        this.append(sb, StatConstants.GET_MISS, this.getMiss.sum());
+        this.append(sb, StatConstants.PUT_FAILED, this.putFailed.sum());
         this.append(sb, "total_messages", this.getTotalMessages());
         this.append(sb, "topics", this.getTopicCount());
     }
@@ -340,32 +382,32 @@ public class StatsManager implements Service {
 
 
     public long getCmdPuts() {
-        return this.cmdPut.get();
+        return this.cmdPut.sum();
     }
 
 
     public long getCmdPutFailed() {
-        return this.putFailed.get();
+        return this.putFailed.sum();
     }
 
 
     public long getCmdGets() {
-        return this.cmdGet.get();
+        return this.cmdGet.sum();
     }
 
 
     public long getCmdOffsets() {
-        return this.cmdOffset.get();
+        return this.cmdOffset.sum();
     }
 
 
     public long getCmdGetMiss() {
-        return this.getMiss.get();
+        return this.getMiss.sum();
     }
 
 
     public long getCmdGetFailed() {
-        return this.getFailed.get();
+        return this.getFailed.sum();
     }
 
 
@@ -400,96 +442,212 @@ public class StatsManager implements Service {
 
     public void statsPut(final String topic, String partition, final int c) {
         this.statsRealtimePut(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.CMD_PUT, topic, partition, c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(topicStats.getCounter(topicStats.putCounters, StatConstants.CMD_PUT, partition),
+                c);
+        }
+    }
+
+
+    /**
+     * ͬstatsPut(String, String, int)ַ"brokerId-partition"ֻڵһͳʱ
+     */
+    public void statsPut(final String topic, final int partition, final int c) {
+        this.statsRealtimePut(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(topicStats.getPutCounter(partition), c);
         }
     }
 
 
     public void statsRealtimePut(final int c) {
-        this.cmdPut.addAndGet(c);
+        this.cmdPut.add(c);
     }
 
 
     public void statsGet(final String topic, final String group, final int c) {
-        this.cmdGet.addAndGet(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.CMD_GET, topic, group, c);
+        this.cmdGet.add(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(topicStats.getCounter(topicStats.getCounters, StatConstants.CMD_GET, group), c);
         }
     }
 
 
     public void statsOffset(final String topic, final String group, final int c) {
-        this.cmdOffset.addAndGet(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.CMD_OFFSET, topic, group, c);
+        this.cmdOffset.add(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(
+                topicStats.getCounter(topicStats.offsetCounters, StatConstants.CMD_OFFSET, group), c);
         }
     }
 
 
     public void statsGetMiss(final String topic, final String group, final int c) {
-        this.getMiss.addAndGet(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.GET_MISS, topic, group, c);
+        this.getMiss.add(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(
+                topicStats.getCounter(topicStats.getMissCounters, StatConstants.GET_MISS, group), c);
         }
     }
 
 
     public void statsPutFailed(final String topic, final String partition, final int c) {
-        this.putFailed.addAndGet(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.PUT_FAILED, topic, partition, c);
+        this.putFailed.add(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(
+                topicStats.getCounter(topicStats.putFailedCounters, StatConstants.PUT_FAILED, partition), c);
         }
     }
 
 
     public void statsGetFailed(final String topic, final String group, final int c) {
-        this.getFailed.addAndGet(c);
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.GET_FAILED, topic, group, c);
+        this.getFailed.add(c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(
+                topicStats.getCounter(topicStats.getFailedCounters, StatConstants.GET_FAILED, group), c);
         }
     }
 
 
     public void statsMessageSize(final String topic, final int c) {
-        if (this.isStatTopic(topic)) {
-            MetaStatLog.addStatValue2(null, StatConstants.MESSAGE_SIZE, topic, c);
+        final TopicStats topicStats = this.getTopicStats(topic);
+        if (topicStats.statTopic) {
+            MetaStatLog.addStatValue(topicStats.getMessageSizeCounter(), c);
         }
     }
 
 
     public void statsTxBegin(final boolean isXA, final int c) {
-        this.txBegin.addAndGet(c);
+        this.txBegin.add(c);
         if (isXA) {
-            this.txXABegin.addAndGet(c);
+            this.txXABegin.add(c);
         }
     }
 
 
     public void statsTxCommit(final int c) {
-        this.txCommit.addAndGet(c);
+        this.txCommit.add(c);
     }
 
 
     public void statsTxRollback(final int c) {
-        this.txRollback.addAndGet(c);
+        this.txRollback.add(c);
     }
 
 
     @Override
     public void dispose() {
-        this.cmdPut = new AtomicLong(0);
-        this.cmdGet = new AtomicLong(0);
-        this.cmdOffset = new AtomicLong(0);
-        this.getMiss = new AtomicLong(0);
-        this.getFailed = new AtomicLong(0);
-        this.putFailed = new AtomicLong(0);
-        this.txBegin = new AtomicLong(0);
-        this.txXABegin = new AtomicLong(0);
-        this.txRollback = new AtomicLong(0);
-        this.txCommit = new AtomicLong(0);
+        this.cmdPut = new StripedCounter();
+        this.cmdGet = new StripedCounter();
+        this.cmdOffset = new StripedCounter();
+        this.getMiss = new StripedCounter();
+        this.getFailed = new StripedCounter();
+        this.putFailed = new StripedCounter();
+        this.txBegin = new StripedCounter();
+        this.txXABegin = new StripedCounter();
+        this.txRollback = new StripedCounter();
+        this.txCommit = new StripedCounter();
         this.realTimeStat.stop();
         this.realTimeStat = new RealTimeStat();
+        this.topicStatsMap.clear();
+        this.brokerMetrics.clear();
+    }
+
+
+    private TopicStats getTopicStats(final String topic) {
+        TopicStats topicStats = this.topicStatsMap.get(topic);
+        if (topicStats == null || topicStats.generation != MetaStatLog.getGeneration()) {
+            topicStats = new TopicStats(topic, this.isStatTopic(topic));
+            this.topicStatsMap.put(topic, topicStats);
+        }
+        return topicStats;
+    }
+
+    /**
+     * topicͳƼ棬MetaStatLogպؽ
+     */
+    private class TopicStats {
+        final String topic;
+        final boolean statTopic;
+        final int generation = MetaStatLog.getGeneration();
+        // ±껺棬дʱ
+        volatile StatCounter[] partitionPutCounters = new StatCounter[0];
+        volatile StatCounter messageSizeCounter;
+        final ConcurrentHashMap<String/* partition */, StatCounter> putCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+        final ConcurrentHashMap<String/* partition */, StatCounter> putFailedCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+        final ConcurrentHashMap<String/* group */, StatCounter> getCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+        final ConcurrentHashMap<String/* group */, StatCounter> offsetCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+        final ConcurrentHashMap<String/* group */, StatCounter> getMissCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+        final ConcurrentHashMap<String/* group */, StatCounter> getFailedCounters =
+                new ConcurrentHashMap<String, StatCounter>();
+
+
+        TopicStats(final String topic, final boolean statTopic) {
+            this.topic = topic;
+            this.statTopic = statTopic;
+        }
+
+
+        StatCounter getCounter(final ConcurrentHashMap<String, StatCounter> counters, final String key,
+                final String subKey) {
+            StatCounter counter = counters.get(subKey);
+            if (counter == null) {
+                counter = MetaStatLog.getStatCounter(key, this.topic, subKey);
+                counters.put(subKey, counter);
+            }
+            return counter;
+        }
+
+
+        StatCounter getPutCounter(final int partition) {
+            final StatCounter[] counters = this.partitionPutCounters;
+            if (partition >= 0 && partition < counters.length && counters[partition] != null) {
+                return counters[partition];
+            }
+            return this.resolvePutCounter(partition);
+        }
+
+
+        private synchronized StatCounter resolvePutCounter(final int partition) {
+            final String partitionString = StatsManager.this.metaConfig.getBrokerId() + "-" + partition;
+            final StatCounter counter = this.getCounter(this.putCounters, StatConstants.CMD_PUT, partitionString);
+            if (partition >= 0 && partition < 65536) {
+                StatCounter[] counters = this.partitionPutCounters;
+                if (partition >= counters.length) {
+                    final StatCounter[] newCounters = new StatCounter[partition + 1];
+                    System.arraycopy(counters, 0, newCounters, 0, counters.length);
+                    counters = newCounters;
+                }
+                else {
+                    counters = counters.clone();
+                }
+                counters[partition] = counter;
+                this.partitionPutCounters = counters;
+            }
+            return counter;
+        }
+
+
+        StatCounter getMessageSizeCounter() {
+            StatCounter counter = this.messageSizeCounter;
+            if (counter == null) {
+                counter = MetaStatLog.getStatCounter(StatConstants.MESSAGE_SIZE, this.topic, "*");
+                this.messageSizeCounter = counter;
+            }
+            return counter;
+        }
     }
 
 
@@ -0,0 +1,331 @@
+package com.taobao.metamorphosis.server.store;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.core.util.LinkedTransferQueue;
+
+
+/**
+ * ͬˢ(unflushThreshold<=0)MessageStoreappend̳߳ء
+ * <p>
+ * ԭÿͬˢ̵ķһ̣߳д벢forceʱ߳fsyncȡ
+ * ̶Ŀworker̸߳ԸһÿworkerһȡеȴmaxBatchBytesд룬
+ * Ȼһ漰ÿļforceһΣصAppendCallbackͬһжfsync
+ * ͬһϵļϵͳ־Ժϲύ
+ * </p>
+ * ͬһͬһworkerд룬дrollļҪ˳ύ˳һ¡
+ * <p>
+ * rollļֻνforce֮飬˵һедmaxStoreBatchBytesĬԭ̵߳512Kһ£
+ * һﵽ޼ΡsegmentĴС೬maxSegmentSizeԼmaxStoreBatchBytesmaxBatchBytes
+ * </p>
+ *
+ */
+public class AppendWorkerPool implements Closeable {
+    static final Log log = LogFactory.getLog(AppendWorkerPool.class);
+
+    public static final int DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_STORE_BATCH_BYTES = 512 * 1024;
+
+    private final AppendWorker[] workers;
+    private final int maxBatchBytes;
+    private final int maxStoreBatchBytes;
+    private volatile boolean closed = false;
+
+    private final AtomicLong appendCount = new AtomicLong(0);
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong flushCount = new AtomicLong(0);
+
+    static final class AppendRequest {
+        final MessageStore store;
+        final ByteBuffer buf;
+        final AppendCallback cb;
+        Location result;
+        boolean completed;
+
+
+        AppendRequest(final MessageStore store, final ByteBuffer buf, final AppendCallback cb) {
+            super();
+            this.store = store;
+            this.buf = buf;
+            this.cb = cb;
+        }
+    }
+
+
+    public AppendWorkerPool(final int workerCount) {
+        this(workerCount, DEFAULT_MAX_BATCH_BYTES);
+    }
+
+
+    /**
+     *
+     * @param workerCount
+     *            worker߳
+     * @param maxBatchBytes
+     *            ÿworkerһдֽforceص
+     */
+    public AppendWorkerPool(final int workerCount, final int maxBatchBytes) {
+        this(workerCount, maxBatchBytes, DEFAULT_MAX_STORE_BATCH_BYTES);
+    }
+
+
+    /**
+     *
+     * @param workerCount
+     *            worker߳
+     * @param maxBatchBytes
+     *            ÿworkerһдֽforceص
+     * @param maxStoreBatchBytes
+     *            һедֽͽΣforceǷrollļ
+     */
+    public AppendWorkerPool(final int workerCount, final int maxBatchBytes, final int maxStoreBatchBytes) {
+        super();
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount <= 0");
+        }
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes <= 0");
+        }
+        if (maxStoreBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxStoreBatchBytes <= 0");
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxStoreBatchBytes = maxStoreBatchBytes;
+        this.workers = new AppendWorker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            this.workers[i] = new AppendWorker("Meta-Append-Worker-" + i);
+            this.workers[i].start();
+        }
+    }
+
+
+    /**
+     * ύһappendд벢ˢ̺صcb
+     *
+     * @param store
+     * @param buf
+     * @param cb
+     */
+    public void submit(final MessageStore store, final ByteBuffer buf, final AppendCallback cb) {
+        if (this.closed) {
+            log.error("Append worker pool was closed,could not append to " + store.getDescription());
+            if (cb != null) {
+                cb.appendComplete(Location.InvalidLocaltion);
+            }
+            return;
+        }
+        final AppendRequest req = new AppendRequest(store, buf, cb);
+        final AppendWorker worker = this.getWorker(store);
+        worker.queue.offer(req);
+        // closeʱworkerѾ˳ڶеʧܣѱȡߵworkerclose
+        if (this.closed && worker.queue.remove(req)) {
+            log.error("Append worker pool was closed,could not append to " + store.getDescription());
+            complete(req, Location.InvalidLocaltion);
+        }
+    }
+
+
+    /**
+     * صÿֻصһ
+     *
+     * @param req
+     * @param location
+     */
+    static void complete(final AppendRequest req, final Location location) {
+        if (req.completed) {
+            return;
+        }
+        req.completed = true;
+        if (req.cb == null) {
+            return;
+        }
+        try {
+            req.cb.appendComplete(location);
+        }
+        catch (final Throwable e) {
+            log.error("Append callback failed", e);
+        }
+    }
+
+
+    AppendWorker getWorker(final MessageStore store) {
+        return this.workers[(store.getDescription().hashCode() & Integer.MAX_VALUE) % this.workers.length];
+    }
+
+
+    /**
+     * ֹͣµ󣬵ȴύϣworker˳ʣصInvalidLocaltion
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        boolean interrupted = false;
+        for (final AppendWorker worker : this.workers) {
+            try {
+                worker.join(5000);
+            }
+            catch (final InterruptedException e) {
+                interrupted = true;
+                break;
+            }
+        }
+        for (final AppendWorker worker : this.workers) {
+            // еworkerᴦԼĶ
+            if (worker.isAlive()) {
+                continue;
+            }
+            AppendRequest req = null;
+            while ((req = worker.queue.poll()) != null) {
+                log.error("Append worker pool was closed,could not append to " + req.store.getDescription());
+                complete(req, Location.InvalidLocaltion);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public int getWorkerCount() {
+        return this.workers.length;
+    }
+
+
+    /**
+     * д
+     *
+     * @return
+     */
+    public long getAppendCount() {
+        return this.appendCount.get();
+    }
+
+
+    /**
+     * appendCount/batchCountƽÿϲ
+     *
+     * @return
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+
+    /**
+     * forceļ
+     *
+     * @return
+     */
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    final class AppendWorker extends Thread {
+        final LinkedTransferQueue<AppendRequest> queue = new LinkedTransferQueue<AppendRequest>();
+
+
+        AppendWorker(final String name) {
+            super(name);
+        }
+
+
+        @Override
+        public void run() {
+            final List<AppendRequest> batch = new ArrayList<AppendRequest>();
+            // дstore״д˳force
+            final Map<MessageStore, Boolean> dirtyStores = new IdentityHashMap<MessageStore, Boolean>();
+            final List<MessageStore> flushOrder = new ArrayList<MessageStore>();
+            // ÿstoreдֽ
+            final Map<MessageStore, Long> storeBytes = new IdentityHashMap<MessageStore, Long>();
+            while (!AppendWorkerPool.this.closed || !this.queue.isEmpty()) {
+                try {
+                    AppendRequest req = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                    long bytes = 0;
+                    while (req != null) {
+                        batch.add(req);
+                        final int size = this.append(req, dirtyStores, flushOrder);
+                        bytes += size;
+                        final Long old = storeBytes.get(req.store);
+                        final long sizeOfStore = old == null ? size : old + size;
+                        storeBytes.put(req.store, sizeOfStore);
+                        if (bytes >= AppendWorkerPool.this.maxBatchBytes
+                                || sizeOfStore >= AppendWorkerPool.this.maxStoreBatchBytes) {
+                            break;
+                        }
+                        req = this.queue.poll();
+                    }
+                    if (!batch.isEmpty()) {
+                        this.commit(batch, dirtyStores, flushOrder);
+                    }
+                }
+                catch (final InterruptedException e) {
+                    // ignore
+                }
+                catch (final Throwable e) {
+                    // λûлصΪʧܣworker
+                    log.error("Append worker process batch failed", e);
+                    for (final AppendRequest req : batch) {
+                        complete(req, Location.InvalidLocaltion);
+                    }
+                }
+                finally {
+                    batch.clear();
+                    dirtyStores.clear();
+                    flushOrder.clear();
+                    storeBytes.clear();
+                }
+            }
+        }
+
+
+        private int append(final AppendRequest req, final Map<MessageStore, Boolean> dirtyStores,
+                final List<MessageStore> flushOrder) {
+            final int remainning = req.buf.remaining();
+            try {
+                req.result = req.store.appendToLast(req.buf);
+                if (dirtyStores.put(req.store, Boolean.TRUE) == null) {
+                    flushOrder.add(req.store);
+                }
+            }
+            catch (final Throwable e) {
+                log.error("Append message to " + req.store.getDescription() + " failed", e);
+                req.result = Location.InvalidLocaltion;
+            }
+            return remainning;
+        }
+
+
+        private void commit(final List<AppendRequest> batch, final Map<MessageStore, Boolean> dirtyStores,
+                final List<MessageStore> flushOrder) {
+            for (final MessageStore store : flushOrder) {
+                try {
+                    store.flushAndMayBeRoll();
+                    AppendWorkerPool.this.flushCount.incrementAndGet();
+                }
+                catch (final Throwable e) {
+                    log.error("Flush " + store.getDescription() + " failed", e);
+                    dirtyStores.put(store, Boolean.FALSE);
+                }
+            }
+            AppendWorkerPool.this.appendCount.addAndGet(batch.size());
+            AppendWorkerPool.this.batchCount.incrementAndGet();
+            for (final AppendRequest req : batch) {
+                // ˢʧܵķεд붼Ϊʧ
+                complete(req,
+                    Boolean.FALSE.equals(dirtyStores.get(req.store)) ? Location.InvalidLocaltion : req.result);
+            }
+        }
+    }
+
+}
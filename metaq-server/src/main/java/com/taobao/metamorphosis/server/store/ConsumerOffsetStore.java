@@ -0,0 +1,266 @@
+package com.taobao.metamorphosis.server.store;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.network.ByteUtils;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+
+
+/**
+ * broker˱offset洢ΪصĽ־
+ *
+ * ÿύ־β׷"group topic partition msgId offset\n"ڴֻÿֵ
+ * ־¼ֵCOMPACT_RATIOʱֵдʱļ滻־
+ * ־Сͷȡ
+ *
+ */
+public class ConsumerOffsetStore {
+    static final Log log = LogFactory.getLog(ConsumerOffsetStore.class);
+
+    static final String LOG_FILE = "offsets.log";
+    static final String COMPACT_FILE = "offsets.log.compact";
+
+    // ־¼ֵʱѹ
+    static final int COMPACT_RATIO = 4;
+    // ¼̫ʱѹƵд
+    static final int MIN_COMPACT_RECORDS = 10000;
+
+    private final File dir;
+    private final int minCompactRecords;
+    private final Map<String/* group topic partition */, OffsetEntry> offsets = new HashMap<String, OffsetEntry>();
+    private FileChannel channel;
+    // ־еļ¼
+    private long records;
+
+
+    public ConsumerOffsetStore(final File dir) {
+        this(dir, MIN_COMPACT_RECORDS);
+    }
+
+
+    ConsumerOffsetStore(final File dir, final int minCompactRecords) {
+        super();
+        this.dir = dir;
+        this.minCompactRecords = minCompactRecords;
+    }
+
+
+    /**
+     * ־ѱoffset־βдһļ¼ᱻص
+     */
+    public synchronized void load() throws IOException {
+        if (this.channel != null) {
+            return;
+        }
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            throw new IOException("Could not make directory " + this.dir.getAbsolutePath());
+        }
+        // ѹ;˳־
+        final File compactFile = new File(this.dir, COMPACT_FILE);
+        if (compactFile.exists() && !compactFile.delete()) {
+            throw new IOException("Could not delete " + compactFile.getAbsolutePath());
+        }
+        final File logFile = new File(this.dir, LOG_FILE);
+        this.offsets.clear();
+        this.records = 0;
+        final int validBytes = logFile.exists() ? this.replay(logFile) : 0;
+        this.channel = new RandomAccessFile(logFile, "rw").getChannel();
+        if (this.channel.size() > validBytes) {
+            log.warn("Truncate " + (this.channel.size() - validBytes) + " bytes of broken records in "
+                    + logFile.getAbsolutePath());
+            this.channel.truncate(validBytes);
+        }
+        this.channel.position(validBytes);
+        log.info("Loaded " + this.offsets.size() + " consumer offsets from " + logFile.getAbsolutePath());
+    }
+
+
+    private int replay(final File logFile) throws IOException {
+        final byte[] data = new byte[(int) logFile.length()];
+        final FileInputStream in = new FileInputStream(logFile);
+        try {
+            int n = 0;
+            while (n < data.length) {
+                final int read = in.read(data, n, data.length - n);
+                if (read < 0) {
+                    break;
+                }
+                n += read;
+            }
+        }
+        finally {
+            in.close();
+        }
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            final String[] fields = new String(data, start, i - start, ByteUtils.DEFAULT_CHARSET).split(" ");
+            if (fields.length != 5) {
+                log.warn("Broken consumer offset record at position " + start);
+                return start;
+            }
+            try {
+                this.put(fields[0], new OffsetEntry(fields[1], Integer.parseInt(fields[2]), Long
+                    .parseLong(fields[3]), Long.parseLong(fields[4])));
+            }
+            catch (final NumberFormatException e) {
+                log.warn("Broken consumer offset record at position " + start);
+                return start;
+            }
+            this.records++;
+            start = i + 1;
+        }
+        return start;
+    }
+
+
+    /**
+     * һɷoffsetд벢ˢ̺󷵻
+     */
+    public synchronized void commit(final String group, final List<OffsetEntry> entries) throws IOException {
+        this.checkLoaded();
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final OffsetEntry entry : entries) {
+            sb.append(group).append(' ').append(entry.toString()).append('\n');
+        }
+        final long position = this.channel.position();
+        try {
+            this.write(this.channel, sb.toString());
+            this.channel.force(false);
+        }
+        catch (final IOException e) {
+            // ȥдһļ¼ͺ¼һ
+            try {
+                this.channel.truncate(position);
+                this.channel.position(position);
+            }
+            catch (final IOException ignore) {
+                log.error("Truncate consumer offset log failed", ignore);
+            }
+            throw e;
+        }
+        for (final OffsetEntry entry : entries) {
+            this.put(group, entry);
+        }
+        this.records += entries.size();
+        if (this.records >= this.minCompactRecords && this.records >= (long) this.offsets.size() * COMPACT_RATIO) {
+            try {
+                this.compact();
+            }
+            catch (final IOException e) {
+                // ύѾ̣ѹʧ´
+                log.error("Compact consumer offset log failed", e);
+            }
+        }
+    }
+
+
+    /**
+     * ѯoffsetڷnull
+     */
+    public synchronized OffsetEntry load(final String group, final String topic, final int partition) {
+        this.checkLoaded();
+        return this.offsets.get(this.key(group, topic, partition));
+    }
+
+
+    public synchronized int size() {
+        return this.offsets.size();
+    }
+
+
+    synchronized long getRecords() {
+        return this.records;
+    }
+
+
+    public synchronized void close() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.channel.close();
+        }
+        catch (final IOException e) {
+            log.error("Close consumer offset log failed", e);
+        }
+        this.channel = null;
+    }
+
+
+    private void compact() throws IOException {
+        final long start = System.currentTimeMillis();
+        final File compactFile = new File(this.dir, COMPACT_FILE);
+        final File logFile = new File(this.dir, LOG_FILE);
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, OffsetEntry> entry : this.offsets.entrySet()) {
+            final String key = entry.getKey();
+            sb.append(key.substring(0, key.indexOf(' '))).append(' ').append(entry.getValue().toString())
+                .append('\n');
+        }
+        final FileOutputStream out = new FileOutputStream(compactFile);
+        try {
+            this.write(out.getChannel(), sb.toString());
+            out.getChannel().force(true);
+        }
+        finally {
+            out.close();
+        }
+        this.channel.close();
+        this.channel = null;
+        // 滻ʧʱ־Ȼ´򿪾־׷
+        final boolean renamed = compactFile.renameTo(logFile);
+        this.channel = new RandomAccessFile(logFile, "rw").getChannel();
+        this.channel.position(this.channel.size());
+        if (!renamed) {
+            throw new IOException("Rename " + compactFile.getAbsolutePath() + " to " + logFile.getAbsolutePath()
+                    + " failed");
+        }
+        log.info("Compacted consumer offset log from " + this.records + " to " + this.offsets.size()
+                + " records in " + (System.currentTimeMillis() - start) + " ms");
+        this.records = this.offsets.size();
+    }
+
+
+    private void write(final FileChannel fc, final String s) throws IOException {
+        final ByteBuffer buf = ByteBuffer.wrap(s.getBytes(ByteUtils.DEFAULT_CHARSET_NAME));
+        while (buf.hasRemaining()) {
+            fc.write(buf);
+        }
+    }
+
+
+    private void put(final String group, final OffsetEntry entry) {
+        this.offsets.put(this.key(group, entry.getTopic(), entry.getPartition()), entry);
+    }
+
+
+    private String key(final String group, final String topic, final int partition) {
+        return group + " " + topic + " " + partition;
+    }
+
+
+    private void checkLoaded() {
+        if (this.channel == null) {
+            throw new IllegalStateException("Consumer offset store is not loaded");
+        }
+    }
+
+}
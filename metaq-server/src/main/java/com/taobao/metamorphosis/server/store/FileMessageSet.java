@@ -35,15 +35,42 @@ public class FileMessageSet implements MessageSet, Closeable {
     private final AtomicLong highWaterMark; // Ѿȷд̵ˮλ
     private final long offset; // offset
     private final long limit; // limit
-    private boolean mutable; // Ƿɱ
+    private volatile boolean mutable; // Ƿɱ
+    private final FileMessageSet owner; // segmentsegmentΪthis
+    private volatile MappedSegmentCache mappedSegmentCache; // ɱ֮ȡʹõӳ仺
+    private final SegmentIndex index; // ϡΪnull
 
     static final Log log = LogFactory.getLog(FileMessageSet.class);
 
 
     public FileMessageSet(final FileChannel channel, final long offset, final long limit, final boolean mutable)
             throws IOException {
+        this(channel, offset, limit, mutable, null, null);
+    }
+
+
+    /**
+     * 
+     * @param channel
+     * @param offset
+     * @param limit
+     * @param mutable
+     * @param index
+     *            segmentϡappendʱ¼Ϣ߽磬recoverʱֻУһ֮
+     * @throws IOException
+     */
+    public FileMessageSet(final FileChannel channel, final long offset, final long limit, final boolean mutable,
+            final SegmentIndex index) throws IOException {
+        this(channel, offset, limit, mutable, index, null);
+    }
+
+
+    private FileMessageSet(final FileChannel channel, final long offset, final long limit, final boolean mutable,
+            final SegmentIndex index, final FileMessageSet owner) throws IOException {
         super();
         this.channel = channel;
+        this.index = index;
+        this.owner = owner != null ? owner : this;
         this.offset = offset;
         this.limit = limit;
         this.messageCount = new AtomicLong(0);
@@ -78,6 +105,16 @@ public class FileMessageSet implements MessageSet, Closeable {
     }
 
 
+    /**
+     * ӳ仺棬ɱ֮Ķȡͨڴӳ
+     * 
+     * @param mappedSegmentCache
+     */
+    public void setMappedSegmentCache(final MappedSegmentCache mappedSegmentCache) {
+        this.mappedSegmentCache = mappedSegmentCache;
+    }
+
+
     public FileMessageSet(final FileChannel channel) throws IOException {
         this(channel, 0, 0, true);
     }
@@ -100,6 +137,9 @@ public class FileMessageSet implements MessageSet, Closeable {
             throw new UnsupportedOperationException("Immutable message set");
         }
         final long offset = this.sizeInBytes.get();
+        if (this.index != null) {
+            this.index.mark(offset, this.messageCount.get());
+        }
         int sizeInBytes = 0;
         while (buf.hasRemaining()) {
             sizeInBytes += this.channel.write(buf);
@@ -114,6 +154,19 @@ public class FileMessageSet implements MessageSet, Closeable {
     public void flush() throws IOException {
         this.channel.force(true);
         this.highWaterMark.set(this.sizeInBytes.get());
+        if (this.index != null) {
+            this.index.flush(this.highWaterMark.get());
+        }
+    }
+
+
+    /**
+     * segmentϡû򷵻null
+     * 
+     * @return
+     */
+    public SegmentIndex getIndex() {
+        return this.index;
     }
 
 
@@ -167,7 +220,7 @@ public class FileMessageSet implements MessageSet, Closeable {
      */
     @Override
     public MessageSet slice(final long offset, final long limit) throws IOException {
-        return new FileMessageSet(this.channel, offset, limit, false);
+        return new FileMessageSet(this.channel, offset, limit, false, null, this.owner);
     }
 
     static final Log transferLog = LogFactory.getLog("TransferLog");
@@ -175,6 +228,17 @@ public class FileMessageSet implements MessageSet, Closeable {
 
     @Override
     public void read(final ByteBuffer bf, final long offset) throws IOException {
+        final ByteBuffer mapped = this.owner.getMappedBuffer();
+        if (mapped != null) {
+            // ֱӴӳп
+            if (offset < mapped.limit()) {
+                final ByteBuffer src = mapped.duplicate();
+                src.position((int) offset);
+                src.limit((int) Math.min(mapped.limit(), offset + bf.remaining()));
+                bf.put(src);
+            }
+            return;
+        }
         int size = 0;
         while (bf.hasRemaining()) {
             final int l = this.channel.read(bf, offset + size);
@@ -192,6 +256,20 @@ public class FileMessageSet implements MessageSet, Closeable {
     }
 
 
+    /**
+     * ɱ䲢ӳ仺ʱļֻӳ䣬򷵻null
+     * 
+     * @return
+     */
+    private ByteBuffer getMappedBuffer() {
+        final MappedSegmentCache cache = this.mappedSegmentCache;
+        if (cache == null || this.mutable) {
+            return null;
+        }
+        return cache.get(this);
+    }
+
+
     @Override
     public void write(final GetCommand getCommand, final SessionContext ctx) {
         final IoBuffer buf = this.makeHead(getCommand.getOpaque(), this.sizeInBytes.get());
@@ -253,10 +331,17 @@ public class FileMessageSet implements MessageSet, Closeable {
         if (!this.channel.isOpen()) {
             return;
         }
+        final MappedSegmentCache cache = this.mappedSegmentCache;
+        if (cache != null && this.owner == this) {
+            cache.invalidate(this);
+        }
         if (this.mutable) {
             this.flush();
         }
         this.channel.close();
+        if (this.index != null) {
+            this.index.close();
+        }
     }
 
 
@@ -284,6 +369,15 @@ public class FileMessageSet implements MessageSet, Closeable {
         long validUpTo = 0L;
         long next = 0L;
         long msgCount = 0;
+        if (this.index != null) {
+            // ֮ǰѾֻ̣Уһ֮β
+            validUpTo = this.index.floor(len);
+            msgCount = this.index.floorCount(len);
+            if (validUpTo > 0) {
+                log.info("Recover " + this.index.getFile().getAbsolutePath() + " from indexed position " + validUpTo);
+            }
+        }
+        this.channel.position(validUpTo);
         do {
             next = this.validateMessage(buf, validUpTo, len);
             if (next >= 0) {
@@ -292,6 +386,9 @@ public class FileMessageSet implements MessageSet, Closeable {
             }
         } while (next >= 0);
         this.channel.truncate(validUpTo);
+        if (this.index != null) {
+            this.index.truncate(validUpTo);
+        }
         this.sizeInBytes.set(validUpTo);
         this.highWaterMark.set(validUpTo);
         this.messageCount.set(msgCount);
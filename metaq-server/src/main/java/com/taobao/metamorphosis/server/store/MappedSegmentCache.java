@@ -0,0 +1,181 @@
+package com.taobao.metamorphosis.server.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.utils.MetaMBeanServer;
+
+
+/**
+ * ֻsegmentڴӳ仺
+ * <ul>
+ * <li>segmentΪɱ(setMutable(false))֮󣬵һζȡʱļֻӳ䣬֮ĶȡֱӴӳп</li>
+ * <li>˳̭ӳܴСmaxMappedBytesԤĵsegmentӳ</li>
+ * <li>segmentرջɾʱƳӳ</li>
+ * </ul>
+ * ̭ӳ䲻unmapʹõĶȡӰ죬ӳռõڴGCbufferͷš
+ *
+ */
+public class MappedSegmentCache implements MappedSegmentCacheMBean {
+    static final Log log = LogFactory.getLog(MappedSegmentCache.class);
+
+    private final long maxMappedBytes;
+
+    // FileMessageSet -> ֻӳ䣬˳
+    private final LinkedHashMap<FileMessageSet, ByteBuffer> mappings =
+            new LinkedHashMap<FileMessageSet, ByteBuffer>(16, 0.75f, true);
+
+    private long mappedBytes;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+
+    public MappedSegmentCache(final long maxMappedBytes) {
+        super();
+        if (maxMappedBytes <= 0) {
+            throw new IllegalArgumentException("maxMappedBytes <= 0");
+        }
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+
+    /**
+     * עᵽMBean server
+     */
+    public void registerMBean() {
+        MetaMBeanServer.registMBean(this, null);
+    }
+
+
+    /**
+     * segmentֻӳ䣬positionΪ0limitΪļСӦduplicate֮ʹáԤӳʧܷnull
+     *
+     * @param messageSet
+     *            ɱsegment
+     * @return
+     */
+    public synchronized ByteBuffer get(final FileMessageSet messageSet) {
+        ByteBuffer mapped = this.mappings.get(messageSet);
+        if (mapped != null) {
+            this.hitCount.incrementAndGet();
+            return mapped;
+        }
+        final long size = messageSet.getSizeInBytes();
+        if (size <= 0 || size > this.maxMappedBytes || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        final FileChannel channel = messageSet.getFileChannel();
+        if (!channel.isOpen()) {
+            return null;
+        }
+        this.evict(size);
+        try {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        catch (final IOException e) {
+            log.error("Map segment failed", e);
+            return null;
+        }
+        this.missCount.incrementAndGet();
+        this.mappings.put(messageSet, mapped);
+        this.mappedBytes += size;
+        return mapped;
+    }
+
+
+    /**
+     * Ƴsegmentӳ䣬segmentرʱ
+     *
+     * @param messageSet
+     */
+    public synchronized void invalidate(final FileMessageSet messageSet) {
+        final ByteBuffer mapped = this.mappings.remove(messageSet);
+        if (mapped != null) {
+            this.mappedBytes -= mapped.capacity();
+        }
+    }
+
+
+    private void evict(final long size) {
+        final Iterator<Map.Entry<FileMessageSet, ByteBuffer>> it = this.mappings.entrySet().iterator();
+        while (this.mappedBytes + size > this.maxMappedBytes && it.hasNext()) {
+            final ByteBuffer mapped = it.next().getValue();
+            it.remove();
+            this.mappedBytes -= mapped.capacity();
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+
+    @Override
+    public synchronized void clear() {
+        this.mappings.clear();
+        this.mappedBytes = 0;
+    }
+
+
+    /**
+     * ǷѾӳ䣬Ӱ˳
+     *
+     * @param messageSet
+     * @return
+     */
+    synchronized boolean isMapped(final FileMessageSet messageSet) {
+        return this.mappings.containsKey(messageSet);
+    }
+
+
+    @Override
+    public long getMaxMappedBytes() {
+        return this.maxMappedBytes;
+    }
+
+
+    @Override
+    public synchronized long getMappedBytes() {
+        return this.mappedBytes;
+    }
+
+
+    @Override
+    public synchronized int getMappingCount() {
+        return this.mappings.size();
+    }
+
+
+    @Override
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+
+    @Override
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+
+    @Override
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+
+    @Override
+    public double getHitRate() {
+        final long hits = this.hitCount.get();
+        final long total = hits + this.missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+}
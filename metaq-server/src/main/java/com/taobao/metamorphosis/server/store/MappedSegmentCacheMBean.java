@@ -0,0 +1,68 @@
+package com.taobao.metamorphosis.server.store;
+
+/**
+ * ֻsegmentӳ仺MBeanӿ
+ *
+ */
+public interface MappedSegmentCacheMBean {
+    /**
+     * ӳڴԤ㣬λֽ
+     *
+     * @return
+     */
+    public long getMaxMappedBytes();
+
+
+    /**
+     * ǰӳֽ
+     *
+     * @return
+     */
+    public long getMappedBytes();
+
+
+    /**
+     * ǰӳsegment
+     *
+     * @return
+     */
+    public int getMappingCount();
+
+
+    /**
+     * ȡʱӳĴ
+     *
+     * @return
+     */
+    public long getHitCount();
+
+
+    /**
+     * ȡʱ½ӳĴ
+     *
+     * @return
+     */
+    public long getMissCount();
+
+
+    /**
+     * 򳬹Ԥ㱻̭ӳ
+     *
+     * @return
+     */
+    public long getEvictionCount();
+
+
+    /**
+     * ʣhit/(hit+miss)
+     *
+     * @return
+     */
+    public double getHitRate();
+
+
+    /**
+     * ӳ
+     */
+    public void clear();
+}
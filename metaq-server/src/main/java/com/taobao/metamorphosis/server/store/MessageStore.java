@@ -59,13 +59,35 @@ public class MessageStore extends Thread implements Closeable {
 
 
         public Segment(final long start, final File file, final boolean mutable) {
+            this(start, file, mutable, 0);
+        }
+
+
+        /**
+         * 
+         * @param start
+         * @param file
+         * @param mutable
+         * @param indexIntervalBytes
+         *            ϡСڵ0ʾɾļ
+         */
+        public Segment(final long start, final File file, final boolean mutable, final int indexIntervalBytes) {
             super();
             this.start = start;
             this.file = file;
             log.warn("segment " + this.file.getAbsolutePath());
             try {
+                final File indexFile = SegmentIndex.indexFileFor(this.file);
+                SegmentIndex index = null;
+                if (indexIntervalBytes > 0) {
+                    index = new SegmentIndex(indexFile, indexIntervalBytes);
+                }
+                else if (indexFile.exists()) {
+                    // ڼݿܱضдٿ
+                    indexFile.delete();
+                }
                 final FileChannel channel = new RandomAccessFile(this.file, "rw").getChannel();
-                this.fileMessageSet = new FileMessageSet(channel, 0, channel.size(), mutable);
+                this.fileMessageSet = new FileMessageSet(channel, 0, channel.size(), mutable, index);
                 // // ɱģﲻֱFileMessageSet(channel, false)
                 // if (mutable == true) {
                 // this.fileMessageSet.setMutable(true);
@@ -192,6 +214,10 @@ public class MessageStore extends Thread implements Closeable {
     private final LinkedTransferQueue<WriteRequest> bufferQueue = new LinkedTransferQueue<WriteRequest>();
     private final int MAX_BATCH_SIZE = 512 * 1024;
     int unflushThreshold = 1000;
+    // Ϊnullʱͬˢ̵д뽻worker߳
+    private final AppendWorkerPool appendWorkerPool;
+    // ΪnullʱɱsegmentĶȡͨڴӳ
+    private volatile MappedSegmentCache mappedSegmentCache;
 
 
     public MessageStore(final String topic, final int partition, final MetaConfig metaConfig,
@@ -212,7 +238,15 @@ public class MessageStore extends Thread implements Closeable {
 
     public MessageStore(final String topic, final int partition, final MetaConfig metaConfig,
             final DeletePolicy deletePolicy, final long offsetIfCreate) throws IOException {
+        this(topic, partition, metaConfig, deletePolicy, offsetIfCreate, null);
+    }
+
+
+    public MessageStore(final String topic, final int partition, final MetaConfig metaConfig,
+            final DeletePolicy deletePolicy, final long offsetIfCreate, final AppendWorkerPool appendWorkerPool)
+            throws IOException {
         this.metaConfig = metaConfig;
+        this.appendWorkerPool = appendWorkerPool;
         this.topic = topic;
         final TopicConfig topicConfig = this.metaConfig.getTopicConfig(this.topic);
         String dataPath = metaConfig.getDataPath();
@@ -231,7 +265,7 @@ public class MessageStore extends Thread implements Closeable {
         this.deletePolicy = deletePolicy;
         this.checkDir(this.partitionDir);
         this.loadSegments(offsetIfCreate);
-        if (this.unflushThreshold <= 0) {
+        if (this.unflushThreshold <= 0 && this.appendWorkerPool == null) {
             this.start();
         }
     }
@@ -255,6 +289,19 @@ public class MessageStore extends Thread implements Closeable {
     }
 
 
+    /**
+     * òɱsegmentӳ仺
+     * 
+     * @param mappedSegmentCache
+     */
+    public void setMappedSegmentCache(final MappedSegmentCache mappedSegmentCache) {
+        this.mappedSegmentCache = mappedSegmentCache;
+        for (final Segment segment : this.segments.view()) {
+            segment.fileMessageSet.setMappedSegmentCache(mappedSegmentCache);
+        }
+    }
+
+
     SegmentList getSegments() {
         return this.segments;
     }
@@ -294,6 +341,7 @@ public class MessageStore extends Thread implements Closeable {
                 try {
                     segment.fileMessageSet.close();
                     this.deletePolicy.process(segment.file);
+                    SegmentIndex.indexFileFor(segment.file).delete();
                 }
                 catch (final IOException e) {
                     log.error("رղɾfile message setʧ", e);
@@ -321,7 +369,7 @@ public class MessageStore extends Thread implements Closeable {
                     final String filename = file.getName();
                     final long start = Long.parseLong(filename.substring(0, filename.length() - FILE_SUFFIX.length()));
                     // Ϊɱļؽ
-                    accum.add(new Segment(start, file, false));
+                    accum.add(new Segment(start, file, false, this.metaConfig.getIndexIntervalBytes()));
                 }
             }
         }
@@ -329,7 +377,7 @@ public class MessageStore extends Thread implements Closeable {
         if (accum.size() == 0) {
             // ûпõļһoffsetIfCreateʼ
             final File newFile = new File(this.partitionDir, this.nameFromOffset(offsetIfCreate));
-            accum.add(new Segment(offsetIfCreate, newFile));
+            accum.add(new Segment(offsetIfCreate, newFile, true, this.metaConfig.getIndexIntervalBytes()));
         }
         else {
             // һļУ鲢start
@@ -353,7 +401,7 @@ public class MessageStore extends Thread implements Closeable {
             final Segment last = accum.remove(accum.size() - 1);
             last.fileMessageSet.close();
             log.info("Loading the last segment in mutable mode and running recover on " + last.file.getAbsolutePath());
-            final Segment mutable = new Segment(last.start, last.file);
+            final Segment mutable = new Segment(last.start, last.file, true, this.metaConfig.getIndexIntervalBytes());
             accum.add(mutable);
             log.info("Loaded " + accum.size() + " segments...");
         }
@@ -485,7 +533,12 @@ public class MessageStore extends Thread implements Closeable {
 
     private void appendBuffer(final ByteBuffer buffer, final AppendCallback cb) {
         if (this.unflushThreshold <= 0) {
-            this.bufferQueue.offer(new WriteRequest(buffer, cb));
+            if (this.appendWorkerPool != null) {
+                this.appendWorkerPool.submit(this, buffer, cb);
+            }
+            else {
+                this.bufferQueue.offer(new WriteRequest(buffer, cb));
+            }
         }
         else {
             final int remainning = buffer.remaining();
@@ -512,6 +565,32 @@ public class MessageStore extends Thread implements Closeable {
     }
 
 
+    /**
+     * AppendWorkerPoolworkerãдһsegmentˢ
+     * 
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    Location appendToLast(final ByteBuffer buffer) throws IOException {
+        final int remainning = buffer.remaining();
+        final Segment last = this.segments.last();
+        final long offset = last.start + last.fileMessageSet.append(buffer);
+        return new Location(offset, remainning);
+    }
+
+
+    /**
+     * AppendWorkerPoolworkerãˢ̲Ҫʱrollļ
+     * 
+     * @throws IOException
+     */
+    void flushAndMayBeRoll() throws IOException {
+        this.segments.last().fileMessageSet.flush();
+        this.mayBeRoll();
+    }
+
+
     /**
      * AppendϢдλ
      * 
@@ -595,7 +674,9 @@ public class MessageStore extends Thread implements Closeable {
         final File newFile = new File(this.partitionDir, this.nameFromOffset(newOffset));
         this.segments.last().fileMessageSet.flush();
         this.segments.last().fileMessageSet.setMutable(false);
-        this.segments.append(new Segment(newOffset, newFile));
+        final Segment segment = new Segment(newOffset, newFile, true, this.metaConfig.getIndexIntervalBytes());
+        segment.fileMessageSet.setMappedSegmentCache(this.mappedSegmentCache);
+        this.segments.append(segment);
     }
 
 
@@ -688,7 +769,8 @@ public class MessageStore extends Thread implements Closeable {
 
 
     /**
-     * ָoffsetǰ׷Ŀoffset ,offsetΧʱ򷵻ر߽offset
+     * ָoffsetǰ׷Ŀoffset ,offsetΧʱ򷵻ر߽offset
+     * segmentϡʱزoffsetϢ߽磬򷵻segmentʼoffset
      * 
      * @param offset
      * @return
@@ -702,7 +784,8 @@ public class MessageStore extends Thread implements Closeable {
         try {
             final Segment segment = this.findSegment(segments.view(), offset);
             if (segment != null) {
-                return segment.start;
+                final SegmentIndex index = segment.fileMessageSet.getIndex();
+                return index != null ? segment.start + index.floor(offset - segment.start) : segment.start;
             }
             else {
                 final Segment last = segments.last();
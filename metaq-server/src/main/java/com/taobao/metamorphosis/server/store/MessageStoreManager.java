@@ -119,6 +119,12 @@ public class MessageStoreManager implements Service {
 
     private DeletePolicySelector deletePolicySelector;
 
+    // ͬˢ̷append̳߳أΪnullʱÿһ߳
+    private final AppendWorkerPool appendWorkerPool;
+
+    // ɱsegmentӳ仺棬Ϊnullʱʹӳ
+    private final MappedSegmentCache mappedSegmentCache;
+
     public static final int HALF_DAY = 1000 * 60 * 60 * 12;
 
     private final Set<Pattern> topicsPatSet = new HashSet<Pattern>();
@@ -133,6 +139,15 @@ public class MessageStoreManager implements Service {
         super();
         this.metaConfig = metaConfig;
         this.deletePolicy = deletePolicy;
+        this.appendWorkerPool =
+                metaConfig.getAppendWorkerCount() > 0 ? new AppendWorkerPool(metaConfig.getAppendWorkerCount()) : null;
+        if (metaConfig.getMaxMappedBytes() > 0) {
+            this.mappedSegmentCache = new MappedSegmentCache(metaConfig.getMaxMappedBytes());
+            this.mappedSegmentCache.registerMBean();
+        }
+        else {
+            this.mappedSegmentCache = null;
+        }
         this.newDeletePolicySelector();
         this.metaConfig.addPropertyChangeListener("topics", new PropertyChangeListener() {
             @Override
@@ -341,7 +356,8 @@ public class MessageStoreManager implements Service {
 
                 final MessageStore messageStore =
                         new MessageStore(topic, partition, metaConfig, this.deletePolicySelector.select(topic,
-                            this.deletePolicy));
+                            this.deletePolicy), 0, this.appendWorkerPool);
+                messageStore.setMappedSegmentCache(this.mappedSegmentCache);
                 ConcurrentHashMap<Integer/* partition */, MessageStore> map = this.stores.get(topic);
                 if (map == null) {
                     map = new ConcurrentHashMap<Integer, MessageStore>();
@@ -421,6 +437,10 @@ public class MessageStoreManager implements Service {
                 log.error("Shutdown quartz scheduler failed", e);
             }
         }
+        // дѾύٹرļ
+        if (this.appendWorkerPool != null) {
+            this.appendWorkerPool.close();
+        }
         for (final ConcurrentHashMap<Integer/* partition */, MessageStore> subMap : MessageStoreManager.this.stores
             .values()) {
             if (subMap != null) {
@@ -576,7 +596,8 @@ public class MessageStoreManager implements Service {
                 }
                 messageStore =
                         new MessageStore(topic, partition, this.metaConfig, this.deletePolicySelector.select(topic,
-                            this.deletePolicy), offsetIfCreate);
+                            this.deletePolicy), offsetIfCreate, this.appendWorkerPool);
+                messageStore.setMappedSegmentCache(this.mappedSegmentCache);
                 log.info("´Ϣ洢topic=" + topic + ",partition=" + partition);
                 map.put(partition, messageStore);
 
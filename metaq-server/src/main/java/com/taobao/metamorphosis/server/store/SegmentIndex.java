@@ -0,0 +1,269 @@
+package com.taobao.metamorphosis.server.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * segmentϡsegmentļͬ׺Ϊ.idx
+ * <ul>
+ * <li>ÿintervalBytesֽڼ¼һϢ߽磬ÿ8ֽڣsegmentڵλ(int)͸λ֮ǰappendĴ(int)</li>
+ * <li>force֮дļļеÿһָѾ̵Ϣ߽磻ļforceʱضϼ</li>
+ * <li>ʱڴж֣recoverʱֻУһ֮β</li>
+ * </ul>
+ * ֻǼֶΣʧض϶Ӱȷԡ
+ *
+ */
+public class SegmentIndex implements Closeable {
+    static final Log log = LogFactory.getLog(SegmentIndex.class);
+
+    public static final String FILE_SUFFIX = ".idx";
+
+    static final int ENTRY_SIZE = 8;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int intervalBytes;
+
+    private int[] positions = new int[16];
+    private int[] counts = new int[16];
+    // ڴе
+    private int size;
+    // Ѿдļ
+    private int persisted;
+
+
+    /**
+     * 򿪻ߴļĩβ߲
+     *
+     * @param file
+     * @param intervalBytes
+     *            λֽ
+     * @throws IOException
+     */
+    public SegmentIndex(final File file, final int intervalBytes) throws IOException {
+        super();
+        if (intervalBytes <= 0) {
+            throw new IllegalArgumentException("intervalBytes <= 0");
+        }
+        this.file = file;
+        this.intervalBytes = intervalBytes;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        this.load();
+    }
+
+
+    private void load() throws IOException {
+        final long len = this.channel.size();
+        final ByteBuffer buf = ByteBuffer.allocate((int) (len - len % ENTRY_SIZE));
+        this.channel.position(0);
+        while (buf.hasRemaining()) {
+            if (this.channel.read(buf) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        while (buf.remaining() >= ENTRY_SIZE) {
+            final int position = buf.getInt();
+            final int count = buf.getInt();
+            if (position <= this.lastPosition()) {
+                break;
+            }
+            this.add(position, count);
+        }
+        this.persisted = this.size;
+        if (len != (long) this.size * ENTRY_SIZE) {
+            log.warn("Truncate corrupted index " + this.file.getAbsolutePath() + " to " + this.size + " entries");
+            this.channel.truncate((long) this.size * ENTRY_SIZE);
+        }
+        this.channel.position((long) this.size * ENTRY_SIZE);
+    }
+
+
+    private void add(final int position, final int count) {
+        if (this.size == this.positions.length) {
+            final int[] newPositions = new int[this.size * 2];
+            final int[] newCounts = new int[this.size * 2];
+            System.arraycopy(this.positions, 0, newPositions, 0, this.size);
+            System.arraycopy(this.counts, 0, newCounts, 0, this.size);
+            this.positions = newPositions;
+            this.counts = newCounts;
+        }
+        this.positions[this.size] = position;
+        this.counts[this.size] = count;
+        this.size++;
+    }
+
+
+    private int lastPosition() {
+        return this.size == 0 ? 0 : this.positions[this.size - 1];
+    }
+
+
+    /**
+     * appendʱãһʱڴм¼һµϢ߽
+     *
+     * @param position
+     *            appendʼλãȻһϢ߽
+     * @param count
+     *            ǰappendĴ
+     */
+    public synchronized void mark(final long position, final long count) {
+        if (position - this.lastPosition() >= this.intervalBytes && position <= Integer.MAX_VALUE) {
+            this.add((int) position, (int) count);
+        }
+    }
+
+
+    /**
+     * force֮ãdurablePositionдļ
+     *
+     * @param durablePosition
+     *            Ѿ̵λ
+     * @throws IOException
+     */
+    public synchronized void flush(final long durablePosition) throws IOException {
+        int end = this.persisted;
+        while (end < this.size && this.positions[end] <= durablePosition) {
+            end++;
+        }
+        if (end == this.persisted) {
+            return;
+        }
+        final ByteBuffer buf = ByteBuffer.allocate((end - this.persisted) * ENTRY_SIZE);
+        for (int i = this.persisted; i < end; i++) {
+            buf.putInt(this.positions[i]);
+            buf.putInt(this.counts[i]);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) {
+            this.channel.write(buf);
+        }
+        this.persisted = end;
+    }
+
+
+    /**
+     * زposition±꣬û򷵻-1
+     *
+     * @param position
+     * @return
+     */
+    private int floorIndex(final long position) {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            final int mid = high + low >>> 1;
+            if (this.positions[mid] <= position) {
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+
+    /**
+     * زpositionϢ߽磬ûʱ0
+     *
+     * @param position
+     *            segmentڵλ
+     * @return
+     */
+    public synchronized long floor(final long position) {
+        final int i = this.floorIndex(position);
+        return i < 0 ? 0 : this.positions[i];
+    }
+
+
+    /**
+     * floor(position)֮ǰappendĴ
+     *
+     * @param position
+     * @return
+     */
+    public synchronized long floorCount(final long position) {
+        final int i = this.floorIndex(position);
+        return i < 0 ? 0 : this.counts[i];
+    }
+
+
+    /**
+     * recoverض֮ãposition
+     *
+     * @param position
+     * @throws IOException
+     */
+    public synchronized void truncate(final long position) throws IOException {
+        final int newSize = this.floorIndex(position) + 1;
+        if (newSize == this.size) {
+            return;
+        }
+        this.size = newSize;
+        if (this.persisted > newSize) {
+            this.persisted = newSize;
+            this.channel.truncate((long) newSize * ENTRY_SIZE);
+            this.channel.position((long) newSize * ENTRY_SIZE);
+        }
+    }
+
+
+    public synchronized int getEntryCount() {
+        return this.size;
+    }
+
+
+    public int getIntervalBytes() {
+        return this.intervalBytes;
+    }
+
+
+    public File getFile() {
+        return this.file;
+    }
+
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel.isOpen()) {
+            this.channel.force(false);
+            this.channel.close();
+        }
+    }
+
+
+    /**
+     * رղɾļ
+     */
+    public void delete() {
+        try {
+            this.close();
+        }
+        catch (final IOException e) {
+            log.error("Close index " + this.file.getAbsolutePath() + " failed", e);
+        }
+        this.file.delete();
+    }
+
+
+    /**
+     * segmentļӦļ
+     *
+     * @param segmentFile
+     * @return
+     */
+    public static File indexFileFor(final File segmentFile) {
+        final String name = segmentFile.getName();
+        final int dot = name.lastIndexOf('.');
+        return new File(segmentFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + FILE_SUFFIX);
+    }
+}
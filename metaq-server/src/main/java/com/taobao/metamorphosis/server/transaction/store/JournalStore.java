@@ -6,6 +6,7 @@ import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -18,6 +19,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -81,6 +83,30 @@ public class JournalStore implements Closeable {
     // ޸Ĺdatafileб
     private final Set<DataFile> modifiedDataFiles = new HashSet<DataFile>();
 
+    // flushTxLogAtCommit=1ʱһforce֮дdatafileб
+    private final Set<DataFile> unforcedDataFiles = new HashSet<DataFile>();
+
+    // дţwriteLockڵ
+    private long writeSeq;
+
+    // Ѿforce
+    private volatile long forcedSeq;
+
+    // group commitleaderͬһʱֻһ߳forceȴ߳һforceһ
+    private final Lock forceLock = new ReentrantLock();
+
+    private final AtomicLong forceCount = new AtomicLong(0);
+
+    private final AtomicLong forcedCommandCount = new AtomicLong(0);
+
+    private final AtomicLong forceTimeInMicros = new AtomicLong(0);
+
+    private volatile long maxForceBatchSize;
+
+    private volatile long maxForceTimeInMicros;
+
+    private volatile long lastCheckpointTimeInMills;
+
 
     DataFile getCurrDataFile() {
         return this.currDataFile;
@@ -178,11 +204,16 @@ public class JournalStore implements Closeable {
         }
         buf.flip();
         DataFile dataFile = null;
+        long seq = -1;
         this.writeLock.lock();
         try {
             dataFile = this.getDataFile(location);
             final long offset = dataFile.position();
             dataFile.write(buf);
+            seq = ++this.writeSeq;
+            if (this.flushTxLogAtCommit == 1) {
+                this.unforcedDataFiles.add(dataFile);
+            }
             // ύ߻عݼ
             if (committedOrRollback) {
                 dataFile.decrement();
@@ -198,27 +229,126 @@ public class JournalStore implements Closeable {
             this.writeLock.unlock();
             final boolean force = this.isNeedForce(msg, committedOrRollback);
             if (force) {
-                this.force(dataFile);
+                this.groupForce(seq);
             }
         }
 
     }
 
 
-    private void force(final DataFile df) throws IOException {
-        if (df == null) {
+    /**
+     * group commitȷŲseqѾforce
+     * forcewriteLockڼ߳̿Լд벢forceLockϵȴ
+     * һõforceLock߳һforceд̷߳ѱǺֱӷ
+     * 
+     * @param seq
+     * @throws IOException
+     */
+    private void groupForce(final long seq) throws IOException {
+        if (this.forcedSeq >= seq) {
             return;
         }
-        this.writeLock.lock();
+        this.forceLock.lock();
         try {
-            df.force();
+            if (this.forcedSeq >= seq) {
+                return;
+            }
+            final long targetSeq;
+            final DataFile[] toForce;
+            this.writeLock.lock();
+            try {
+                targetSeq = this.writeSeq;
+                toForce = this.unforcedDataFiles.toArray(new DataFile[this.unforcedDataFiles.size()]);
+                this.unforcedDataFiles.clear();
+            }
+            finally {
+                this.writeLock.unlock();
+            }
+            final long start = System.nanoTime();
+            try {
+                for (final DataFile df : toForce) {
+                    try {
+                        df.force();
+                    }
+                    catch (final ClosedChannelException e) {
+                        // ļѾٱòұɾforce
+                    }
+                }
+            }
+            catch (final IOException e) {
+                // Żȥһforce
+                this.writeLock.lock();
+                try {
+                    for (final DataFile df : toForce) {
+                        if (this.dataFiles.containsKey(df.getNumber())) {
+                            this.unforcedDataFiles.add(df);
+                        }
+                    }
+                }
+                finally {
+                    this.writeLock.unlock();
+                }
+                throw e;
+            }
+            final long micros = (System.nanoTime() - start) / 1000;
+            final long batchSize = targetSeq - this.forcedSeq;
+            this.forcedSeq = targetSeq;
+            this.forceCount.incrementAndGet();
+            this.forcedCommandCount.addAndGet(batchSize);
+            this.forceTimeInMicros.addAndGet(micros);
+            if (batchSize > this.maxForceBatchSize) {
+                this.maxForceBatchSize = batchSize;
+            }
+            if (micros > this.maxForceTimeInMicros) {
+                this.maxForceTimeInMicros = micros;
+            }
         }
         finally {
-            this.writeLock.unlock();
+            this.forceLock.unlock();
         }
     }
 
 
+    /**
+     * flushTxLogAtCommit=1ʱgroup commitforce
+     * 
+     * @return
+     */
+    public long getForceCount() {
+        return this.forceCount.get();
+    }
+
+
+    /**
+     * group commit forceǵgetForceCountƽÿforceϲ
+     * 
+     * @return
+     */
+    public long getForcedCommandCount() {
+        return this.forcedCommandCount.get();
+    }
+
+
+    public long getMaxForceBatchSize() {
+        return this.maxForceBatchSize;
+    }
+
+
+    /**
+     * group commit forceܺʱλ΢
+     * 
+     * @return
+     */
+    public long getForceTimeInMicros() {
+        return this.forceTimeInMicros.get();
+    }
+
+
+    public long getMaxForceTimeInMicros() {
+        return this.maxForceTimeInMicros;
+    }
+
+
     @Override
     public void close() throws IOException {
         if (this.scheduledExecutorService != null) {
@@ -253,6 +383,7 @@ public class JournalStore implements Closeable {
                 this.newDataFile();
             }
             this.dataFiles.remove(dataFile.getNumber());
+            this.unforcedDataFiles.remove(dataFile);
             dataFile.delete();
         }
     }
@@ -338,10 +469,56 @@ public class JournalStore implements Closeable {
 
 
     /**
-     * һcheckpoint´λطŽõcheckpointʼ
+     * һcheckpoint´λطŽõcheckpointʼ
+     * checkpointλд벢ؼ㣬֮ȽϢ洢ˢ̣֤checkpoint֮ǰύϢҪط
      */
     public void checkpoint() throws Exception {
-        this.checkpoint.check(this.transactionStore.checkpoint());
+        final long start = System.currentTimeMillis();
+        final JournalLocation location = this.transactionStore.checkpoint();
+        if (location != null) {
+            this.flushMessageStores();
+            this.checkpoint.check(location);
+        }
+        this.lastCheckpointTimeInMills = System.currentTimeMillis() - start;
+    }
+
+
+    private void flushMessageStores() throws IOException {
+        if (this.storeManager == null) {
+            return;
+        }
+        for (final Map<Integer, MessageStore> stores : this.storeManager.getMessageStores().values()) {
+            for (final MessageStore store : stores.values()) {
+                store.flush();
+            }
+        }
+    }
+
+
+    /**
+     * صǰ־βһ־Ҫдλ
+     * 
+     * @return
+     * @throws IOException
+     */
+    JournalLocation getTailLocation() throws IOException {
+        this.writeLock.lock();
+        try {
+            return new JournalLocation(this.currDataFile.getNumber(), this.currDataFile.position());
+        }
+        finally {
+            this.writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * һcheckpointܺʱϢ洢ˢ̣д
+     * 
+     * @return
+     */
+    public long getLastCheckpointTimeInMills() {
+        return this.lastCheckpointTimeInMills;
     }
 
 
@@ -531,8 +708,10 @@ public class JournalStore implements Closeable {
                 return attachmentLen;
             case LOCAL_ROLLBACK:
             case XA_ROLLBACK:
-                this.transactionStore.replayRollback(xid);
-                dataFile.decrement();
+                // checkpointֻ֮ط־βĿʼcheckpoint֮ǰʱûжӦĵ
+                if (this.transactionStore.replayRollback(xid)) {
+                    dataFile.decrement();
+                }
                 break;
             default:
                 throw new IOException("Invalid journal command type: " + command.getType());
@@ -20,6 +20,9 @@ package com.taobao.metamorphosis.server.transaction.store;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -31,6 +34,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -68,8 +74,22 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
 
     private final JournalStore journalStore;
 
-    private final Map<Object, Tx> inflightTransactions = new LinkedHashMap<Object, Tx>();
-    private final Map<TransactionId, Tx> preparedTransactions = new LinkedHashMap<TransactionId, Tx>();
+    // עķֶͬĲֻͬһֶϾ
+    static final int TX_REGISTRY_CONCURRENCY_LEVEL = 64;
+    // checkpointȫȡλֵrecoverʱע豣ֲ˳
+    private final ConcurrentHashMap<Object, Tx> inflightTransactions = new ConcurrentHashMap<Object, Tx>(1024, 0.75f,
+        TX_REGISTRY_CONCURRENCY_LEVEL);
+    private final ConcurrentHashMap<TransactionId, Tx> preparedTransactions =
+            new ConcurrentHashMap<TransactionId, Tx>(1024, 0.75f, TX_REGISTRY_CONCURRENCY_LEVEL);
+    // ѾƳעcommit־δдcheckpointԽ
+    private final ConcurrentHashMap<Object, Tx> committingTransactions = new ConcurrentHashMap<Object, Tx>(1024,
+        0.75f, TX_REGISTRY_CONCURRENCY_LEVEL);
+    // дһ־עᡱڼжcheckpointȡ־βʱд֮䲻д־δע
+    private final ReadWriteLock registryLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong checkpointCount = new AtomicLong(0);
+    private volatile long lastCheckpointPauseInMicros;
+    private volatile long maxCheckpointPauseInMicros;
     private boolean doingRecover;
 
     /**
@@ -296,10 +316,7 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
 
     @Override
     public void prepare(final TransactionId txid) throws IOException {
-        Tx tx = null;
-        synchronized (this.inflightTransactions) {
-            tx = this.inflightTransactions.remove(txid);
-        }
+        final Tx tx = this.inflightTransactions.get(txid);
         if (tx == null) {
             return;
         }
@@ -312,9 +329,9 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
                     .build();
         this.journalStore.write(msg, null, tx.location, false);
 
-        synchronized (this.preparedTransactions) {
-            this.preparedTransactions.put(txid, tx);
-        }
+        // ȼpreparedƳinflightcheckpointʱܿ
+        this.preparedTransactions.put(txid, tx);
+        this.inflightTransactions.remove(txid);
     }
 
 
@@ -328,171 +345,250 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
     // }
 
     public void replayPrepare(final TransactionId txid) throws IOException {
-        Tx tx = null;
-        synchronized (this.inflightTransactions) {
-            tx = this.inflightTransactions.remove(txid);
-        }
+        Tx tx = this.inflightTransactions.remove(txid);
         if (tx == null) {
             return;
         }
-        synchronized (this.preparedTransactions) {
-            this.preparedTransactions.put(txid, tx);
-        }
+        this.preparedTransactions.put(txid, tx);
     }
 
 
     public Tx getInflyTx(final Object txid) {
-        synchronized (this.inflightTransactions) {
-            return this.inflightTransactions.get(txid);
-        }
+        return this.inflightTransactions.get(txid);
     }
 
 
     @Override
     public int getActiveTransactionCount() {
-        int count = 0;
-        synchronized (this.preparedTransactions) {
-            count += this.preparedTransactions.size();
-        }
-        synchronized (this.inflightTransactions) {
-            count += this.inflightTransactions.size();
-        }
-        return count;
+        return this.preparedTransactions.size() + this.inflightTransactions.size();
+    }
+
+
+    @Override
+    public long getJournalForceCount() {
+        return this.journalStore.getForceCount();
+    }
+
+
+    @Override
+    public double getJournalAvgForceBatchSize() {
+        final long forceCount = this.journalStore.getForceCount();
+        return forceCount == 0 ? 0 : (double) this.journalStore.getForcedCommandCount() / forceCount;
+    }
+
+
+    @Override
+    public long getJournalMaxForceBatchSize() {
+        return this.journalStore.getMaxForceBatchSize();
+    }
+
+
+    @Override
+    public double getJournalAvgForceTimeInMicros() {
+        final long forceCount = this.journalStore.getForceCount();
+        return forceCount == 0 ? 0 : (double) this.journalStore.getForceTimeInMicros() / forceCount;
+    }
+
+
+    @Override
+    public long getJournalMaxForceTimeInMicros() {
+        return this.journalStore.getMaxForceTimeInMicros();
     }
 
 
     Tx getPreparedTx(final Object txid) {
-        synchronized (this.preparedTransactions) {
-            return this.preparedTransactions.get(txid);
-        }
+        return this.preparedTransactions.get(txid);
     }
 
 
     public Tx getTx(final Object txid, final JournalLocation location) {
-        synchronized (this.inflightTransactions) {
-            Tx tx = this.inflightTransactions.get(txid);
-            if (tx == null) {
-                tx = new Tx(location);
-                this.inflightTransactions.put(txid, tx);
-
+        Tx tx = this.inflightTransactions.get(txid);
+        if (tx == null) {
+            tx = new Tx(location);
+            final Tx old = this.inflightTransactions.putIfAbsent(txid, tx);
+            if (old != null) {
+                tx = old;
             }
-            return tx;
         }
+        return tx;
     }
 
 
     @Override
     public void commit(final TransactionId txid, final boolean wasPrepared) throws IOException {
-        final Tx tx;
+        final Tx tx = wasPrepared ? this.preparedTransactions.get(txid) : this.inflightTransactions.get(txid);
+        if (tx == null || this.committingTransactions.putIfAbsent(txid, tx) != null) {
+            return;
+        }
+        // ȼcommittingƳעֱcommit־д֮checkpointԽ
         if (wasPrepared) {
-            synchronized (this.preparedTransactions) {
-                tx = this.preparedTransactions.remove(txid);
-            }
+            this.preparedTransactions.remove(txid);
         }
         else {
-            synchronized (this.inflightTransactions) {
-                tx = this.inflightTransactions.remove(txid);
-            }
-        }
-        if (tx == null) {
-            return;
+            this.inflightTransactions.remove(txid);
         }
         // Append messages
         final Map<MessageStore, List<Long>> msgIds = tx.getMsgIds();
         final Map<MessageStore, List<PutCommand>> putCommands = tx.getPutCommands();
         final Map<String, AddMsgLocation> locations =
                 new LinkedHashMap<String, JournalTransactionStore.AddMsgLocation>();
+        // Ѿصstoreдʧܵĸlocationsͬ
+        final int[] completed = new int[2];
 
         final int count = msgIds.size();
+        if (count == 0) {
+            this.committingTransactions.remove(txid);
+        }
 
-        for (final Map.Entry<MessageStore, List<Long>> entry : msgIds.entrySet()) {
-            final MessageStore msgStore = entry.getKey();
-            final List<Long> ids = entry.getValue();
-            final List<PutCommand> cmds = putCommands.get(msgStore);
-            // Append message
-            msgStore.append(ids, cmds, new AppendCallback() {
-
-                @Override
-                public void appendComplete(final Location location) {
-                    // Calculate checksum
-                    final int checkSum = CheckSum.crc32(MessageUtils.makeMessageBuffer(ids, cmds).array());
-                    final String description = msgStore.getDescription();
-                    // Store append location
-                    synchronized (locations) {
-                        locations.put(description, new AddMsgLocation(location.getOffset(), location.getLength(),
-                            checkSum, description));
-                        // 
-                        if (locations.size() == count) {
-                            // λϢлΪtx
-                            // commandĸݴ洢ⲿݵĳǹ̶ģ˿replayʱ
-                            final ByteBuffer localtionBytes = AddMsgLocationUtils.encodeLocation(locations);
-
-                            TxCommand msg = null;
-                            // Log transaction
-                            final int attachmentLen = localtionBytes.remaining();
-                            if (txid.isXATransaction()) {
-                                final TransactionOperation to = TransactionOperation.newBuilder() //
-                                    .setType(TransactionType.XA_COMMIT) //
-                                    .setTransactionId(txid.getTransactionKey()) //
-                                    .setWasPrepared(wasPrepared) //
-                                    .setDataLength(attachmentLen) // øݳ
-                                    .build();
-                                msg =
-                                        TxCommand.newBuilder().setCmdType(TxCommandType.TX_OP)
-                                            .setCmdContent(to.toByteString()).build();
+        try {
+            for (final Map.Entry<MessageStore, List<Long>> entry : msgIds.entrySet()) {
+                final MessageStore msgStore = entry.getKey();
+                final List<Long> ids = entry.getValue();
+                final List<PutCommand> cmds = putCommands.get(msgStore);
+                // Append messageMessageStoreдʧʱҲصλΪInvalidLocaltion
+                msgStore.append(ids, cmds, new AppendCallback() {
+
+                    @Override
+                    public void appendComplete(final Location location) {
+                        synchronized (locations) {
+                            completed[0]++;
+                            if (location == null || location.getOffset() < 0) {
+                                completed[1]++;
                             }
                             else {
-                                final TransactionOperation to = TransactionOperation.newBuilder() //
-                                    .setType(TransactionType.LOCAL_COMMIT) //
-                                    .setTransactionId(txid.getTransactionKey()) //
-                                    .setWasPrepared(wasPrepared) //
-                                    .setDataLength(attachmentLen)// øݳ
-                                    .build();
-                                msg =
-                                        TxCommand.newBuilder().setCmdType(TxCommandType.TX_OP)
-                                            .setCmdContent(to.toByteString()).build();
-                            }
-                            // ¼commit־λϢ
-                            try {
-                                JournalTransactionStore.this.journalStore.write(msg, localtionBytes, tx.location, true);
+                                // Calculate checksum
+                                final int checkSum =
+                                        CheckSum.crc32(MessageUtils.makeMessageBuffer(ids, cmds).array());
+                                final String description = msgStore.getDescription();
+                                // Store append location
+                                locations.put(description, new AddMsgLocation(location.getOffset(), location
+                                    .getLength(), checkSum, description));
                             }
-                            catch (final IOException e) {
-                                throw new RuntimeException("Write tx log failed", e);
+                            // 
+                            if (completed[0] == count) {
+                                if (completed[1] > 0) {
+                                    final IOException e =
+                                            new IOException("Append messages of " + completed[1] + " stores failed");
+                                    JournalTransactionStore.this.commitFailed(txid, tx, wasPrepared, true, e);
+                                    throw new RuntimeException("Commit tx failed", e);
+                                }
+                                else {
+                                    JournalTransactionStore.this.writeCommitLog(txid, tx, wasPrepared, locations);
+                                }
                             }
                         }
                     }
-                }
-            });
+                });
 
+            }
+        }
+        catch (final RuntimeException e) {
+            // ͬʧʱ÷عָֻעصѾĲظ
+            this.commitFailed(txid, tx, wasPrepared, false, e);
+            throw e;
         }
 
     }
 
 
-    public Tx replayCommit(final TransactionId txid, final boolean wasPrepared) throws IOException {
-        if (wasPrepared) {
-            synchronized (this.preparedTransactions) {
-                return this.preparedTransactions.remove(txid);
+    private void writeCommitLog(final TransactionId txid, final Tx tx, final boolean wasPrepared,
+            final Map<String, AddMsgLocation> locations) {
+        // λϢлΪtx
+        // commandĸݴ洢ⲿݵĳǹ̶ģ˿replayʱ
+        final ByteBuffer localtionBytes = AddMsgLocationUtils.encodeLocation(locations);
+
+        TxCommand msg = null;
+        // Log transaction
+        final int attachmentLen = localtionBytes.remaining();
+        if (txid.isXATransaction()) {
+            final TransactionOperation to = TransactionOperation.newBuilder() //
+                .setType(TransactionType.XA_COMMIT) //
+                .setTransactionId(txid.getTransactionKey()) //
+                .setWasPrepared(wasPrepared) //
+                .setDataLength(attachmentLen) // øݳ
+                .build();
+            msg = TxCommand.newBuilder().setCmdType(TxCommandType.TX_OP).setCmdContent(to.toByteString()).build();
+        }
+        else {
+            final TransactionOperation to = TransactionOperation.newBuilder() //
+                .setType(TransactionType.LOCAL_COMMIT) //
+                .setTransactionId(txid.getTransactionKey()) //
+                .setWasPrepared(wasPrepared) //
+                .setDataLength(attachmentLen)// øݳ
+                .build();
+            msg = TxCommand.newBuilder().setCmdType(TxCommandType.TX_OP).setCmdContent(to.toByteString()).build();
+        }
+        // ¼commit־λϢ
+        boolean written = false;
+        try {
+            this.journalStore.write(msg, localtionBytes, tx.location, true);
+            written = true;
+        }
+        catch (final IOException e) {
+            throw new RuntimeException("Write tx log failed", e);
+        }
+        finally {
+            if (written) {
+                this.committingTransactions.remove(txid);
             }
+            else {
+                this.commitFailed(txid, tx, wasPrepared, true, null);
+            }
+        }
+    }
+
+
+    /**
+     * commit־ûд룬Ƴcommittingڴ״ָ̬ɺ־һ£checkpoint
+     * <ul>
+     * <li>preparedŻpreparedȴTMύ߻ع</li>
+     * <li>Żinflight첽ʧʱ÷Ѿأֱдع־</li>
+     * </ul>
+     * Ѿд벿storeϢ޷أύʱдһ
+     */
+    private void commitFailed(final TransactionId txid, final Tx tx, final boolean wasPrepared,
+            final boolean rollbackLocal, final Throwable cause) {
+        if (this.committingTransactions.get(txid) != tx) {
+            // Ѿص׳쳣commitٱһ
+            return;
+        }
+        log.error("Commit transaction " + txid + " failed", cause);
+        // ȷŻעƳcommittingcheckpointڱעǰһcommitting©
+        if (wasPrepared) {
+            this.preparedTransactions.putIfAbsent(txid, tx);
         }
         else {
-            synchronized (this.inflightTransactions) {
-                return this.inflightTransactions.remove(txid);
+            this.inflightTransactions.putIfAbsent(txid, tx);
+        }
+        this.committingTransactions.remove(txid);
+        if (!wasPrepared && rollbackLocal) {
+            try {
+                this.rollback(txid);
             }
+            catch (final Throwable e) {
+                // ع־Ҳдȥ񣬻ָʱûcommit־ᱻع
+                this.inflightTransactions.remove(txid);
+                log.error("Rollback transaction " + txid + " after commit failure failed", e);
+            }
+        }
+    }
+
+
+    public Tx replayCommit(final TransactionId txid, final boolean wasPrepared) throws IOException {
+        if (wasPrepared) {
+            return this.preparedTransactions.remove(txid);
+        }
+        else {
+            return this.inflightTransactions.remove(txid);
         }
     }
 
 
     @Override
     public void rollback(final TransactionId txid) throws IOException {
-        Tx tx = null;
-        synchronized (this.inflightTransactions) {
-            tx = this.inflightTransactions.remove(txid);
-        }
+        Tx tx = this.inflightTransactions.remove(txid);
         if (tx == null) {
-            synchronized (this.preparedTransactions) {
-                tx = this.preparedTransactions.remove(txid);
-            }
+            tx = this.preparedTransactions.remove(txid);
         }
         if (tx != null) {
             if (txid.isXATransaction()) {
@@ -519,16 +615,19 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
     }
 
 
-    public void replayRollback(final TransactionId txid) throws IOException {
-        boolean inflight = false;
-        synchronized (this.inflightTransactions) {
-            inflight = this.inflightTransactions.remove(txid) != null;
-        }
+    /**
+     * طŻعǷ
+     * 
+     * @param txid
+     * @return
+     * @throws IOException
+     */
+    public boolean replayRollback(final TransactionId txid) throws IOException {
+        final boolean inflight = this.inflightTransactions.remove(txid) != null;
         if (!inflight) {
-            synchronized (this.preparedTransactions) {
-                this.preparedTransactions.remove(txid);
-            }
+            return this.preparedTransactions.remove(txid) != null;
         }
+        return true;
     }
 
 
@@ -552,11 +651,7 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
     @Override
     public synchronized void recover(final TransactionRecoveryListener listener) throws IOException {
         // б񶼻ع
-        Map<Object, Tx> copyMap = null;
-        synchronized (this.inflightTransactions) {
-            copyMap = new HashMap<Object, JournalTransactionStore.Tx>(this.inflightTransactions);
-            // this.inflightTransactions.clear();
-        }
+        final Map<Object, Tx> copyMap = new HashMap<Object, JournalTransactionStore.Tx>(this.inflightTransactions);
         for (final Map.Entry<Object, Tx> entry : copyMap.entrySet()) {
             this.rollback((TransactionId) entry.getKey());
             if (log.isDebugEnabled()) {
@@ -566,12 +661,17 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
         // ָXAеprepared
         this.doingRecover = true;
         try {
-            Map<TransactionId, Tx> txs = null;
-            synchronized (this.preparedTransactions) {
-                txs = new LinkedHashMap<TransactionId, Tx>(this.preparedTransactions);
-            }
+            // ע򣬰־еλָԭprepare˳
+            final List<Map.Entry<TransactionId, Tx>> txs =
+                    new ArrayList<Map.Entry<TransactionId, Tx>>(this.preparedTransactions.entrySet());
+            Collections.sort(txs, new Comparator<Map.Entry<TransactionId, Tx>>() {
+                @Override
+                public int compare(final Map.Entry<TransactionId, Tx> o1, final Map.Entry<TransactionId, Tx> o2) {
+                    return o1.getValue().location.compareTo(o2.getValue().location);
+                }
+            });
 
-            for (final Map.Entry<TransactionId, Tx> entry : txs.entrySet()) {
+            for (final Map.Entry<TransactionId, Tx> entry : txs) {
                 final Object txid = entry.getKey();
                 final Tx tx = entry.getValue();
                 listener.recover((XATransactionId) txid, tx.getRequests());
@@ -602,7 +702,16 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
                 location = this.journalStore.write(txCommand, null, tx.location, false);
             }
             else {
-                location = this.journalStore.write(txCommand, null, null, false);
+                // ĵһ־дע֮䲻ܲcheckpoint
+                this.registryLock.readLock().lock();
+                try {
+                    location = this.journalStore.write(txCommand, null, null, false);
+                    this.getTx(putCmd.getTransactionId(), location).add(store, msgId, putCmd);
+                    return;
+                }
+                finally {
+                    this.registryLock.readLock().unlock();
+                }
             }
         }
         final Tx tx = this.getTx(putCmd.getTransactionId(), location);
@@ -617,28 +726,73 @@ public class JournalTransactionStore implements TransactionStore, JournalTransac
     }
 
 
+    /**
+     * ģcheckpointֻڻȡ־βʱֹעᣬ֮д벢ر
+     * β翪ʼλߵĽСֵ´λָֻӸλûط־β
+     * 
+     * @return
+     * @throws IOException
+     */
     public JournalLocation checkpoint() throws IOException {
-        // Ҵ翪ʼǸλãΪcheckpoint´λָֻҪcheckpointλÿʼָ
-        JournalLocation rc = null;
-        synchronized (this.inflightTransactions) {
-            for (final Iterator<Tx> iter = this.inflightTransactions.values().iterator(); iter.hasNext();) {
-                final Tx tx = iter.next();
-                final JournalLocation location = tx.location;
-                if (rc == null || rc.compareTo(location) < 0) {
-                    rc = location;
-                }
-            }
+        final long start = System.nanoTime();
+        final JournalLocation tail;
+        this.registryLock.writeLock().lock();
+        try {
+            // ˺¿ʼλötail
+            tail = this.journalStore.getTailLocation();
         }
-        synchronized (this.preparedTransactions) {
-            for (final Iterator<Tx> iter = this.preparedTransactions.values().iterator(); iter.hasNext();) {
-                final Tx tx = iter.next();
-                final JournalLocation location = tx.location;
-                if (rc == null || rc.compareTo(location) < 0) {
-                    rc = location;
-                }
+        finally {
+            this.registryLock.writeLock().unlock();
+        }
+        final long pause = (System.nanoTime() - start) / 1000;
+        this.checkpointCount.incrementAndGet();
+        this.lastCheckpointPauseInMicros = pause;
+        if (pause > this.maxCheckpointPauseInMicros) {
+            this.maxCheckpointPauseInMicros = pause;
+        }
+        // inflight->prepared->committingķǨƣcommitʧʱcommittingŻעȼƳ
+        // עǰһcommittingǨƶ©
+        JournalLocation rc = tail;
+        rc = this.earliest(rc, this.committingTransactions.values());
+        rc = this.earliest(rc, this.inflightTransactions.values());
+        rc = this.earliest(rc, this.preparedTransactions.values());
+        rc = this.earliest(rc, this.committingTransactions.values());
+        return rc;
+    }
+
+
+    private JournalLocation earliest(JournalLocation rc, final Collection<Tx> txs) {
+        for (final Iterator<Tx> iter = txs.iterator(); iter.hasNext();) {
+            final JournalLocation location = iter.next().location;
+            if (location != null && location.compareTo(rc) < 0) {
+                rc = location;
             }
-            return rc;
         }
+        return rc;
+    }
+
+
+    @Override
+    public long getCheckpointCount() {
+        return this.checkpointCount.get();
+    }
+
+
+    @Override
+    public long getLastCheckpointPauseInMicros() {
+        return this.lastCheckpointPauseInMicros;
+    }
+
+
+    @Override
+    public long getMaxCheckpointPauseInMicros() {
+        return this.maxCheckpointPauseInMicros;
+    }
+
+
+    @Override
+    public long getLastCheckpointTimeInMills() {
+        return this.journalStore.getLastCheckpointTimeInMills();
     }
 
 
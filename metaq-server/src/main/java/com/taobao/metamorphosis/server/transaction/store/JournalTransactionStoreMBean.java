@@ -23,4 +23,76 @@ public interface JournalTransactionStoreMBean {
      */
     public int getActiveTransactionCount();
 
+
+    /**
+     * ־group commitforce
+     * 
+     * @return
+     */
+    public long getJournalForceCount();
+
+
+    /**
+     * ƽÿforceϲ
+     * 
+     * @return
+     */
+    public double getJournalAvgForceBatchSize();
+
+
+    /**
+     * forceϲ
+     * 
+     * @return
+     */
+    public long getJournalMaxForceBatchSize();
+
+
+    /**
+     * ƽÿforceʱλ΢
+     * 
+     * @return
+     */
+    public double getJournalAvgForceTimeInMicros();
+
+
+    /**
+     * forceʱλ΢
+     * 
+     * @return
+     */
+    public long getJournalMaxForceTimeInMicros();
+
+
+    /**
+     * ִеcheckpoint
+     * 
+     * @return
+     */
+    public long getCheckpointCount();
+
+
+    /**
+     * һcheckpointעʱ䣬λ΢
+     * 
+     * @return
+     */
+    public long getLastCheckpointPauseInMicros();
+
+
+    /**
+     * checkpointעʱ䣬λ΢
+     * 
+     * @return
+     */
+    public long getMaxCheckpointPauseInMicros();
+
+
+    /**
+     * һcheckpointܺʱλ
+     * 
+     * @return
+     */
+    public long getLastCheckpointTimeInMills();
+
 }
@@ -36,6 +36,8 @@ import com.taobao.metamorphosis.utils.ZkUtils.ZKConfig;
  */
 public class MetaConfig implements Serializable, MetaConfigMBean {
     static final long serialVersionUID = -1L;
+    /** ǨƹȡʹõgroupԴرպԿɶȡлǰ׷ƽβ */
+    public static final String MIGRATION_GROUP = "meta-migration-group";
     private int brokerId = 0;
     private String dataPath = System.getProperty("user.home") + File.separator + "meta";
     private int serverPort = 8123;
@@ -51,6 +53,12 @@ public class MetaConfig implements Serializable, MetaConfigMBean {
     private String slaveGroup = "meta-slave-group";
     // slaveͬʱ,λ
     private long slaveMaxDelayInMills = 500;
+    // masterûʱslaveʱ,λ,Ϣд,0ʾ
+    private long slaveReplicationHoldInMills = 0;
+    // slaveʱͬʱ;ȡ,1ʾͬȡ
+    private int slaveReplicationWindow = 1;
+    // ͬƵtopicȴslaveȷϵʱ,λ,ʱ˻Ϊ첽Ӧ
+    private long syncReplicationTimeoutInMills = 3000;
 
     private List<String> topics = new ArrayList<String>();
 
@@ -110,6 +118,66 @@ public class MetaConfig implements Serializable, MetaConfigMBean {
      */
     private int quartzThreadCount = 5;
 
+    /**
+     * ͬˢ(unflushThreshold<=0)ķappend߳Ĭ0ʾÿһ߳
+     */
+    private int appendWorkerCount = 0;
+
+    /**
+     * ɱsegmentȡʱڴӳڴԤ㣬λֽڣĬ0ʾʹӳ
+     */
+    private long maxMappedBytes = 0;
+
+    /**
+     * segmentϡļλֽڣĬ0ʾפڴ棬ÿ8ֽڣ鲻С64K
+     */
+    private int indexIntervalBytes = 0;
+
+    /**
+     * ָ굼ʱʱûȡѷ鱻Ƴλ룬Ĭһ죬Сڵ0ʾ
+     */
+    private long metricsGroupExpireInMills = 24 * 60 * 60 * 1000L;
+
+
+    public long getMetricsGroupExpireInMills() {
+        return this.metricsGroupExpireInMills;
+    }
+
+
+    public void setMetricsGroupExpireInMills(final long metricsGroupExpireInMills) {
+        this.metricsGroupExpireInMills = metricsGroupExpireInMills;
+    }
+
+
+    public int getIndexIntervalBytes() {
+        return this.indexIntervalBytes;
+    }
+
+
+    public void setIndexIntervalBytes(final int indexIntervalBytes) {
+        this.indexIntervalBytes = indexIntervalBytes;
+    }
+
+
+    public long getMaxMappedBytes() {
+        return this.maxMappedBytes;
+    }
+
+
+    public void setMaxMappedBytes(final long maxMappedBytes) {
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+
+    public int getAppendWorkerCount() {
+        return this.appendWorkerCount;
+    }
+
+
+    public void setAppendWorkerCount(final int appendWorkerCount) {
+        this.appendWorkerCount = appendWorkerCount;
+    }
+
 
     public int getQuartzThreadCount() {
         return this.quartzThreadCount;
@@ -367,6 +435,10 @@ public class MetaConfig implements Serializable, MetaConfigMBean {
                     topicConfig.setUnflushThreshold(this.getInt(section, "unflushThreshold"));
                 }
 
+                if (StringUtils.isNotBlank(section.get("syncReplication"))) {
+                    topicConfig.setSyncReplication(Boolean.valueOf(section.get("syncReplication")));
+                }
+
                 // this.topicPartitions.put(topic, numPartitions);
                 this.topicConfigMap.put(topic, topicConfig);
                 newTopics.add(topic);
@@ -488,6 +560,24 @@ public class MetaConfig implements Serializable, MetaConfigMBean {
         if (!StringUtils.isBlank(sysConf.get("quartzThreadCount"))) {
             this.quartzThreadCount = this.getInt(sysConf, "quartzThreadCount");
         }
+        if (!StringUtils.isBlank(sysConf.get("appendWorkerCount"))) {
+            this.appendWorkerCount = this.getInt(sysConf, "appendWorkerCount");
+        }
+        if (!StringUtils.isBlank(sysConf.get("maxMappedBytes"))) {
+            this.maxMappedBytes = this.getLong(sysConf, "maxMappedBytes");
+        }
+        if (!StringUtils.isBlank(sysConf.get("indexIntervalBytes"))) {
+            this.indexIntervalBytes = this.getInt(sysConf, "indexIntervalBytes");
+        }
+        if (!StringUtils.isBlank(sysConf.get("slaveReplicationHoldInMills"))) {
+            this.slaveReplicationHoldInMills = this.getLong(sysConf, "slaveReplicationHoldInMills");
+        }
+        if (!StringUtils.isBlank(sysConf.get("syncReplicationTimeoutInMills"))) {
+            this.syncReplicationTimeoutInMills = this.getLong(sysConf, "syncReplicationTimeoutInMills");
+        }
+        if (!StringUtils.isBlank(sysConf.get("metricsGroupExpireInMills"))) {
+            this.metricsGroupExpireInMills = this.getLong(sysConf, "metricsGroupExpireInMills");
+        }
     }
 
 
@@ -746,4 +836,34 @@ public class MetaConfig implements Serializable, MetaConfigMBean {
     public void setSlaveMaxDelayInMills(final long slaveMaxDelayInMills) {
         this.slaveMaxDelayInMills = slaveMaxDelayInMills;
     }
+
+
+    public long getSlaveReplicationHoldInMills() {
+        return this.slaveReplicationHoldInMills;
+    }
+
+
+    public void setSlaveReplicationHoldInMills(final long slaveReplicationHoldInMills) {
+        this.slaveReplicationHoldInMills = slaveReplicationHoldInMills;
+    }
+
+
+    public long getSyncReplicationTimeoutInMills() {
+        return this.syncReplicationTimeoutInMills;
+    }
+
+
+    public void setSyncReplicationTimeoutInMills(final long syncReplicationTimeoutInMills) {
+        this.syncReplicationTimeoutInMills = syncReplicationTimeoutInMills;
+    }
+
+
+    public int getSlaveReplicationWindow() {
+        return this.slaveReplicationWindow;
+    }
+
+
+    public void setSlaveReplicationWindow(final int slaveReplicationWindow) {
+        this.slaveReplicationWindow = slaveReplicationWindow;
+    }
 }
@@ -15,6 +15,8 @@ public class TopicConfig {
     private String deleteWhen;
     private String deletePolicy;
     private int numPartitions;
+    // Ƿͬƣputһslaveȷ֮Ӧ
+    private boolean syncReplication;
 
 
     public TopicConfig(final String topic, final MetaConfig metaConfig) {
@@ -28,6 +30,16 @@ public class TopicConfig {
     }
 
 
+    public boolean isSyncReplication() {
+        return this.syncReplication;
+    }
+
+
+    public void setSyncReplication(final boolean syncReplication) {
+        this.syncReplication = syncReplication;
+    }
+
+
     public int getNumPartitions() {
         return this.numPartitions;
     }
@@ -46,27 +46,40 @@ public class SamsaMasterBrokerUnitTest {
 
 
     @Test
-    public void testFork() {
+    public void testForkBySize() {
         final List<RecoverPartition> parts = new ArrayList<RecoverPartition>();
-        for (int i = 0; i < 10; i++) {
-            final String topic = "test" + i % 2;
-            parts.add(new RecoverPartition(topic, i));
+        final long[] sizes = { 100, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 50 };
+        for (int i = 0; i < sizes.length; i++) {
+            parts.add(new RecoverPartition("test", i, sizes[i]));
         }
-
-        System.out.println(parts);
-        final List<List<RecoverPartition>> forks = SamsaMasterBroker.fork(parts, 3);
-        System.out.println(forks);
+        final List<List<RecoverPartition>> forks = SamsaMasterBroker.forkBySize(parts, 3);
         assertEquals(3, forks.size());
-        assertEquals(4, forks.get(0).size());
-        assertEquals(3, forks.get(1).size());
-        assertEquals(3, forks.get(2).size());
-
-        final TreeSet<RecoverPartition> set1 = new TreeSet<SamsaMasterBroker.RecoverPartition>(parts);
-        final TreeSet<RecoverPartition> set2 = new TreeSet<SamsaMasterBroker.RecoverPartition>();
+        // ķһ̣̯߳߳
+        assertEquals(1, forks.get(0).size());
+        assertEquals("test-0", forks.get(0).get(0).toString());
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        final TreeSet<RecoverPartition> set = new TreeSet<SamsaMasterBroker.RecoverPartition>();
         for (final List<RecoverPartition> list : forks) {
-            set2.addAll(list);
+            long load = 0;
+            for (final RecoverPartition part : list) {
+                load += part.size;
+            }
+            max = Math.max(max, load);
+            min = Math.min(min, load);
+            set.addAll(list);
         }
-        assertEquals(set1, set2);
+        assertEquals(100, max);
+        assertEquals(70, min);
+        assertEquals(new TreeSet<SamsaMasterBroker.RecoverPartition>(parts), set);
+
+        // ߳
+        final List<List<RecoverPartition>> moreForks = SamsaMasterBroker.forkBySize(parts.subList(0, 2), 4);
+        assertEquals(4, moreForks.size());
+        assertEquals(1, moreForks.get(0).size());
+        assertEquals(1, moreForks.get(1).size());
+        assertTrue(moreForks.get(2).isEmpty());
+        assertTrue(moreForks.get(3).isEmpty());
     }
 
 
@@ -168,6 +181,8 @@ public class SamsaMasterBrokerUnitTest {
             props.setProperty("recoverOffset", "true");
             props.setProperty("slave", "localhost:8121");
             props.setProperty("recoverParallel", "false");
+            // ÿֻȡϢֶ֤ζȡ
+            props.setProperty("recoverReadSize", "10000");
             assertTrue(metaBroker.getBrokerZooKeeper().getZkConfig().zkEnable);
             this.broker.init(metaBroker, props);
             // recoverʱȲzk
@@ -17,6 +17,7 @@ import com.taobao.metamorphosis.gregor.slave.OrderedThreadPoolExecutor.TasksQueu
 
 //import com.taobao.metamorphosis.notifyadapter.OrderedThreadPoolExecutor.TasksQueue;
 
+@SuppressWarnings("deprecation")
 public class OrderedThreadPoolExecutorUnitTest {
     private OrderedThreadPoolExecutor executor;
     int threadCount = 10;
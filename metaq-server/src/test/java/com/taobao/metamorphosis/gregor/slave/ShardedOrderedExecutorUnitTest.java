@@ -0,0 +1,190 @@
+package com.taobao.metamorphosis.gregor.slave;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.utils.NamedThreadFactory;
+
+
+public class ShardedOrderedExecutorUnitTest {
+    private ShardedOrderedExecutor executor;
+    private final int threadCount = 4;
+
+
+    @Before
+    public void setUp() {
+        this.executor = new ShardedOrderedExecutor(this.threadCount, new NamedThreadFactory("test"));
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdown();
+        assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testExecuteInOrderPerKey() throws Exception {
+        final int keys = 16;
+        final int tasksPerKey = 10000;
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        for (int i = 0; i < keys; i++) {
+            results.add(new ArrayList<Integer>());
+        }
+        final CountDownLatch latch = new CountDownLatch(keys * tasksPerKey);
+        // ߲ύÿkeyֻһύ
+        final List<Thread> producers = new ArrayList<Thread>();
+        for (int p = 0; p < 4; p++) {
+            final int producer = p;
+            producers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < tasksPerKey; i++) {
+                        for (int key = producer; key < keys; key += 4) {
+                            final List<Integer> result = results.get(key);
+                            final int x = i;
+                            ShardedOrderedExecutorUnitTest.this.executor.execute(key, new Runnable() {
+                                @Override
+                                public void run() {
+                                    result.add(x);
+                                    latch.countDown();
+                                }
+                            });
+                        }
+                    }
+                }
+            });
+        }
+        for (final Thread t : producers) {
+            t.start();
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        for (final List<Integer> result : results) {
+            assertEquals(tasksPerKey, result.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, (int) result.get(i));
+            }
+        }
+        assertEquals(keys * tasksPerKey, this.executor.getCompletedTaskCount());
+    }
+
+
+    @Test
+    public void testSameKeySameWorker() {
+        for (int key = -1000; key < 1000; key++) {
+            final int index = this.executor.indexFor(key);
+            assertTrue(index >= 0 && index < this.threadCount);
+            assertEquals(index, this.executor.indexFor(key));
+        }
+    }
+
+
+    @Test
+    public void testExceptionNotKillWorker() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.executor.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        });
+        this.executor.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        this.executor.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        this.executor.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        this.executor.shutdown();
+        assertTrue(this.executor.isShutdown());
+        assertFalse(this.executor.isTerminated());
+        try {
+            this.executor.execute(1, new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            throw new AssertionError("should be rejected");
+        }
+        catch (final RejectedExecutionException e) {
+            // expected
+        }
+        // Ѿύ˳ǰִ
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(this.executor.isTerminated());
+    }
+
+
+    @Test
+    public void testExecuteConcurrentWithShutdown() throws Exception {
+        final int count = 100000;
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        ShardedOrderedExecutorUnitTest.this.executor.execute(i, new Runnable() {
+                            @Override
+                            public void run() {
+                                executed.incrementAndGet();
+                            }
+                        });
+                    }
+                    catch (final RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            }
+        };
+        producer.start();
+        Thread.sleep(5);
+        this.executor.shutdown();
+        producer.join();
+        assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+        // ûоִܾˣڶ
+        assertEquals(count, executed.get() + rejected.get());
+        assertEquals(0, this.executor.getPendingTaskCount());
+    }
+}
@@ -0,0 +1,124 @@
+package com.taobao.metamorphosis.metaslave;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class ReplicationWindowUnitTest {
+    private static final int CHUNK = 100;
+
+
+    private byte[] data(final int len) {
+        return new byte[len];
+    }
+
+
+    private void appendAll(final ReplicationWindow window) {
+        while (window.nextAppendable() != null) {
+            window.appended();
+        }
+    }
+
+
+    @Test
+    public void testOnlyRequestAppendOffsetWhenIdle() {
+        final ReplicationWindow window = new ReplicationWindow(4, CHUNK, 1000);
+        assertEquals(Arrays.asList(1000L), window.nextRequests());
+        // ;ظ
+        assertTrue(window.nextRequests().isEmpty());
+
+        window.onResponse(1000, null);
+        assertNull(window.nextAppendable());
+        assertEquals(Arrays.asList(1000L), window.nextRequests());
+
+        // һchunkȻ
+        window.onResponse(1000, this.data(30));
+        this.appendAll(window);
+        assertEquals(1030, window.getAppendOffset());
+        assertFalse(window.isBursting());
+        assertEquals(Arrays.asList(1030L), window.nextRequests());
+    }
+
+
+    @Test
+    public void testPipelineWhenBursting() {
+        final ReplicationWindow window = new ReplicationWindow(4, CHUNK, 0);
+        window.nextRequests();
+        window.onResponse(0, this.data(CHUNK));
+        this.appendAll(window);
+        assertTrue(window.isBursting());
+        assertEquals(Arrays.asList(100L, 200L, 300L, 400L), window.nextRequests());
+        assertEquals(4, window.getInflightCount());
+
+        // 򷵻أֻݲ׷
+        window.onResponse(300, this.data(CHUNK));
+        window.onResponse(200, this.data(CHUNK));
+        assertNull(window.nextAppendable());
+        window.onResponse(100, this.data(CHUNK));
+        this.appendAll(window);
+        assertEquals(400, window.getAppendOffset());
+        assertEquals(0, window.getReceivedCount());
+
+        // ڰ׷offset
+        assertEquals(Arrays.asList(500L, 600L, 700L), window.nextRequests());
+    }
+
+
+    @Test
+    public void testRequestHoleAfterShortResponse() {
+        final ReplicationWindow window = new ReplicationWindow(3, CHUNK, 0);
+        window.nextRequests();
+        window.onResponse(0, this.data(CHUNK));
+        this.appendAll(window);
+        assertEquals(Arrays.asList(100L, 200L, 300L), window.nextRequests());
+
+        // 100ֻһ֣絽ļĩβ200ȵ
+        final byte[] tail = this.data(CHUNK);
+        window.onResponse(200, tail);
+        window.onResponse(100, this.data(60));
+        this.appendAll(window);
+        assertEquals(160, window.getAppendOffset());
+        // ն160Ѿյ200
+        final List<Long> requests = window.nextRequests();
+        assertEquals(Arrays.asList(160L), requests);
+        window.onResponse(160, this.data(40));
+        assertArrayEquals(this.data(40), window.nextAppendable());
+        window.appended();
+        assertTrue(tail == window.nextAppendable());
+        window.appended();
+        assertEquals(300, window.getAppendOffset());
+    }
+
+
+    @Test
+    public void testDiscardStaleAndFailedData() {
+        final ReplicationWindow window = new ReplicationWindow(2, CHUNK, 0);
+        window.nextRequests();
+        window.onResponse(0, this.data(CHUNK));
+        this.appendAll(window);
+        assertEquals(Arrays.asList(100L, 200L), window.nextRequests());
+
+        // 200ݱ100ݸ
+        window.onResponse(200, this.data(CHUNK));
+        window.onResponse(100, this.data(CHUNK + 50));
+        window.appended();
+        assertEquals(250, window.getAppendOffset());
+        assertEquals(0, window.getReceivedCount());
+
+        // ׷ʧܶ
+        assertEquals(Arrays.asList(250L, 350L), window.nextRequests());
+        window.onResponse(250, this.data(CHUNK));
+        window.discard();
+        assertFalse(window.isBursting());
+        assertEquals(250, window.getAppendOffset());
+        assertEquals(Arrays.asList(250L), window.nextRequests());
+    }
+}
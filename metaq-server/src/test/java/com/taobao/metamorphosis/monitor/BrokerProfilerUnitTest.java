@@ -0,0 +1,105 @@
+package com.taobao.metamorphosis.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BrokerProfilerUnitTest {
+    private File dir;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.dir = new File(System.getProperty("java.io.tmpdir"), "meta-profile-test");
+        FileUtils.deleteDirectory(this.dir);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(this.dir);
+    }
+
+
+    @Test
+    public void testGetPoolName() {
+        assertEquals("PutProcess", BrokerProfiler.getPoolName("PutProcess-3-thread-1"));
+        assertEquals("GetProcess", BrokerProfiler.getPoolName("GetProcess-2-thread-10"));
+        assertNull(BrokerProfiler.getPoolName("PutProcessor"));
+        assertNull(BrokerProfiler.getPoolName(null));
+    }
+
+
+    @Test
+    public void testCollapse() {
+        final StackTraceElement[] frames =
+                new StackTraceElement[] { new StackTraceElement("a.Store", "put", "Store.java", 10),
+                                         new StackTraceElement("a.Processor", "process", "Processor.java", 20),
+                                         new StackTraceElement("java.lang.Thread", "run", "Thread.java", 30) };
+        assertEquals("PutProcess;RUNNABLE;holding=MetaQueuePhysical;java.lang.Thread.run;a.Processor.process;"
+                + "a.Store.put",
+            BrokerProfiler.collapse("PutProcess", Thread.State.RUNNABLE, frames, "MetaQueuePhysical", null));
+        assertEquals("PutProcess;BLOCKED;java.lang.Thread.run;a.Processor.process;a.Store.put;blockedOn=a.Store",
+            BrokerProfiler.collapse("PutProcess", Thread.State.BLOCKED, frames, null, "a.Store"));
+    }
+
+
+    @Test
+    public void testParseProcessFaults() {
+        final String line = "1234 (java main) S 1 1234 1234 0 -1 4202496 5678 0 12 0 100 20 0 0 20 0 30";
+        final long[] faults = BrokerProfiler.parseProcessFaults(line);
+        assertEquals(5678, faults[0]);
+        assertEquals(12, faults[1]);
+    }
+
+
+    @Test
+    public void testWriteCollapsedStacks() throws Exception {
+        final CountDownLatch stop = new CountDownLatch(1);
+        final Thread worker = new Thread("PutProcess-1-thread-1") {
+            @Override
+            public void run() {
+                try {
+                    stop.await();
+                }
+                catch (final InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        worker.start();
+        final BrokerProfiler profiler = new BrokerProfiler(null, this.dir, 10, 60000, 10);
+        try {
+            profiler.start();
+            assertTrue(profiler.isRunning());
+            Thread.sleep(1500);
+        }
+        finally {
+            profiler.stop();
+            stop.countDown();
+            worker.join();
+        }
+
+        final File[] files = this.dir.listFiles();
+        File stacks = null;
+        for (final File file : files) {
+            if (file.getName().startsWith(BrokerProfiler.STACKS_FILE_PREFIX)) {
+                stacks = file;
+            }
+        }
+        assertTrue(stacks != null);
+        final String content = FileUtils.readFileToString(stacks);
+        final String bottom = "PutProcess;WAITING;" + BrokerProfilerUnitTest.class.getName() + "$1.run;";
+        assertTrue(content, content.startsWith(bottom));
+        assertTrue(new File(this.dir, BrokerProfiler.SUMMARY_FILE).exists());
+    }
+}
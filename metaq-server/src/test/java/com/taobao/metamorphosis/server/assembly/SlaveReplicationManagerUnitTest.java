@@ -0,0 +1,154 @@
+package com.taobao.metamorphosis.server.assembly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.classextension.EasyMock;
+import org.easymock.classextension.IMocksControl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.service.Connection;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.server.network.PutCallback;
+import com.taobao.metamorphosis.server.network.SessionContext;
+import com.taobao.metamorphosis.server.network.SessionContextImpl;
+import com.taobao.metaq.store.MetaStore;
+
+
+public class SlaveReplicationManagerUnitTest {
+    private IMocksControl mocksControl;
+    private MetaStore metaStore;
+    private SessionContext sessionContext;
+    private SlaveReplicationManager manager;
+    private final List<ResponseCommand> responses = new ArrayList<ResponseCommand>();
+    private final PutCallback cb = new PutCallback() {
+
+        @Override
+        public void putComplete(final ResponseCommand resp) {
+            SlaveReplicationManagerUnitTest.this.responses.add(resp);
+        }
+    };
+
+
+    @Before
+    public void setUp() {
+        this.mocksControl = EasyMock.createControl();
+        this.metaStore = this.mocksControl.createMock(MetaStore.class);
+        final Connection conn = this.mocksControl.createMock(Connection.class);
+        EasyMock.expect(conn.getRemoteSocketAddress()).andReturn(new InetSocketAddress("localhost", 8123))
+            .anyTimes();
+        this.sessionContext = new SessionContextImpl(null, conn);
+        this.manager = new SlaveReplicationManager(this.metaStore, 0);
+    }
+
+
+    @After
+    public void tearDown() {
+        this.manager.shutdown();
+    }
+
+
+    private ResponseCommand request(final String topic, final long offset, final int maxSize) {
+        return this.manager.processGetCommand(new GetCommand(topic, "meta-slave-group", 0, offset, maxSize, 1),
+            this.sessionContext);
+    }
+
+
+    private BooleanCommand response(final int opaque) {
+        return new BooleanCommand(opaque, HttpStatus.Success, null);
+    }
+
+
+    @Test
+    public void testNoSlaveDegradeToAsync() {
+        this.mocksControl.replay();
+        final BooleanCommand resp = this.response(1);
+        this.manager.waitForSlaveAck(100, 1000, this.cb, resp);
+        assertEquals(1, this.responses.size());
+        assertSame(resp, this.responses.get(0));
+        assertEquals(1, this.manager.getSlaveAckDegradeCount());
+        assertEquals(0, this.manager.getAckWaiterCount());
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testAckCompleteWaitersInOffsetOrder() {
+        this.mocksControl.replay();
+        // ֻȷϵ
+        final BooleanCommand ackResp = (BooleanCommand) this.request("slave", 0, 0);
+        assertEquals(HttpStatus.Success, ackResp.getCode());
+
+        final BooleanCommand resp1 = this.response(1);
+        final BooleanCommand resp2 = this.response(2);
+        final BooleanCommand resp3 = this.response(3);
+        this.manager.waitForSlaveAck(200, 10000, this.cb, resp2);
+        this.manager.waitForSlaveAck(100, 10000, this.cb, resp1);
+        this.manager.waitForSlaveAck(300, 10000, this.cb, resp3);
+        assertTrue(this.responses.isEmpty());
+        assertEquals(3, this.manager.getAckWaiterCount());
+
+        this.request("slave", 250, 0);
+        assertEquals(250, this.manager.getAckedOffset());
+        assertEquals(2, this.responses.size());
+        assertSame(resp1, this.responses.get(0));
+        assertSame(resp2, this.responses.get(1));
+        assertEquals(2, this.manager.getSlaveAckCount());
+
+        // ȷoffset
+        this.request("slave", 100, 0);
+        assertEquals(250, this.manager.getAckedOffset());
+        // ѾȷϵoffsetǼʱӦ
+        final BooleanCommand resp4 = this.response(4);
+        this.manager.waitForSlaveAck(200, 10000, this.cb, resp4);
+        assertEquals(3, this.responses.size());
+        assertSame(resp4, this.responses.get(2));
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testPrefetchNotAck() {
+        EasyMock.expect(this.metaStore.getPhyQueueData(1000)).andReturn(null);
+        this.mocksControl.replay();
+        this.request("slave", 500, 0);
+        this.manager.waitForSlaveAck(800, 10000, this.cb, this.response(1));
+        // ԤȡoffsetslaveѾ׷ӵoffset
+        final BooleanCommand resp =
+                (BooleanCommand) this.request(SlaveReplicationManager.PREFETCH_TOPIC, 1000, 1024 * 1024);
+        assertEquals(HttpStatus.NotFound, resp.getCode());
+        assertEquals(500, this.manager.getAckedOffset());
+        assertTrue(this.responses.isEmpty());
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testTimeoutFallbackToAsync() {
+        this.mocksControl.replay();
+        this.request("slave", 0, 0);
+        final BooleanCommand resp = this.response(1);
+        this.manager.waitForSlaveAck(100, 10000, this.cb, resp);
+        this.manager.expireAckWaiters(System.currentTimeMillis());
+        assertTrue(this.responses.isEmpty());
+        this.manager.expireAckWaiters(System.currentTimeMillis() + 10000);
+        assertEquals(1, this.responses.size());
+        assertSame(resp, this.responses.get(0));
+        assertEquals(1, this.manager.getSlaveAckTimeoutCount());
+        assertEquals(0, this.manager.getAckWaiterCount());
+        // ʱ֮ȷϲظӦ
+        this.request("slave", 200, 0);
+        assertEquals(1, this.responses.size());
+        this.mocksControl.verify();
+    }
+}
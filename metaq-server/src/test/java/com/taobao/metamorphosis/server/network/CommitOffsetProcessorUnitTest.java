@@ -0,0 +1,80 @@
+package com.taobao.metamorphosis.server.network;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand;
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.LoadOffsetCommand;
+import com.taobao.metamorphosis.server.store.ConsumerOffsetStore;
+
+
+public class CommitOffsetProcessorUnitTest extends BaseProcessorUnitTest {
+
+    private CommitOffsetProcessor commitOffsetProcessor;
+
+    private LoadOffsetProcessor loadOffsetProcessor;
+
+    private File dataDir;
+
+    private final String topic = "CommitOffsetProcessorUnitTest";
+
+    private final String group = "boyan-test";
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.mock();
+        this.dataDir = new File(System.getProperty("java.io.tmpdir"), "meta-commit-offset-test");
+        FileUtils.deleteDirectory(this.dataDir);
+        this.commitOffsetProcessor = new CommitOffsetProcessor(this.commandProcessor, null);
+        this.loadOffsetProcessor = new LoadOffsetProcessor(this.commandProcessor, null);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.commandProcessor.dispose();
+        FileUtils.deleteDirectory(this.dataDir);
+    }
+
+
+    @Test
+    public void testCommitAndLoad() throws Exception {
+        this.commandProcessor.setConsumerOffsetStore(new ConsumerOffsetStore(this.dataDir));
+        this.commandProcessor.init();
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry(this.topic, 1, 99L, 1024L));
+        this.conn.response(new BooleanCommand(0, HttpStatus.Success, null));
+        this.conn.response(new BooleanCommand(1, HttpStatus.Success, "99-1024"));
+        this.conn.response(new BooleanCommand(2, HttpStatus.NotFound, null));
+        this.mocksControl.replay();
+        this.commitOffsetProcessor.handleRequest(new CommitOffsetCommand(this.group, entries, 0), this.conn);
+        this.loadOffsetProcessor.handleRequest(new LoadOffsetCommand(this.topic, this.group, 1, 1), this.conn);
+        this.loadOffsetProcessor.handleRequest(new LoadOffsetCommand(this.topic, this.group, 2, 2), this.conn);
+        this.mocksControl.verify();
+    }
+
+
+    @Test
+    public void testStoreNotLoaded() throws Exception {
+        this.commandProcessor.setConsumerOffsetStore(new ConsumerOffsetStore(this.dataDir));
+        final List<OffsetEntry> entries = new ArrayList<OffsetEntry>();
+        entries.add(new OffsetEntry(this.topic, 1, 99L, 1024L));
+        this.conn.response(new BooleanCommand(0, HttpStatus.ServiceUnavilable, "Consumer offset store is not loaded"));
+        this.conn.response(new BooleanCommand(1, HttpStatus.ServiceUnavilable, "Consumer offset store is not loaded"));
+        this.mocksControl.replay();
+        this.commitOffsetProcessor.handleRequest(new CommitOffsetCommand(this.group, entries, 0), this.conn);
+        this.loadOffsetProcessor.handleRequest(new LoadOffsetCommand(this.topic, this.group, 1, 1), this.conn);
+        this.mocksControl.verify();
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.taobao.metamorphosis.server.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BrokerMetricsUnitTest {
+
+    private BrokerMetrics brokerMetrics;
+
+
+    @Before
+    public void setUp() {
+        this.brokerMetrics = new BrokerMetrics();
+    }
+
+
+    private String write() throws Exception {
+        final StringWriter writer = new StringWriter();
+        this.brokerMetrics.write(writer);
+        return writer.toString();
+    }
+
+
+    @Test
+    public void testPutAndFetch() throws Exception {
+        this.brokerMetrics.recordPut("test", 0, 10, 1);
+        this.brokerMetrics.recordPut("test", 0, 20, 2);
+        this.brokerMetrics.recordPut("test", 1, 30, 100);
+        this.brokerMetrics.recordFetch("test", 0, "group1", 0, 2);
+        this.brokerMetrics.recordFetch("test", 1, "group1", 40, 120);
+
+        final String text = this.write();
+        assertTrue(text.contains("# TYPE metaq_put_messages_total counter\n"));
+        assertTrue(text.contains("metaq_put_messages_total{topic=\"test\",partition=\"0\"} 2\n"));
+        assertTrue(text.contains("metaq_put_bytes_total{topic=\"test\",partition=\"0\"} 30\n"));
+        assertTrue(text.contains("metaq_put_bytes_total{topic=\"test\",partition=\"1\"} 30\n"));
+        // ȡʱصoffsetдʱ¼Ĵ
+        assertTrue(text.contains("metaq_max_offset{topic=\"test\",partition=\"1\"} 120\n"));
+        assertTrue(text.contains("metaq_consumer_offset{topic=\"test\",partition=\"0\",group=\"group1\"} 0\n"));
+        assertTrue(text.contains("metaq_consumer_lag{topic=\"test\",partition=\"0\",group=\"group1\"} 2\n"));
+        assertTrue(text.contains("metaq_consumer_lag{topic=\"test\",partition=\"1\",group=\"group1\"} 80\n"));
+
+        this.brokerMetrics.recordFetch("test", 1, "group1", 120, 120);
+        assertTrue(this.write().contains(
+            "metaq_consumer_lag{topic=\"test\",partition=\"1\",group=\"group1\"} 0\n"));
+    }
+
+
+    @Test
+    public void testExpireIdleGroup() throws Exception {
+        this.brokerMetrics = new BrokerMetrics(60000);
+        this.brokerMetrics.recordFetch("test", 0, "group1", 10, 20);
+        this.brokerMetrics.recordFetch("test", 0, "group2", 15, 20);
+        final long now = System.currentTimeMillis();
+        this.brokerMetrics.getPartitionMetrics("test", 0).groupOffsets.get("group1").lastFetchTime = now - 120000;
+
+        final StringWriter writer = new StringWriter();
+        this.brokerMetrics.write(writer, now);
+        final String text = writer.toString();
+        // гttlķ鲻ٵעƳ
+        assertFalse(text.contains("group=\"group1\""));
+        assertTrue(text.contains("metaq_consumer_lag{topic=\"test\",partition=\"0\",group=\"group2\"} 5\n"));
+        assertEquals(1, this.brokerMetrics.getPartitionMetrics("test", 0).groupOffsets.size());
+
+        // ȡָ
+        this.brokerMetrics.recordFetch("test", 0, "group1", 18, 20);
+        assertTrue(this.write().contains(
+            "metaq_consumer_lag{topic=\"test\",partition=\"0\",group=\"group1\"} 2\n"));
+    }
+
+
+    @Test
+    public void testGaugeAndRetainTopics() throws Exception {
+        this.brokerMetrics.registerGauge("metaq_slave_lag_bytes", new BrokerMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return 1024;
+            }
+        });
+        this.brokerMetrics.recordPut("a\"b", 0, 1, 1);
+        String text = this.write();
+        assertTrue(text.contains("# TYPE metaq_slave_lag_bytes gauge\nmetaq_slave_lag_bytes 1024\n"));
+        assertTrue(text.contains("metaq_put_messages_total{topic=\"a\\\"b\",partition=\"0\"} 1\n"));
+
+        this.brokerMetrics.retainTopics(Collections.singletonList("test"));
+        text = this.write();
+        assertFalse(text.contains("metaq_put_messages_total"));
+        assertTrue(text.contains("metaq_slave_lag_bytes 1024\n"));
+    }
+
+
+    @Test
+    public void testRate() {
+        final BrokerMetrics.PartitionMetrics metrics = this.brokerMetrics.getPartitionMetrics("test", 0);
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            metrics.messages.increment();
+        }
+        // һڽ
+        metrics.rate(start + BrokerMetrics.RATE_WINDOW_MILLS);
+        for (int i = 0; i < 50; i++) {
+            metrics.messages.increment();
+        }
+        // ʰһ㵽ڼ
+        assertEquals(5.0, metrics.rate(start + 2 * BrokerMetrics.RATE_WINDOW_MILLS), 0.1);
+    }
+}
@@ -1,12 +1,15 @@
 package com.taobao.metamorphosis.server.stats;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.utils.MetaStatLog;
+import com.taobao.metamorphosis.utils.StatConstants;
 
 
 public class StatsManagerUnitTest {
@@ -41,6 +44,27 @@ public class StatsManagerUnitTest {
     }
 
 
+    @Test
+    public void testStatPutByPartition() {
+        MetaStatLog.resetRealTimeStat();
+        this.statsManager.statsPut("test", 7, 2);
+        // ַʽķͳƵͬһ
+        this.statsManager.statsPut("test", "0-7", 3);
+        this.statsManager.statsPut("notStat", 7, 4);
+        assertEquals(9, this.statsManager.getCmdPuts());
+        assertTrue(MetaStatLog.getRealTimeStatResult(StatConstants.CMD_PUT, "test", "0-7").startsWith(
+            "Count=2,Value=5,"));
+        assertEquals("Invalid keyTwo:notStat", MetaStatLog.getRealTimeStatResult(StatConstants.CMD_PUT, "notStat",
+            "0-7"));
+
+        // ʵʱͳƺ󻺴ļʧЧע
+        MetaStatLog.clearRealTimeStat();
+        this.statsManager.statsPut("test", 7, 1);
+        assertTrue(MetaStatLog.getRealTimeStatResult(StatConstants.CMD_PUT, "test", "0-7").startsWith(
+            "Count=1,Value=1,"));
+    }
+
+
     @Test
     public void testStatGet() {
         assertEquals(0, this.statsManager.getCmdGets());
@@ -0,0 +1,297 @@
+package com.taobao.metamorphosis.server.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.network.PutCommand;
+import com.taobao.metamorphosis.server.store.MessageStore.Segment;
+import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.utils.MessageUtils;
+
+
+public class AppendWorkerPoolUnitTest {
+    private static final int MSG_COUNT = 10;
+    private final String topic = "test";
+    private File dataDir;
+    private MetaConfig metaConfig;
+    private AppendWorkerPool appendWorkerPool;
+    private final List<MessageStore> stores = new ArrayList<MessageStore>();
+    private final PutCommand putCommand = new PutCommand(this.topic, 0, "hello".getBytes(), null, 0, 0);
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.dataDir = new File(System.getProperty("java.io.tmpdir"), "meta-append-worker-test");
+        FileUtils.deleteDirectory(this.dataDir);
+        this.metaConfig = new MetaConfig();
+        this.metaConfig.setDataPath(this.dataDir.getAbsolutePath());
+        this.metaConfig.setUnflushThreshold(0);
+        // ƴ10Ϣrollļ
+        this.metaConfig.setMaxSegmentSize(MessageUtils.makeMessageBuffer(1, this.putCommand).capacity() * MSG_COUNT);
+        this.appendWorkerPool = new AppendWorkerPool(2);
+        for (int i = 0; i < 5; i++) {
+            this.stores.add(new MessageStore(this.topic, i, this.metaConfig, null, 0, this.appendWorkerPool));
+        }
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.appendWorkerPool.close();
+        for (final MessageStore store : this.stores) {
+            store.close();
+        }
+        FileUtils.deleteDirectory(this.dataDir);
+    }
+
+
+    @Test
+    public void testSamePartitionSameWorker() throws Exception {
+        for (final MessageStore store : this.stores) {
+            assertSame(this.appendWorkerPool.getWorker(store), this.appendWorkerPool.getWorker(store));
+        }
+        assertEquals(2, this.appendWorkerPool.getWorkerCount());
+    }
+
+
+    @Test
+    public void testAppendManyPartitions() throws Exception {
+        final int msgSize = MessageUtils.makeMessageBuffer(1, this.putCommand).capacity();
+        final int perStore = 25;
+        final CountDownLatch latch = new CountDownLatch(perStore * this.stores.size());
+        final List<List<Location>> results = new ArrayList<List<Location>>();
+        for (int i = 0; i < this.stores.size(); i++) {
+            results.add(new ArrayList<Location>());
+        }
+        for (int j = 0; j < perStore; j++) {
+            for (int i = 0; i < this.stores.size(); i++) {
+                final List<Location> locations = results.get(i);
+                this.stores.get(i).append(j, this.putCommand, new AppendCallback() {
+                    @Override
+                    public void appendComplete(final Location location) {
+                        synchronized (locations) {
+                            locations.add(location);
+                        }
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < this.stores.size(); i++) {
+            final MessageStore store = this.stores.get(i);
+            final List<Location> locations = results.get(i);
+            // ͬһύ˳д
+            for (int j = 0; j < perStore; j++) {
+                assertEquals((long) j * msgSize, locations.get(j).getOffset());
+                assertEquals(msgSize, locations.get(j).getLength());
+            }
+            assertEquals((long) perStore * msgSize, store.getMaxOffset());
+            // صʱѾˢ̣10Ϣrollļ
+            assertTrue(store.getSegments().view().length >= 2);
+            assertEquals(store.getSizeInBytes(), store.getMaxOffset());
+        }
+        assertEquals(perStore * this.stores.size(), this.appendWorkerPool.getAppendCount());
+        assertTrue(this.appendWorkerPool.getBatchCount() <= this.appendWorkerPool.getAppendCount());
+        assertTrue(this.appendWorkerPool.getFlushCount() <= this.appendWorkerPool.getAppendCount());
+    }
+
+
+    @Test
+    public void testStoreBatchBytesBoundsSegmentSize() throws Exception {
+        this.appendWorkerPool.close();
+        final int msgSize = MessageUtils.makeMessageBuffer(1, this.putCommand).capacity();
+        this.appendWorkerPool = new AppendWorkerPool(1, AppendWorkerPool.DEFAULT_MAX_BATCH_BYTES, msgSize * 2);
+        final MessageStore store = new MessageStore(this.topic, 10, this.metaConfig, null, 0, this.appendWorkerPool);
+        this.stores.add(store);
+        // workerúڶлѹһ
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        store.append(0, this.putCommand, new AppendCallback() {
+            @Override
+            public void appendComplete(final Location location) {
+                blocked.countDown();
+                try {
+                    release.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        final int count = MSG_COUNT * 5;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 1; i <= count; i++) {
+            store.append(i, this.putCommand, new AppendCallback() {
+                @Override
+                public void appendComplete(final Location location) {
+                    latch.countDown();
+                }
+            });
+        }
+        release.countDown();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        final Segment[] segments = store.getSegments().view();
+        assertTrue(segments.length >= 5);
+        // һед2Ϣsegment೬maxSegmentSizeϢ
+        for (int i = 0; i < segments.length - 1; i++) {
+            assertTrue(segments[i].fileMessageSet.getSizeInBytes() <= msgSize * (MSG_COUNT + 2));
+        }
+        assertEquals((long) (count + 1) * msgSize, store.getMaxOffset());
+    }
+
+
+    @Test
+    public void testAppendAfterClose() throws Exception {
+        this.appendWorkerPool.close();
+        final Location[] result = new Location[1];
+        this.stores.get(0).append(1, this.putCommand, new AppendCallback() {
+            @Override
+            public void appendComplete(final Location location) {
+                result[0] = location;
+            }
+        });
+        assertSame(Location.InvalidLocaltion, result[0]);
+    }
+
+
+    @Test
+    public void testAppendThrowableKeepsWorkerAlive() throws Exception {
+        final MessageStore store = new MessageStore(this.topic, 10, this.metaConfig, null, 0, this.appendWorkerPool) {
+            private boolean failed;
+
+
+            @Override
+            Location appendToLast(final ByteBuffer buffer) throws IOException {
+                if (!this.failed) {
+                    this.failed = true;
+                    throw new IllegalStateException("mock error");
+                }
+                return super.appendToLast(buffer);
+            }
+        };
+        this.stores.add(store);
+        final int msgSize = MessageUtils.makeMessageBuffer(1, this.putCommand).capacity();
+        final List<Location> locations = this.appendAndWait(store, 2);
+        assertSame(Location.InvalidLocaltion, locations.get(0));
+        assertEquals(0L, locations.get(1).getOffset());
+        assertEquals(msgSize, locations.get(1).getLength());
+    }
+
+
+    @Test
+    public void testFlushThrowableKeepsWorkerAlive() throws Exception {
+        final MessageStore store = new MessageStore(this.topic, 10, this.metaConfig, null, 0, this.appendWorkerPool) {
+            private boolean failed;
+
+
+            @Override
+            void flushAndMayBeRoll() throws IOException {
+                if (!this.failed) {
+                    this.failed = true;
+                    throw new Error("mock error");
+                }
+                super.flushAndMayBeRoll();
+            }
+        };
+        this.stores.add(store);
+        final List<Location> locations = this.appendAndWait(store, 1);
+        assertSame(Location.InvalidLocaltion, locations.get(0));
+        final int msgSize = MessageUtils.makeMessageBuffer(1, this.putCommand).capacity();
+        assertEquals(msgSize, this.appendAndWait(store, 1).get(0).getOffset());
+    }
+
+
+    @Test
+    public void testCloseFailsRequestsLeftInQueue() throws Exception {
+        this.appendWorkerPool.close();
+        final MessageStore store = this.stores.get(0);
+        final Location[] result = new Location[1];
+        // ģworker˳֮ӵ
+        this.appendWorkerPool.getWorker(store).queue.offer(
+            new AppendWorkerPool.AppendRequest(store, MessageUtils.makeMessageBuffer(1, this.putCommand),
+                new AppendCallback() {
+                    @Override
+                    public void appendComplete(final Location location) {
+                        result[0] = location;
+                    }
+                }));
+        this.appendWorkerPool.close();
+        assertSame(Location.InvalidLocaltion, result[0]);
+        assertTrue(this.appendWorkerPool.getWorker(store).queue.isEmpty());
+    }
+
+
+    @Test
+    public void testSubmitConcurrentWithClose() throws Exception {
+        final int count = 10000;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger duplicated = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Thread submitter = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    final AtomicInteger times = new AtomicInteger();
+                    AppendWorkerPoolUnitTest.this.stores.get(i % 5).append(i,
+                        AppendWorkerPoolUnitTest.this.putCommand, new AppendCallback() {
+                            @Override
+                            public void appendComplete(final Location location) {
+                                if (times.incrementAndGet() > 1) {
+                                    duplicated.incrementAndGet();
+                                }
+                                completed.incrementAndGet();
+                                latch.countDown();
+                            }
+                        });
+                }
+            }
+        };
+        submitter.start();
+        Thread.sleep(10);
+        this.appendWorkerPool.close();
+        submitter.join();
+        // ÿ󶼱صֻصһ
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(count, completed.get());
+        assertEquals(0, duplicated.get());
+    }
+
+
+    private List<Location> appendAndWait(final MessageStore store, final int count) throws InterruptedException {
+        final List<Location> locations = new ArrayList<Location>();
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            store.append(i, this.putCommand, new AppendCallback() {
+                @Override
+                public void appendComplete(final Location location) {
+                    synchronized (locations) {
+                        locations.add(location);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return locations;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.taobao.metamorphosis.server.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.network.CommitOffsetCommand.OffsetEntry;
+
+
+public class ConsumerOffsetStoreUnitTest {
+    private File dataDir;
+    private ConsumerOffsetStore store;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.dataDir = new File(System.getProperty("java.io.tmpdir"), "meta-consumer-offset-test");
+        FileUtils.deleteDirectory(this.dataDir);
+        this.store = new ConsumerOffsetStore(this.dataDir, 10);
+        this.store.load();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.store.close();
+        FileUtils.deleteDirectory(this.dataDir);
+    }
+
+
+    @Test
+    public void testCommitAndLoad() throws Exception {
+        assertNull(this.store.load("group1", "test", 0));
+        this.store.commit("group1", this.entries("test", 0, 99L, 1000L, "test", 1, -1L, 2000L));
+        this.store.commit("group2", this.entries("test", 0, 5L, 10L));
+        this.store.commit("group1", this.entries("test", 0, 100L, 1100L));
+
+        assertEquals(new OffsetEntry("test", 0, 100L, 1100L), this.store.load("group1", "test", 0));
+        assertEquals(new OffsetEntry("test", 1, -1L, 2000L), this.store.load("group1", "test", 1));
+        assertEquals(new OffsetEntry("test", 0, 5L, 10L), this.store.load("group2", "test", 0));
+        assertNull(this.store.load("group1", "test", 2));
+        assertEquals(3, this.store.size());
+    }
+
+
+    @Test
+    public void testReload() throws Exception {
+        this.store.commit("group1", this.entries("test", 0, 99L, 1000L));
+        this.store.commit("group1", this.entries("test", 0, 100L, 1100L));
+        this.store.close();
+
+        this.store = new ConsumerOffsetStore(this.dataDir, 10);
+        this.store.load();
+        assertEquals(new OffsetEntry("test", 0, 100L, 1100L), this.store.load("group1", "test", 0));
+        assertEquals(2, this.store.getRecords());
+    }
+
+
+    @Test
+    public void testReloadTruncatesBrokenTail() throws Exception {
+        this.store.commit("group1", this.entries("test", 0, 99L, 1000L));
+        this.store.close();
+        // ģдһʱ崻
+        final File logFile = new File(this.dataDir, ConsumerOffsetStore.LOG_FILE);
+        final FileOutputStream out = new FileOutputStream(logFile, true);
+        out.write("group1 test 0 10".getBytes());
+        out.close();
+
+        this.store = new ConsumerOffsetStore(this.dataDir, 10);
+        this.store.load();
+        assertEquals(new OffsetEntry("test", 0, 99L, 1000L), this.store.load("group1", "test", 0));
+        assertEquals("group1 test 0 99 1000\n".length(), logFile.length());
+
+        this.store.commit("group1", this.entries("test", 0, 100L, 1100L));
+        this.store.close();
+        this.store = new ConsumerOffsetStore(this.dataDir, 10);
+        this.store.load();
+        assertEquals(new OffsetEntry("test", 0, 100L, 1100L), this.store.load("group1", "test", 0));
+    }
+
+
+    @Test
+    public void testCompact() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            this.store.commit("group1", this.entries("test", 0, i, i * 10L, "test", 1, i, i * 20L));
+        }
+        // 40¼2ֵ4ѹ
+        assertTrue(this.store.getRecords() < 10);
+        assertFalse(new File(this.dataDir, ConsumerOffsetStore.COMPACT_FILE).exists());
+        this.store.close();
+
+        this.store = new ConsumerOffsetStore(this.dataDir, 10);
+        this.store.load();
+        assertEquals(new OffsetEntry("test", 0, 19L, 190L), this.store.load("group1", "test", 0));
+        assertEquals(new OffsetEntry("test", 1, 19L, 380L), this.store.load("group1", "test", 1));
+        assertTrue(this.store.getRecords() < 10);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitNotLoaded() throws Exception {
+        this.store.close();
+        this.store.commit("group1", this.entries("test", 0, 99L, 1000L));
+    }
+
+
+    private List<OffsetEntry> entries(final Object... args) {
+        final List<OffsetEntry> list = new ArrayList<OffsetEntry>();
+        for (int i = 0; i < args.length; i += 4) {
+            list.add(new OffsetEntry((String) args[i], (Integer) args[i + 1], ((Number) args[i + 2]).longValue(),
+                ((Number) args[i + 3]).longValue()));
+        }
+        return list;
+    }
+
+}
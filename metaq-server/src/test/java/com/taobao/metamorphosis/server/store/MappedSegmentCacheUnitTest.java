@@ -0,0 +1,152 @@
+package com.taobao.metamorphosis.server.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MappedSegmentCacheUnitTest {
+    private static final int FILE_SIZE = 1024;
+    private final List<File> files = new ArrayList<File>();
+    private final List<FileMessageSet> messageSets = new ArrayList<FileMessageSet>();
+    private MappedSegmentCache cache;
+
+
+    @Before
+    public void setUp() throws IOException {
+        this.cache = new MappedSegmentCache(2 * FILE_SIZE);
+    }
+
+
+    @After
+    public void tearDown() throws IOException {
+        for (final FileMessageSet messageSet : this.messageSets) {
+            messageSet.close();
+        }
+        for (final File file : this.files) {
+            file.delete();
+        }
+    }
+
+
+    private FileMessageSet createSealedSet(final int index) throws IOException {
+        final File file = new File("MappedSegmentCacheUnitTest" + index + ".test");
+        this.files.add(file);
+        final FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        final byte[] data = new byte[FILE_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i + index);
+        }
+        channel.write(ByteBuffer.wrap(data));
+        channel.force(true);
+        final FileMessageSet messageSet = new FileMessageSet(channel, 0, channel.size(), false);
+        messageSet.setMappedSegmentCache(this.cache);
+        this.messageSets.add(messageSet);
+        return messageSet;
+    }
+
+
+    private byte[] read(final FileMessageSet messageSet, final long offset, final int size) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(size);
+        ((FileMessageSet) messageSet.slice(offset, offset + size)).read(buf, offset);
+        buf.flip();
+        final byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+
+    private byte[] expected(final int index, final long offset, final int size) {
+        final byte[] bytes = new byte[(int) Math.max(0, Math.min(size, FILE_SIZE - offset))];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (offset + i + index);
+        }
+        return bytes;
+    }
+
+
+    @Test
+    public void testReadThroughMapping() throws Exception {
+        final FileMessageSet messageSet = this.createSealedSet(0);
+        assertArrayEquals(this.expected(0, 0, 100), this.read(messageSet, 0, 100));
+        assertEquals(1, this.cache.getMissCount());
+        assertTrue(this.cache.isMapped(messageSet));
+
+        assertArrayEquals(this.expected(0, 1000, 100), this.read(messageSet, 1000, 100));
+        assertArrayEquals(this.expected(0, 2000, 100), this.read(messageSet, 2000, 100));
+        assertEquals(2, this.cache.getHitCount());
+        assertEquals(1, this.cache.getMissCount());
+        assertEquals(2.0 / 3, this.cache.getHitRate(), 0.0001);
+        assertEquals(FILE_SIZE, this.cache.getMappedBytes());
+    }
+
+
+    @Test
+    public void testMutableNotMapped() throws Exception {
+        final FileMessageSet messageSet = this.createSealedSet(0);
+        messageSet.setMutable(true);
+        assertArrayEquals(this.expected(0, 10, 100), this.read(messageSet, 10, 100));
+        assertFalse(this.cache.isMapped(messageSet));
+        assertEquals(0, this.cache.getMissCount());
+
+        messageSet.setMutable(false);
+        assertArrayEquals(this.expected(0, 10, 100), this.read(messageSet, 10, 100));
+        assertTrue(this.cache.isMapped(messageSet));
+    }
+
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        final FileMessageSet set0 = this.createSealedSet(0);
+        final FileMessageSet set1 = this.createSealedSet(1);
+        final FileMessageSet set2 = this.createSealedSet(2);
+        this.read(set0, 0, 10);
+        this.read(set1, 0, 10);
+        this.read(set0, 0, 10);
+        // Ԥ㣬̭δʵset1
+        assertArrayEquals(this.expected(2, 5, 10), this.read(set2, 5, 10));
+        assertEquals(2, this.cache.getMappingCount());
+        assertEquals(1, this.cache.getEvictionCount());
+        assertTrue(this.cache.isMapped(set0));
+        assertFalse(this.cache.isMapped(set1));
+        assertTrue(this.cache.isMapped(set2));
+        assertEquals(2 * FILE_SIZE, this.cache.getMappedBytes());
+    }
+
+
+    @Test
+    public void testTooLargeNotMapped() throws Exception {
+        this.cache = new MappedSegmentCache(FILE_SIZE / 2);
+        final FileMessageSet messageSet = this.createSealedSet(0);
+        assertNull(this.cache.get(messageSet));
+        assertArrayEquals(this.expected(0, 0, 100), this.read(messageSet, 0, 100));
+        assertEquals(0, this.cache.getMappingCount());
+    }
+
+
+    @Test
+    public void testCloseInvalidate() throws Exception {
+        final FileMessageSet messageSet = this.createSealedSet(0);
+        this.read(messageSet, 0, 10);
+        assertTrue(this.cache.isMapped(messageSet));
+        messageSet.close();
+        assertFalse(this.cache.isMapped(messageSet));
+        assertEquals(0, this.cache.getMappedBytes());
+    }
+
+}
@@ -302,6 +302,37 @@ public class MessageStoreUnitTest {
     }
 
 
+    @Test
+    public void testGetNearestOffsetWithIndex() throws Exception {
+        this.clearTopicPartDir();
+        final PutCommand cmd = new PutCommand(this.topic, this.partition, "hello".getBytes(), null, 0, 0);
+        final int msgLen = MessageUtils.makeMessageBuffer(1, cmd).capacity();
+        this.metaConfig.setIndexIntervalBytes(msgLen * 3);
+        this.messageStore = new MessageStore(this.topic, this.partition, this.metaConfig, this.deletePolicy);
+        for (int i = 0; i < MSG_COUNT + 5; i++) {
+            this.messageStore.append(this.idWorker.nextId(), cmd, null);
+        }
+        this.messageStore.flush();
+        // һsegmentѾroll369Ϣ
+        assertEquals(2, this.messageStore.getSegments().view().length);
+        assertEquals(0, this.messageStore.getNearestOffset(msgLen * 2 + 1));
+        assertEquals(msgLen * 3, this.messageStore.getNearestOffset(msgLen * 3));
+        assertEquals(msgLen * 6, this.messageStore.getNearestOffset(msgLen * 8 + 1));
+        assertEquals(msgLen * 9, this.messageStore.getNearestOffset(msgLen * 10 - 1));
+        // ڶsegment
+        assertEquals(msgLen * 10, this.messageStore.getNearestOffset(msgLen * 12));
+        assertEquals(msgLen * 13, this.messageStore.getNearestOffset(msgLen * 14));
+        assertTrue(SegmentIndex.indexFileFor(this.messageStore.getSegments().first().file).exists());
+
+        // Ȼʹ
+        this.messageStore.close();
+        this.messageStore = new MessageStore(this.topic, this.partition, this.metaConfig, this.deletePolicy);
+        assertEquals(msgLen * 6, this.messageStore.getNearestOffset(msgLen * 8 + 1));
+        assertEquals(msgLen * 13, this.messageStore.getNearestOffset(msgLen * 14));
+        assertEquals(msgLen * (MSG_COUNT + 5), this.messageStore.getMaxOffset());
+    }
+
+
     @Test
     public void testFindSegment() throws Exception {
         final SegmentList segmentList = new SegmentList();
@@ -0,0 +1,205 @@
+package com.taobao.metamorphosis.server.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.metamorphosis.network.PutCommand;
+import com.taobao.metamorphosis.utils.MessageUtils;
+
+
+public class SegmentIndexUnitTest {
+    private File segmentFile;
+    private File indexFile;
+
+
+    @Before
+    public void setUp() {
+        this.segmentFile = new File("SegmentIndexUnitTest.meta");
+        this.indexFile = SegmentIndex.indexFileFor(this.segmentFile);
+        this.tearDown();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.segmentFile.delete();
+        this.indexFile.delete();
+    }
+
+
+    @Test
+    public void testIndexFileFor() {
+        assertEquals(new File("00000000000000001024.idx"),
+            SegmentIndex.indexFileFor(new File("00000000000000001024.meta")));
+    }
+
+
+    @Test
+    public void testMarkAndFloor() throws Exception {
+        final SegmentIndex index = new SegmentIndex(this.indexFile, 100);
+        try {
+            for (int i = 0; i < 100; i++) {
+                index.mark(i * 30, i);
+            }
+            // ÿС100ֽڼ¼һ120,240,...
+            assertEquals(24, index.getEntryCount());
+            assertEquals(0, index.floor(0));
+            assertEquals(0, index.floor(119));
+            assertEquals(120, index.floor(120));
+            assertEquals(120, index.floor(239));
+            assertEquals(4, index.floorCount(239));
+            assertEquals(2880, index.floor(100000));
+            assertEquals(96, index.floorCount(100000));
+        }
+        finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testFlushOnlyDurableEntries() throws Exception {
+        SegmentIndex index = new SegmentIndex(this.indexFile, 100);
+        index.mark(100, 1);
+        index.mark(200, 2);
+        index.mark(300, 3);
+        index.flush(250);
+        assertEquals(16, this.indexFile.length());
+        index.close();
+
+        // δ̵дļ
+        index = new SegmentIndex(this.indexFile, 100);
+        try {
+            assertEquals(2, index.getEntryCount());
+            assertEquals(200, index.floor(1000));
+            assertEquals(2, index.floorCount(1000));
+        }
+        finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testLoadCorruptedIndex() throws Exception {
+        final FileChannel channel = new RandomAccessFile(this.indexFile, "rw").getChannel();
+        final ByteBuffer buf = ByteBuffer.allocate(SegmentIndex.ENTRY_SIZE * 3 + 3);
+        buf.putInt(100).putInt(1);
+        buf.putInt(200).putInt(2);
+        // 
+        buf.putInt(150).putInt(3);
+        buf.put(new byte[3]);
+        buf.flip();
+        channel.write(buf);
+        channel.close();
+
+        final SegmentIndex index = new SegmentIndex(this.indexFile, 100);
+        try {
+            assertEquals(2, index.getEntryCount());
+            assertEquals(SegmentIndex.ENTRY_SIZE * 2, this.indexFile.length());
+            index.mark(350, 3);
+            index.flush(350);
+            assertEquals(SegmentIndex.ENTRY_SIZE * 3, this.indexFile.length());
+        }
+        finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testTruncate() throws Exception {
+        final SegmentIndex index = new SegmentIndex(this.indexFile, 100);
+        try {
+            index.mark(100, 1);
+            index.mark(200, 2);
+            index.mark(300, 3);
+            index.flush(300);
+            index.truncate(250);
+            assertEquals(2, index.getEntryCount());
+            assertEquals(200, index.floor(1000));
+            assertEquals(SegmentIndex.ENTRY_SIZE * 2, this.indexFile.length());
+            index.mark(300, 3);
+            assertEquals(200, index.floor(299));
+            assertEquals(300, index.floor(300));
+        }
+        finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testRecoverFromIndex() throws Exception {
+        final PutCommand cmd = new PutCommand("test", 0, "hello".getBytes(), null, 0, 0);
+        final int msgLen = MessageUtils.makeMessageBuffer(1, cmd).capacity();
+        FileMessageSet messageSet = this.openMessageSet(msgLen * 4);
+        for (int i = 0; i < 10; i++) {
+            messageSet.append(MessageUtils.makeMessageBuffer(i, cmd));
+        }
+        messageSet.flush();
+        messageSet.close();
+
+        // ƻ֮ǰһϢrecoverֻУβᷢ
+        this.corrupt(msgLen + MessageUtils.HEADER_LEN);
+        // βдϢ
+        final FileChannel channel = new RandomAccessFile(this.segmentFile, "rw").getChannel();
+        channel.position(channel.size());
+        final byte[] garbage = new byte[msgLen / 2];
+        Arrays.fill(garbage, (byte) 0xFF);
+        channel.write(ByteBuffer.wrap(garbage));
+        channel.close();
+
+        messageSet = this.openMessageSet(msgLen * 4);
+        try {
+            assertEquals(msgLen * 10, messageSet.getSizeInBytes());
+            assertEquals(10, messageSet.getMessageCount());
+            assertEquals(msgLen * 10, this.segmentFile.length());
+        }
+        finally {
+            messageSet.close();
+        }
+
+        // ʹʱȫУ飬ڱƻϢض
+        this.indexFile.delete();
+        final FileChannel fullChannel = new RandomAccessFile(this.segmentFile, "rw").getChannel();
+        messageSet = new FileMessageSet(fullChannel, 0, fullChannel.size(), true);
+        try {
+            assertEquals(msgLen, messageSet.getSizeInBytes());
+        }
+        finally {
+            messageSet.close();
+        }
+    }
+
+
+    private FileMessageSet openMessageSet(final int intervalBytes) throws IOException {
+        final FileChannel channel = new RandomAccessFile(this.segmentFile, "rw").getChannel();
+        return new FileMessageSet(channel, 0, channel.size(), true, new SegmentIndex(this.indexFile, intervalBytes));
+    }
+
+
+    private void corrupt(final long position) throws IOException {
+        final FileChannel channel = new RandomAccessFile(this.segmentFile, "rw").getChannel();
+        try {
+            final ByteBuffer buf = ByteBuffer.allocate(1);
+            channel.read(buf, position);
+            buf.put(0, (byte) (buf.get(0) + 1));
+            buf.rewind();
+            channel.write(buf, position);
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
@@ -5,10 +5,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -282,6 +285,7 @@ public class JournalTransactionStoreUnitTest extends BaseTransactionUnitTest {
     }
 
 
+    @Test
     public void testCheckpoint() throws Exception {
         // 1
         final LocalTransactionId xid1 = new LocalTransactionId("session1", 1);
@@ -290,13 +294,13 @@ public class JournalTransactionStoreUnitTest extends BaseTransactionUnitTest {
             null);
 
         // 2
-        final LocalTransactionId xid2 = new LocalTransactionId("session1", 1);
+        final LocalTransactionId xid2 = new LocalTransactionId("session1", 2);
         final MessageStore store2 = this.messageStoreManager.getOrCreateMessageStore("topic1", 3);
         this.transactionStore.addMessage(store2, 1, new PutCommand("topic1", 3, ("msg" + 3).getBytes(), xid2, 0, 1),
             null);
 
         // 3Ѿύ
-        final LocalTransactionId xid3 = new LocalTransactionId("session1", 1);
+        final LocalTransactionId xid3 = new LocalTransactionId("session1", 3);
         final MessageStore store3 = this.messageStoreManager.getOrCreateMessageStore("topic1", 0);
         this.transactionStore.addMessage(store3, 1, new PutCommand("topic1", 0, ("msg" + 0).getBytes(), xid3, 0, 1),
             null);
@@ -309,6 +313,127 @@ public class JournalTransactionStoreUnitTest extends BaseTransactionUnitTest {
     }
 
 
+    @Test
+    public void testFuzzyCheckpointAdvanceAndRecover() throws Exception {
+        final MessageStore store = this.messageStoreManager.getOrCreateMessageStore("topic1", 2);
+        // ûдcheckpointΪ־β
+        final JournalLocation empty = this.transactionStore.checkpoint();
+        assertEquals(this.journalStore.getTailLocation(), empty);
+
+        // 12ύ
+        final LocalTransactionId xid1 = new LocalTransactionId("session1", 1);
+        this.transactionStore.addMessage(store, 1, new PutCommand("topic1", 2, "msg1".getBytes(), xid1, 0, 1), null);
+        final LocalTransactionId xid2 = new LocalTransactionId("session1", 2);
+        this.transactionStore.addMessage(store, 2, new PutCommand("topic1", 2, "msg2".getBytes(), xid2, 0, 1), null);
+        this.transactionStore.commit(xid2, false);
+        assertEquals(this.transactionStore.getInflyTx(xid1).getLocation(), this.transactionStore.checkpoint());
+
+        // xaprepare֮Խcheckpoint
+        final XATransactionId xid3 = XIDGenerator.createXID(3);
+        this.transactionStore.addMessage(store, 3, new PutCommand("topic1", 2, "msg3".getBytes(), xid3, 0, 1), null);
+        final JournalLocation prepared = this.transactionStore.getInflyTx(xid3).getLocation();
+        this.transactionStore.prepare(xid3);
+
+        // 1ύcheckpointǰ3
+        this.transactionStore.commit(xid1, false);
+        assertEquals(prepared, this.transactionStore.checkpoint());
+        this.journalStore.checkpoint();
+        assertEquals(prepared, this.journalStore.getRecentCheckpoint());
+        assertEquals(4, this.transactionStore.getCheckpointCount());
+        assertTrue(this.transactionStore.getLastCheckpointPauseInMicros() >= 0);
+        assertTrue(this.transactionStore.getMaxCheckpointPauseInMicros() >= this.transactionStore
+            .getLastCheckpointPauseInMicros());
+        final long sizeInBytes = store.getSizeInBytes();
+
+        // ֻطcheckpoint֮־βpreparedȻڣύϢظ
+        this.tearDown();
+        this.init(this.path);
+        assertEquals(1, this.transactionStore.getActiveTransactionCount());
+        assertNull(this.transactionStore.getInflyTx(xid1));
+        assertEquals(sizeInBytes, this.messageStoreManager.getOrCreateMessageStore("topic1", 2).getSizeInBytes());
+
+        // ύ֮checkpointǰ־β
+        this.transactionStore.commit(xid3, true);
+        this.journalStore.checkpoint();
+        assertEquals(this.journalStore.getTailLocation(), this.journalStore.getRecentCheckpoint());
+        this.tearDown();
+        this.init(this.path);
+        assertEquals(0, this.transactionStore.getActiveTransactionCount());
+        assertTrue(this.messageStoreManager.getOrCreateMessageStore("topic1", 2).getSizeInBytes() > sizeInBytes);
+    }
+
+
+    @Test
+    public void testPreparedCommitJournalWriteFailed() throws Exception {
+        final XATransactionId xid = XIDGenerator.createXID(99);
+        final MessageStore store = this.messageStoreManager.getOrCreateMessageStore("topic1", 2);
+        this.transactionStore.addMessage(store, 1, new PutCommand("topic1", 2, "msg1".getBytes(), xid, 0, 1), null);
+        this.transactionStore.prepare(xid);
+        final JournalLocation prepared = this.transactionStore.getPreparedTx(xid).getLocation();
+
+        final DataFile dataFile = this.journalStore.getDataFiles().get(prepared.getNumber());
+        final FileChannel channel = this.breakDataFile(dataFile);
+        try {
+            this.transactionStore.commit(xid, true);
+            fail();
+        }
+        catch (final RuntimeException e) {
+            // commit־дʧ
+        }
+        finally {
+            dataFile.fc = channel;
+        }
+        // Żpreparedȴύ߻ع
+        assertNotNull(this.transactionStore.getPreparedTx(xid));
+        assertEquals(prepared, this.transactionStore.checkpoint());
+
+        // ύɹcheckpointԽ
+        this.transactionStore.commit(xid, true);
+        assertNull(this.transactionStore.getPreparedTx(xid));
+        assertEquals(this.journalStore.getTailLocation(), this.transactionStore.checkpoint());
+    }
+
+
+    @Test
+    public void testLocalCommitJournalWriteFailed() throws Exception {
+        final LocalTransactionId xid = new LocalTransactionId("test", 1);
+        final MessageStore store = this.messageStoreManager.getOrCreateMessageStore("topic1", 2);
+        this.transactionStore.addMessage(store, 1, new PutCommand("topic1", 2, "msg1".getBytes(), xid, 0, 1), null);
+        final JournalLocation location = this.transactionStore.getInflyTx(xid).getLocation();
+
+        final DataFile dataFile = this.journalStore.getDataFiles().get(location.getNumber());
+        final FileChannel channel = this.breakDataFile(dataFile);
+        try {
+            this.transactionStore.commit(xid, false);
+            fail();
+        }
+        catch (final RuntimeException e) {
+            // commit־дʧ
+        }
+        finally {
+            dataFile.fc = channel;
+        }
+        // ع־Ҳдȥ񱻶checkpoint
+        assertNull(this.transactionStore.getInflyTx(xid));
+        assertEquals(0, this.transactionStore.getActiveTransactionCount());
+        assertEquals(this.journalStore.getTailLocation(), this.transactionStore.checkpoint());
+    }
+
+
+    /**
+     * ļchannelѾرյchannel֮д붼ʧܣԭchannel
+     */
+    private FileChannel breakDataFile(final DataFile dataFile) throws IOException {
+        final FileChannel channel = dataFile.fc;
+        final File file = new File(this.path, "broken");
+        final FileChannel closed = new RandomAccessFile(file, "rw").getChannel();
+        closed.close();
+        file.delete();
+        dataFile.fc = closed;
+        return channel;
+    }
+
+
     @Test
     public void concurrentTest() throws Exception {
         final Random rand = new Random();
@@ -359,6 +484,48 @@ public class JournalTransactionStoreUnitTest extends BaseTransactionUnitTest {
     }
 
 
+    @Test
+    public void testConcurrentPrepareGroupCommit() throws Exception {
+        final AtomicInteger gen = new AtomicInteger();
+        final int threads = 50;
+        final int timesPerThread = 20;
+        final ConcurrentTestCase testCase = new ConcurrentTestCase(threads, timesPerThread, new ConcurrentTestTask() {
+
+            @Override
+            public void run(final int index, final int times) throws Exception {
+                final int id = gen.incrementAndGet();
+                final XATransactionId xid = XIDGenerator.createXID(id);
+                final MessageStore store =
+                        JournalTransactionStoreUnitTest.this.messageStoreManager.getOrCreateMessageStore("topic1",
+                            id % 10);
+                JournalTransactionStoreUnitTest.this.transactionStore.addMessage(store, id, new PutCommand("topic1",
+                    id % 10, ("msg" + id).getBytes(), xid, 0, 1), null);
+                // prepareforceprepareϲforce
+                JournalTransactionStoreUnitTest.this.transactionStore.prepare(xid);
+            }
+        });
+        testCase.start();
+
+        final int prepared = threads * timesPerThread;
+        assertEquals(prepared, this.transactionStore.getActiveTransactionCount());
+        final long forceCount = this.transactionStore.getJournalForceCount();
+        assertTrue(forceCount > 0);
+        assertTrue(forceCount <= prepared);
+        // ÿprepareĳforce
+        assertTrue(this.journalStore.getForcedCommandCount() >= prepared);
+        assertTrue(this.transactionStore.getJournalAvgForceBatchSize() >= 1);
+        assertTrue(this.transactionStore.getJournalMaxForceBatchSize() >= 1);
+        System.out.println("prepare" + prepared + "force" + forceCount + "ƽÿforceϲ"
+                + this.transactionStore.getJournalAvgForceBatchSize() + "ƽforceʱ"
+                + this.transactionStore.getJournalAvgForceTimeInMicros() + "us");
+
+        // رմ򿪣prepareȻ
+        this.tearDown();
+        this.init(this.path);
+        assertEquals(prepared, this.transactionStore.getActiveTransactionCount());
+    }
+
+
     @Test
     public void testAddManyRollJournal() throws Exception {
         final Random rand = new Random();
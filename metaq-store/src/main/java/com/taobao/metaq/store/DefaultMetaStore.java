@@ -14,6 +14,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
+import com.taobao.metamorphosis.utils.LatencyHistogram;
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metaq.commons.MetaMessage;
 import com.taobao.metaq.commons.MetaMessageAnnotation;
 import com.taobao.metaq.commons.MetaMessageDecoder;
@@ -367,6 +370,7 @@ public class DefaultMetaStore implements MetaStore {
             ConcurrentHashMap<String, ConcurrentHashMap<Integer, MetaQueueLogistic>> tables =
                     DefaultMetaStore.this.metaQueueLogisticTable;
 
+            long beginNanos = System.nanoTime();
             for (ConcurrentHashMap<Integer, MetaQueueLogistic> maps : tables.values()) {
                 for (MetaQueueLogistic logic : maps.values()) {
                     boolean result = false;
@@ -375,6 +379,7 @@ public class DefaultMetaStore implements MetaStore {
                     }
                 }
             }
+            DefaultMetaStore.this.getMetaStatsService().getFlushLogicsHistogram().recordSince(beginNanos);
 
             if (0 == flushLogicsQueueLeastPages) {
                 DefaultMetaStore.this.getStoreCheckpoint().flush(logicsMsgTimestamp);
@@ -540,10 +545,20 @@ public class DefaultMetaStore implements MetaStore {
 
         private void doDispatch() {
             if (!this.requestsRead.isEmpty()) {
+                LatencyHistogram dispatchHistogram =
+                        DefaultMetaStore.this.getMetaStatsService().getDispatchHistogram();
                 for (DispatchRequest req : this.requestsRead) {
                     // 󷢵߼
                     DefaultMetaStore.this.putIndex(req.topic, req.queueId, req.offset, req.size, req.type,
                         req.storeTimestamp, req.logicOffset);
+                    // деӳ٣洢ʱΪ
+                    if (req.storeTimestamp > 0) {
+                        dispatchHistogram.record((DefaultMetaStore.this.getSystemClock().now() - req.storeTimestamp)
+                                * 1000);
+                        if (MessageTracer.sample(Stage.BROKER_DISPATCH)) {
+                            MessageTracer.recordSinceMills(req.topic, Stage.BROKER_DISPATCH, req.storeTimestamp);
+                        }
+                    }
                 }
 
                 this.requestsRead.clear();
@@ -916,7 +931,9 @@ public class DefaultMetaStore implements MetaStore {
         }
 
         long beginTime = this.getSystemClock().now();
+        long beginNanos = System.nanoTime();
         AppendMessageResult result = this.metaQueuePhysical.putMessage(msg, msgant);
+        this.metaStatsService.getPutMessageHistogram().recordSince(beginNanos);
         // ͳ
         long eclipseTime = this.getSystemClock().now() - beginTime;
         if (eclipseTime > 1000) {
@@ -983,6 +1000,7 @@ public class DefaultMetaStore implements MetaStore {
         }
 
         long beginTime = this.getSystemClock().now();
+        long beginNanos = System.nanoTime();
 
         // öٱȡϢ
         GetMessageStatus status = GetMessageStatus.NO_MESSAGE_IN_QUEUE;
@@ -1099,6 +1117,7 @@ public class DefaultMetaStore implements MetaStore {
         }
         long eclipseTime = this.getSystemClock().now() - beginTime;
         this.metaStatsService.setGetMessageEntireTimeMax(eclipseTime);
+        this.metaStatsService.getGetMessageHistogram().recordSince(beginNanos);
 
         getResult.setStatus(status);
         getResult.setNextBeginOffset(nextBeginOffset);
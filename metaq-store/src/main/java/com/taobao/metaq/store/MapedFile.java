@@ -35,6 +35,21 @@ public class MapedFile extends ReferenceResource {
     // ǰJVMmmap
     private static final AtomicInteger TotalMapedFiles = new AtomicInteger(0);
 
+    // Ϊȱҳ㣬ڿprofilingʱͳ
+    private static volatile boolean pageFaultProfiling = false;
+    // һpageʱΪҪ̵ȱҳ
+    private static final long SlowPageThresholdNanos = 50 * 1000;
+    // ׷Ϣʱ״дpageδԤȵļÿpageԼһȱҳ
+    private static final AtomicLong AppendTouchedPages = new AtomicLong(0);
+    // Ϣʱ̽page
+    private static final AtomicLong ReadProbedPages = new AtomicLong(0);
+    // ϢʱpageҪ̵ȱҳ
+    private static final AtomicLong ReadSlowPages = new AtomicLong(0);
+    // Ϣʱpageۼƺʱλ룩
+    private static final AtomicLong ReadSlowNanos = new AtomicLong(0);
+    // ̽ݣⱻJITŻ
+    private static int probeSink;
+
     // ӳļ
     private final String fileName;
     // ӳʼƫ
@@ -159,6 +174,9 @@ public class MapedFile extends ReferenceResource {
                     cb.doAppend(this.getFileFromOffset(), byteBuffer, this.fileSize - currentPos, msg);
             this.wrotePostion.addAndGet(result.getWroteBytes());
             this.storeTimestamp = result.getStoreTimestamp();
+            if (pageFaultProfiling) {
+                AppendTouchedPages.addAndGet(countPageStarts(currentPos, currentPos + result.getWroteBytes()));
+            }
             return result;
         }
 
@@ -242,6 +260,9 @@ public class MapedFile extends ReferenceResource {
                 byteBuffer.position(pos);
                 ByteBuffer byteBufferNew = byteBuffer.slice();
                 byteBufferNew.limit(size);
+                if (pageFaultProfiling) {
+                    probePages(byteBufferNew, pos, size);
+                }
                 return new SelectMapedBufferResult(this.fileFromOffset + pos, byteBufferNew, size, this);
             }
             else {
@@ -409,6 +430,73 @@ public class MapedFile extends ReferenceResource {
     }
 
 
+    /**
+     * [from, to)pageʼλõĸ˳дʱ״дpage
+     */
+    static long countPageStarts(final int from, final int to) {
+        return (to + OS_PAGE_SIZE - 1) / OS_PAGE_SIZE - (from + OS_PAGE_SIZE - 1) / OS_PAGE_SIZE;
+    }
+
+
+    /**
+     * pageһֽڲʱpageΪҪ̵ȱҳϢᱻ㿽ֻͣ̽ǰȱҳǰIO
+     */
+    private static void probePages(final ByteBuffer byteBuffer, final int pos, final int size) {
+        int sink = 0;
+        long pages = 0;
+        long slowPages = 0;
+        long slowNanos = 0;
+        int i = 0;
+        while (i < size) {
+            final long begin = System.nanoTime();
+            sink += byteBuffer.get(i);
+            final long cost = System.nanoTime() - begin;
+            pages++;
+            if (cost > SlowPageThresholdNanos) {
+                slowPages++;
+                slowNanos += cost;
+            }
+            i = (i == 0) ? OS_PAGE_SIZE - pos % OS_PAGE_SIZE : i + OS_PAGE_SIZE;
+        }
+        probeSink += sink;
+        ReadProbedPages.addAndGet(pages);
+        if (slowPages > 0) {
+            ReadSlowPages.addAndGet(slowPages);
+            ReadSlowNanos.addAndGet(slowNanos);
+        }
+    }
+
+
+    public static boolean isPageFaultProfiling() {
+        return pageFaultProfiling;
+    }
+
+
+    public static void setPageFaultProfiling(boolean pageFaultProfiling) {
+        MapedFile.pageFaultProfiling = pageFaultProfiling;
+    }
+
+
+    public static long getAppendTouchedPages() {
+        return AppendTouchedPages.get();
+    }
+
+
+    public static long getReadProbedPages() {
+        return ReadProbedPages.get();
+    }
+
+
+    public static long getReadSlowPages() {
+        return ReadSlowPages.get();
+    }
+
+
+    public static long getReadSlowNanos() {
+        return ReadSlowNanos.get();
+    }
+
+
     public MappedByteBuffer getMappedByteBuffer() {
         return mappedByteBuffer;
     }
@@ -13,6 +13,8 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
+import com.taobao.metamorphosis.utils.MessageTracer;
+import com.taobao.metamorphosis.utils.MessageTracer.Stage;
 import com.taobao.metaq.commons.MetaMessage;
 import com.taobao.metaq.commons.MetaMessageAnnotation;
 import com.taobao.metaq.commons.MetaMessageDecoder;
@@ -93,7 +95,10 @@ public class MetaQueuePhysical {
                         this.printFlushProgress();
                     }
 
+                    long beginNanos = System.nanoTime();
+                    long committedWhere = MetaQueuePhysical.this.mapedFileQueue.getCommittedWhere();
                     MetaQueuePhysical.this.mapedFileQueue.commit(flushPhysicQueueLeastPages);
+                    MetaQueuePhysical.this.recordFlush(beginNanos, committedWhere);
                     long storeTimestamp = MetaQueuePhysical.this.mapedFileQueue.getStoreTimestamp();
                     if (storeTimestamp > 0) {
                         MetaQueuePhysical.this.defaultMetaStore.getStoreCheckpoint().setPhysicMsgTimestamp(
@@ -202,7 +207,10 @@ public class MetaQueuePhysical {
                     // Ϣпһļˢ2
                     for (int i = 0; (i < 2)
                             && (MetaQueuePhysical.this.mapedFileQueue.getCommittedWhere() < req.getNextOffset()); i++) {
+                        long beginNanos = System.nanoTime();
+                        long committedWhere = MetaQueuePhysical.this.mapedFileQueue.getCommittedWhere();
                         MetaQueuePhysical.this.mapedFileQueue.commit(0);
+                        MetaQueuePhysical.this.recordFlush(beginNanos, committedWhere);
                     }
 
                     req.wakeupCustomer(true);
@@ -802,7 +810,19 @@ public class MetaQueuePhysical {
     }
 
 
+    /**
+     * ¼һˢ̺ʱûҪˢʱ
+     */
+    private void recordFlush(final long beginNanos, final long committedWhere) {
+        if (this.mapedFileQueue.getCommittedWhere() != committedWhere) {
+            this.defaultMetaStore.getMetaStatsService().getFlushPhysicHistogram().recordSince(beginNanos);
+        }
+    }
+
+
     public AppendMessageResult putMessage(final MetaMessage msg, final MetaMessageAnnotation msgant) {
+        // Ϣ¼ͬˢ̺ʱ
+        final long traceNanos = MessageTracer.sample(Stage.BROKER_LOCK_WAIT) ? System.nanoTime() : 0L;
         MetaMessageWrapper metaMessageWrapper = new MetaMessageWrapper(msg, msgant);
         // ô洢ʱ
         msgant.setStoreTimestamp(System.currentTimeMillis());
@@ -816,6 +836,10 @@ public class MetaQueuePhysical {
         // дļҪ
         synchronized (this) {
             long beginLockTimestamp = this.defaultMetaStore.getSystemClock().now();
+            long beginLockNanos = System.nanoTime();
+            if (traceNanos != 0L) {
+                MessageTracer.record(msg.getTopic(), Stage.BROKER_LOCK_WAIT, (beginLockNanos - traceNanos) / 1000);
+            }
 
             // ô洢ʱܱ֤ȫ
             msgant.setStoreTimestamp(beginLockTimestamp);
@@ -862,6 +886,7 @@ public class MetaQueuePhysical {
             if (eclipseTime > 1000) {
                 log.warn("putMessage in lock eclipse time(ms) " + eclipseTime);
             }
+            metaStatsService.getPutMessageInLockHistogram().recordSince(beginLockNanos);
         }
 
         // ͳϢSIZE
@@ -872,8 +897,12 @@ public class MetaQueuePhysical {
             GroupCommitRequest request = new GroupCommitRequest(result.getWroteOffset() + result.getWroteBytes());
             GroupCommitService service = (GroupCommitService) this.flushPhysicalQueueService;
             service.putRequest(request);
+            final long beginFlushNanos = traceNanos != 0L ? System.nanoTime() : 0L;
             boolean flushOK =
                     request.waitForFlush(this.defaultMetaStore.getMetaStoreConfig().getGroupCommitTimeout());
+            if (beginFlushNanos != 0L) {
+                MessageTracer.recordSince(msg.getTopic(), Stage.BROKER_FLUSH, beginFlushNanos);
+            }
             if (!flushOK) {
                 log.error("do groupcommit, wait for flush failed, topic: " + msg.getTopic() + " type: "
                         + msg.getType() + " client address: " + msgant.getBornHostString());
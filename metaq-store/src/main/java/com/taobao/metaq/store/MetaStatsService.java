@@ -10,6 +10,8 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
+import com.taobao.metamorphosis.utils.LatencyHistogram;
+import com.taobao.metamorphosis.utils.MetaMBeanServer;
 import com.taobao.metaq.commons.ServiceThread;
 
 /**
@@ -17,7 +19,7 @@ import com.taobao.metaq.commons.ServiceThread;
  * 
  * @author vintage.wang@gmail.com shijia.wxr@taobao.com
  */
-public class MetaStatsService extends ServiceThread {
+public class MetaStatsService extends ServiceThread implements MetaStatsServiceMBean {
     static class CallSnapshot {
         public final long timestamp;
         public final long callTimesTotal;
@@ -43,14 +45,9 @@ public class MetaStatsService extends ServiceThread {
     // ʱ
     private long metaStoreBootTimestamp = System.currentTimeMillis();
     // putMessageдϢʱʱ䣨λ룩
-    private volatile long putMessageEntireTimeMax = 0;
+    private final AtomicLong putMessageEntireTimeMax = new AtomicLong(0);
     // getMessageȡһϢʱʱ䣨λ룩
-    private volatile long getMessageEntireTimeMax = 0;
-
-    // for putMessageEntireTimeMax
-    private ReentrantLock lockPut = new ReentrantLock();
-    // for getMessageEntireTimeMax
-    private ReentrantLock lockGet = new ReentrantLock();
+    private final AtomicLong getMessageEntireTimeMax = new AtomicLong(0);
 
     // putMessageʧܴ
     private final AtomicLong putMessageFailedTimes = new AtomicLong(0);
@@ -67,6 +64,29 @@ public class MetaStatsService extends ServiceThread {
     // DispatchMessageServiceֵ
     private volatile long dispatchMaxBuffer = 0;
 
+    // ºʱֲλΪ΢룬TPSӡÿӹһ
+    // putMessageдϢʱȴˢ
+    private final LatencyHistogram putMessageHistogram = new LatencyHistogram("putMessage");
+    // putMessageʱ
+    private final LatencyHistogram putMessageInLockHistogram = new LatencyHistogram("putMessageInLock");
+    // getMessageȡһϢʱ
+    private final LatencyHistogram getMessageHistogram = new LatencyHistogram("getMessage");
+    // һˢ̺ʱ
+    private final LatencyHistogram flushPhysicHistogram = new LatencyHistogram("flushPhysic");
+    // ߼һˢ̺ʱ
+    private final LatencyHistogram flushLogicsHistogram = new LatencyHistogram("flushLogics");
+    // Ϣдеַ߼еӳ
+    private final LatencyHistogram dispatchHistogram = new LatencyHistogram("dispatch");
+    // 㿽һϢĺʱbroker¼
+    private final LatencyHistogram transferHistogram = new LatencyHistogram("transfer");
+    private final LatencyHistogram[] histograms = new LatencyHistogram[] { this.putMessageHistogram,
+                                                                          this.putMessageInLockHistogram,
+                                                                          this.getMessageHistogram,
+                                                                          this.flushPhysicHistogram,
+                                                                          this.flushLogicsHistogram,
+                                                                          this.dispatchHistogram,
+                                                                          this.transferHistogram };
+
     // Ƶʣ1Ӳһ
     private static final int FrequencyOfSampling = 1000;
     // ¼֮ǰɾ
@@ -93,8 +113,25 @@ public class MetaStatsService extends ServiceThread {
     }
 
 
+    @Override
+    public void start() {
+        super.start();
+        MetaMBeanServer.registMBean(this, null);
+    }
+
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+
     public long getPutMessageEntireTimeMax() {
-        return putMessageEntireTimeMax;
+        return putMessageEntireTimeMax.get();
     }
 
 
@@ -128,27 +165,87 @@ public class MetaStatsService extends ServiceThread {
             this.putMessageDistributeTime[6].incrementAndGet();
         }
 
-        if (value > this.putMessageEntireTimeMax) {
-            this.lockPut.lock();
-            this.putMessageEntireTimeMax =
-                    value > this.putMessageEntireTimeMax ? value : this.putMessageEntireTimeMax;
-            this.lockPut.unlock();
-        }
+        updateMax(this.putMessageEntireTimeMax, value);
     }
 
 
     public long getGetMessageEntireTimeMax() {
-        return getMessageEntireTimeMax;
+        return getMessageEntireTimeMax.get();
     }
 
 
     public void setGetMessageEntireTimeMax(long value) {
-        if (value > this.getMessageEntireTimeMax) {
-            this.lockGet.lock();
-            this.getMessageEntireTimeMax =
-                    value > this.getMessageEntireTimeMax ? value : this.getMessageEntireTimeMax;
-            this.lockGet.unlock();
-        }
+        updateMax(this.getMessageEntireTimeMax, value);
+    }
+
+
+    public LatencyHistogram getPutMessageHistogram() {
+        return putMessageHistogram;
+    }
+
+
+    public LatencyHistogram getPutMessageInLockHistogram() {
+        return putMessageInLockHistogram;
+    }
+
+
+    public LatencyHistogram getGetMessageHistogram() {
+        return getMessageHistogram;
+    }
+
+
+    public LatencyHistogram getFlushPhysicHistogram() {
+        return flushPhysicHistogram;
+    }
+
+
+    public LatencyHistogram getFlushLogicsHistogram() {
+        return flushLogicsHistogram;
+    }
+
+
+    public LatencyHistogram getDispatchHistogram() {
+        return dispatchHistogram;
+    }
+
+
+    public LatencyHistogram getTransferHistogram() {
+        return transferHistogram;
+    }
+
+
+    public String getPutMessageLatency() {
+        return this.putMessageHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getPutMessageInLockLatency() {
+        return this.putMessageInLockHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getGetMessageLatency() {
+        return this.getMessageHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getFlushPhysicLatency() {
+        return this.flushPhysicHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getFlushLogicsLatency() {
+        return this.flushLogicsHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getDispatchLatency() {
+        return this.dispatchHistogram.getIntervalSnapshot().toString();
+    }
+
+
+    public String getTransferLatency() {
+        return this.transferHistogram.getIntervalSnapshot().toString();
     }
 
 
@@ -219,19 +316,24 @@ public class MetaStatsService extends ServiceThread {
         }
 
         sb.append("\truntime: " + this.getFormatRuntime() + "\r\n");
-        sb.append("\tputMessageEntireTimeMax: " + this.putMessageEntireTimeMax + "\r\n");
+        sb.append("\tputMessageEntireTimeMax: " + this.putMessageEntireTimeMax.get() + "\r\n");
         sb.append("\tputMessageTimesTotal: " + totalTimes + "\r\n");
         sb.append("\tputMessageSizeTotal: " + this.putMessageSizeTotal.get() + "\r\n");
         sb.append("\tputMessageDistributeTime: " + this.getPutMessageDistributeTimeStringInfo(totalTimes) + "\r\n");
         sb.append("\tputMessageAverageSize: " + (this.putMessageSizeTotal.get() / totalTimes.doubleValue())
                 + "\r\n");
         sb.append("\tdispatchMaxBuffer: " + this.dispatchMaxBuffer + "\r\n");
-        sb.append("\tgetMessageEntireTimeMax: " + this.getMessageEntireTimeMax + "\r\n");
+        sb.append("\tgetMessageEntireTimeMax: " + this.getMessageEntireTimeMax.get() + "\r\n");
         sb.append("\tputTps: " + this.getPutTps() + "\r\n");
         sb.append("\tgetFoundTps: " + this.getGetFoundTps() + "\r\n");
         sb.append("\tgetMissTps: " + this.getGetMissTps() + "\r\n");
         sb.append("\tgetTotalTps: " + this.getGetTotalTps() + "\r\n");
         sb.append("\tgetTransferedTps: " + this.getGetTransferedTps() + "\r\n");
+        // һӵĺʱֲ΢룩ۼƷֲ
+        for (LatencyHistogram histogram : this.histograms) {
+            sb.append("\t" + histogram.getName() + "Latency: " + histogram.getIntervalSnapshot() + "\r\n");
+            sb.append("\t" + histogram.getName() + "LatencyTotal: " + histogram.snapshot() + "\r\n");
+        }
         return sb.toString();
     }
 
@@ -457,6 +559,11 @@ public class MetaStatsService extends ServiceThread {
             log.info("get_miss_tps " + this.getGetMissTps(PrintTPSInterval));
 
             log.info("get_transfered_tps " + this.getGetTransferedTps(PrintTPSInterval));
+
+            for (LatencyHistogram histogram : this.histograms) {
+                histogram.rollInterval();
+                log.info(histogram.getName() + "_latency " + histogram.getIntervalSnapshot());
+            }
         }
     }
 
@@ -0,0 +1,36 @@
+package com.taobao.metaq.store;
+
+/**
+ * 洢ʱֲλ΢룬Ϊһӵͳ
+ * 
+ */
+public interface MetaStatsServiceMBean {
+    public String getPutMessageLatency();
+
+
+    public String getPutMessageInLockLatency();
+
+
+    public String getGetMessageLatency();
+
+
+    public String getFlushPhysicLatency();
+
+
+    public String getFlushLogicsLatency();
+
+
+    public String getDispatchLatency();
+
+
+    public String getTransferLatency();
+
+
+    public long getPutMessageEntireTimeMax();
+
+
+    public long getGetMessageEntireTimeMax();
+
+
+    public long getDispatchMaxBuffer();
+}
@@ -3,6 +3,7 @@
  */
 package com.taobao.metaq.store;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -66,6 +67,30 @@ public class MapedFileTest {
     }
 
 
+    @Test
+    public void test_page_fault_profiling() throws IOException {
+        assertEquals(0, MapedFile.countPageStarts(1, 4096));
+        assertEquals(1, MapedFile.countPageStarts(0, 1));
+        assertEquals(2, MapedFile.countPageStarts(4000, 8193));
+
+        MapedFile mapedFile = new MapedFile("./unit_test_store/MapedFileTest/20000", 1024 * 64);
+        assertTrue(mapedFile.appendMessage(new byte[10000]));
+        MapedFile.setPageFaultProfiling(true);
+        try {
+            long probed = MapedFile.getReadProbedPages();
+            // [100, 9100)Խ3page
+            SelectMapedBufferResult result = mapedFile.selectMapedBuffer(100, 9000);
+            assertEquals(probed + 3, MapedFile.getReadProbedPages());
+            result.release();
+        }
+        finally {
+            MapedFile.setPageFaultProfiling(false);
+            mapedFile.shutdown(1000);
+            assertTrue(mapedFile.destroy(1000));
+        }
+    }
+
+
     /**
      * ǰڶmmap󣬻ᵼJVM CRASHED
      */
@@ -0,0 +1,7 @@
+#!/bin/bash
+
+#
+# ȫȺѽȱ棬ʱoffsetcom.taobao.metamorphosis.tools.shell.LagReport
+#
+
+sh $(dirname $0)/run-class.sh com.taobao.metamorphosis.tools.shell.LagReport $@
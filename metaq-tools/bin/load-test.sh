@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# zookeeperbrokerж˵ѹ⣬ӡºͰƻʱӳٷֲ
+# usage:
+#      LoadGenerator -rate 20000 -size 1024 -producers 4 -consumers 2 -partitions 8 -duration 120
+#      ˵LoadGenerator
+
+sh $(dirname $0)/run-class.sh com.taobao.metamorphosis.tools.loadtest.LoadGenerator $@ 
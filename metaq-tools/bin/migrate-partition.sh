@@ -0,0 +1,7 @@
+#!/bin/bash
+
+# Ǩһһbroker:,رԴ,׷ƽβ,лoffset
+# usage:
+#      MigratePartition -topic xxtopic -from 1-3 -to 2-0 -bandwidth 20
+
+sh $(dirname $0)/run-class.sh com.taobao.metamorphosis.tools.shell.MigratePartition $@
@@ -0,0 +1,61 @@
+package com.taobao.metamorphosis.tools.dataTransfer;
+
+/**
+ * ֽ٣÷ÿһǰacquireʱߵƽʻΪֹ<br>
+ * гһ¼ʱΪ֮ǰĿлܳͻ
+ *
+ */
+public class BandwidthThrottler {
+    private final long bytesPerSecond;
+    private long windowStart = -1;
+    private long windowBytes;
+
+
+    /**
+     * @param bytesPerSecond
+     *            ÿֽСڵ0ʾ
+     */
+    public BandwidthThrottler(final long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+
+    /**
+     * 봫bytesֽڣҪʱ
+     *
+     * @return ߵĺ
+     */
+    public synchronized long acquire(final int bytes) throws InterruptedException {
+        final long pause = this.reserve(bytes, System.currentTimeMillis());
+        if (pause > 0) {
+            Thread.sleep(pause);
+        }
+        return pause;
+    }
+
+
+    /**
+     * ¼nowʱ̴bytesֽڣҪߵĺ
+     */
+    long reserve(final int bytes, final long now) {
+        if (this.bytesPerSecond <= 0) {
+            return 0;
+        }
+        if (this.windowStart < 0 || now - this.expectedEnd() > 1000) {
+            this.windowStart = now;
+            this.windowBytes = 0;
+        }
+        this.windowBytes += bytes;
+        return Math.max(0, this.expectedEnd() - now);
+    }
+
+
+    private long expectedEnd() {
+        return this.windowStart + this.windowBytes * 1000 / this.bytesPerSecond;
+    }
+}
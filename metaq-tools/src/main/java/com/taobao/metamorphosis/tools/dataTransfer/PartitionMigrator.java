@@ -0,0 +1,352 @@
+package com.taobao.metamorphosis.tools.dataTransfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.core.command.ResponseCommand;
+import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.gecko.service.Connection;
+import com.taobao.gecko.service.SingleRequestCallBackListener;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.ByteUtils;
+import com.taobao.metamorphosis.network.DataCommand;
+import com.taobao.metamorphosis.network.GetCommand;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.PutCommand;
+import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.utils.MessageFlagUtils;
+import com.taobao.metaq.commons.MetaMessage;
+import com.taobao.metaq.commons.MetaMessageDecoder;
+import com.taobao.metaq.commons.MetaMessageWrapper;
+
+
+/**
+ * broker֮Ǩһ
+ * <ul>
+ * <li>Դ߼offsetȡԴbrokertransferPageCache㿽</li>
+ * <li>ԭ(flagԡѹϢ)дĿwindowputͬʱ;</li>
+ * <li>copy()ԴûΪֹԶεãƣرԴٵһ׷ƽβ</li>
+ * </ul>
+ * brokerput;put֮򣬻offsetʱwindowϢˣ֤©Ϣ
+ *
+ */
+public class PartitionMigrator {
+    static final Log log = LogFactory.getLog(PartitionMigrator.class);
+    private static final int MAX_FETCH_SIZE = 16 * 1024 * 1024;
+
+    private final RemotingClientWrapper remotingClient;
+    private final String topic;
+    private final Partition source;
+    private final String sourceUrl;
+    private final Partition target;
+    private final String targetUrl;
+    private final int window;
+    private final long timeoutMs;
+    private final BandwidthThrottler throttler;
+    private final Semaphore inFlight;
+
+    private int fetchSize;
+    private long startOffset = -1;
+    private long nextOffset;
+    private long targetBase;
+    // ԴϢɾԭϢ
+    private long skipped;
+    private long fetchedBytes;
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong ackedMessages = new AtomicLong();
+    private volatile String error;
+
+
+    /**
+     * @param window
+     *            ͬʱ;put
+     * @param throttler
+     *            Դbrokerȡݵ
+     */
+    public PartitionMigrator(final RemotingClientWrapper remotingClient, final String topic, final Partition source,
+            final String sourceUrl, final Partition target, final String targetUrl, final int fetchSize,
+            final int window, final long timeoutMs, final BandwidthThrottler throttler) {
+        if (fetchSize <= 0 || window <= 0 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("fetchSize, window and timeoutMs must be positive");
+        }
+        this.remotingClient = remotingClient;
+        this.topic = topic;
+        this.source = source;
+        this.sourceUrl = sourceUrl;
+        this.target = target;
+        this.targetUrl = targetUrl;
+        this.fetchSize = fetchSize;
+        this.window = window;
+        this.timeoutMs = timeoutMs;
+        this.throttler = throttler;
+        this.inFlight = new Semaphore(window);
+    }
+
+
+    /**
+     * øƵ
+     *
+     * @param startOffset
+     *            ԴʼƵoffsetһΪԴmin_offset
+     * @param targetBase
+     *            ʼʱĿmax_offset
+     */
+    public void init(final long startOffset, final long targetBase) throws Exception {
+        this.startOffset = startOffset;
+        this.nextOffset = startOffset;
+        this.targetBase = targetBase;
+        this.connect(this.sourceUrl);
+        this.connect(this.targetUrl);
+    }
+
+
+    private void connect(final String url) throws Exception {
+        if (!this.remotingClient.isConnected(url)) {
+            this.remotingClient.connect(url);
+            this.remotingClient.awaitReadyInterrupt(url, this.timeoutMs);
+        }
+    }
+
+
+    /**
+     * ԴȡдĿֱԴûݣȴ;put
+     *
+     * @return θƵϢ
+     */
+    public long copy() throws Exception {
+        if (this.startOffset < 0) {
+            throw new IllegalStateException("Call init first");
+        }
+        final long begin = this.sentMessages.get();
+        while (this.fetchOnce()) {
+            this.checkError();
+        }
+        this.checkError();
+        return this.sentMessages.get() - begin;
+    }
+
+
+    /**
+     * ȴ;put
+     */
+    public void flush() throws Exception {
+        if (!this.inFlight.tryAcquire(this.window, this.timeoutMs * 2, TimeUnit.MILLISECONDS)) {
+            throw new IOException("Wait for " + (this.sentMessages.get() - this.ackedMessages.get())
+                    + " puts to " + this.targetUrl + " timeout");
+        }
+        this.inFlight.release(this.window);
+        this.checkError();
+    }
+
+
+    /**
+     * @return falseʾԴѾû
+     */
+    private boolean fetchOnce() throws Exception {
+        final ResponseCommand response =
+                this.remotingClient.invokeToGroup(this.sourceUrl, new GetCommand(this.topic,
+                    MetaConfig.MIGRATION_GROUP, this.source.getPartition(), this.nextOffset, this.fetchSize,
+                    OpaqueGenerator.getNextOpaque()), this.timeoutMs, TimeUnit.MILLISECONDS);
+        if (response instanceof DataCommand) {
+            final byte[] data = ((DataCommand) response).getData();
+            this.fetchedBytes += data.length;
+            if (this.throttler != null) {
+                this.throttler.acquire(data.length);
+            }
+            final List<MetaMessageWrapper> wrappers = MetaMessageDecoder.decodes(ByteBuffer.wrap(data));
+            if (wrappers.isEmpty()) {
+                // һϢŲ£ӴȡС
+                if (this.fetchSize >= MAX_FETCH_SIZE) {
+                    throw new IOException("Message at offset " + this.nextOffset + " of " + this.source
+                            + " is larger than " + MAX_FETCH_SIZE + " bytes");
+                }
+                this.fetchSize = Math.min(this.fetchSize * 2, MAX_FETCH_SIZE);
+                return true;
+            }
+            for (final MetaMessageWrapper wrapper : wrappers) {
+                this.put(wrapper.getMetaMessage());
+                this.nextOffset = wrapper.getMetaMessageAnnotation().getQueueOffset() + 1;
+            }
+            return true;
+        }
+
+        final BooleanCommand resp = (BooleanCommand) response;
+        switch (resp.getCode()) {
+        case HttpStatus.NotFound:
+            return false;
+        case HttpStatus.Moved: {
+            final long movedOffset = Long.parseLong(resp.getErrorMsg());
+            if (movedOffset <= this.nextOffset) {
+                // ˷صoffsetûǰΪѾ׷ƽ
+                return false;
+            }
+            if (this.sentMessages.get() == 0) {
+                // ֮ǰϢѾɾֱӴµλÿʼ
+                this.startOffset = movedOffset;
+            }
+            else {
+                this.skipped += movedOffset - this.nextOffset;
+                log.warn("Skip " + (movedOffset - this.nextOffset) + " messages of " + this.source + " from offset "
+                        + this.nextOffset);
+            }
+            this.nextOffset = movedOffset;
+            return true;
+        }
+        case HttpStatus.Forbidden:
+            throw new IOException("Broker " + this.sourceUrl + " refused to serve closed partition " + this.source
+                    + ", upgrade it first: " + resp.getErrorMsg());
+        default:
+            throw new IOException("Fetch from " + this.sourceUrl + " failed, code=" + resp.getCode() + ", "
+                    + resp.getErrorMsg());
+        }
+    }
+
+
+    private void put(final MetaMessage message) throws Exception {
+        if (!this.inFlight.tryAcquire(this.timeoutMs * 2, TimeUnit.MILLISECONDS)) {
+            throw new IOException("Put to " + this.targetUrl + " timeout");
+        }
+        final int flag = message.getFlag() & ~MetaMessageDecoder.NewServerFlag;
+        final PutCommand command =
+                new PutCommand(this.topic, this.target.getPartition(), encodePutData(message.getAttribute(),
+                    message.getBody(), flag), null, flag, OpaqueGenerator.getNextOpaque());
+        this.sentMessages.incrementAndGet();
+        try {
+            this.remotingClient.sendToGroup(this.targetUrl, command, new SingleRequestCallBackListener() {
+                @Override
+                public void onResponse(final ResponseCommand responseCommand, final Connection conn) {
+                    final BooleanCommand resp = (BooleanCommand) responseCommand;
+                    if (resp.getCode() == HttpStatus.Success) {
+                        PartitionMigrator.this.ackedMessages.incrementAndGet();
+                    }
+                    else {
+                        PartitionMigrator.this.error =
+                                "Put to " + PartitionMigrator.this.targetUrl + " failed, code=" + resp.getCode()
+                                        + ", " + resp.getErrorMsg();
+                    }
+                    PartitionMigrator.this.inFlight.release();
+                }
+
+
+                @Override
+                public void onException(final Exception e) {
+                    PartitionMigrator.this.error = "Put to " + PartitionMigrator.this.targetUrl + " failed, " + e;
+                    PartitionMigrator.this.inFlight.release();
+                }
+
+
+                @Override
+                public ThreadPoolExecutor getExecutor() {
+                    return null;
+                }
+            }, this.timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (final Exception e) {
+            this.inFlight.release();
+            throw e;
+        }
+    }
+
+
+    private void checkError() throws IOException {
+        if (this.error != null) {
+            throw new IOException(this.error);
+        }
+    }
+
+
+    /**
+     * ԭɿͻputݸʽSimpleMessageProducer.encodeDataһ£ʱΪԳ++Ϣ
+     */
+    static byte[] encodePutData(final String attribute, final byte[] body, final int flag) {
+        if (!MessageFlagUtils.hasAttribute(flag)) {
+            return body;
+        }
+        final byte[] attrData = attribute == null ? new byte[0] : ByteUtils.getBytes(attribute);
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + attrData.length + body.length);
+        buffer.putInt(attrData.length);
+        buffer.put(attrData);
+        buffer.put(body);
+        return buffer.array();
+    }
+
+
+    /**
+     * Դϵoffset㵽ĿslackϢظҲ©
+     *
+     * @param copied
+     *            ѾдĿϢ
+     */
+    static long translateOffset(final long sourceOffset, final long startOffset, final long targetBase,
+            final long copied, final long slack) {
+        final long offset = targetBase + sourceOffset - startOffset - slack;
+        return Math.max(targetBase, Math.min(offset, targetBase + copied));
+    }
+
+
+    /**
+     * Դoffsetflush֮ãѾѵβķֱӶӦĿβ
+     */
+    public long translateOffset(final long sourceOffset) {
+        if (sourceOffset >= this.nextOffset) {
+            return this.targetBase + this.ackedMessages.get();
+        }
+        return translateOffset(sourceOffset, this.startOffset, this.targetBase, this.ackedMessages.get(),
+            this.window + this.skipped);
+    }
+
+
+    public Partition getSource() {
+        return this.source;
+    }
+
+
+    public Partition getTarget() {
+        return this.target;
+    }
+
+
+    public long getStartOffset() {
+        return this.startOffset;
+    }
+
+
+    public long getTargetBase() {
+        return this.targetBase;
+    }
+
+
+    public long getNextOffset() {
+        return this.nextOffset;
+    }
+
+
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+
+    public long getFetchedBytes() {
+        return this.fetchedBytes;
+    }
+
+
+    public long getSentMessages() {
+        return this.sentMessages.get();
+    }
+
+
+    public long getAckedMessages() {
+        return this.ackedMessages.get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.taobao.metamorphosis.tools.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.apache.zookeeper.server.NIOServerCnxn;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+
+/**
+ * ڵĵzookeeperѹʱbrokerͿͻעᡢʹãݷָʱĿ¼
+ *
+ */
+public class EmbeddedZooKeeper {
+    private static final int TICK_TIME = 2000;
+
+    private final int port;
+    private final File dataDir;
+    private ZooKeeperServer zooKeeperServer;
+    private NIOServerCnxn.Factory cnxnFactory;
+
+
+    public EmbeddedZooKeeper(final int port, final File dataDir) {
+        this.port = port;
+        this.dataDir = dataDir;
+    }
+
+
+    public synchronized void start() throws IOException, InterruptedException {
+        if (this.zooKeeperServer != null) {
+            return;
+        }
+        final File snapDir = new File(this.dataDir, "snapshot");
+        final File logDir = new File(this.dataDir, "log");
+        if (!snapDir.mkdirs() && !snapDir.isDirectory() || !logDir.mkdirs() && !logDir.isDirectory()) {
+            throw new IOException("Create zookeeper data dir failed: " + this.dataDir);
+        }
+        this.zooKeeperServer = new ZooKeeperServer(snapDir, logDir, TICK_TIME);
+        this.cnxnFactory = new NIOServerCnxn.Factory(new InetSocketAddress(this.port));
+        this.cnxnFactory.startup(this.zooKeeperServer);
+    }
+
+
+    public String getConnectString() {
+        return "localhost:" + this.port;
+    }
+
+
+    public synchronized void stop() {
+        if (this.cnxnFactory != null) {
+            this.cnxnFactory.shutdown();
+            this.cnxnFactory = null;
+        }
+        if (this.zooKeeperServer != null) {
+            this.zooKeeperServer.shutdown();
+            this.zooKeeperServer = null;
+        }
+    }
+}
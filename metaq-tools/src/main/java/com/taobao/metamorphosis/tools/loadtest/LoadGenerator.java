@@ -0,0 +1,256 @@
+package com.taobao.metamorphosis.tools.loadtest;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+
+import com.taobao.metamorphosis.Message;
+import com.taobao.metamorphosis.client.MetaClientConfig;
+import com.taobao.metamorphosis.client.MetaMessageSessionFactory;
+import com.taobao.metamorphosis.client.consumer.ConsumerConfig;
+import com.taobao.metamorphosis.client.consumer.MessageConsumer;
+import com.taobao.metamorphosis.client.consumer.MessageListener;
+import com.taobao.metamorphosis.client.producer.MessageProducer;
+import com.taobao.metamorphosis.server.assembly.MetaMorphosisBroker;
+import com.taobao.metamorphosis.server.utils.MetaConfig;
+import com.taobao.metamorphosis.tools.shell.ShellTool;
+import com.taobao.metamorphosis.tools.utils.CommandLineUtils;
+import com.taobao.metamorphosis.utils.ZkUtils.ZKConfig;
+import com.taobao.metaq.store.DefaultMetaStore;
+import com.taobao.metaq.store.MetaStoreConfig;
+
+
+/**
+ * ˵ѹ⹤ߣڽzookeeperbroker̶Ŀߺߣ
+ * ڴӡ£ʱӡڼ(ȥԤ)ķӳٺͶ˵ӳٷֲӳٰƻʱcoordinated omission
+ * ݷdataDir£ǰգɾ
+ *
+ * <pre>
+ * usage:
+ *      LoadGenerator -rate 20000 -size 1024 -producers 4 -consumers 2 -partitions 8 -duration 120
+ *
+ * Ĭֵ:
+ *      -topic loadtest        ѹtopic
+ *      -partitions 4          
+ *      -producers 4           ߸ÿһ̣߳ƽĿ
+ *      -rate 10000            ܵĿ귢ʣ/
+ *      -size 1024             ϢСֽڣ8
+ *      -inflight 1000         ÿδȷϵϢ
+ *      -consumers 2           ͬһµ߸0ʾ
+ *      -warmup 10             Ԥʱ䣬룬ӳ
+ *      -duration 60           ʱ䣬
+ *      -report 5              ӡµļ
+ *      -port 18123            broker˿
+ *      -zkPort 12181          Ƕzookeeper˿
+ *      -dataDir ${java.io.tmpdir}/meta-loadtest
+ *      -groupCommit           洢ͬˢ
+ * </pre>
+ *
+ */
+public class LoadGenerator extends ShellTool {
+    private static final int BROKER_ID = 0;
+    private static final String GROUP = "meta-loadtest";
+
+    private final LoadStats stats = new LoadStats();
+
+
+    public static void main(final String[] args) throws Exception {
+        new LoadGenerator(System.out).doMain(args);
+        System.exit(0);
+    }
+
+
+    public LoadGenerator(final PrintStream out) {
+        super(out);
+    }
+
+
+    @Override
+    public void doMain(final String[] args) throws Exception {
+        final CommandLine commandLine = this.getCommandLine(args);
+        final String topic = commandLine.getOptionValue("topic", "loadtest");
+        final int partitions = this.getInt(commandLine, "partitions", 4);
+        final int producerCount = this.getInt(commandLine, "producers", 4);
+        final int rate = this.getInt(commandLine, "rate", 10000);
+        final int size = this.getInt(commandLine, "size", 1024);
+        final int inflight = this.getInt(commandLine, "inflight", 1000);
+        final int consumerCount = this.getInt(commandLine, "consumers", 2);
+        final int warmup = this.getInt(commandLine, "warmup", 10);
+        final int duration = this.getInt(commandLine, "duration", 60);
+        final int report = this.getInt(commandLine, "report", 5);
+        final int port = this.getInt(commandLine, "port", 18123);
+        final int zkPort = this.getInt(commandLine, "zkPort", 12181);
+        final File dataDir =
+                new File(commandLine.getOptionValue("dataDir", System.getProperty("java.io.tmpdir") + File.separator
+                        + "meta-loadtest"));
+        final boolean groupCommit = commandLine.hasOption("groupCommit");
+        if (partitions <= 0 || producerCount <= 0 || rate <= 0 || inflight <= 0 || consumerCount < 0
+                || duration <= 0 || report <= 0) {
+            throw new IllegalArgumentException("partitions,producers,rate,inflight,duration,report must be positive");
+        }
+
+        FileUtils.deleteDirectory(dataDir);
+        final EmbeddedZooKeeper zooKeeper = new EmbeddedZooKeeper(zkPort, new File(dataDir, "zookeeper"));
+        MetaMorphosisBroker broker = null;
+        MetaMessageSessionFactory sessionFactory = null;
+        final List<MessageConsumer> consumers = new ArrayList<MessageConsumer>();
+        final List<ProducerWorker> workers = new ArrayList<ProducerWorker>();
+        try {
+            zooKeeper.start();
+            final ZKConfig zkConfig = new ZKConfig(zooKeeper.getConnectString(), 30000, 30000, 5000);
+            broker = this.newBroker(topic, partitions, port, zkConfig, dataDir, groupCommit);
+            broker.start();
+
+            final MetaClientConfig clientConfig = new MetaClientConfig();
+            clientConfig.setZkConfig(zkConfig);
+            sessionFactory = new MetaMessageSessionFactory(clientConfig);
+            for (int i = 0; i < consumerCount; i++) {
+                consumers.add(this.newConsumer(sessionFactory, topic, "loadtest-" + i));
+            }
+            for (int i = 0; i < producerCount; i++) {
+                final MessageProducer producer = sessionFactory.createProducer();
+                producer.publish(topic);
+                workers.add(new ProducerWorker("loadtest-producer-" + i, producer, topic, (double) rate
+                        / producerCount, size, inflight, this.stats));
+            }
+            this.println("Start load test: rate=" + rate + " size=" + size + " producers=" + producerCount
+                    + " consumers=" + consumerCount + " partitions=" + partitions + " warmup=" + warmup
+                    + "s duration=" + duration + "s");
+            for (final ProducerWorker worker : workers) {
+                worker.start();
+            }
+
+            this.run(warmup, report);
+            this.stats.rollInterval();
+            this.println("Warmup finished");
+            this.run(duration, report);
+            for (final ProducerWorker worker : workers) {
+                worker.shutdown();
+            }
+            this.awaitDrain(consumerCount > 0);
+            this.stats.rollInterval();
+            this.println("Latency in micros, measured from intended send time:");
+            this.println(this.stats.getLatencyString());
+            this.println("Total sent=" + this.stats.sent.get() + " acked=" + this.stats.acked.get() + " failed="
+                    + this.stats.failed.get() + " received=" + this.stats.received.get());
+        }
+        finally {
+            for (final ProducerWorker worker : workers) {
+                worker.shutdown();
+            }
+            for (final MessageConsumer consumer : consumers) {
+                consumer.shutdown();
+            }
+            if (sessionFactory != null) {
+                sessionFactory.shutdown();
+            }
+            if (broker != null) {
+                broker.stop();
+            }
+            zooKeeper.stop();
+            FileUtils.deleteDirectory(dataDir);
+        }
+    }
+
+
+    private void run(final int seconds, final int report) throws InterruptedException {
+        final long end = System.currentTimeMillis() + seconds * 1000L;
+        long now;
+        while ((now = System.currentTimeMillis()) < end) {
+            Thread.sleep(Math.min(report * 1000L, end - now));
+            this.println(this.stats.getRateString());
+        }
+    }
+
+
+    /**
+     * ֹͣͺȴδȷϵϢء꣬10
+     */
+    private void awaitDrain(final boolean consume) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < end) {
+            final long done = this.stats.acked.get() + this.stats.failed.get();
+            if (done >= this.stats.sent.get() && (!consume || this.stats.received.get() >= this.stats.acked.get())) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        this.println("Drain timeout: " + this.stats.getRateString());
+    }
+
+
+    private MetaMorphosisBroker newBroker(final String topic, final int partitions, final int port,
+            final ZKConfig zkConfig, final File dataDir, final boolean groupCommit) {
+        final MetaConfig metaConfig = new MetaConfig();
+        metaConfig.setBrokerId(BROKER_ID);
+        metaConfig.setHostName("localhost");
+        metaConfig.setServerPort(port);
+        metaConfig.setDataPath(new File(dataDir, "meta").getAbsolutePath());
+        metaConfig.setNumPartitions(partitions);
+        metaConfig.setTopics(new ArrayList<String>(Collections.singletonList(topic)));
+        metaConfig.setZkConfig(zkConfig);
+
+        final File storeDir = new File(dataDir, "metastore");
+        final MetaStoreConfig metaStoreConfig = new MetaStoreConfig();
+        metaStoreConfig.setStorePathPhysic(new File(storeDir, "physic").getAbsolutePath());
+        metaStoreConfig.setStorePathLogics(new File(storeDir, "logics").getAbsolutePath());
+        metaStoreConfig.setStoreCheckpoint(new File(storeDir, "metaStoreCheckpoint").getAbsolutePath());
+        metaStoreConfig.setAbortFile(new File(storeDir, "metaStoreAbort").getAbsolutePath());
+        metaStoreConfig.setGroupCommitEnable(groupCommit);
+        return new MetaMorphosisBroker(metaConfig, new DefaultMetaStore(metaStoreConfig));
+    }
+
+
+    private MessageConsumer newConsumer(final MetaMessageSessionFactory sessionFactory, final String topic,
+            final String consumerId) throws Exception {
+        final ConsumerConfig consumerConfig = new ConsumerConfig(consumerId, GROUP);
+        final MessageConsumer consumer = sessionFactory.createConsumer(consumerConfig);
+        consumer.subscribe(topic, 1024 * 1024, new MessageListener() {
+            @Override
+            public void recieveMessages(final Message message) {
+                LoadGenerator.this.stats.recordReceive(ProducerWorker.getIntendedNanos(message.getData()));
+            }
+
+
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+        });
+        consumer.completeSubscribe();
+        return consumer;
+    }
+
+
+    private int getInt(final CommandLine commandLine, final String name, final int defaultValue) {
+        return Integer.parseInt(commandLine.getOptionValue(name, String.valueOf(defaultValue)));
+    }
+
+
+    private CommandLine getCommandLine(final String[] args) {
+        final Options options = new Options();
+        options.addOption(new Option("topic", true, "topic"));
+        options.addOption(new Option("partitions", true, "number of partitions"));
+        options.addOption(new Option("producers", true, "number of producers"));
+        options.addOption(new Option("rate", true, "total target send rate, messages per second"));
+        options.addOption(new Option("size", true, "message size in bytes"));
+        options.addOption(new Option("inflight", true, "max unacknowledged messages per producer"));
+        options.addOption(new Option("consumers", true, "number of consumers"));
+        options.addOption(new Option("warmup", true, "warmup seconds"));
+        options.addOption(new Option("duration", true, "measurement seconds"));
+        options.addOption(new Option("report", true, "report interval seconds"));
+        options.addOption(new Option("port", true, "broker port"));
+        options.addOption(new Option("zkPort", true, "embedded zookeeper port"));
+        options.addOption(new Option("dataDir", true, "data directory"));
+        options.addOption(new Option("groupCommit", false, "enable group commit of meta store"));
+        return CommandLineUtils.parseCmdLine(args, options);
+    }
+}
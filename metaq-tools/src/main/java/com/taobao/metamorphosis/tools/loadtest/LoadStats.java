@@ -0,0 +1,94 @@
+package com.taobao.metamorphosis.tools.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.taobao.metamorphosis.utils.LatencyHistogram;
+
+
+/**
+ * ѹļӳͳơ
+ * <p>
+ * Ϊcoordinated omissionӳٶϢĿʡӦ÷ʱ𣬶ʵʵ÷͵ʱ䣺
+ * broker·߳ʱѹĵȴʱҲӳ٣ΪٷϢڸǡ
+ * ͬʱ¼ʵʷͿʼķʱ(sendService)ߵĲǷͶŶӵʱ䡣
+ * </p>
+ * ԤȽѹʱһrollInterval()ձֻڼݡ
+ *
+ */
+public class LoadStats {
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong acked = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong received = new AtomicLong();
+    /** ƻʱķӳ */
+    final LatencyHistogram send = new LatencyHistogram("send");
+    /** ʵʷͿʼķӳ٣δ */
+    final LatencyHistogram sendService = new LatencyHistogram("sendService");
+    /** ƻʱ䵽յĶ˵ӳ */
+    final LatencyHistogram endToEnd = new LatencyHistogram("endToEnd");
+
+    private long lastReportNanos = System.nanoTime();
+    private long lastSent;
+    private long lastAcked;
+    private long lastReceived;
+
+
+    void recordSend(final long intendedNanos, final long startNanos, final boolean success) {
+        final long now = System.nanoTime();
+        if (success) {
+            this.acked.incrementAndGet();
+        }
+        else {
+            this.failed.incrementAndGet();
+        }
+        this.send.record((now - intendedNanos) / 1000);
+        this.sendService.record((now - startNanos) / 1000);
+    }
+
+
+    void recordReceive(final long intendedNanos) {
+        this.received.incrementAndGet();
+        this.endToEnd.record((System.nanoTime() - intendedNanos) / 1000);
+    }
+
+
+    /**
+     * зͳ䣬صĿΪϴε
+     */
+    void rollInterval() {
+        this.send.rollInterval();
+        this.sendService.rollInterval();
+        this.endToEnd.rollInterval();
+    }
+
+
+    /**
+     * ϴεÿ뷢͡ȷϡ
+     */
+    synchronized String getRateString() {
+        final long now = System.nanoTime();
+        final double seconds = (now - this.lastReportNanos) / 1e9;
+        final long sent = this.sent.get();
+        final long acked = this.acked.get();
+        final long received = this.received.get();
+        final String result =
+                String.format("sent/s=%.0f acked/s=%.0f received/s=%.0f failed=%d inflight=%d",
+                    (sent - this.lastSent) / seconds, (acked - this.lastAcked) / seconds,
+                    (received - this.lastReceived) / seconds, this.failed.get(), sent - acked - this.failed.get());
+        this.lastReportNanos = now;
+        this.lastSent = sent;
+        this.lastAcked = acked;
+        this.lastReceived = received;
+        return result;
+    }
+
+
+    /**
+     * һrollInterval()гĲӳٷֲλ΢
+     */
+    String getLatencyString() {
+        return "send       " + this.send.getIntervalSnapshot() + "\r\n" + "sendService "
+                + this.sendService.getIntervalSnapshot() + "\r\n" + "endToEnd   "
+                + this.endToEnd.getIntervalSnapshot();
+    }
+}
@@ -0,0 +1,119 @@
+package com.taobao.metamorphosis.tools.loadtest;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.Message;
+import com.taobao.metamorphosis.client.producer.MessageProducer;
+import com.taobao.metamorphosis.client.producer.SendMessageCallback;
+import com.taobao.metamorphosis.client.producer.SendResult;
+
+
+/**
+ * ̶첽Ϣ̡߳
+ * <p>
+ * nϢļƻʱ̶Ϊstart + n * intervalǰȴͶ
+ * ƻʱдϢǰ8ֽ߾ݴ˼˵ӳ١
+ * δȷϵϢmaxInFlightʱʱͬںϢӳ
+ * </p>
+ *
+ */
+class ProducerWorker extends Thread {
+    static final Log log = LogFactory.getLog(ProducerWorker.class);
+    static final int HEADER_SIZE = 8;
+
+    private final MessageProducer producer;
+    private final String topic;
+    private final long intervalNanos;
+    private final int messageSize;
+    private final Semaphore inFlight;
+    private final LoadStats stats;
+    private volatile boolean running = true;
+
+
+    ProducerWorker(final String name, final MessageProducer producer, final String topic, final double rate,
+            final int messageSize, final int maxInFlight, final LoadStats stats) {
+        super(name);
+        this.producer = producer;
+        this.topic = topic;
+        this.intervalNanos = (long) (1e9 / rate);
+        this.messageSize = Math.max(messageSize, HEADER_SIZE);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.stats = stats;
+    }
+
+
+    /**
+     * Ϣȡƻʱ
+     */
+    static long getIntendedNanos(final byte[] data) {
+        return ByteBuffer.wrap(data).getLong();
+    }
+
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        long count = 0;
+        while (this.running) {
+            final long intendedNanos = start + count++ * this.intervalNanos;
+            long delay;
+            while ((delay = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            try {
+                this.inFlight.acquire();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            this.send(intendedNanos);
+        }
+    }
+
+
+    private void send(final long intendedNanos) {
+        final byte[] data = new byte[this.messageSize];
+        ByteBuffer.wrap(data).putLong(intendedNanos);
+        final long startNanos = System.nanoTime();
+        this.stats.sent.incrementAndGet();
+        try {
+            this.producer.sendMessage(new Message(this.topic, data), new SendMessageCallback() {
+                @Override
+                public void onMessageSent(final SendResult result) {
+                    ProducerWorker.this.complete(intendedNanos, startNanos, result.isSuccess());
+                }
+
+
+                @Override
+                public void onException(final Throwable e) {
+                    log.warn("Send message failed", e);
+                    ProducerWorker.this.complete(intendedNanos, startNanos, false);
+                }
+            }, 3000, TimeUnit.MILLISECONDS);
+        }
+        catch (final Throwable e) {
+            log.warn("Send message failed", e);
+            this.complete(intendedNanos, startNanos, false);
+        }
+    }
+
+
+    private void complete(final long intendedNanos, final long startNanos, final boolean success) {
+        this.inFlight.release();
+        this.stats.recordSend(intendedNanos, startNanos, success);
+    }
+
+
+    void shutdown() throws InterruptedException {
+        this.running = false;
+        this.interrupt();
+        this.join();
+    }
+}
@@ -37,6 +37,7 @@ public class ProberManager {
 
     private final Map<Class<? extends Prober>, Prober> probers = new HashMap<Class<? extends Prober>, Prober>();
     private MonitorConfig monitorConfig;
+    private CoreManager coreManager;
     private final AtomicBoolean isInited = new AtomicBoolean(false);
     private final AtomicBoolean isStarted = new AtomicBoolean(false);
 
@@ -50,6 +51,7 @@ public class ProberManager {
         if (this.isInited.compareAndSet(false, true)) {
             try {
                 this.monitorConfig = coreManager.getMonitorConfig();
+                this.coreManager = coreManager;
                 this.register(new MsgProber(coreManager));
                 this.register(new RealTimeStatsProber(coreManager));
 //                this.register(new OffsetProber(coreManager));
@@ -121,6 +123,7 @@ public class ProberManager {
             for (Prober prober : this.probers.values()) {
                 prober.stopProb();
             }
+            this.coreManager.closeProbeConnections();
             this.isStarted.set(false);
         }
         else {
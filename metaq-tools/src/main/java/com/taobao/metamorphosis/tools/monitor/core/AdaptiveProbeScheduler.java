@@ -0,0 +1,235 @@
+package com.taobao.metamorphosis.tools.monitor.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * ϵͳ̽Ӧȣ̶ڵscheduleAtFixedRate
+ * <ul>
+ * <li>ÿ(prober, broker)̽ڵָƫھֵʱڼ룬ƽʱŴ1.5
+ * ̺֮䣻̽ʧʱӱ˱</li>
+ * <li>ÿ̨brokerͬʱе̽ÿӵ̽ޣ̽˳ӣڼرbroker</li>
+ * </ul>
+ *
+ */
+public class AdaptiveProbeScheduler {
+    static final long DEFER_MILLIS = 5000L;
+    static final long INITIAL_DELAY_MILLIS = 60 * 1000L;
+
+    private final ScheduledExecutorService executor;
+    private final MonitorConfig monitorConfig;
+    private final ConcurrentHashMap<String, BrokerBudget> budgets = new ConcurrentHashMap<String, BrokerBudget>();
+
+
+    public AdaptiveProbeScheduler(ScheduledExecutorService executor, MonitorConfig monitorConfig) {
+        this.executor = executor;
+        this.monitorConfig = monitorConfig;
+    }
+
+
+    /**
+     * ʼhost̽⣬һ̽һӺ
+     */
+    public void schedule(String host, Task task) {
+        task.scheduler = this;
+        task.host = host;
+        task.state =
+                new ProbeState(this.monitorConfig.getSystemProbMinCycleSeconds() * 1000L,
+                    this.monitorConfig.getSystemProbCycleTime() * 60 * 1000L,
+                    this.monitorConfig.getSystemProbMaxCycleTime() * 60 * 1000L);
+        this.reschedule(task, INITIAL_DELAY_MILLIS);
+    }
+
+
+    private void reschedule(Task task, long delayMillis) {
+        if (task.cancelled) {
+            return;
+        }
+        try {
+            task.future = this.executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            task.log.warn("̳̽߳ѹر,ֹͣ̽ " + task.host);
+        }
+    }
+
+
+    private BrokerBudget getBudget(String host) {
+        BrokerBudget budget = this.budgets.get(host);
+        if (budget == null) {
+            BrokerBudget newBudget = new BrokerBudget();
+            budget = this.budgets.putIfAbsent(host, newBudget);
+            if (budget == null) {
+                budget = newBudget;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * Ӧȵ̽ÿ̽feedbackûзΪ̽ʧ
+     */
+    public abstract static class Task extends ProbTask {
+        private AdaptiveProbeScheduler scheduler;
+        private String host;
+        private ProbeState state;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+        private boolean fedBack;
+
+
+        @Override
+        public void run() {
+            if (this.cancelled) {
+                return;
+            }
+            MonitorConfig config = this.scheduler.monitorConfig;
+            BrokerBudget budget = this.scheduler.getBudget(this.host);
+            if (!budget.tryAcquire(System.currentTimeMillis(), config.getMaxConcurrentProbesPerBroker(),
+                config.getMaxProbesPerBrokerPerMinute())) {
+                this.log.debug("broker " + this.host + " ̽Ѵ,˳");
+                this.scheduler.reschedule(this, DEFER_MILLIS);
+                return;
+            }
+            try {
+                this.fedBack = false;
+                super.run();
+                if (!this.fedBack) {
+                    this.state.onFailure();
+                }
+            }
+            finally {
+                budget.release();
+            }
+            this.scheduler.reschedule(this, this.state.getIntervalMillis());
+        }
+
+
+        /**
+         * һ̽Ľ
+         *
+         * @param value
+         *            ̽⵽ֵָûֵʱΪnull
+         * @param alerted
+         *            ̽Ƿ񱨾
+         */
+        protected void feedback(Double value, boolean alerted) {
+            this.fedBack = true;
+            this.state.onResult(value, alerted);
+        }
+
+
+        public void cancel() {
+            this.cancelled = true;
+            ScheduledFuture<?> f = this.future;
+            if (f != null) {
+                f.cancel(true);
+            }
+        }
+
+
+        /** ǰ̽ */
+        public long getIntervalMillis() {
+            return this.state != null ? this.state.getIntervalMillis() : -1;
+        }
+    }
+
+    /**
+     * ̽ڣָָȨֵͷжǷ񲨶
+     */
+    static class ProbeState {
+        private static final double ALPHA = 0.3;
+        // ƫֵ3׼Ա仯5%㲨ⳤڲָ΢С仯
+        private static final double SIGMA = 3;
+        private static final double MIN_RELATIVE_CHANGE = 0.05;
+        private static final int MIN_SAMPLES = 3;
+
+        private final long minMillis;
+        private final long maxMillis;
+        private long intervalMillis;
+        private double mean;
+        private double variance;
+        private int samples;
+
+
+        ProbeState(long minMillis, long initialMillis, long maxMillis) {
+            this.minMillis = Math.max(1, minMillis);
+            this.maxMillis = Math.max(this.minMillis, maxMillis);
+            this.intervalMillis = Math.min(this.maxMillis, Math.max(this.minMillis, initialMillis));
+        }
+
+
+        synchronized void onResult(Double value, boolean alerted) {
+            boolean fluctuated = alerted;
+            if (value != null && !value.isNaN() && !value.isInfinite()) {
+                double diff = value - this.mean;
+                if (this.samples >= MIN_SAMPLES) {
+                    double deviation = Math.abs(diff);
+                    if (deviation > SIGMA * Math.sqrt(this.variance)
+                            && deviation > MIN_RELATIVE_CHANGE * Math.abs(this.mean)) {
+                        fluctuated = true;
+                    }
+                }
+                if (this.samples == 0) {
+                    this.mean = value;
+                }
+                else {
+                    this.mean += ALPHA * diff;
+                    this.variance = (1 - ALPHA) * (this.variance + ALPHA * diff * diff);
+                }
+                this.samples++;
+            }
+            if (fluctuated) {
+                this.intervalMillis = Math.max(this.minMillis, this.intervalMillis / 2);
+            }
+            else {
+                this.intervalMillis = Math.min(this.maxMillis, this.intervalMillis * 3 / 2);
+            }
+        }
+
+
+        synchronized void onFailure() {
+            this.intervalMillis = Math.min(this.maxMillis, this.intervalMillis * 2);
+        }
+
+
+        synchronized long getIntervalMillis() {
+            return this.intervalMillis;
+        }
+    }
+
+    /**
+     * ̨broker̽Сڵ0ʾ
+     */
+    static class BrokerBudget {
+        private int running;
+        private long minuteStart = -1;
+        private int countInMinute;
+
+
+        synchronized boolean tryAcquire(long now, int maxConcurrent, int maxPerMinute) {
+            if (this.minuteStart < 0 || now - this.minuteStart >= 60 * 1000L) {
+                this.minuteStart = now;
+                this.countInMinute = 0;
+            }
+            if (maxConcurrent > 0 && this.running >= maxConcurrent) {
+                return false;
+            }
+            if (maxPerMinute > 0 && this.countInMinute >= maxPerMinute) {
+                return false;
+            }
+            this.running++;
+            this.countInMinute++;
+            return true;
+        }
+
+
+        synchronized void release() {
+            this.running--;
+        }
+    }
+}
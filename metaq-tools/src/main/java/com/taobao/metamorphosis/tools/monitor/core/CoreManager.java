@@ -11,6 +11,7 @@ import org.apache.log4j.Logger;
 import com.taobao.metamorphosis.exception.MetaClientException;
 import com.taobao.metamorphosis.tools.domain.MetaServer;
 import com.taobao.metamorphosis.tools.monitor.InitException;
+import com.taobao.metamorphosis.tools.utils.SSHSupport;
 
 
 /**
@@ -28,6 +29,8 @@ public class CoreManager {
     private MsgReceiver[] reveicers;
     private volatile MonitorConfig monitorConfig;
     private final ScheduledThreadPoolExecutor proberExecutor;
+    private final AdaptiveProbeScheduler probeScheduler;
+    private final JmxAttributeCache jmxAttributeCache;
 
 
     private CoreManager(final MonitorConfig monitorConfig, int coreSize) throws InitException {
@@ -38,6 +41,9 @@ public class CoreManager {
         }
 
         this.proberExecutor = new ScheduledThreadPoolExecutor(coreSize);
+        this.probeScheduler = new AdaptiveProbeScheduler(this.proberExecutor, monitorConfig);
+        // ʱȡ̽ڵһ룬ͬһ̨brokerʱjmx̽⹲һζȡ
+        this.jmxAttributeCache = new JmxAttributeCache(monitorConfig.getSystemProbMinCycleSeconds() * 1000L / 2);
 
         logger.info("init senders and receivers...");
         this.initSenderReceiver();
@@ -137,4 +143,21 @@ public class CoreManager {
         return this.proberExecutor;
     }
 
+
+    public AdaptiveProbeScheduler getProbeScheduler() {
+        return this.probeScheduler;
+    }
+
+
+    public JmxAttributeCache getJmxAttributeCache() {
+        return this.jmxAttributeCache;
+    }
+
+
+    /** ͷŸproberõjmxssh */
+    public void closeProbeConnections() {
+        this.jmxAttributeCache.close();
+        SSHSupport.closeAll();
+    }
+
 }
@@ -0,0 +1,149 @@
+package com.taobao.metamorphosis.tools.monitor.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.metamorphosis.tools.utils.JMXClient;
+import com.taobao.metamorphosis.tools.utils.JMXClientException;
+
+
+/**
+ * brokerjmxԣprober
+ * <ul>
+ * <li>proberʼʱעҪMBeanԣˢʱͬһMBeanһ</li>
+ * <li>ttlڵĶȡֱϴˢµĽproberͬʱ̽ͬһ̨brokerʱֻһ</li>
+ * <li>ÿ̨brokerJMXClientһֱеcloseÿ̽ӣȡʧʱ´</li>
+ * </ul>
+ *
+ */
+public class JmxAttributeCache {
+    private static final Log log = LogFactory.getLog(JmxAttributeCache.class);
+
+    private final long ttlMillis;
+    private final Map<ObjectName, Set<String>> attributes = new LinkedHashMap<ObjectName, Set<String>>();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+
+    public JmxAttributeCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+
+    public synchronized void register(ObjectName name, String... names) {
+        Set<String> set = this.attributes.get(name);
+        if (set == null) {
+            set = new LinkedHashSet<String>();
+            this.attributes.put(name, set);
+        }
+        Collections.addAll(set, names);
+    }
+
+
+    /**
+     * ȡעԣʱˢ̨brokerע
+     */
+    public Object getAttribute(String host, int port, ObjectName name, String attribute) throws JMXClientException {
+        Map<String, Object> values = this.getEntry(host, port).get(name);
+        return values != null ? values.get(attribute) : null;
+    }
+
+
+    private Entry getEntry(String host, int port) {
+        String key = host + ":" + port;
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry(host, port);
+            entry = this.entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+
+    private synchronized Map<ObjectName, String[]> getRegistered() {
+        Map<ObjectName, String[]> result = new LinkedHashMap<ObjectName, String[]>();
+        for (Map.Entry<ObjectName, Set<String>> each : this.attributes.entrySet()) {
+            result.put(each.getKey(), each.getValue().toArray(new String[each.getValue().size()]));
+        }
+        return result;
+    }
+
+
+    /** ͷjmx */
+    public void close() {
+        for (Entry entry : this.entries.values()) {
+            entry.close();
+        }
+        this.entries.clear();
+    }
+
+    private class Entry {
+        private final String host;
+        private final int port;
+        private JMXClient client;
+        private Map<ObjectName, Map<String, Object>> values = Collections.emptyMap();
+        private long refreshTime = -1;
+
+
+        Entry(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+
+        synchronized Map<String, Object> get(ObjectName name) throws JMXClientException {
+            long now = System.currentTimeMillis();
+            if (this.refreshTime < 0 || now - this.refreshTime >= JmxAttributeCache.this.ttlMillis) {
+                this.refresh();
+                this.refreshTime = now;
+            }
+            return this.values.get(name);
+        }
+
+
+        private void refresh() throws JMXClientException {
+            if (this.client == null) {
+                this.client = JMXClient.getJMXClient(this.host, this.port);
+            }
+            Map<ObjectName, Map<String, Object>> newValues = new HashMap<ObjectName, Map<String, Object>>();
+            JMXClientException lastError = null;
+            for (Map.Entry<ObjectName, String[]> each : JmxAttributeCache.this.getRegistered().entrySet()) {
+                try {
+                    newValues.put(each.getKey(), this.client.getAttributes(each.getKey(), each.getValue()));
+                }
+                catch (JMXClientException e) {
+                    log.warn("read " + each.getKey() + " from " + this.host + ":" + this.port + " failed", e);
+                    lastError = e;
+                }
+            }
+            if (newValues.isEmpty() && lastError != null) {
+                // ȫʧܣѾϿ´
+                this.close();
+                throw lastError;
+            }
+            this.values = newValues;
+        }
+
+
+        synchronized void close() {
+            if (this.client != null) {
+                this.client.close();
+                this.client = null;
+            }
+            this.values = Collections.emptyMap();
+            this.refreshTime = -1;
+        }
+    }
+}
@@ -75,6 +75,12 @@ public class MonitorConfig {
     private long statsProbCycleTime = 12 * 60 * 1000;
 
     private int systemProbCycleTime = 2;// λΪ
+    // ϵͳ̽ӦڷΧָ겨򱨾ʱ̵ڣƽʱ𲽷Ŵ
+    private int systemProbMinCycleSeconds = 30;
+    private int systemProbMaxCycleTime = 10;// λΪ
+    // ÿ̨brokerͬʱеϵͳ̽ÿӵ̽ޣ̽˳
+    private int maxConcurrentProbesPerBroker = 2;
+    private int maxProbesPerBrokerPerMinute = 20;
     private Set<String> filterTopicList = new HashSet<String>();
 
     
@@ -250,6 +256,22 @@ public class MonitorConfig {
             this.systemProbCycleTime = Integer.parseInt(sysConf.get("systemProbCycleTime"));
         }
 
+        if (!StringUtils.isBlank(sysConf.get("systemProbMinCycleSeconds"))) {
+            this.systemProbMinCycleSeconds = Integer.parseInt(sysConf.get("systemProbMinCycleSeconds"));
+        }
+
+        if (!StringUtils.isBlank(sysConf.get("systemProbMaxCycleTime"))) {
+            this.systemProbMaxCycleTime = Integer.parseInt(sysConf.get("systemProbMaxCycleTime"));
+        }
+
+        if (!StringUtils.isBlank(sysConf.get("maxConcurrentProbesPerBroker"))) {
+            this.maxConcurrentProbesPerBroker = Integer.parseInt(sysConf.get("maxConcurrentProbesPerBroker"));
+        }
+
+        if (!StringUtils.isBlank(sysConf.get("maxProbesPerBrokerPerMinute"))) {
+            this.maxProbesPerBrokerPerMinute = Integer.parseInt(sysConf.get("maxProbesPerBrokerPerMinute"));
+        }
+
         if (!StringUtils.isBlank(sysConf.get("monitorPoolCoreSize"))) {
             this.monitorPoolCoreSize = Integer.parseInt(sysConf.get("monitorPoolCoreSize"));
         }
@@ -627,6 +649,46 @@ public class MonitorConfig {
     }
 
 
+    public int getSystemProbMinCycleSeconds() {
+        return this.systemProbMinCycleSeconds;
+    }
+
+
+    public void setSystemProbMinCycleSeconds(int systemProbMinCycleSeconds) {
+        this.systemProbMinCycleSeconds = systemProbMinCycleSeconds;
+    }
+
+
+    public int getSystemProbMaxCycleTime() {
+        return this.systemProbMaxCycleTime;
+    }
+
+
+    public void setSystemProbMaxCycleTime(int systemProbMaxCycleTime) {
+        this.systemProbMaxCycleTime = systemProbMaxCycleTime;
+    }
+
+
+    public int getMaxConcurrentProbesPerBroker() {
+        return this.maxConcurrentProbesPerBroker;
+    }
+
+
+    public void setMaxConcurrentProbesPerBroker(int maxConcurrentProbesPerBroker) {
+        this.maxConcurrentProbesPerBroker = maxConcurrentProbesPerBroker;
+    }
+
+
+    public int getMaxProbesPerBrokerPerMinute() {
+        return this.maxProbesPerBrokerPerMinute;
+    }
+
+
+    public void setMaxProbesPerBrokerPerMinute(int maxProbesPerBrokerPerMinute) {
+        this.maxProbesPerBrokerPerMinute = maxProbesPerBrokerPerMinute;
+    }
+
+
     public int getCpuLoadThreshold() {
         return this.cpuLoadThreshold;
     }
@@ -1,5 +1,8 @@
 package com.taobao.metamorphosis.tools.monitor.system;
 
+import javax.management.openmbean.CompositeData;
+
+import com.taobao.metamorphosis.tools.monitor.InitException;
 import com.taobao.metamorphosis.tools.monitor.core.CoreManager;
 import com.taobao.metamorphosis.tools.monitor.core.MsgSender;
 import com.taobao.metamorphosis.tools.utils.JvmMemoryUtil;
@@ -19,10 +22,21 @@ public class JvmMemoryProber extends SystemProber {
     }
 
 
+    @Override
+    public void init() throws InitException {
+        this.coreManager.getJmxAttributeCache().register(JvmMemoryUtil.MEMORY_OBJECT_NAME,
+            JvmMemoryUtil.HEAP_MEMORY_USAGE);
+    }
+
+
     @Override
     protected MonitorResult getMonitorResult(MsgSender sender) {
         try {
-            return JvmMemoryUtil.getMemoryInfo(sender.getHost(), this.getMonitorConfig().getJmxPort());
+            CompositeData memoryInfo =
+                    (CompositeData) this.coreManager.getJmxAttributeCache().getAttribute(sender.getHost(),
+                        this.getMonitorConfig().getJmxPort(), JvmMemoryUtil.MEMORY_OBJECT_NAME,
+                        JvmMemoryUtil.HEAP_MEMORY_USAGE);
+            return memoryInfo != null ? JvmMemoryUtil.toMonitorResult(sender.getHost(), memoryInfo) : null;
         }
         catch (Throwable e) {
             this.logger.error(e);
@@ -1,5 +1,6 @@
 package com.taobao.metamorphosis.tools.monitor.system;
 
+import com.taobao.metamorphosis.tools.monitor.InitException;
 import com.taobao.metamorphosis.tools.monitor.core.CoreManager;
 import com.taobao.metamorphosis.tools.monitor.core.MsgSender;
 import com.taobao.metamorphosis.tools.utils.MonitorResult;
@@ -14,16 +15,29 @@ import com.taobao.metamorphosis.tools.utils.TransactionUtil;
  */
 
 public class PreparedTransactionProber extends SystemProber {
+    private static final String PREPARED_TRANSACTION_COUNT = "PreparedTransactionCount";
 
     public PreparedTransactionProber(CoreManager coreManager) {
         super(coreManager);
     }
 
 
+    @Override
+    public void init() throws InitException {
+        this.coreManager.getJmxAttributeCache().register(TransactionUtil.transactionObjectName,
+            PREPARED_TRANSACTION_COUNT);
+    }
+
+
     @Override
     protected MonitorResult getMonitorResult(MsgSender sender) throws Exception {
-        int preparedTransactionCount =
-                TransactionUtil.getPreparedTransactionCount(sender.getHost(), this.getMonitorConfig().getJmxPort());
+        Integer preparedTransactionCount =
+                (Integer) this.coreManager.getJmxAttributeCache().getAttribute(sender.getHost(),
+                    this.getMonitorConfig().getJmxPort(), TransactionUtil.transactionObjectName,
+                    PREPARED_TRANSACTION_COUNT);
+        if (preparedTransactionCount == null) {
+            return null;
+        }
         String msg = sender.getServerUrl() + " ﵽ" + preparedTransactionCount;
         this.logger.debug(msg);
         if (preparedTransactionCount >= this.getMonitorConfig().getPreparedTransactionCountThreshold()) {
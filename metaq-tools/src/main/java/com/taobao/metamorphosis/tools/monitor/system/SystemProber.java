@@ -2,15 +2,13 @@ package com.taobao.metamorphosis.tools.monitor.system;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import com.taobao.metamorphosis.tools.monitor.InitException;
 import com.taobao.metamorphosis.tools.monitor.alert.Alarm;
 import com.taobao.metamorphosis.tools.monitor.core.AbstractProber;
+import com.taobao.metamorphosis.tools.monitor.core.AdaptiveProbeScheduler;
 import com.taobao.metamorphosis.tools.monitor.core.CoreManager;
 import com.taobao.metamorphosis.tools.monitor.core.MsgSender;
-import com.taobao.metamorphosis.tools.monitor.core.ProbTask;
 import com.taobao.metamorphosis.tools.utils.MonitorResult;
 
 
@@ -26,7 +24,10 @@ public abstract class SystemProber extends AbstractProber {
     protected ProcessResultHook processResultHook = new ProcessResultHook() {
     };
 
-    private final List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+    private final List<AdaptiveProbeScheduler.Task> tasks = new ArrayList<AdaptiveProbeScheduler.Task>();
+
+    // ̽Ƿ񱨾Ӧ
+    private static final ThreadLocal<Boolean> alerted = new ThreadLocal<Boolean>();
 
 
     public SystemProber(CoreManager coreManager) {
@@ -42,7 +43,7 @@ public abstract class SystemProber extends AbstractProber {
     @Override
     protected void doProb() throws InterruptedException {
         for (final MsgSender sender : this.getSenders()) {
-            this.futures.add(this.getProberExecutor().scheduleAtFixedRate(new ProbTask() {
+            AdaptiveProbeScheduler.Task task = new AdaptiveProbeScheduler.Task() {
 
                 @Override
                 protected void handleException(Throwable e) {
@@ -52,13 +53,17 @@ public abstract class SystemProber extends AbstractProber {
 
                 @Override
                 protected void doExecute() throws Exception {
+                    alerted.set(Boolean.FALSE);
                     MonitorResult monitorResult = SystemProber.this.getMonitorResult(sender);
                     SystemProber.this.logger.debug(SystemProber.this.getClass().getSimpleName() + " prob result:"
                             + monitorResult);
                     SystemProber.this.processResult0(monitorResult);
+                    this.feedback(monitorResult != null ? monitorResult.getValue() : null, alerted.get());
                 }
 
-            }, 1, this.getMonitorConfig().getSystemProbCycleTime(), TimeUnit.MINUTES));
+            };
+            this.tasks.add(task);
+            this.coreManager.getProbeScheduler().schedule(sender.getHost(), task);
         }
         this.logger.info(this.getClass().getSimpleName() + " prober started");
     }
@@ -74,7 +79,10 @@ public abstract class SystemProber extends AbstractProber {
 
     @Override
     protected void doStopProb() {
-        cancelFutures(this.futures);
+        for (AdaptiveProbeScheduler.Task task : this.tasks) {
+            task.cancel();
+        }
+        this.tasks.clear();
         this.logger.info(this.getClass().getSimpleName() + " prober stoped");
     }
 
@@ -93,6 +101,7 @@ public abstract class SystemProber extends AbstractProber {
 
 
     protected void alert(String msg) {
+        alerted.set(Boolean.TRUE);
         this.logger.warn(msg);
         Alarm.alert(msg, this.getMonitorConfig());
 
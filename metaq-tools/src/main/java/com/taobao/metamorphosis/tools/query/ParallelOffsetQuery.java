@@ -0,0 +1,452 @@
+package com.taobao.metamorphosis.tools.query;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.I0Itec.zkclient.ZkClient;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.taobao.gecko.core.command.RequestCommand;
+import com.taobao.gecko.core.util.OpaqueGenerator;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.cluster.Broker;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.AskCommand;
+import com.taobao.metamorphosis.network.BooleanCommand;
+import com.taobao.metamorphosis.network.HttpStatus;
+import com.taobao.metamorphosis.network.StatsCommand;
+import com.taobao.metamorphosis.tools.fresh.ChangeZKOffset;
+import com.taobao.metamorphosis.utils.MetaZookeeper;
+import com.taobao.metamorphosis.utils.NamedThreadFactory;
+import com.taobao.metamorphosis.utils.ZkUtils;
+
+
+/**
+ * еoffsetѯ棬ȫȺѽ(lag)Ͱʱoffset
+ * <p>
+ * zkڵĶдbrokerύ̶С̳߳أн粢ȳ̵߳zkͬͬһỰˮִУ
+ * ÿbrokerֻһstats offsetsõзСoffset
+ * ʱѯʹbroker߼еʱ(ask offsets)ÿtopicÿbrokerһ󣬲ҪȡϢ
+ * ڵbrokerʧֻ־Ӱ
+ * </p>
+ *
+ */
+public class ParallelOffsetQuery {
+    static final Log log = LogFactory.getLog(ParallelOffsetQuery.class);
+
+    private final ZkClient zkClient;
+    private final MetaZookeeper metaZookeeper;
+    private final RemotingClientWrapper remotingClient;
+    private final long timeoutMs;
+    private final ExecutorService executor;
+
+    /**
+     * brokerһoffsetΧ
+     */
+    public static class OffsetRange {
+        public final long minOffset;
+        public final long maxOffset;
+
+
+        public OffsetRange(final long minOffset, final long maxOffset) {
+            this.minOffset = minOffset;
+            this.maxOffset = maxOffset;
+        }
+    }
+
+    /**
+     * һһϵѽȣbrokerûи÷ʱmin/maxΪ-1
+     */
+    public static class LagRecord {
+        public final String group;
+        public final String topic;
+        public final Partition partition;
+        public final long consumerOffset;
+        public final long minOffset;
+        public final long maxOffset;
+
+
+        public LagRecord(final String group, final String topic, final Partition partition,
+                final long consumerOffset, final long minOffset, final long maxOffset) {
+            this.group = group;
+            this.topic = topic;
+            this.partition = partition;
+            this.consumerOffset = consumerOffset;
+            this.minOffset = minOffset;
+            this.maxOffset = maxOffset;
+        }
+
+
+        public long getLag() {
+            return this.maxOffset < 0 || this.consumerOffset < 0 ? -1 : this.maxOffset - this.consumerOffset;
+        }
+    }
+
+
+    /**
+     * @param parallelism
+     *            ͬʱеzkbroker
+     * @param timeoutMs
+     *            brokerĳʱʱ
+     */
+    public ParallelOffsetQuery(final ZkClient zkClient, final MetaZookeeper metaZookeeper,
+            final RemotingClientWrapper remotingClient, final int parallelism, final long timeoutMs) {
+        if (parallelism <= 0 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("parallelism and timeoutMs must be positive");
+        }
+        this.zkClient = zkClient;
+        this.metaZookeeper = metaZookeeper;
+        this.remotingClient = remotingClient;
+        this.timeoutMs = timeoutMs;
+        this.executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("OffsetQuery"));
+    }
+
+
+    /**
+     * zkѯmaster brokerĵַ
+     *
+     * @return brokerId -> meta://host:port
+     */
+    public Map<Integer, String> getMasterBrokers() throws InterruptedException {
+        final Map<Integer, Callable<String>> tasks = new TreeMap<Integer, Callable<String>>();
+        final List<String> ids = ZkUtils.getChildrenMaybeNull(this.zkClient, this.metaZookeeper.brokerIdsPath);
+        if (ids != null) {
+            for (final String id : ids) {
+                final int brokerId = Integer.parseInt(id);
+                tasks.put(brokerId, new Callable<String>() {
+                    @Override
+                    public String call() {
+                        final String data =
+                                ZkUtils.readDataMaybeNull(ParallelOffsetQuery.this.zkClient,
+                                    ParallelOffsetQuery.this.metaZookeeper.brokerIdsPathOf(brokerId, -1));
+                        return StringUtils.isBlank(data) ? null : new Broker(brokerId, data).getZKString();
+                    }
+                });
+            }
+        }
+        return this.fanOut(tasks);
+    }
+
+
+    /**
+     * ÿbrokerһstats offsetsѯtopicзoffsetΧ
+     */
+    public Map<String/* topic */, Map<Partition, OffsetRange>> queryBrokerOffsets(final Map<Integer, String> brokers)
+            throws InterruptedException {
+        return this.collectBrokerOffsets(this.submitBrokerOffsets(brokers));
+    }
+
+
+    private Map<Integer, Future<String>> submitBrokerOffsets(final Map<Integer, String> brokers) {
+        final Map<Integer, Callable<String>> tasks = new TreeMap<Integer, Callable<String>>();
+        for (final Map.Entry<Integer, String> entry : brokers.entrySet()) {
+            tasks.put(entry.getKey(), this.newBrokerTask(entry.getValue(), new StatsCommand(
+                OpaqueGenerator.getNextOpaque(), "offsets")));
+        }
+        return this.submitAll(tasks);
+    }
+
+
+    private Map<String, Map<Partition, OffsetRange>> collectBrokerOffsets(final Map<Integer, Future<String>> futures)
+            throws InterruptedException {
+        final Map<String, Map<Partition, OffsetRange>> result = new HashMap<String, Map<Partition, OffsetRange>>();
+        for (final Map.Entry<Integer, String> entry : this.collect(futures).entrySet()) {
+            parseBrokerOffsets(entry.getKey(), entry.getValue(), result);
+        }
+        return result;
+    }
+
+
+    /**
+     * ʱѯtopicoffsetʹbroker߼еʱAskCommandopaque̶ÿbrokerͬʱֻһ
+     */
+    public Map<Partition, Long> queryOffsetsByTime(final Map<Integer, String> brokers, final String topic,
+            final long timestamp) throws InterruptedException {
+        final Map<Integer, Callable<String>> tasks = new TreeMap<Integer, Callable<String>>();
+        for (final Map.Entry<Integer, String> entry : brokers.entrySet()) {
+            tasks.put(entry.getKey(), this.newBrokerTask(entry.getValue(), new AskCommand(topic, "offsets",
+                new String[] { String.valueOf(timestamp) })));
+        }
+        final Map<Partition, Long> result = new TreeMap<Partition, Long>();
+        for (final Map.Entry<Integer, String> entry : this.fanOut(tasks).entrySet()) {
+            parseOffsetsByTime(entry.getKey(), topic, entry.getValue(), result);
+        }
+        return result;
+    }
+
+
+    /**
+     * жȡzkϷoffset
+     *
+     * @param topic
+     *            Ϊʱѯoffsettopic
+     * @return group -> topic -> partition -> offsetoffsetڵ޷ʱΪ-1
+     */
+    public Map<String, Map<String, Map<Partition, Long>>> readConsumerOffsets(final Collection<String> groups,
+            final String topic) throws InterruptedException {
+        // һ֣ÿtopicб
+        final Map<String, Callable<List<String>>> topicTasks = new LinkedHashMap<String, Callable<List<String>>>();
+        for (final String group : groups) {
+            topicTasks.put(group, new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    if (StringUtils.isNotBlank(topic)) {
+                        return Collections.singletonList(topic);
+                    }
+                    final List<String> topics =
+                            ZkUtils.getChildrenMaybeNull(ParallelOffsetQuery.this.zkClient,
+                                ParallelOffsetQuery.this.getOffsetsPath(group));
+                    return topics != null ? topics : Collections.<String> emptyList();
+                }
+            });
+        }
+        // ڶ֣ÿÿtopicķб
+        final Map<String[], Callable<List<String>>> partitionTasks =
+                new LinkedHashMap<String[], Callable<List<String>>>();
+        for (final Map.Entry<String, List<String>> entry : this.fanOut(topicTasks).entrySet()) {
+            for (final String t : entry.getValue()) {
+                final String path = this.getOffsetsPath(entry.getKey()) + "/" + t;
+                partitionTasks.put(new String[] { entry.getKey(), t }, new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        final List<String> partitions =
+                                ZkUtils.getChildrenMaybeNull(ParallelOffsetQuery.this.zkClient, path);
+                        return partitions != null ? partitions : Collections.<String> emptyList();
+                    }
+                });
+            }
+        }
+        // ֣ȡÿoffsetڵ
+        final Map<String[], Callable<Long>> offsetTasks = new LinkedHashMap<String[], Callable<Long>>();
+        for (final Map.Entry<String[], List<String>> entry : this.fanOut(partitionTasks).entrySet()) {
+            final String group = entry.getKey()[0];
+            final String t = entry.getKey()[1];
+            for (final String partition : entry.getValue()) {
+                final String path = this.getOffsetsPath(group) + "/" + t + "/" + partition;
+                offsetTasks.put(new String[] { group, t, partition }, new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return ZkOffsetStorageQuery.parseOffsetAsLong(ZkUtils.readDataMaybeNull(
+                            ParallelOffsetQuery.this.zkClient, path));
+                    }
+                });
+            }
+        }
+        final Map<String, Map<String, Map<Partition, Long>>> result =
+                new TreeMap<String, Map<String, Map<Partition, Long>>>();
+        for (final Map.Entry<String[], Long> entry : this.fanOut(offsetTasks).entrySet()) {
+            final String[] key = entry.getKey();
+            Map<String, Map<Partition, Long>> topics = result.get(key[0]);
+            if (topics == null) {
+                topics = new TreeMap<String, Map<Partition, Long>>();
+                result.put(key[0], topics);
+            }
+            Map<Partition, Long> partitions = topics.get(key[1]);
+            if (partitions == null) {
+                partitions = new TreeMap<Partition, Long>();
+                topics.put(key[1], partitions);
+            }
+            partitions.put(new Partition(key[2]), entry.getValue());
+        }
+        return result;
+    }
+
+
+    /**
+     * ȫȺѽȱ棬zkȡbrokerѯͬʱ
+     *
+     * @param groups
+     *            Ϊnullʱѯз
+     * @param topic
+     *            Ϊʱѯtopic
+     */
+    public List<LagRecord> lagReport(final Collection<String> groups, final String topic)
+            throws InterruptedException {
+        // brokerύzkȡͬʱ
+        final Map<Integer, Future<String>> brokerFutures = this.submitBrokerOffsets(this.getMasterBrokers());
+        final Collection<String> queryGroups =
+                groups != null ? groups : ZkUtils.getChildren(this.zkClient, this.metaZookeeper.consumersPath);
+        final Map<String, Map<String, Map<Partition, Long>>> consumerOffsets =
+                this.readConsumerOffsets(queryGroups, topic);
+        final Map<String, Map<Partition, OffsetRange>> brokerOffsets = this.collectBrokerOffsets(brokerFutures);
+
+        final List<LagRecord> records = new ArrayList<LagRecord>();
+        for (final Map.Entry<String, Map<String, Map<Partition, Long>>> groupEntry : consumerOffsets.entrySet()) {
+            for (final Map.Entry<String, Map<Partition, Long>> topicEntry : groupEntry.getValue().entrySet()) {
+                final Map<Partition, OffsetRange> ranges = brokerOffsets.get(topicEntry.getKey());
+                for (final Map.Entry<Partition, Long> entry : topicEntry.getValue().entrySet()) {
+                    final OffsetRange range = ranges != null ? ranges.get(entry.getKey()) : null;
+                    records.add(new LagRecord(groupEntry.getKey(), topicEntry.getKey(), entry.getKey(), entry
+                        .getValue(), range != null ? range.minOffset : -1, range != null ? range.maxOffset : -1));
+                }
+            }
+        }
+        return records;
+    }
+
+
+    /**
+     * и·ڸϵoffsetдʽChangeZKOffsetһ
+     */
+    public void updateConsumerOffsets(final String group, final String topic, final Map<Partition, Long> offsets)
+            throws InterruptedException {
+        final Map<Partition, Callable<Boolean>> tasks = new TreeMap<Partition, Callable<Boolean>>();
+        for (final Map.Entry<Partition, Long> entry : offsets.entrySet()) {
+            final String path = this.getOffsetsPath(group) + "/" + topic + "/" + entry.getKey();
+            final String data = ChangeZKOffset.MSGID + "-" + entry.getValue();
+            tasks.put(entry.getKey(), new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    ZkUtils.updatePersistentPath(ParallelOffsetQuery.this.zkClient, path, data);
+                    return Boolean.TRUE;
+                }
+            });
+        }
+        final Map<Partition, Boolean> done = this.fanOut(tasks);
+        if (done.size() != tasks.size()) {
+            throw new IllegalStateException("Update offsets failed for " + (tasks.size() - done.size())
+                    + " partitions, see log for details");
+        }
+    }
+
+
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+
+    private String getOffsetsPath(final String group) {
+        return this.metaZookeeper.consumersPath + "/" + group + "/offsets";
+    }
+
+
+    private Callable<String> newBrokerTask(final String url, final RequestCommand command) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                final RemotingClientWrapper client = ParallelOffsetQuery.this.remotingClient;
+                if (!client.isConnected(url)) {
+                    client.connect(url);
+                    client.awaitReadyInterrupt(url, ParallelOffsetQuery.this.timeoutMs);
+                }
+                final BooleanCommand resp =
+                        (BooleanCommand) client.invokeToGroup(url, command, ParallelOffsetQuery.this.timeoutMs,
+                            TimeUnit.MILLISECONDS);
+                if (resp.getCode() != HttpStatus.Success) {
+                    throw new IOException("Request " + url + " failed, code=" + resp.getCode() + ", "
+                            + resp.getErrorMsg());
+                }
+                return resp.getErrorMsg();
+            }
+        };
+    }
+
+
+    /**
+     * ύ񲢵ȴȫɣʧܵ־ؽĵ˳tasksһ
+     */
+    private <K, V> Map<K, V> fanOut(final Map<K, ? extends Callable<V>> tasks) throws InterruptedException {
+        return this.collect(this.submitAll(tasks));
+    }
+
+
+    private <K, V> Map<K, Future<V>> submitAll(final Map<K, ? extends Callable<V>> tasks) {
+        final Map<K, Future<V>> futures = new LinkedHashMap<K, Future<V>>();
+        for (final Map.Entry<K, ? extends Callable<V>> entry : tasks.entrySet()) {
+            futures.put(entry.getKey(), this.executor.submit(entry.getValue()));
+        }
+        return futures;
+    }
+
+
+    private <K, V> Map<K, V> collect(final Map<K, Future<V>> futures) throws InterruptedException {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        for (final Map.Entry<K, Future<V>> entry : futures.entrySet()) {
+            try {
+                final V value = entry.getValue().get();
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+            }
+            catch (final ExecutionException e) {
+                log.warn("Query " + keyString(entry.getKey()) + " failed", e.getCause());
+            }
+        }
+        return result;
+    }
+
+
+    private static String keyString(final Object key) {
+        return key instanceof Object[] ? StringUtils.join((Object[]) key, '/') : String.valueOf(key);
+    }
+
+
+    /**
+     * stats offsetsĽÿΪ"topic part queueId min_offset x max_offset y"
+     */
+    static void parseBrokerOffsets(final int brokerId, final String result,
+            final Map<String, Map<Partition, OffsetRange>> offsets) {
+        for (final String[] segs : splitLines(result)) {
+            if (segs.length < 7 || !"part".equals(segs[1])) {
+                continue;
+            }
+            Map<Partition, OffsetRange> ranges = offsets.get(segs[0]);
+            if (ranges == null) {
+                ranges = new HashMap<Partition, OffsetRange>();
+                offsets.put(segs[0], ranges);
+            }
+            ranges.put(new Partition(brokerId, Integer.parseInt(segs[2])), new OffsetRange(Long.parseLong(segs[4]),
+                Long.parseLong(segs[6])));
+        }
+    }
+
+
+    /**
+     * ask offsetsĽÿΪ"topic part queueId offset"
+     */
+    static void parseOffsetsByTime(final int brokerId, final String topic, final String result,
+            final Map<Partition, Long> offsets) {
+        for (final String[] segs : splitLines(result)) {
+            if (segs.length < 4 || !topic.equals(segs[0]) || !"part".equals(segs[1])) {
+                continue;
+            }
+            offsets.put(new Partition(brokerId, Integer.parseInt(segs[2])), Long.parseLong(segs[3]));
+        }
+    }
+
+
+    private static List<String[]> splitLines(final String result) {
+        final List<String[]> lines = new ArrayList<String[]>();
+        if (result == null) {
+            return lines;
+        }
+        final BufferedReader reader = new BufferedReader(new StringReader(result));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.trim().split(" "));
+            }
+        }
+        catch (final IOException e) {
+            // StringReader׳
+        }
+        return lines;
+    }
+}
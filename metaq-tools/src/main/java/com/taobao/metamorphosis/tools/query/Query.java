@@ -219,6 +219,11 @@ public class Query {
     }
 
 
+    public MetaZookeeper getMetaZookeeper() {
+        return this.metaZookeeper;
+    }
+
+
     public void close() {
         if (this.zkClient != null) {
             this.zkClient.close();
@@ -0,0 +1,161 @@
+package com.taobao.metamorphosis.tools.shell;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.lang.StringUtils;
+
+import com.taobao.gecko.service.RemotingFactory;
+import com.taobao.gecko.service.config.ClientConfig;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.MetamorphosisWireFormatType;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery.LagRecord;
+import com.taobao.metamorphosis.tools.query.Query;
+import com.taobao.metamorphosis.tools.utils.CommandLineUtils;
+
+
+/**
+ * ȫȺѽ(lag)ͰʱoffsetzkbrokerзǧķҲ뼶
+ *
+ * <pre>
+ * usage:
+ *      LagReport                                           зtopicѽ
+ *      LagReport -group g1,g2 -topic xxtopic -minLag 1000  ֻʾѹ1000ķ
+ *      LagReport -group g1 -topic xxtopic -time 1350000000000          鿴ʱӦoffset
+ *      LagReport -group g1 -topic xxtopic -time 1350000000000 -apply   ѷoffsetõʱ
+ *
+ * ѡ:
+ *      -parallelism 32     ͬʱеzkbroker
+ *      -timeout 3000       brokerʱ
+ *      -config zk.properties
+ * </pre>
+ *
+ */
+public class LagReport extends ShellTool {
+    private static final String FORMAT = "%-30s %-30s %-10s %16s %16s %16s %12s";
+
+
+    public static void main(final String[] args) throws Exception {
+        new LagReport(System.out).doMain(args);
+        System.exit(0);
+    }
+
+
+    public LagReport(final PrintStream out) {
+        super(out);
+    }
+
+
+    @Override
+    public void doMain(final String[] args) throws Exception {
+        final CommandLine commandLine = this.getCommandLine(args);
+        final String groupValue = commandLine.getOptionValue("group");
+        final String topic = commandLine.getOptionValue("topic");
+        final long minLag = Long.parseLong(commandLine.getOptionValue("minLag", "0"));
+        final int parallelism = Integer.parseInt(commandLine.getOptionValue("parallelism", "32"));
+        final long timeout = Long.parseLong(commandLine.getOptionValue("timeout", "3000"));
+        final Collection<String> groups =
+                StringUtils.isBlank(groupValue) ? null : Arrays.asList(StringUtils.split(groupValue, ','));
+        if (commandLine.hasOption("time") && (groups == null || groups.size() != 1 || StringUtils.isBlank(topic))) {
+            throw new IllegalArgumentException("-time requires exactly one -group and a -topic");
+        }
+
+        final Query query = new Query();
+        query.init(commandLine.getOptionValue("config", "zk.properties"), null);
+        final RemotingClientWrapper remotingClient = newRemotingClient();
+        final ParallelOffsetQuery offsetQuery =
+                new ParallelOffsetQuery(query.getZkClient(), query.getMetaZookeeper(), remotingClient, parallelism,
+                    timeout);
+        try {
+            final long start = System.currentTimeMillis();
+            if (commandLine.hasOption("time")) {
+                this.resetByTime(offsetQuery, groups.iterator().next(), topic,
+                    Long.parseLong(commandLine.getOptionValue("time")), commandLine.hasOption("apply"));
+            }
+            else {
+                this.report(offsetQuery.lagReport(groups, topic), minLag);
+            }
+            this.println("Finished in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        finally {
+            offsetQuery.close();
+            remotingClient.stop();
+            query.close();
+        }
+    }
+
+
+    private void report(final List<LagRecord> records, final long minLag) {
+        this.println(String.format(FORMAT, "group", "topic", "partition", "consumer_offset", "min_offset",
+            "max_offset", "lag"));
+        long totalLag = 0;
+        int partitions = 0;
+        for (final LagRecord record : records) {
+            final long lag = record.getLag();
+            if (lag > 0) {
+                totalLag += lag;
+            }
+            partitions++;
+            if (lag >= minLag || lag < 0) {
+                this.println(String.format(FORMAT, record.group, record.topic, record.partition,
+                    record.consumerOffset, record.minOffset, record.maxOffset, lag < 0 ? "unknown" : lag));
+            }
+        }
+        this.println("Total partitions=" + partitions + " lag=" + totalLag);
+    }
+
+
+    private void resetByTime(final ParallelOffsetQuery offsetQuery, final String group, final String topic,
+            final long timestamp, final boolean apply) throws InterruptedException {
+        final Map<Partition, Long> offsets =
+                offsetQuery.queryOffsetsByTime(offsetQuery.getMasterBrokers(), topic, timestamp);
+        final Map<String, Map<Partition, Long>> current =
+                offsetQuery.readConsumerOffsets(Collections.singletonList(group), topic).get(group);
+        final Map<Partition, Long> currentOffsets = current != null ? current.get(topic) : null;
+        this.println(String.format("%-10s %16s %16s", "partition", "current_offset", "offset_at_time"));
+        for (final Map.Entry<Partition, Long> entry : offsets.entrySet()) {
+            final Long currentOffset = currentOffsets != null ? currentOffsets.get(entry.getKey()) : null;
+            this.println(String.format("%-10s %16s %16s", entry.getKey(), currentOffset != null ? currentOffset
+                    : "-", entry.getValue()));
+        }
+        if (apply) {
+            offsetQuery.updateConsumerOffsets(group, topic, offsets);
+            this.println("Reset " + offsets.size() + " partitions of group " + group + " topic " + topic);
+        }
+        else {
+            this.println("Add -apply to reset the offsets, consumers of the group should be stopped first");
+        }
+    }
+
+
+    private static RemotingClientWrapper newRemotingClient() throws Exception {
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setTcpNoDelay(false);
+        clientConfig.setWireFormatType(new MetamorphosisWireFormatType());
+        clientConfig.setMaxScheduleWrittenBytes(Runtime.getRuntime().maxMemory() / 3);
+        return new RemotingClientWrapper(RemotingFactory.connect(clientConfig));
+    }
+
+
+    private CommandLine getCommandLine(final String[] args) {
+        final Options options = new Options();
+        options.addOption(new Option("group", true, "consumer groups, separated by comma"));
+        options.addOption(new Option("topic", true, "topic"));
+        options.addOption(new Option("minLag", true, "only print partitions whose lag is not less than it"));
+        options.addOption(new Option("time", true, "query offsets at the timestamp in milliseconds"));
+        options.addOption(new Option("apply", false, "reset offsets of the group to the timestamp"));
+        options.addOption(new Option("parallelism", true, "max concurrent zookeeper and broker requests"));
+        options.addOption(new Option("timeout", true, "broker request timeout in milliseconds"));
+        options.addOption(new Option("config", true, "zookeeper config file"));
+        return CommandLineUtils.parseCmdLine(args, options);
+    }
+}
@@ -0,0 +1,291 @@
+package com.taobao.metamorphosis.tools.shell;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectInstance;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.taobao.gecko.service.RemotingFactory;
+import com.taobao.gecko.service.config.ClientConfig;
+import com.taobao.metamorphosis.client.RemotingClientWrapper;
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.network.MetamorphosisWireFormatType;
+import com.taobao.metamorphosis.tools.dataTransfer.BandwidthThrottler;
+import com.taobao.metamorphosis.tools.dataTransfer.PartitionMigrator;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery.OffsetRange;
+import com.taobao.metamorphosis.tools.query.Query;
+import com.taobao.metamorphosis.tools.utils.CommandLineUtils;
+import com.taobao.metamorphosis.tools.utils.JMXClient;
+import com.taobao.metamorphosis.utils.ZkUtils;
+
+
+/**
+ * ǨһһbrokerҪͣbroker
+ * <ol>
+ * <li>ԴݵĿֱ׷ƽ</li>
+ * <li>ͨjmxرԴת׷ƽرǰдβ</li>
+ * <li>зԴϵoffsetдĿ¾Ŀ</li>
+ * </ol>
+ * Ŀûд롢ҲûѵĿշĿbroker¼ӡûпͻʹõķ
+ * ǨƵϢϢһoffset޷㡣ڹرԴ֮ǰĿΪաûбκηС
+ * ֻǨдϢʱֱ˳ԴӰ졣رԴ֮κһʧܣͨjmx´Դtopic
+ * ޸offset(ֻ޸˲ַ)ҪִС
+ *
+ * <pre>
+ * usage:
+ *      MigratePartition -topic xxtopic -from 1-3 -to 2-0
+ *      MigratePartition -topic xxtopic -from 1-3 -to 2-0 -bandwidth 20   20MB/s
+ *
+ * ѡ:
+ *      -fetchSize 1048576  ÿδԴbrokerȡֽ
+ *      -window 64          ͬʱ;put
+ *      -timeout 3000       brokerʱ
+ *      -jmxPort 9999       Դbrokerjmx˿
+ *      -config zk.properties
+ * </pre>
+ *
+ */
+public class MigratePartition extends ShellTool {
+
+    public static void main(final String[] args) throws Exception {
+        new MigratePartition(System.out).doMain(args);
+        System.exit(0);
+    }
+
+
+    public MigratePartition(final PrintStream out) {
+        super(out);
+    }
+
+
+    @Override
+    public void doMain(final String[] args) throws Exception {
+        final CommandLine commandLine = this.getCommandLine(args);
+        final String topic = commandLine.getOptionValue("topic");
+        final Partition from = new Partition(commandLine.getOptionValue("from"));
+        final Partition to = new Partition(commandLine.getOptionValue("to"));
+        final long bandwidth = Long.parseLong(commandLine.getOptionValue("bandwidth", "0")) * 1024 * 1024;
+        final int fetchSize = Integer.parseInt(commandLine.getOptionValue("fetchSize", "1048576"));
+        final int window = Integer.parseInt(commandLine.getOptionValue("window", "64"));
+        final long timeout = Long.parseLong(commandLine.getOptionValue("timeout", "3000"));
+        final int jmxPort = Integer.parseInt(commandLine.getOptionValue("jmxPort", "9999"));
+        if (from.getBrokerId() == to.getBrokerId()) {
+            throw new IllegalArgumentException("source and target must be on different brokers");
+        }
+
+        final Query query = new Query();
+        query.init(commandLine.getOptionValue("config", "zk.properties"), null);
+        final RemotingClientWrapper remotingClient = newRemotingClient();
+        final ParallelOffsetQuery offsetQuery =
+                new ParallelOffsetQuery(query.getZkClient(), query.getMetaZookeeper(), remotingClient, 4, timeout);
+        try {
+            final Map<Integer, String> masters = offsetQuery.getMasterBrokers();
+            final String sourceUrl = masters.get(from.getBrokerId());
+            final String targetUrl = masters.get(to.getBrokerId());
+            if (sourceUrl == null || targetUrl == null) {
+                throw new IllegalArgumentException("broker " + (sourceUrl == null ? from : to).getBrokerId()
+                        + " not found in zookeeper");
+            }
+            final Map<Integer, String> brokers = new TreeMap<Integer, String>();
+            brokers.put(from.getBrokerId(), sourceUrl);
+            brokers.put(to.getBrokerId(), targetUrl);
+            final Map<Partition, OffsetRange> ranges = offsetQuery.queryBrokerOffsets(brokers).get(topic);
+            final OffsetRange sourceRange = ranges != null ? ranges.get(from) : null;
+            final OffsetRange targetRange = ranges != null ? ranges.get(to) : null;
+            if (sourceRange == null) {
+                throw new IllegalArgumentException("partition " + from + " of topic " + topic + " not found");
+            }
+            // ĿݻڱʱǨƵϢԭϢһoffset޷
+            if (targetRange != null && targetRange.maxOffset > targetRange.minOffset) {
+                throw new IllegalStateException("target partition " + to + " of topic " + topic
+                        + " is not empty, offset " + targetRange.minOffset + "~" + targetRange.maxOffset);
+            }
+            final List<String> groups =
+                    ZkUtils.getChildren(query.getZkClient(), query.getMetaZookeeper().consumersPath);
+            this.checkNotOwned(query, groups, topic, to);
+
+            final PartitionMigrator migrator =
+                    new PartitionMigrator(remotingClient, topic, from, sourceUrl, to, targetUrl, fetchSize, window,
+                        timeout, new BandwidthThrottler(bandwidth));
+            migrator.init(sourceRange.minOffset, targetRange != null ? targetRange.maxOffset : 0);
+            this.println("Migrating " + topic + " " + from + "(" + sourceUrl + ") offset " + sourceRange.minOffset
+                    + "~" + sourceRange.maxOffset + " -> " + to + "(" + targetUrl + ")");
+
+            // ƣֱ׷ƽ
+            final long copyStart = System.currentTimeMillis();
+            final long copied = migrator.copy();
+            migrator.flush();
+            this.report("Copied", copied, migrator.getFetchedBytes(), System.currentTimeMillis() - copyStart);
+
+            // رԴ֮ǰļ飬ʱԴӰ
+            this.checkTargetOffsets(offsetQuery, migrator, topic, targetUrl);
+            this.checkNotOwned(query, groups, topic, to);
+
+            // رԴ׷ƽβлoffset
+            final long cutOverStart = System.currentTimeMillis();
+            final long fetchedBeforeCutOver = migrator.getFetchedBytes();
+            final String sourceHost = new URI(sourceUrl).getHost();
+            this.invokeMetaConfig(sourceHost, jmxPort, "closePartitions",
+                new Object[] { topic, from.getPartition(), from.getPartition() },
+                new String[] { "java.lang.String", "int", "int" });
+            try {
+                final long tail = migrator.copy();
+                migrator.flush();
+                this.report("Drained tail", tail, migrator.getFetchedBytes() - fetchedBeforeCutOver,
+                    System.currentTimeMillis() - cutOverStart);
+                // дoffset֮ǰȷһΣ߻ڴеoffsetǻoffset
+                this.checkTargetOffsets(offsetQuery, migrator, topic, targetUrl);
+                this.checkNotOwned(query, groups, topic, to);
+                final int moved = this.moveConsumerOffsets(offsetQuery, migrator, groups, topic);
+                this.println("Cut over in " + (System.currentTimeMillis() - cutOverStart) + "ms, moved offsets of "
+                        + moved + " groups, source next offset " + migrator.getNextOffset() + ", skipped "
+                        + migrator.getSkipped() + " messages");
+            }
+            catch (final Exception e) {
+                // лʧܣ´Դָ
+                this.println("Cut over failed: " + e.getMessage() + ", reopening partitions of " + topic + " on "
+                        + sourceHost);
+                try {
+                    this.invokeMetaConfig(sourceHost, jmxPort, "openPartitions", new Object[] { topic },
+                        new String[] { "java.lang.String" });
+                }
+                catch (final Exception reopenError) {
+                    this.println("Reopen partitions of " + topic + " on " + sourceHost + " failed: " + reopenError
+                            + ", run OpenPartitionsTool manually");
+                }
+                throw e;
+            }
+        }
+        finally {
+            offsetQuery.close();
+            remotingClient.stop();
+            query.close();
+        }
+    }
+
+
+    private void report(final String phase, final long messages, final long bytes, final long millis) {
+        final double mb = bytes / 1024.0 / 1024.0;
+        this.println(String.format("%s %d messages, %.2fMB in %dms, %.2fMB/s", phase, messages, mb, millis,
+            millis > 0 ? mb * 1000 / millis : mb));
+    }
+
+
+    /**
+     * ͨjmxbrokerMetaConfigclosePartitions/openPartitionsopenPartitions򿪸topicбرյķ
+     */
+    private void invokeMetaConfig(final String host, final int port, final String operation, final Object[] params,
+            final String[] signature) throws Exception {
+        final JMXClient jmxClient = JMXClient.getJMXClient(host, port);
+        try {
+            final ObjectInstance metaConfigInstance = jmxClient.queryMBeanForOne(METACONFIG_NAME);
+            if (metaConfigInstance == null) {
+                throw new IllegalStateException(METACONFIG_NAME + " not found on " + jmxClient.getAddressAsString());
+            }
+            jmxClient.invoke(metaConfigInstance.getObjectName(), operation, params, signature);
+            this.println("Invoked " + operation + " " + Arrays.toString(params) + " on "
+                    + jmxClient.getAddressAsString());
+        }
+        finally {
+            jmxClient.close();
+        }
+    }
+
+
+    /**
+     * ĿoffsetǨǰĻ׼ǨдϢд
+     */
+    private void checkTargetOffsets(final ParallelOffsetQuery offsetQuery, final PartitionMigrator migrator,
+            final String topic, final String targetUrl) throws Exception {
+        final Partition to = migrator.getTarget();
+        final Map<Partition, OffsetRange> targetRanges =
+                offsetQuery.queryBrokerOffsets(Collections.singletonMap(to.getBrokerId(), targetUrl)).get(topic);
+        final OffsetRange migratedRange = targetRanges != null ? targetRanges.get(to) : null;
+        final long expectedMax = migrator.getTargetBase() + migrator.getAckedMessages();
+        if (migratedRange == null || migratedRange.maxOffset != expectedMax) {
+            throw new IllegalStateException("target partition " + to + " max offset is "
+                    + (migratedRange != null ? migratedRange.maxOffset : "unknown") + ", expected " + expectedMax
+                    + ", it was written by other producers, consumer offsets are NOT moved");
+        }
+    }
+
+
+    /**
+     * Ŀĳ߳ʱִܾ
+     */
+    private void checkNotOwned(final Query query, final List<String> groups, final String topic,
+            final Partition partition) {
+        for (final String group : groups) {
+            final String ownerPath =
+                    query.getMetaZookeeper().new ZKGroupTopicDirs(topic, group).consumerOwnerDir + "/" + partition;
+            if (ZkUtils.pathExists(query.getZkClient(), ownerPath)) {
+                throw new IllegalStateException("target partition " + partition + " of topic " + topic
+                        + " is owned by consumer " + ZkUtils.readDataMaybeNull(query.getZkClient(), ownerPath)
+                        + " of group " + group + ", stop the consumers or choose another partition");
+            }
+        }
+    }
+
+
+    private int moveConsumerOffsets(final ParallelOffsetQuery offsetQuery, final PartitionMigrator migrator,
+            final List<String> groups, final String topic) throws InterruptedException {
+        int moved = 0;
+        for (final Map.Entry<String, Map<String, Map<Partition, Long>>> entry : offsetQuery.readConsumerOffsets(
+            groups, topic).entrySet()) {
+            final Map<Partition, Long> offsets = entry.getValue().get(topic);
+            final Long offset = offsets != null ? offsets.get(migrator.getSource()) : null;
+            if (offset == null || offset < 0) {
+                continue;
+            }
+            // ͷĿеoffsetϲƶ
+            final Long targetOffset = offsets.get(migrator.getTarget());
+            long newOffset = migrator.translateOffset(offset);
+            if (targetOffset != null && targetOffset > newOffset) {
+                newOffset = targetOffset;
+            }
+            offsetQuery.updateConsumerOffsets(entry.getKey(), topic,
+                Collections.singletonMap(migrator.getTarget(), newOffset));
+            this.println("group=" + entry.getKey() + " " + migrator.getSource() + " offset " + offset + " -> "
+                    + migrator.getTarget() + " offset " + newOffset);
+            moved++;
+        }
+        return moved;
+    }
+
+
+    private static RemotingClientWrapper newRemotingClient() throws Exception {
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setTcpNoDelay(false);
+        clientConfig.setWireFormatType(new MetamorphosisWireFormatType());
+        clientConfig.setMaxScheduleWrittenBytes(Runtime.getRuntime().maxMemory() / 3);
+        return new RemotingClientWrapper(RemotingFactory.connect(clientConfig));
+    }
+
+
+    private CommandLine getCommandLine(final String[] args) {
+        final Option topicOption = new Option("topic", true, "topic");
+        topicOption.setRequired(true);
+        final Option fromOption = new Option("from", true, "source partition, brokerId-partition");
+        fromOption.setRequired(true);
+        final Option toOption = new Option("to", true, "target partition, brokerId-partition");
+        toOption.setRequired(true);
+        final Options options = new Options().addOption(topicOption).addOption(fromOption).addOption(toOption);
+        options.addOption(new Option("bandwidth", true, "max fetch bandwidth in MB/s, 0 means unlimited"));
+        options.addOption(new Option("fetchSize", true, "bytes per fetch from the source broker"));
+        options.addOption(new Option("window", true, "max in-flight puts to the target broker"));
+        options.addOption(new Option("timeout", true, "broker request timeout in milliseconds"));
+        options.addOption(new Option("jmxPort", true, "jmx port of the source broker"));
+        options.addOption(new Option("config", true, "zookeeper config file"));
+        return CommandLineUtils.parseCmdLine(args, options);
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.Attribute;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
@@ -176,6 +177,36 @@ log.error("=============referenceCount:"+this.referenceCount.get());
     }
 
 
+    /**
+     * һȡͬһMBeanĶԣObjectNameͨȡԲڽ
+     */
+    public Map<String, Object> getAttributes(ObjectName name, String[] attributes) throws JMXClientException {
+        tryReconnect();
+        try {
+            ObjectName objectName = name;
+            if (name.isPattern()) {
+                ObjectInstance instance = this.queryMBeanForOne(name);
+                if (instance == null) {
+                    throw new JMXClientException("no MBean matches " + name);
+                }
+                objectName = instance.getObjectName();
+            }
+            Map<String, Object> result = new HashMap<String, Object>();
+            for (Object each : this.mbs.getAttributes(objectName, attributes)) {
+                Attribute attribute = (Attribute) each;
+                result.put(attribute.getName(), attribute.getValue());
+            }
+            return result;
+        }
+        catch (JMXClientException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new JMXClientException(e);
+        }
+    }
+
+
     public void close() {
     	if (this.decreaseReferece()!=0) {
 			return;
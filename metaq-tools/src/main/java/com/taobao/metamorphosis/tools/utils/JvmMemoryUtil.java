@@ -13,12 +13,28 @@ import javax.management.openmbean.CompositeData;
  */
 
 public class JvmMemoryUtil {
+    public static final ObjectName MEMORY_OBJECT_NAME;
+    public static final String HEAP_MEMORY_USAGE = "HeapMemoryUsage";
+    static {
+        try {
+            MEMORY_OBJECT_NAME = new ObjectName("java.lang:type=Memory");
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 
     public static MonitorResult getMemoryInfo(String ip, int port) throws Exception {
         JMXClient jmxClient = JMXClient.getJMXClient(ip, port);
-        ObjectName objectName = new ObjectName("java.lang:type=Memory");
-        CompositeData memoryInfo = (CompositeData) jmxClient.getAttribute(objectName, "HeapMemoryUsage");
+        CompositeData memoryInfo = (CompositeData) jmxClient.getAttribute(MEMORY_OBJECT_NAME, HEAP_MEMORY_USAGE);
         jmxClient.close();
+        return toMonitorResult(ip, memoryInfo);
+    }
+
+
+    /** HeapMemoryUsageԼڴʹðٷֱ */
+    public static MonitorResult toMonitorResult(String ip, CompositeData memoryInfo) {
         double max = Double.valueOf(memoryInfo.get("max").toString());
         double used = Double.valueOf(memoryInfo.get("used").toString());
         double usedPercent = (used / max) * 100;
@@ -1,7 +1,14 @@
 package com.taobao.metamorphosis.tools.utils;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -24,6 +31,16 @@ public class SSHSupport {
 
     private String ip = "127.0.0.1";
 
+    /** tcpӵĳʱʱ */
+    static final int CONNECT_TIMEOUT_MS = 5000;
+
+    /** Կĳʱʱ */
+    static final int KEX_TIMEOUT_MS = 10000;
+
+    /** ÿuser@ipӦһڽѽӣ֤ɣ̽ */
+    private static final ConcurrentMap<String, Future<Connection>> connections =
+            new ConcurrentHashMap<String, Future<Connection>>();
+
 
     private SSHSupport(String user, String password, String ip) {
         this.user = user;
@@ -48,17 +65,27 @@ public class SSHSupport {
 
 
     public String execute(String cmd) throws RemoteExecuteException {
-        StringBuilder result = new StringBuilder();
         try {
-            Connection conn = new Connection(this.ip);
-            conn.connect();
-            boolean isAuthenticated = conn.authenticateWithPassword(this.user, this.password);
-            if (isAuthenticated == false) {
-                result.append("ERROR: Authentication Failed !");
+            Connection conn = this.getConnection();
+            try {
+                return execute(conn, cmd);
             }
+            catch (IOException e) {
+                // õӿѾϿ½һ
+                this.closeConnection(conn);
+                return execute(this.getConnection(), cmd);
+            }
+        }
+        catch (Throwable e) {
+            throw new RemoteExecuteException("ִ", e);
+        }
+    }
 
-            Session session = conn.openSession();
 
+    private static String execute(Connection conn, String cmd) throws IOException {
+        StringBuilder result = new StringBuilder();
+        Session session = conn.openSession();
+        try {
             session.execCommand(cmd);
             BufferedReader read =
                     new BufferedReader(new InputStreamReader(new StreamGobbler(session.getStdout()), "GBK"));
@@ -66,13 +93,107 @@ public class SSHSupport {
             while ((line = read.readLine()) != null) {
                 result.append(line).append("\r\n");
             }
+        }
+        finally {
             session.close();
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * ͬһ̨ͬһûsshڸprober֮乲ÿһsessionÿ̽ⶼֺ֤
+     */
+    private Connection getConnection() throws IOException {
+        final String key = this.getKey();
+        Future<Connection> future = connections.get(key);
+        if (future == null) {
+            final FutureTask<Connection> task = new FutureTask<Connection>(new Callable<Connection>() {
+                @Override
+                public Connection call() throws Exception {
+                    return SSHSupport.this.connect();
+                }
+            });
+            future = connections.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting to " + this.ip);
+        }
+        catch (final ExecutionException e) {
+            // ʧܵfuturemap´½
+            connections.remove(key, future);
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Connect to " + this.ip + " failed: " + cause);
+        }
+    }
+
+
+    private Connection connect() throws IOException {
+        final Connection conn = new Connection(this.ip);
+        try {
+            conn.connect(null, CONNECT_TIMEOUT_MS, KEX_TIMEOUT_MS);
+            if (!conn.authenticateWithPassword(this.user, this.password)) {
+                throw new IOException("ERROR: Authentication Failed !");
+            }
+            return conn;
+        }
+        catch (final IOException e) {
             conn.close();
-            return result.toString();
+            throw e;
         }
-        catch (Throwable e) {
-            throw new RemoteExecuteException("ִ", e);
+    }
+
+
+    private void closeConnection(Connection conn) {
+        final String key = this.getKey();
+        final Future<Connection> future = connections.get(key);
+        if (future != null && getQuietly(future) == conn) {
+            connections.remove(key, future);
+        }
+        conn.close();
+    }
+
+
+    /** Ѿɹӣڽʧܵķnull */
+    private static Connection getQuietly(Future<Connection> future) {
+        if (!future.isDone()) {
+            return null;
+        }
+        try {
+            return future.get();
+        }
+        catch (final Exception e) {
+            return null;
+        }
+    }
+
+
+    private String getKey() {
+        return this.user + "@" + this.ip;
+    }
+
+
+    /** رйssh */
+    public static void closeAll() {
+        for (final String key : connections.keySet()) {
+            final Future<Connection> future = connections.remove(key);
+            final Connection conn = future != null ? getQuietly(future) : null;
+            if (conn != null) {
+                conn.close();
+            }
         }
+        log.info("closed all ssh connections");
     }
 
 
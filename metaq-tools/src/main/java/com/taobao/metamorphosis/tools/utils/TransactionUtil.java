@@ -11,7 +11,7 @@ import javax.management.ObjectName;
  */
 
 public class TransactionUtil {
-    final static ObjectName transactionObjectName;
+    public final static ObjectName transactionObjectName;
     static {
         try {
             transactionObjectName =
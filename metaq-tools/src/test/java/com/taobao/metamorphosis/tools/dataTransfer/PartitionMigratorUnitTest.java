@@ -0,0 +1,53 @@
+package com.taobao.metamorphosis.tools.dataTransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+
+public class PartitionMigratorUnitTest {
+
+    @Test
+    public void testEncodePutData() {
+        final byte[] body = "hello".getBytes();
+        assertSame(body, PartitionMigrator.encodePutData(null, body, 0));
+
+        final byte[] data = PartitionMigrator.encodePutData("attr", body, 1);
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        assertEquals(4, buffer.getInt());
+        final byte[] attr = new byte[4];
+        buffer.get(attr);
+        assertEquals("attr", new String(attr));
+        final byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        assertEquals("hello", new String(payload));
+    }
+
+
+    @Test
+    public void testTranslateOffset() {
+        // Դ100ʼ50Ŀ1000֮10
+        assertEquals(1030, PartitionMigrator.translateOffset(140, 100, 1000, 50, 10));
+        // ڿʼʱĿβ
+        assertEquals(1000, PartitionMigrator.translateOffset(105, 100, 1000, 50, 10));
+        assertEquals(1000, PartitionMigrator.translateOffset(50, 100, 1000, 50, 10));
+        // ѸƵķΧ
+        assertEquals(1050, PartitionMigrator.translateOffset(200, 100, 1000, 50, 0));
+    }
+
+
+    @Test
+    public void testThrottle() {
+        final BandwidthThrottler throttler = new BandwidthThrottler(1000);
+        assertEquals(1000, throttler.reserve(1000, 0));
+        assertEquals(1500, throttler.reserve(1000, 500));
+        // ׷ƽʺ
+        assertEquals(0, throttler.reserve(1000, 3000));
+        // гһ¼ʱ
+        assertEquals(500, throttler.reserve(500, 10000));
+        assertEquals(0, new BandwidthThrottler(0).reserve(Integer.MAX_VALUE, 0));
+    }
+}
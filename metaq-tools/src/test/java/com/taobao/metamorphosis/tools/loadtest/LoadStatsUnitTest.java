@@ -0,0 +1,50 @@
+package com.taobao.metamorphosis.tools.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+
+public class LoadStatsUnitTest {
+
+    @Test
+    public void testLatencyFromIntendedTime() {
+        final LoadStats stats = new LoadStats();
+        final long now = System.nanoTime();
+        // ƻ100msǰʵ1msǰſʼ
+        stats.recordSend(now - 100 * 1000000L, now - 1000000L, true);
+        stats.recordSend(now, now, false);
+        stats.rollInterval();
+
+        assertEquals(1, stats.acked.get());
+        assertEquals(1, stats.failed.get());
+        assertTrue(stats.send.getIntervalSnapshot().getMax() >= 100 * 1000);
+        assertTrue(stats.sendService.getIntervalSnapshot().getMax() < 100 * 1000);
+    }
+
+
+    @Test
+    public void testRollIntervalExcludesWarmup() {
+        final LoadStats stats = new LoadStats();
+        final long now = System.nanoTime();
+        stats.recordReceive(now - 1000 * 1000000L);
+        stats.rollInterval();
+        stats.recordReceive(System.nanoTime());
+        stats.rollInterval();
+
+        assertEquals(2, stats.received.get());
+        assertEquals(1, stats.endToEnd.getIntervalSnapshot().getCount());
+        assertTrue(stats.endToEnd.getIntervalSnapshot().getMax() < 1000 * 1000);
+    }
+
+
+    @Test
+    public void testIntendedNanosInBody() {
+        final byte[] data = new byte[16];
+        ByteBuffer.wrap(data).putLong(123456789L);
+        assertEquals(123456789L, ProducerWorker.getIntendedNanos(data));
+    }
+}
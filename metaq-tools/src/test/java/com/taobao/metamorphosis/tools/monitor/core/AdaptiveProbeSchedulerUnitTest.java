@@ -0,0 +1,96 @@
+package com.taobao.metamorphosis.tools.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.taobao.metamorphosis.tools.monitor.core.AdaptiveProbeScheduler.BrokerBudget;
+import com.taobao.metamorphosis.tools.monitor.core.AdaptiveProbeScheduler.ProbeState;
+
+
+public class AdaptiveProbeSchedulerUnitTest {
+
+    @Test
+    public void testStableResultGrowsToMax() {
+        final ProbeState state = new ProbeState(1000, 4000, 10000);
+        state.onResult(50.0, false);
+        assertEquals(6000, state.getIntervalMillis());
+        state.onResult(50.0, false);
+        assertEquals(9000, state.getIntervalMillis());
+        state.onResult(50.0, false);
+        assertEquals(10000, state.getIntervalMillis());
+    }
+
+
+    @Test
+    public void testAlertHalvesToMin() {
+        final ProbeState state = new ProbeState(1000, 4000, 10000);
+        state.onResult(null, true);
+        assertEquals(2000, state.getIntervalMillis());
+        state.onResult(null, true);
+        state.onResult(null, true);
+        assertEquals(1000, state.getIntervalMillis());
+    }
+
+
+    @Test
+    public void testFluctuationDetected() {
+        final ProbeState state = new ProbeState(1000, 8000, 100000);
+        for (int i = 0; i < 5; i++) {
+            state.onResult(50.0 + i % 2, false);
+        }
+        final long interval = state.getIntervalMillis();
+        // ָͻ䣬ڼ
+        state.onResult(90.0, false);
+        assertEquals(interval / 2, state.getIntervalMillis());
+    }
+
+
+    @Test
+    public void testSmallChangeNotFluctuation() {
+        final ProbeState state = new ProbeState(1000, 8000, 100000);
+        for (int i = 0; i < 5; i++) {
+            state.onResult(100.0, false);
+        }
+        final long interval = state.getIntervalMillis();
+        // ڲָ΢С仯㲨
+        state.onResult(101.0, false);
+        assertEquals(Math.min(100000, interval * 3 / 2), state.getIntervalMillis());
+    }
+
+
+    @Test
+    public void testFailureBacksOff() {
+        final ProbeState state = new ProbeState(1000, 4000, 10000);
+        state.onFailure();
+        assertEquals(8000, state.getIntervalMillis());
+        state.onFailure();
+        assertEquals(10000, state.getIntervalMillis());
+    }
+
+
+    @Test
+    public void testBudgetConcurrency() {
+        final BrokerBudget budget = new BrokerBudget();
+        assertTrue(budget.tryAcquire(0, 2, 0));
+        assertTrue(budget.tryAcquire(0, 2, 0));
+        assertFalse(budget.tryAcquire(0, 2, 0));
+        budget.release();
+        assertTrue(budget.tryAcquire(0, 2, 0));
+    }
+
+
+    @Test
+    public void testBudgetPerMinute() {
+        final BrokerBudget budget = new BrokerBudget();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(budget.tryAcquire(1000, 0, 3));
+            budget.release();
+        }
+        assertFalse(budget.tryAcquire(30000, 0, 3));
+        // һ¼
+        assertTrue(budget.tryAcquire(61000, 0, 3));
+    }
+}
@@ -0,0 +1,56 @@
+package com.taobao.metamorphosis.tools.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.taobao.metamorphosis.cluster.Partition;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery.LagRecord;
+import com.taobao.metamorphosis.tools.query.ParallelOffsetQuery.OffsetRange;
+
+
+public class ParallelOffsetQueryUnitTest {
+
+    @Test
+    public void testParseBrokerOffsets() {
+        final String result =
+                "STATS\r\ntopic1 part 0 min_offset 10 max_offset 100\r\ntopic1 part 1 min_offset 0 max_offset 5\r\n"
+                        + "topic2 part 0 min_offset 3 max_offset 7\r\nEND\r\n";
+        final Map<String, Map<Partition, OffsetRange>> offsets = new HashMap<String, Map<Partition, OffsetRange>>();
+        ParallelOffsetQuery.parseBrokerOffsets(2, result, offsets);
+
+        assertEquals(2, offsets.size());
+        final OffsetRange range = offsets.get("topic1").get(new Partition(2, 0));
+        assertEquals(10, range.minOffset);
+        assertEquals(100, range.maxOffset);
+        assertEquals(5, offsets.get("topic1").get(new Partition(2, 1)).maxOffset);
+        assertEquals(7, offsets.get("topic2").get(new Partition(2, 0)).maxOffset);
+        assertNull(offsets.get("topic2").get(new Partition(1, 0)));
+    }
+
+
+    @Test
+    public void testParseOffsetsByTime() {
+        final String result = "ASK\r\ntopic1 part 0 42\r\ntopic1 part 3 7\r\nother part 0 1\r\nEND\r\n";
+        final Map<Partition, Long> offsets = new TreeMap<Partition, Long>();
+        ParallelOffsetQuery.parseOffsetsByTime(1, "topic1", result, offsets);
+
+        assertEquals(2, offsets.size());
+        assertEquals(42L, offsets.get(new Partition(1, 0)).longValue());
+        assertEquals(7L, offsets.get(new Partition(1, 3)).longValue());
+    }
+
+
+    @Test
+    public void testLag() {
+        final Partition partition = new Partition(0, 0);
+        assertEquals(90, new LagRecord("g", "t", partition, 10, 0, 100).getLag());
+        assertEquals(-1, new LagRecord("g", "t", partition, 10, -1, -1).getLag());
+        assertEquals(-1, new LagRecord("g", "t", partition, -1, 0, 100).getLag());
+    }
+}